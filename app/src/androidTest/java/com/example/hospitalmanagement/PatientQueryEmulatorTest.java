@@ -0,0 +1,349 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientQuery, the summary layout, delta sync and archiving against the local Firebase
+ * emulator with the shipped database.rules.json. Start it from the project root first:
+ * {@code firebase emulators:start --only auth,database --project hospitalmanagementsystem-f6529}
+ */
+@RunWith(AndroidJUnit4.class)
+public class PatientQueryEmulatorTest {
+
+    // The host machine as seen from the Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static DatabaseReference root;
+
+    @BeforeClass
+    public static void connect() throws Exception {
+        FirebaseDatabase database = FirebaseDatabase.getInstance();
+        database.useEmulator(EMULATOR_HOST, 9000);
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        auth.useEmulator(EMULATOR_HOST, 9099);
+        Tasks.await(auth.signInAnonymously(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        root = database.getReference();
+    }
+
+    @Before
+    public void seed() throws Exception {
+        // The rules only allow index entries and summaries to be deleted one by one, along with their records
+        Map<String, Object> clear = new HashMap<>();
+        clear.put(PatientIndex.PATIENTS, null);
+        DataSnapshot index = Tasks.await(root.child(PatientIndex.BY_DISEASE).get(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (DataSnapshot disease : index.getChildren()) {
+            for (DataSnapshot entry : disease.getChildren()) {
+                clear.put(PatientIndex.BY_DISEASE + "/" + disease.getKey() + "/" + entry.getKey(), null);
+            }
+        }
+        DataSnapshot summaries = Tasks.await(root.child(PatientIndex.SUMMARIES).get(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (DataSnapshot summary : summaries.getChildren()) {
+            clear.put(PatientIndex.SUMMARIES + "/" + summary.getKey(), null);
+        }
+        Tasks.await(root.updateChildren(clear), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        write(new Patient("Jane", "jane@example.com", "34", "P-1", "Flu"),
+                new Patient("John", "john@example.com", "71", "P-2", " flu"),
+                new Patient("Mary", "mary@example.com", "38", "P-3", "Asthma"),
+                new Patient("Ann", "ann@example.com", "", "P-4", "FLU"));
+    }
+
+    @Test
+    public void byDisease_ignoresCaseAndSpaces() throws Exception {
+        assertEquals(Arrays.asList("P-1", "P-2", "P-4"), ids(run(callback -> query().byDisease("Flu ", callback))));
+        assertTrue(run(callback -> query().byDisease("Malaria", callback)).isEmpty());
+    }
+
+    @Test
+    public void byAge_returnsTheRangeInAgeOrder() throws Exception {
+        assertEquals(Arrays.asList("P-1", "P-3"), ids(run(callback -> query().byAge(30, 39, callback))));
+        assertEquals(Arrays.asList("P-1", "P-3", "P-2"), ids(run(callback -> query().byAge(0, 200, callback))));
+    }
+
+    @Test
+    public void byDiseaseAndAge_combinesBothFilters() throws Exception {
+        assertEquals(Arrays.asList("P-1"), ids(run(callback -> query().byDiseaseAndAge("flu", 30, 39, callback))));
+        assertEquals(Arrays.asList("P-1", "P-2"), ids(run(callback -> query().byDiseaseAndAge("flu", 0, 200, callback))));
+    }
+
+    @Test
+    public void changedDisease_staleEntryIsSkippedAndRemoved() throws Exception {
+        write(new Patient("Jane", "jane@example.com", "34", "P-1", "Asthma"));
+
+        assertEquals(Arrays.asList("P-2"), ids(run(callback -> query().byDiseaseAndAge("flu", 0, 200, callback))));
+        assertEquals(Arrays.asList("P-1", "P-3"), ids(run(callback -> query().byDiseaseAndAge("asthma", 0, 200, callback))));
+        // The cleanup is sent before the result is delivered, so the server has applied it by this read
+        assertFalse(Tasks.await(root.child(PatientIndex.BY_DISEASE).child("flu").child("P-1").get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).exists());
+    }
+
+    @Test
+    public void rules_rejectIndexEntriesThatDisagreeWithTheRecord() throws Exception {
+        DatabaseReference entry = root.child(PatientIndex.BY_DISEASE).child("flu").child("P-3");
+        try {
+            Tasks.await(entry.setValue(38), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Index entry for a patient without that disease was accepted");
+        } catch (ExecutionException expected) {
+        }
+
+        // Nor can a valid entry be deleted while its record still matches
+        DatabaseReference valid = root.child(PatientIndex.BY_DISEASE).child("asthma").child("P-3");
+        try {
+            Tasks.await(valid.removeValue(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("A valid index entry was removed");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void summaries_areWrittenWithTheirRecords() throws Exception {
+        DataSnapshot summary = Tasks.await(root.child(PatientIndex.SUMMARIES).child("P-3").get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        PatientRecord mary = PatientCodec.decodeSummary(summary.getKey(), summary.getValue());
+        assertEquals("Mary", mary.name);
+        assertEquals(38, mary.age);
+        assertEquals("Asthma", mary.disease());
+        assertFalse(summary.hasChild(PatientCodec.FIELD_EMAIL));
+    }
+
+    @Test
+    public void rules_rejectSummariesThatDisagreeWithTheRecord() throws Exception {
+        DatabaseReference summary = root.child(PatientIndex.SUMMARIES).child("P-3");
+        Map<String, Object> stale = PatientIndex.summary(PatientCodec.encode(
+                new Patient("Mary", "mary@example.com", "39", "P-3", "Asthma")));
+        try {
+            Tasks.await(summary.setValue(stale), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("A summary with the wrong age was accepted");
+        } catch (ExecutionException expected) {
+        }
+
+        try {
+            Tasks.await(summary.removeValue(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("The summary of an existing record was removed");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void rules_rejectFalseTombstonesAndClientClocks() throws Exception {
+        DatabaseReference summary = root.child(PatientIndex.SUMMARIES).child("P-3");
+        try {
+            Tasks.await(summary.setValue(PatientIndex.tombstone()), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("A tombstone was accepted for an existing record");
+        } catch (ExecutionException expected) {
+        }
+
+        Map<String, Object> backdated = PatientIndex.summary(PatientCodec.encode(
+                new Patient("Mary", "mary@example.com", "38", "P-3", "Asthma")));
+        backdated.put(PatientIndex.FIELD_UPDATED_AT, 1L);
+        try {
+            Tasks.await(summary.setValue(backdated), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("A summary with a client-chosen updatedAt was accepted");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void deltaSync_afterRandomEditsAndDeletes_matchesAFullRead() throws Exception {
+        Random random = new Random(21);
+        List<String> ids = new ArrayList<>(Arrays.asList("P-1", "P-2", "P-3", "P-4"));
+        for (int i = 5; i <= 40; i++) {
+            write(randomPatient(random, "P-" + i));
+            ids.add("P-" + i);
+        }
+        // The client's state after a full read
+        PatientList local = new PatientList();
+        SyncMark mark = new SyncMark(0, 0);
+        applyDelta(local, mark, Tasks.await(root.child(PatientIndex.SUMMARIES).get(), TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        for (int round = 0; round < 5; round++) {
+            Set<String> touched = new HashSet<>();
+            for (int i = 0; i < 8; i++) {
+                String id = ids.get(random.nextInt(ids.size()));
+                if (random.nextInt(3) == 0) {
+                    Tasks.await(root.updateChildren(PatientIndex.fanOut(Collections.singletonMap(id, null))),
+                            TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } else {
+                    write(randomPatient(random, id));
+                }
+                touched.add(id);
+            }
+
+            DataSnapshot delta = Tasks.await(root.child(PatientIndex.SUMMARIES)
+                    .orderByChild(PatientIndex.FIELD_UPDATED_AT).startAt(mark.queryStart()).get(),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            applyDelta(local, mark, delta);
+
+            PatientList full = new PatientList();
+            applyDelta(full, new SyncMark(0), Tasks.await(root.child(PatientIndex.SUMMARIES).get(),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(full.snapshot(), local.snapshot());
+            // The changed patients, plus at most a few sharing the previous mark's millisecond
+            assertTrue("Downloaded " + delta.getChildrenCount() + " for " + touched.size() + " changes",
+                    delta.getChildrenCount() >= touched.size() && delta.getChildrenCount() < touched.size() + 8);
+        }
+    }
+
+    @Test
+    public void rules_refuseASecondCreateOfAnId() throws Exception {
+        String id = "P-create-" + System.currentTimeMillis();
+        Patient first = new Patient("Jane", "jane@example.com", "42", id, "Flu");
+        first.creationId = "first";
+        Patient second = new Patient("John", "john@example.com", "50", id, "Asthma");
+        second.creationId = "second";
+        write(first);
+        try {
+            write(second);
+            fail("A second create replaced the first");
+        } catch (ExecutionException expected) {
+        }
+        // A retry of the first create still goes through
+        write(first);
+
+        assertEquals("Jane", Tasks.await(root.child(PatientIndex.PATIENTS).child(id).child(PatientCodec.FIELD_NAME).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).getValue());
+    }
+
+    @Test
+    public void archive_acceptsOnlyAMoveOfTheCurrentRecord() throws Exception {
+        // Archived copies can't be deleted, so each run archives a new ID
+        String id = "P-archive-" + System.currentTimeMillis();
+        write(new Patient("Jane", "jane@example.com", "42", id, "Flu"));
+        Object read = Tasks.await(root.child(PatientIndex.PATIENTS).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).getValue();
+        write(new Patient("Jane Doe", "jane@example.com", "43", id, "Flu"));
+        String year = PatientIndex.archiveYear(System.currentTimeMillis());
+        try {
+            Tasks.await(root.updateChildren(PatientIndex.archiveUpdates(id, (Map<?, ?>) read, year)),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("A copy read before the last save was archived");
+        } catch (ExecutionException expected) {
+        }
+
+        Object current = Tasks.await(root.child(PatientIndex.PATIENTS).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).getValue();
+        Tasks.await(root.updateChildren(PatientIndex.archiveUpdates(id, (Map<?, ?>) current, year)),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertFalse(Tasks.await(root.child(PatientIndex.PATIENTS).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).exists());
+        DataSnapshot summary = Tasks.await(root.child(PatientIndex.SUMMARIES).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(PatientIndex.isTombstone(summary.getValue()));
+        DataSnapshot archived = Tasks.await(root.child(PatientIndex.ARCHIVE).child(year).child(id)
+                .child(PatientIndex.archiveEntry(current)).get(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals("Jane Doe", archived.child(PatientCodec.FIELD_NAME).getValue());
+        try {
+            Tasks.await(root.child(PatientIndex.ARCHIVE).child(year).child(id).removeValue(),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("An archived record was deleted");
+        } catch (ExecutionException expected) {
+        }
+
+        // The ID is free again, and its next patient is archived next to the first
+        write(new Patient("Joe", "joe@example.com", "30", id, "Asthma"));
+        Object reused = Tasks.await(root.child(PatientIndex.PATIENTS).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS).getValue();
+        Tasks.await(root.updateChildren(PatientIndex.archiveUpdates(id, (Map<?, ?>) reused, year)),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        DataSnapshot copies = Tasks.await(root.child(PatientIndex.ARCHIVE).child(year).child(id).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, copies.getChildrenCount());
+        assertEquals("Joe", PatientCodec.decodeArchived(id, copies.getValue()).name);
+    }
+
+    private static void applyDelta(PatientList list, SyncMark mark, DataSnapshot summaries) {
+        for (DataSnapshot summary : summaries.getChildren()) {
+            PatientRecord patient = PatientCodec.decodeSummary(summary.getKey(), summary.getValue());
+            if (patient != null) {
+                list.put(summary.getKey(), patient);
+            } else {
+                list.remove(summary.getKey());
+            }
+            mark.advance(summary.getValue());
+        }
+    }
+
+    private static Patient randomPatient(Random random, String id) {
+        String[] diseases = {"Flu", "Asthma", "Malaria"};
+        return new Patient("Name " + random.nextInt(1000), id + "@example.com",
+                Integer.toString(random.nextInt(100)), id, diseases[random.nextInt(diseases.length)]);
+    }
+
+    private static PatientQuery query() {
+        return new PatientQuery(root);
+    }
+
+    private static void write(Patient... patients) throws Exception {
+        Map<String, Object> updates = new HashMap<>();
+        for (Patient patient : patients) {
+            updates.put(patient.id, PatientCodec.encode(patient));
+        }
+        Tasks.await(root.updateChildren(PatientIndex.fanOut(updates)), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private interface QueryCall {
+        void run(PatientQuery.Callback callback);
+    }
+
+    private static List<PatientRecord> run(QueryCall call) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        List<PatientRecord> result = new ArrayList<>();
+        DatabaseError[] failure = new DatabaseError[1];
+        call.run(new PatientQuery.Callback() {
+            @Override
+            public void onResult(@NonNull List<PatientRecord> patients) {
+                result.addAll(patients);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailed(@NonNull DatabaseError error) {
+                failure[0] = error;
+                done.countDown();
+            }
+        });
+        assertTrue("Query timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        if (failure[0] != null) {
+            throw failure[0].toException();
+        }
+        return result;
+    }
+
+    private static List<String> ids(List<PatientRecord> patients) {
+        List<String> ids = new ArrayList<>();
+        for (PatientRecord patient : patients) {
+            ids.add(patient.id);
+        }
+        return ids;
+    }
+}
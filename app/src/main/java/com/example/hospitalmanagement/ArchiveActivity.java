@@ -0,0 +1,88 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+// Browses archive/{year} one year at a time. Archived patients are never
+// listened to; a year is paged in only when it is opened, newest year first.
+public class ArchiveActivity extends AppCompatActivity {
+
+    private DatabaseReference archiveRef;
+    private RecyclerView archiveRecyclerView;
+    private TextView yearTitle;
+    private Button newerYearBtn;
+    private PatientPagedSource archivePager;
+    private int currentYear;
+    private int year;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_archive);
+        ImageLoader.getInstance(this).loadBackground(findViewById(R.id.rootLayout), R.drawable.bg);
+
+        archiveRef = FirebaseDatabase.getInstance().getReference(PatientIndex.ARCHIVE);
+        archiveRecyclerView = findViewById(R.id.archiveRecyclerView);
+        archiveRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        FrameMonitor.attach(archiveRecyclerView);
+        yearTitle = findViewById(R.id.archiveYearTitle);
+        newerYearBtn = findViewById(R.id.newerYearBtn);
+
+        currentYear = Integer.parseInt(PatientIndex.archiveYear(System.currentTimeMillis()));
+        findViewById(R.id.olderYearBtn).setOnClickListener(v -> showYear(year - 1));
+        newerYearBtn.setOnClickListener(v -> showYear(year + 1));
+        showYear(currentYear);
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (archivePager != null) {
+            archivePager.detach(archiveRecyclerView);
+        }
+        PatientAdapter.detach(archiveRecyclerView);
+        super.onDestroy();
+    }
+
+    private void showYear(int year) {
+        this.year = year;
+        yearTitle.setText("Archived in " + year);
+        newerYearBtn.setEnabled(year < currentYear);
+
+        if (archivePager != null) {
+            archivePager.detach(archiveRecyclerView);
+        }
+        // Archived entries are full records, not summaries; an ID archived twice shows its latest copy
+        archivePager = new PatientPagedSource(archiveRef.child(Integer.toString(year)), PatientDecoder.ARCHIVED,
+                new PatientPagedSource.Listener() {
+                    @Override
+                    public void onFirstPageLoaded(boolean empty) {
+                        if (empty) {
+                            Toast.makeText(ArchiveActivity.this, "No patients archived in " + year, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+
+                    @Override
+                    public void onLoadFailed(@NonNull DatabaseError error) {
+                        Toast.makeText(ArchiveActivity.this, "Failed to load the archive: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                        Log.e("Firebase", "Database error", error.toException());
+                    }
+                });
+        PatientAdapter adapter = new PatientAdapter(archivePager.getWindow());
+        adapter.setOnPatientClickListener(patient -> PatientDetails.showArchived(this, patient));
+        adapter.attach(archiveRecyclerView);
+        archivePager.attach(archiveRecyclerView, adapter);
+        archivePager.refresh();
+    }
+}
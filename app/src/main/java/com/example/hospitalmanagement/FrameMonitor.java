@@ -0,0 +1,69 @@
+package com.example.hospitalmanagement;
+
+import android.view.Choreographer;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+// Measures frame times while a patient list scrolls and counts the vsyncs
+// each slow frame missed. Frame callbacks are only posted during a scroll
+// and only while metrics are enabled, so an idle or unmetered list pays nothing.
+final class FrameMonitor extends RecyclerView.OnScrollListener implements Choreographer.FrameCallback {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private long frameIntervalNanos;
+    private long lastFrameNanos = 0;
+    private boolean running = false;
+
+    private FrameMonitor() {
+    }
+
+    static void attach(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(new FrameMonitor());
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        // RecyclerView stops scrolling when it leaves the window, so this also runs on teardown
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            stop();
+        } else if (!running && Metrics.isEnabled()) {
+            Display display = recyclerView.getDisplay();
+            float refreshRate = display != null && display.getRefreshRate() > 0
+                    ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+            frameIntervalNanos = (long) (NANOS_PER_SECOND / refreshRate);
+            lastFrameNanos = 0;
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!Metrics.isEnabled()) {
+            stop();
+            return;
+        }
+        if (lastFrameNanos != 0) {
+            long elapsed = frameTimeNanos - lastFrameNanos;
+            Metrics.FRAME.record(elapsed / 1_000_000L);
+            // A frame that took 2.6 intervals skipped two vsyncs
+            long missed = (elapsed + frameIntervalNanos / 2) / frameIntervalNanos - 1;
+            if (missed > 0) {
+                Metrics.DROPPED_FRAMES.add(missed);
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void stop() {
+        if (running) {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+}
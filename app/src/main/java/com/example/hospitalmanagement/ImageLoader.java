@@ -0,0 +1,160 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Decodes drawable images off the main thread, downsampled to the size of
+// the view that shows them, into one LRU cache shared by every activity.
+// The images live in drawable-nodpi so the framework never scales them up
+// by screen density before this loader scales them down.
+public class ImageLoader {
+
+    private interface Target {
+        void onLoaded(Bitmap bitmap);
+    }
+
+    private static ImageLoader instance;
+
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            // An eighth of the heap keeps both screens' images without crowding out the patient list
+            instance = new ImageLoader(context.getApplicationContext().getResources(),
+                    (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+        }
+        return instance;
+    }
+
+    private final Resources resources;
+    private final LruCache<String, Bitmap> cache;
+    // One decode at a time; a second request for the same image then hits the cache
+    private final Executor executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Latest request per view, so a slow decode cannot replace a newer image
+    private final Map<View, String> requests = new WeakHashMap<>();
+
+    ImageLoader(Resources resources, int maxBytes) {
+        this.resources = resources;
+        this.cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    // Stretches the image over the whole view, like android:background did
+    public void loadBackground(View view, @DrawableRes int resId) {
+        load(view, resId, true, bitmap -> view.setBackground(new BitmapDrawable(resources, bitmap)));
+    }
+
+    // Keeps the image's aspect ratio and lets the ImageView scale it
+    public void loadImage(ImageView view, @DrawableRes int resId) {
+        load(view, resId, false, view::setImageBitmap);
+    }
+
+    private void load(View view, int resId, boolean exact, Target target) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width == 0 || height == 0) {
+            // The target size is only known after layout
+            view.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if (v.getWidth() > 0 && v.getHeight() > 0) {
+                        v.removeOnLayoutChangeListener(this);
+                        load(v, resId, exact, target);
+                    }
+                }
+            });
+            return;
+        }
+
+        String key = key(resId, width, height, exact);
+        Bitmap cached = cache.get(key);
+        if (cached != null) {
+            requests.remove(view);
+            target.onLoaded(cached);
+            return;
+        }
+        requests.put(view, key);
+        executor.execute(() -> {
+            Bitmap bitmap = get(resId, width, height, exact);
+            mainHandler.post(() -> {
+                if (bitmap != null && key.equals(requests.get(view))) {
+                    requests.remove(view);
+                    target.onLoaded(bitmap);
+                }
+            });
+        });
+    }
+
+    // Returns the cached bitmap or decodes it; runs on the loader thread
+    Bitmap get(int resId, int width, int height, boolean exact) {
+        String key = key(resId, width, height, exact);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(resId, width, height, exact);
+            if (bitmap != null) {
+                cache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    LruCache<String, Bitmap> getCache() {
+        return cache;
+    }
+
+    private Bitmap decode(int resId, int width, int height, boolean exact) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, width, height);
+        // JPEGs have no alpha, so 16-bit pixels halve the memory with no visible loss
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType)
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, resId, options);
+        if (bitmap == null || !exact || (bitmap.getWidth() == width && bitmap.getHeight() == height)) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    // Largest power of two that keeps both dimensions at least the requested size
+    static int calculateSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String key(int resId, int width, int height, boolean exact) {
+        return resId + ":" + width + "x" + height + (exact ? ":exact" : "");
+    }
+}
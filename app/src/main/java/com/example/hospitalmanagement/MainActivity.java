@@ -1,19 +1,30 @@
 package com.example.hospitalmanagement;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.Log;
-import android.view.LayoutInflater;
+import android.view.Choreographer;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.widget.Button;
 import android.widget.ProgressBar;
 import android.widget.TextView;
@@ -21,21 +32,23 @@ import android.widget.Toast;
 
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
+import com.google.firebase.FirebaseNetworkException;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 
 public class MainActivity extends AppCompatActivity {
 
     // Firebase Authentication
     private FirebaseAuth mAuth;
+    // The signed-in admin's view state, kept encrypted so a restart can show it at once
+    private SessionCache sessionCache;
+    private AuthSession session;
 
     // Firebase Database
     private FirebaseDatabase database;
@@ -46,34 +59,56 @@ public class MainActivity extends AppCompatActivity {
     private TextInputEditText emailField, passwordField, confirmPasswordField;
     private TextInputLayout confirmPasswordLayout;
     private ProgressBar progressBar;
-    private Button loginBtn, registerBtn, cancelBtn, logoutBtn, addPatientBtn, viewPatientsBtn;
-    private TextView formTitle;
+    private Button loginBtn, registerBtn, cancelBtn, logoutBtn, addPatientBtn, viewPatientsBtn, importPatientsBtn,
+            exportPatientsBtn, viewArchiveBtn;
+    private TextView formTitle, importStatusText, exportStatusText, syncStatusText;
 
     // Patient fields
     private TextInputEditText patientName, patientId, patientEmail, patientAge, patientDisease;
+    private TextInputLayout patientIdLayout;
     private RecyclerView patientRecyclerView;
-    private TextView patientRecordsTitle;
+    private TextView patientRecordsTitle, wardStatsText;
+    private TextInputLayout patientSearchLayout;
+    private TextInputEditText patientSearchField;
 
     // Patient data
     private PatientAdapter patientAdapter;
-    private List<Patient> patientList = new ArrayList<>();
+    private PatientSync patientSync;
+    private PatientSearch patientSearch;
+    private WardStatsView wardStatsView;
+    private PatientImporter patientImporter;
+    private ActivityResultLauncher<String[]> importFilePicker;
+    private PatientExporter patientExporter;
+    private PatientWriteQueue writeQueue;
+    private PatientCreator patientCreator;
+    private ActivityResultLauncher<String> csvExportPicker, ndjsonExportPicker;
 
     // Track registration state
     private boolean isRegistering = false;
 
+    // Startup is traced once per process; a recreated activity is not a cold start
+    private static boolean firstFrameReported = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        MetricsActivity.restore(this);
+        reportFirstFrame();
 
-        // Initialize Firebase
+        // Initialize Firebase; the database client waits until the patient card is needed
         mAuth = FirebaseAuth.getInstance();
-        database = FirebaseDatabase.getInstance();
-        patientsRef = database.getReference("patients");
+        sessionCache = new SessionCache(this);
 
         // Initialize UI elements
         initializeUI();
 
+        // Decode images at view size in the background
+        ImageLoader images = ImageLoader.getInstance(this);
+        images.loadBackground(findViewById(R.id.rootLayout), R.drawable.bg);
+        images.loadImage(findViewById(R.id.hospitalImage), R.drawable.hospital);
+
         // Set button listeners
         setButtonListeners();
 
@@ -82,6 +117,43 @@ public class MainActivity extends AppCompatActivity {
 
         // Check if user is already logged in
         checkCurrentUser();
+        Trace.endSection();
+    }
+
+    @Override
+    protected void onStop() {
+        saveSession();
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (patientCard != null) {
+            writeQueue.setListener(null);
+            writeQueue.setConflictListener(null);
+            patientSync.stop();
+            wardStatsView.stop();
+            patientSearch.release();
+            PatientAdapter.detach(patientRecyclerView);
+        }
+        cancelImport();
+        cancelExport();
+        super.onDestroy();
+    }
+
+    // Time from process start to the first drawn frame, whichever card it shows.
+    // Compare with the "Displayed" and "Fully drawn" lines that ActivityManager logs.
+    private void reportFirstFrame() {
+        if (firstFrameReported) {
+            return;
+        }
+        firstFrameReported = true;
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                // Runs right after the frame this callback started has been drawn
+                new Handler(Looper.getMainLooper()).postAtFrontOfQueue(() -> {
+                    Metrics.FIRST_FRAME.record(SystemClock.uptimeMillis() - Process.getStartUptimeMillis());
+                    reportFullyDrawn();
+                }));
     }
 
     private void initializeUI() {
@@ -98,26 +170,127 @@ public class MainActivity extends AppCompatActivity {
         cancelBtn = findViewById(R.id.cancelBtn);
         formTitle = findViewById(R.id.formTitle);
 
+        // Long-pressing the hospital name opens the hidden metrics screen
+        findViewById(R.id.Title).setOnLongClickListener(v -> {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        });
+
+        // File pickers must be registered before the activity starts, card or no card
+        importFilePicker = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importPatients);
+        csvExportPicker = registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"),
+                uri -> exportPatients(uri, PatientExporter.Format.CSV));
+        ndjsonExportPicker = registerForActivityResult(new ActivityResultContracts.CreateDocument("application/x-ndjson"),
+                uri -> exportPatients(uri, PatientExporter.Format.NDJSON));
+    }
+
+    // Inflates the patient card and sets up everything behind it on first use.
+    // Someone who only sees the login form never pays for the form, the list
+    // or the database client.
+    private void initializePatientCard() {
+        if (patientCard != null) {
+            return;
+        }
+        Trace.beginSection("MainActivity.initializePatientCard");
+        long inflateStart = Metrics.start();
+        patientCard = (CardView) ((ViewStub) findViewById(R.id.patientCardStub)).inflate();
+        Metrics.PATIENT_CARD_INFLATE.recordSince(inflateStart);
+
+        database = FirebaseDatabase.getInstance();
+        patientsRef = database.getReference("patients");
+
         // Patient management UI
         logoutBtn = findViewById(R.id.logoutBtn);
         addPatientBtn = findViewById(R.id.addPatientBtn);
+        syncStatusText = findViewById(R.id.syncStatusText);
         viewPatientsBtn = findViewById(R.id.viewPatientsBtn);
+        viewArchiveBtn = findViewById(R.id.viewArchiveBtn);
+        importPatientsBtn = findViewById(R.id.importPatientsBtn);
+        importStatusText = findViewById(R.id.importStatusText);
+        exportPatientsBtn = findViewById(R.id.exportPatientsBtn);
+        exportStatusText = findViewById(R.id.exportStatusText);
 
         // Patient fields
         patientName = findViewById(R.id.patientName);
         patientId = findViewById(R.id.patientId);
+        patientIdLayout = findViewById(R.id.patientIdLayout);
         patientEmail = findViewById(R.id.patientEmail);
         patientAge = findViewById(R.id.patientAge);
         patientDisease = findViewById(R.id.patientDisease);
 
         // Patient records UI
         patientRecordsTitle = findViewById(R.id.patientRecordsTitle);
+        wardStatsText = findViewById(R.id.wardStatsText);
         patientRecyclerView = findViewById(R.id.patientRecyclerView);
+        patientSearchLayout = findViewById(R.id.patientSearchLayout);
+        patientSearchField = findViewById(R.id.patientSearchField);
+
+        // Saves are journaled and sent in the background; show how many are still unsent
+        writeQueue = PatientWriteQueue.getInstance(this);
+        writeQueue.setListener(this::showPendingWrites);
+        // A queued patient whose ID another admin created first is dropped, not written over theirs
+        writeQueue.setConflictListener((patient, existing) -> {
+            String owner = existing != null && existing.name != null ? " by " + existing.name : "";
+            Toast.makeText(MainActivity.this, "Patient " + patient.id + " was not saved: the ID is already used"
+                    + owner, Toast.LENGTH_LONG).show();
+        });
+        // New patients never overwrite an existing ID
+        patientCreator = new PatientCreator(PatientRepository.getInstance(this), patientsRef, writeQueue);
+        // Lists read patientSummaries; build any missing for records saved before they existed
+        new PatientSummaryMigration(database.getReference()).run(new PatientSummaryMigration.Callback() {
+            @Override
+            public void onComplete(int written) {
+                PatientRepository.getInstance(MainActivity.this).setSummariesComplete();
+                // Compaction finds inactive patients through the summaries' updatedAt
+                PatientArchive.compactIfDue(MainActivity.this, database.getReference());
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception error) {
+                Log.e("Firebase", "Error building patient summaries", error);
+            }
+        });
 
         // Setup RecyclerView
         patientRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        patientAdapter = new PatientAdapter(patientList);
-        patientRecyclerView.setAdapter(patientAdapter);
+        FrameMonitor.attach(patientRecyclerView);
+        patientSync = new PatientSync(PatientRepository.getInstance(this), error -> {
+            Toast.makeText(MainActivity.this, "Failed to load patients: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+            Log.e("Firebase", "Database error", error.toException());
+        });
+        patientAdapter = new PatientAdapter(patientSync.getCurrentList());
+        patientAdapter.setOnPatientClickListener(patient -> PatientDetails.show(this, patientsRef, patient));
+        patientAdapter.attach(patientRecyclerView);
+        patientSync.attach(patientAdapter);
+
+        // Disease and age counts, kept current from the same subscription
+        wardStatsView = new WardStatsView(PatientRepository.getInstance(this), wardStatsText);
+
+        // Search results replace the full list while a query is active
+        patientSearch = new PatientSearch(PatientRepository.getInstance(this),
+                results -> patientSync.setFilteredList(results));
+        patientSearchField.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                patientSearch.setQuery(s.toString());
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {}
+        });
+
+        // Patient management buttons
+        logoutBtn.setOnClickListener(v -> logoutUser());
+        addPatientBtn.setOnClickListener(v -> addPatient());
+        viewPatientsBtn.setOnClickListener(v -> togglePatientRecords());
+        viewArchiveBtn.setOnClickListener(v -> startActivity(new Intent(this, ArchiveActivity.class)));
+        importPatientsBtn.setOnClickListener(v -> importFilePicker.launch(new String[]{
+                "text/csv", "text/comma-separated-values", "application/json", "text/plain"}));
+        exportPatientsBtn.setOnClickListener(v -> chooseExportFormat());
+        Trace.endSection();
     }
 
     private void setButtonListeners() {
@@ -139,11 +312,6 @@ public class MainActivity extends AppCompatActivity {
         });
 
         cancelBtn.setOnClickListener(v -> cancelRegistration());
-
-        // Patient management buttons
-        logoutBtn.setOnClickListener(v -> logoutUser());
-        addPatientBtn.setOnClickListener(v -> addPatient());
-        viewPatientsBtn.setOnClickListener(v -> togglePatientRecords());
     }
 
     private void setupPasswordValidation() {
@@ -213,32 +381,92 @@ public class MainActivity extends AppCompatActivity {
     private void checkCurrentUser() {
         FirebaseUser currentUser = mAuth.getCurrentUser();
         if (currentUser != null) {
-            // User is logged in, show patient management
-            showPatientManagement();
+            // User is logged in; put back what they last saw while the token is checked
+            startSession(currentUser);
+            refreshSession(currentUser);
         } else {
             // No user logged in, show login form
+            if (sessionCache.exists()) {
+                // Signed out without going through logoutUser()
+                sessionCache.revoke();
+            }
             showLoginForm();
         }
     }
 
+    // Shows the patient card as the admin left it, with the list read from disk
+    private void startSession(FirebaseUser user) {
+        session = sessionCache.load(user.getUid());
+        if (session == null) {
+            session = AuthSession.signedIn(user.getUid());
+            sessionCache.save(session);
+        }
+        showPatientManagement();
+        if (session.recordsShown) {
+            showPatientRecords();
+            patientSearchField.setText(session.searchQuery);
+        }
+    }
+
+    // Asks the server for a fresh token in the background. A refused token
+    // ends the session; being offline keeps it.
+    private void refreshSession(FirebaseUser user) {
+        user.getIdToken(true).addOnCompleteListener(this, task -> {
+            if (task.isSuccessful() || task.getException() instanceof FirebaseNetworkException
+                    || mAuth.getCurrentUser() != user) {
+                return;
+            }
+            Log.e("Firebase", "Session refused", task.getException());
+            endSession();
+            Toast.makeText(MainActivity.this, "Your session has expired, please log in again", Toast.LENGTH_LONG).show();
+        });
+    }
+
+    private void saveSession() {
+        if (session == null || patientCard == null) {
+            return;
+        }
+        AuthSession current = session.withViewState(patientRecyclerView.getVisibility() == View.VISIBLE,
+                patientSearchField.getText().toString());
+        if (!current.equals(session)) {
+            session = current;
+            sessionCache.save(session);
+        }
+    }
+
+    // Stops everything started for the admin and forgets what was cached for them
+    private void endSession() {
+        stopPatientRecords();
+        cancelImport();
+        cancelExport();
+        mAuth.signOut();
+        session = null;
+        sessionCache.revoke();
+        showLoginForm();
+    }
+
     private void showLoginForm() {
         loginCard.setVisibility(View.VISIBLE);
-        patientCard.setVisibility(View.GONE);
+        if (patientCard != null) {
+            patientCard.setVisibility(View.GONE);
+        }
         cancelRegistration(); // Reset form state
     }
 
     private void showPatientManagement() {
+        initializePatientCard();
         loginCard.setVisibility(View.GONE);
         patientCard.setVisibility(View.VISIBLE);
 
         // Clear any previous patient data
         clearPatientForm();
-        patientList.clear();
-        patientAdapter.notifyDataSetChanged();
+        stopPatientRecords();
 
         // Hide patient records by default
         patientRecyclerView.setVisibility(View.GONE);
         patientRecordsTitle.setVisibility(View.GONE);
+        patientSearchLayout.setVisibility(View.GONE);
+        wardStatsText.setVisibility(View.GONE);
         viewPatientsBtn.setText("View Patient Records");
     }
 
@@ -253,12 +481,14 @@ public class MainActivity extends AppCompatActivity {
 
         progressBar.setVisibility(View.VISIBLE);
 
+        long signInStart = Metrics.start();
         mAuth.signInWithEmailAndPassword(email, password)
                 .addOnCompleteListener(this, task -> {
+                    Metrics.SIGN_IN.recordSince(signInStart);
                     progressBar.setVisibility(View.GONE);
                     if (task.isSuccessful()) {
                         Toast.makeText(MainActivity.this, "Login successful", Toast.LENGTH_SHORT).show();
-                        showPatientManagement();
+                        startSession(mAuth.getCurrentUser());
                     } else {
                         Toast.makeText(MainActivity.this, "Authentication failed: " +
                                 task.getException().getMessage(), Toast.LENGTH_LONG).show();
@@ -295,7 +525,7 @@ public class MainActivity extends AppCompatActivity {
                     progressBar.setVisibility(View.GONE);
                     if (task.isSuccessful()) {
                         Toast.makeText(MainActivity.this, "Registration successful", Toast.LENGTH_SHORT).show();
-                        showPatientManagement();
+                        startSession(mAuth.getCurrentUser());
                     } else {
                         Toast.makeText(MainActivity.this, "Registration failed: " +
                                 task.getException().getMessage(), Toast.LENGTH_LONG).show();
@@ -304,20 +534,24 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void logoutUser() {
-        mAuth.signOut();
+        endSession();
         Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
-        showLoginForm();
     }
 
     private void togglePatientRecords() {
         if (patientRecyclerView.getVisibility() == View.VISIBLE) {
-            // Hide patient records
+            // Hide patient records and release the shared subscription
+            stopPatientRecords();
             patientRecyclerView.setVisibility(View.GONE);
             patientRecordsTitle.setVisibility(View.GONE);
+            patientSearchLayout.setVisibility(View.GONE);
+            wardStatsText.setVisibility(View.GONE);
             viewPatientsBtn.setText("View Patient Records");
         } else {
             // Show patient records
             patientRecordsTitle.setVisibility(View.VISIBLE);
+            patientSearchLayout.setVisibility(View.VISIBLE);
+            wardStatsText.setVisibility(View.VISIBLE);
             patientRecyclerView.setVisibility(View.VISIBLE);
             viewPatientsBtn.setText("Hide Patient Records");
             loadPatients();
@@ -340,121 +574,216 @@ public class MainActivity extends AppCompatActivity {
         // Create patient object
         Patient patient = new Patient(name, email, age, id, disease);
 
-        // Save to Firebase
-        patientsRef.child(id).setValue(patient)
-                .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(MainActivity.this, "Patient added successfully", Toast.LENGTH_SHORT).show();
-                    clearPatientForm();
-
-                    // Show patient records after adding
-                    patientRecordsTitle.setVisibility(View.VISIBLE);
-                    patientRecyclerView.setVisibility(View.VISIBLE);
-                    viewPatientsBtn.setText("Hide Patient Records");
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(MainActivity.this, "Failed to add patient: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    Log.e("Firebase", "Error adding patient", e);
-                });
-    }
-
-    private void clearPatientForm() {
-        patientName.setText("");
-        patientId.setText("");
-        patientEmail.setText("");
-        patientAge.setText("");
-        patientDisease.setText("");
-    }
-
-    private void loadPatients() {
-        patientsRef.addValueEventListener(new ValueEventListener() {
+        // Saved through the write queue once the ID is known to be free
+        patientIdLayout.setError(null);
+        addPatientBtn.setEnabled(false);
+        patientCreator.create(patient, new PatientCreator.Callback() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                patientList.clear();
-                for (DataSnapshot dataSnapshot : snapshot.getChildren()) {
-                    Patient patient = dataSnapshot.getValue(Patient.class);
-                    if (patient != null) {
-                        patientList.add(patient);
-                    }
-                }
-                patientAdapter.notifyDataSetChanged();
+            public void onCreated(@NonNull Patient patient, boolean confirmed) {
+                addPatientBtn.setEnabled(true);
+                // A queued patient is only saved once the server takes it; the sync status counts it until then
+                Toast.makeText(MainActivity.this, confirmed ? "Patient saved" : "Patient queued to sync",
+                        Toast.LENGTH_SHORT).show();
+                clearPatientForm();
+                showPatientRecords();
+            }
 
-                if (patientList.isEmpty()) {
-                    Toast.makeText(MainActivity.this, "No patients found", Toast.LENGTH_SHORT).show();
-                }
+            @Override
+            public void onConflict(@NonNull Patient patient, PatientRecord existing) {
+                addPatientBtn.setEnabled(true);
+                String owner = existing != null && existing.name != null ? " by " + existing.name : "";
+                patientIdLayout.setError("ID " + patient.id + " is already used" + owner);
+                Toast.makeText(MainActivity.this, "A patient with this ID already exists", Toast.LENGTH_LONG).show();
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(MainActivity.this, "Failed to load patients: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                Log.e("Firebase", "Database error", error.toException());
+            public void onFailed(@NonNull Patient patient, @NonNull Exception error) {
+                addPatientBtn.setEnabled(true);
+                Toast.makeText(MainActivity.this, "Could not check the patient ID: " + error.getMessage(),
+                        Toast.LENGTH_LONG).show();
+                Log.e("Firebase", "Error creating patient", error);
             }
         });
     }
 
-    // Patient model class
-    public static class Patient {
-        public String name;
-        public String email;
-        public String age;
-        public String id;
-        public String disease;
+    private void showPatientRecords() {
+        patientRecordsTitle.setVisibility(View.VISIBLE);
+        patientSearchLayout.setVisibility(View.VISIBLE);
+        wardStatsText.setVisibility(View.VISIBLE);
+        patientRecyclerView.setVisibility(View.VISIBLE);
+        viewPatientsBtn.setText("Hide Patient Records");
+        loadPatients();
+    }
 
-        public Patient() {
-            // Default constructor required for Firebase
+    private void showPendingWrites(int pending) {
+        if (pending == 0) {
+            syncStatusText.setVisibility(View.GONE);
+        } else {
+            syncStatusText.setVisibility(View.VISIBLE);
+            syncStatusText.setText(pending == 1 ? "1 patient waiting to sync" : pending + " patients waiting to sync");
         }
+    }
 
-        public Patient(String name, String email, String age, String id, String disease) {
-            this.name = name;
-            this.email = email;
-            this.age = age;
-            this.id = id;
-            this.disease = disease;
+    private void importPatients(Uri uri) {
+        if (uri == null) {
+            // File picker was dismissed
+            return;
+        }
+
+        InputStream input;
+        try {
+            input = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Failed to open file: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            Log.e("Firebase", "Error opening import file", e);
+            return;
         }
-    }
 
-    // Patient Adapter
-    private class PatientAdapter extends RecyclerView.Adapter<PatientAdapter.PatientViewHolder> {
+        importPatientsBtn.setEnabled(false);
+        importStatusText.setVisibility(View.VISIBLE);
+        importStatusText.setText("Importing patients...");
 
-        private List<Patient> patients;
+        // Rows are written in batches; the live list picks them up as they land
+        patientImporter = new PatientImporter(patientsRef);
+        patientImporter.start(input, new PatientImporter.Listener() {
+            @Override
+            public void onProgress(int imported, int rejected) {
+                importStatusText.setText("Imported " + imported + " patients, " + rejected + " rejected");
+            }
+
+            @Override
+            public void onFinished(@NonNull PatientImporter.Report report) {
+                patientImporter = null;
+                importPatientsBtn.setEnabled(true);
+                importStatusText.setText(describeImport(report));
+                for (PatientImporter.RejectedRow row : report.rejected) {
+                    Log.e("Firebase", "Import row " + row.row + " rejected: " + row.reason);
+                }
+                for (PatientImporter.FailedBatch batch : report.failedBatches) {
+                    Log.e("Firebase", "Import batch " + batch.index + " (" + batch.firstId + " to " + batch.lastId
+                            + ") failed after " + batch.attempts + " attempts: " + batch.error);
+                }
+                Toast.makeText(MainActivity.this, report.isComplete() ? "Import complete" : "Import finished with problems",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
-        public PatientAdapter(List<Patient> patients) {
-            this.patients = patients;
+    private static String describeImport(PatientImporter.Report report) {
+        StringBuilder text = new StringBuilder()
+                .append("Imported ").append(report.imported).append(" of ").append(report.rowsRead).append(" rows");
+        if (report.rejectedCount > 0) {
+            text.append(", ").append(report.rejectedCount).append(" rejected");
+        }
+        if (report.existing > 0) {
+            text.append(" (").append(report.existing).append(" already existed)");
+        }
+        if (!report.failedBatches.isEmpty()) {
+            text.append(", ").append(report.failedBatches.size()).append(" batches failed");
         }
+        if (report.readError != null) {
+            text.append("\nStopped reading the file: ").append(report.readError);
+        } else if (report.cancelled) {
+            text.append("\nImport cancelled");
+        }
+        return text.toString();
+    }
 
-        @NonNull
-        @Override
-        public PatientViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.patient_item, parent, false);
-            return new PatientViewHolder(view);
+    private void cancelImport() {
+        if (patientImporter != null) {
+            patientImporter.cancel();
         }
+    }
+
+    private void chooseExportFormat() {
+        new AlertDialog.Builder(this)
+                .setTitle("Export format")
+                .setItems(new String[]{"CSV", "NDJSON (one JSON record per line)"}, (dialog, which) -> {
+                    if (which == 0) {
+                        csvExportPicker.launch("patients.csv");
+                    } else {
+                        ndjsonExportPicker.launch("patients.ndjson");
+                    }
+                })
+                .show();
+    }
 
-        @Override
-        public void onBindViewHolder(@NonNull PatientViewHolder holder, int position) {
-            Patient patient = patients.get(position);
-            holder.nameTextView.setText("Name: " + patient.name);
-            holder.emailTextView.setText("Email: " + patient.email);
-            holder.ageTextView.setText("Age: " + patient.age);
-            holder.idTextView.setText("ID: " + patient.id);
-            holder.diseaseTextView.setText("Disease: " + patient.disease);
+    private void exportPatients(Uri uri, PatientExporter.Format format) {
+        if (uri == null) {
+            // File picker was dismissed
+            return;
         }
 
-        @Override
-        public int getItemCount() {
-            return patients.size();
+        FileOutputStream output;
+        try {
+            // "wt" truncates a file that is being overwritten
+            ParcelFileDescriptor file = getContentResolver().openFileDescriptor(uri, "wt");
+            output = new ParcelFileDescriptor.AutoCloseOutputStream(file);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Failed to create file: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            Log.e("Firebase", "Error opening export file", e);
+            return;
         }
 
-        class PatientViewHolder extends RecyclerView.ViewHolder {
-            TextView nameTextView, emailTextView, ageTextView, idTextView, diseaseTextView;
+        exportPatientsBtn.setEnabled(false);
+        exportStatusText.setVisibility(View.VISIBLE);
+        exportStatusText.setText("Exporting patients...");
 
-            public PatientViewHolder(@NonNull View itemView) {
-                super(itemView);
-                nameTextView = itemView.findViewById(R.id.nameTextView);
-                emailTextView = itemView.findViewById(R.id.emailTextView);
-                ageTextView = itemView.findViewById(R.id.ageTextView);
-                idTextView = itemView.findViewById(R.id.idTextView);
-                diseaseTextView = itemView.findViewById(R.id.diseaseTextView);
+        patientExporter = new PatientExporter(patientsRef);
+        patientExporter.start(output.getChannel(), format, new PatientExporter.Listener() {
+            @Override
+            public void onProgress(int exported, int malformed) {
+                exportStatusText.setText("Exported " + exported + " patients" + describeMalformed(malformed));
+            }
+
+            @Override
+            public void onFinished(int exported, int malformed, boolean cancelled, Exception error) {
+                patientExporter = null;
+                exportPatientsBtn.setEnabled(true);
+                if (error != null) {
+                    exportStatusText.setText("Export failed after " + exported + " patients: " + error.getMessage());
+                    Toast.makeText(MainActivity.this, "Export failed: " + error.getMessage(), Toast.LENGTH_LONG).show();
+                    Log.e("Firebase", "Error exporting patients", error);
+                } else if (cancelled) {
+                    exportStatusText.setText("Export cancelled after " + exported + " patients"
+                            + describeMalformed(malformed));
+                } else {
+                    exportStatusText.setText("Exported " + exported + " patients" + describeMalformed(malformed));
+                    Toast.makeText(MainActivity.this, "Export complete", Toast.LENGTH_SHORT).show();
+                }
             }
+        });
+    }
+
+    private static String describeMalformed(int malformed) {
+        return malformed == 0 ? "" : ", " + malformed + " malformed records written as stored";
+    }
+
+    private void cancelExport() {
+        if (patientExporter != null) {
+            patientExporter.cancel();
         }
     }
-}
\ No newline at end of file
+
+    private void clearPatientForm() {
+        patientName.setText("");
+        patientId.setText("");
+        patientEmail.setText("");
+        patientAge.setText("");
+        patientDisease.setText("");
+    }
+
+    private void loadPatients() {
+        // Subscribes to the shared repository; calling this again is a no-op
+        patientSync.start();
+        wardStatsView.start();
+        patientSearch.start();
+    }
+
+    private void stopPatientRecords() {
+        patientSync.stop();
+        wardStatsView.stop();
+        patientSearch.stop();
+        patientSearchField.setText("");
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.hospitalmanagement;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Hidden debug screen, opened by long-pressing the title on the main screen.
+// Turns recording on or off, shows the current numbers and saves them to a file.
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final String PREFS = "metrics";
+    private static final String KEY_ENABLED = "enabled";
+
+    private TextView metricsText;
+    private ActivityResultLauncher<String> dumpPicker;
+
+    // Recording survives restarts so a slow cold start can be measured too
+    static void restore(Context context) {
+        Metrics.setEnabled(prefs(context).getBoolean(KEY_ENABLED, false));
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        metricsText = findViewById(R.id.metricsText);
+        SwitchMaterial enabledSwitch = findViewById(R.id.metricsEnabledSwitch);
+        Button refreshBtn = findViewById(R.id.refreshMetricsBtn);
+        Button resetBtn = findViewById(R.id.resetMetricsBtn);
+        Button saveBtn = findViewById(R.id.saveMetricsBtn);
+        dumpPicker = registerForActivityResult(new ActivityResultContracts.CreateDocument("text/plain"), this::saveMetrics);
+
+        enabledSwitch.setChecked(Metrics.isEnabled());
+        enabledSwitch.setOnCheckedChangeListener((button, checked) -> {
+            Metrics.setEnabled(checked);
+            prefs(this).edit().putBoolean(KEY_ENABLED, checked).apply();
+            showMetrics();
+        });
+        refreshBtn.setOnClickListener(v -> showMetrics());
+        resetBtn.setOnClickListener(v -> {
+            Metrics.reset();
+            showMetrics();
+        });
+        saveBtn.setOnClickListener(v -> dumpPicker.launch("metrics-" + System.currentTimeMillis() + ".txt"));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        metricsText.setText(Metrics.dump());
+    }
+
+    private void saveMetrics(Uri uri) {
+        if (uri == null) {
+            // File picker was dismissed
+            return;
+        }
+        try (OutputStream output = getContentResolver().openOutputStream(uri);
+             Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            Metrics.dump(writer);
+            Toast.makeText(this, "Metrics saved", Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Toast.makeText(this, "Failed to save metrics: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            Log.e("Firebase", "Error saving metrics", e);
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+// Patient rows for every screen that lists patients.
+// Each holder binds from its own reusable PatientText buffers, so a bind
+// allocates nothing, and all screens recycle rows through one shared pool.
+// Rows show a patient summary; tapping one opens the full record.
+public class PatientAdapter extends RecyclerView.Adapter<PatientAdapter.PatientViewHolder> {
+
+    public interface OnPatientClickListener {
+        void onPatientClick(@NonNull PatientRecord patient);
+    }
+
+    // Enough rows to refill a full screen on the next list that opens
+    private static final int MAX_POOLED_ROWS = 20;
+
+    private static RecyclerView.RecycledViewPool sharedPool;
+
+    private final List<PatientRecord> patients;
+    private OnPatientClickListener clickListener;
+
+    public PatientAdapter(List<PatientRecord> patients) {
+        this.patients = patients;
+    }
+
+    public void setOnPatientClickListener(OnPatientClickListener listener) {
+        this.clickListener = listener;
+    }
+
+    // Attaches the adapter and the shared row pool; pair with detach when the screen goes away
+    public void attach(RecyclerView recyclerView) {
+        recyclerView.setRecycledViewPool(sharedPool());
+        recyclerView.setAdapter(this);
+    }
+
+    // Hands the rows back to the shared pool for the next screen
+    public static void detach(RecyclerView recyclerView) {
+        recyclerView.setAdapter(null);
+    }
+
+    static synchronized RecyclerView.RecycledViewPool sharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new RecyclerView.RecycledViewPool();
+            sharedPool.setMaxRecycledViews(0, MAX_POOLED_ROWS);
+        }
+        return sharedPool;
+    }
+
+    @NonNull
+    @Override
+    public PatientViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Pooled rows outlive the activity that created them, so they must not hold on to it
+        Context context = new ContextThemeWrapper(parent.getContext().getApplicationContext(),
+                R.style.Theme_HospitalManagement);
+        View view = LayoutInflater.from(context).inflate(R.layout.patient_item, parent, false);
+        PatientViewHolder holder = new PatientViewHolder(view);
+        // Set once per row rather than per bind; the row asks whichever adapter holds it now
+        view.setOnClickListener(v -> {
+            RecyclerView.Adapter<?> adapter = holder.getBindingAdapter();
+            int position = holder.getBindingAdapterPosition();
+            if (adapter instanceof PatientAdapter && position != RecyclerView.NO_POSITION) {
+                ((PatientAdapter) adapter).onRowClicked(position);
+            }
+        });
+        return holder;
+    }
+
+    private void onRowClicked(int position) {
+        if (clickListener != null && position < patients.size()) {
+            clickListener.onPatientClick(patients.get(position));
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PatientViewHolder holder, int position) {
+        long start = Metrics.start();
+        holder.bind(patients.get(position));
+        Metrics.BIND.recordSince(start);
+    }
+
+    @Override
+    public int getItemCount() {
+        return patients.size();
+    }
+
+    static class PatientViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameTextView, ageTextView, idTextView, diseaseTextView;
+        private final PatientText text = new PatientText();
+
+        PatientViewHolder(@NonNull View itemView) {
+            super(itemView);
+            nameTextView = itemView.findViewById(R.id.nameTextView);
+            ageTextView = itemView.findViewById(R.id.ageTextView);
+            idTextView = itemView.findViewById(R.id.idTextView);
+            diseaseTextView = itemView.findViewById(R.id.diseaseTextView);
+        }
+
+        void bind(PatientRecord patient) {
+            text.bind(patient);
+            show(nameTextView, text.name);
+            show(ageTextView, text.age);
+            show(idTextView, text.id);
+            show(diseaseTextView, text.disease);
+        }
+
+        private static void show(TextView view, PatientText.Label label) {
+            view.setText(label.chars(), 0, label.length());
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Moves patients out of the live nodes into archive/{year}/{id}/{updatedAt}.
+// A discharge moves one patient; compact() walks patientSummaries by
+// updatedAt and moves every patient untouched for maxAgeMs, a page per
+// multi-path update, and purges tombstones past their retention on the way.
+// Each move commits the archived copy, the record's removal and its
+// tombstone together. The rules refuse a move if the record was edited
+// after it was read. A refused discharge is read again only if the record
+// did change; a refused page is moved one patient at a time, and a patient
+// still refused though unchanged is reported and passed over.
+// Compaction goes by the last save alone: patients still on a ward are not
+// flagged as such, so one nobody has saved for the configured age is moved
+// whether or not they were discharged. They stay readable under the archive.
+public class PatientArchive {
+
+    public static final int PAGE_SIZE = 100;
+    public static final long DEFAULT_MAX_AGE_MS = 365L * 24 * 60 * 60 * 1000;
+    // Days without a save before compaction archives a patient; DEFAULT_MAX_AGE_MS when unset
+    public static final String MAX_AGE_DAYS_SETTING = "schema/archiveMaxAgeDays";
+    public static final long COMPACTION_INTERVAL_MS = 24 * 60 * 60 * 1000;
+    // A discharge refused this many times, each time after an edit, gives up
+    static final int MAX_ATTEMPTS = 5;
+
+    private static final String PREFS = "archive";
+    private static final String LAST_COMPACTION = "lastCompaction";
+
+    public interface Callback {
+        // archived is the number of patients moved
+        void onComplete(int archived);
+
+        void onFailed(@NonNull Exception error);
+
+        // A patient compaction could not move although nobody changed it; it is left live
+        default void onRefused(@NonNull String id) {
+        }
+    }
+
+    interface ResultCallback<T> {
+        void onResult(T result);
+
+        void onError(@NonNull Exception error);
+    }
+
+    // The reads and writes archiving needs, so it can run without a database
+    interface Backend {
+        // Up to limit summaries and tombstones with 0 < updatedAt <= cutoff, oldest
+        // first, after (afterUpdatedAt, afterKey) when afterKey is set
+        void loadStale(long cutoff, long afterUpdatedAt, String afterKey, int limit,
+                       ResultCallback<Map<String, Object>> callback);
+
+        // The stored records for ids; an absent record maps to null
+        void loadRecords(List<String> ids, ResultCallback<Map<String, Object>> callback);
+
+        // One root-relative multi-path update; false when the rules refused it
+        void write(Map<String, Object> updates, ResultCallback<Boolean> callback);
+
+        // The value stored at a root-relative path, or null
+        void loadSetting(String path, ResultCallback<Object> callback);
+    }
+
+    interface Clock {
+        long now();
+    }
+
+    // Building a page's updates runs off the main thread
+    private static final Executor ARCHIVE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Backend backend;
+    private final Executor workExecutor;
+    private final Executor callbackExecutor;
+    private final Clock clock;
+    private final int pageSize;
+
+    public PatientArchive(DatabaseReference rootRef) {
+        this(firebaseBackend(rootRef), ARCHIVE_EXECUTOR, new Handler(Looper.getMainLooper())::post,
+                System::currentTimeMillis, PAGE_SIZE);
+    }
+
+    // Callbacks run on callbackExecutor
+    PatientArchive(Backend backend, Executor workExecutor, Executor callbackExecutor, Clock clock, int pageSize) {
+        this.backend = backend;
+        this.workExecutor = workExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.clock = clock;
+        this.pageSize = pageSize;
+    }
+
+    // Runs compactConfigured() in the background at most once a day per device
+    public static void compactIfDue(@NonNull Context context, @NonNull DatabaseReference rootRef) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(LAST_COMPACTION, 0) < COMPACTION_INTERVAL_MS) {
+            return;
+        }
+        new PatientArchive(rootRef).compactConfigured(new Callback() {
+            @Override
+            public void onComplete(int archived) {
+                prefs.edit().putLong(LAST_COMPACTION, now).apply();
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception error) {
+                Log.e("Firebase", "Error archiving inactive patients", error);
+            }
+
+            @Override
+            public void onRefused(@NonNull String id) {
+                Log.e("Firebase", "Archiving patient " + id + " was refused; it stays in the live records");
+            }
+        });
+    }
+
+    // Archives one patient now, whatever its age
+    public void discharge(@NonNull String id, @NonNull Callback callback) {
+        dischargeAttempt(id, 1, null, callback);
+    }
+
+    // refusedUpdatedAt is the updatedAt of the copy the last attempt was refused for, if any
+    private void dischargeAttempt(String id, int attempt, Long refusedUpdatedAt, Callback callback) {
+        backend.loadRecords(Collections.singletonList(id), new ResultCallback<Map<String, Object>>() {
+            @Override
+            public void onResult(Map<String, Object> records) {
+                Object record = records.get(id);
+                if (!(record instanceof Map)) {
+                    fail(callback, new IllegalStateException("Patient " + id + " is not in the live records"));
+                    return;
+                }
+                long updatedAt = PatientIndex.updatedAt(record);
+                if (refusedUpdatedAt != null && refusedUpdatedAt == updatedAt) {
+                    // Not edited since, so retrying would be refused the same way
+                    fail(callback, new IllegalStateException("Archiving patient " + id + " was refused"));
+                    return;
+                }
+                Map<String, Object> updates = PatientIndex.archiveUpdates(id, (Map<?, ?>) record,
+                        PatientIndex.archiveYear(clock.now()));
+                backend.write(updates, new ResultCallback<Boolean>() {
+                    @Override
+                    public void onResult(Boolean accepted) {
+                        if (accepted) {
+                            complete(callback, 1);
+                        } else if (attempt < MAX_ATTEMPTS) {
+                            // Read again to tell an edit from any other refusal
+                            dischargeAttempt(id, attempt + 1, updatedAt, callback);
+                        } else {
+                            fail(callback, new IllegalStateException("Patient " + id + " kept changing while being archived"));
+                        }
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception error) {
+                        fail(callback, error);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(callback, error);
+            }
+        });
+    }
+
+    // Runs compact() with the age set at MAX_AGE_DAYS_SETTING, so every device
+    // in the hospital archives by the same rule
+    public void compactConfigured(@NonNull Callback callback) {
+        backend.loadSetting(MAX_AGE_DAYS_SETTING, new ResultCallback<Object>() {
+            @Override
+            public void onResult(Object days) {
+                compact(maxAgeMs(days), callback);
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(callback, error);
+            }
+        });
+    }
+
+    // A missing or unusable setting falls back to DEFAULT_MAX_AGE_MS
+    static long maxAgeMs(Object days) {
+        if (!(days instanceof Number) || ((Number) days).doubleValue() <= 0) {
+            return DEFAULT_MAX_AGE_MS;
+        }
+        return Math.round(((Number) days).doubleValue() * 24 * 60 * 60 * 1000);
+    }
+
+    // Archives every patient not saved for maxAgeMs. maxAgeMs is at least the
+    // tombstone retention, so every tombstone the walk meets can be purged.
+    // The walk goes on after the last summary of each page, so a patient
+    // left behind is not read again in the same run.
+    public void compact(long maxAgeMs, @NonNull Callback callback) {
+        long now = clock.now();
+        long cutoff = now - Math.max(maxAgeMs, PatientIndex.TOMBSTONE_RETENTION_MS);
+        compactPage(new Walk(cutoff, PatientIndex.archiveYear(now), callback));
+    }
+
+    // Where a compaction has got to
+    private static final class Walk {
+        final long cutoff;
+        final String year;
+        final Callback callback;
+        long afterUpdatedAt = 0;
+        String afterKey;
+        int archived = 0;
+
+        Walk(long cutoff, String year, Callback callback) {
+            this.cutoff = cutoff;
+            this.year = year;
+            this.callback = callback;
+        }
+    }
+
+    private void compactPage(Walk walk) {
+        Callback callback = walk.callback;
+        backend.loadStale(walk.cutoff, walk.afterUpdatedAt, walk.afterKey, pageSize,
+                new ResultCallback<Map<String, Object>>() {
+            @Override
+            public void onResult(Map<String, Object> stale) {
+                if (stale.isEmpty()) {
+                    complete(callback, walk.archived);
+                    return;
+                }
+                boolean lastPage = stale.size() < pageSize;
+                List<String> ids = new ArrayList<>();
+                for (Map.Entry<String, Object> summary : stale.entrySet()) {
+                    if (!PatientIndex.isTombstone(summary.getValue())) {
+                        ids.add(summary.getKey());
+                    }
+                    walk.afterKey = summary.getKey();
+                    walk.afterUpdatedAt = PatientIndex.updatedAt(summary.getValue());
+                }
+                backend.loadRecords(ids, new ResultCallback<Map<String, Object>>() {
+                    @Override
+                    public void onResult(Map<String, Object> records) {
+                        workExecutor.execute(() -> writePage(walk, lastPage, stale, records));
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception error) {
+                        fail(callback, error);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(callback, error);
+            }
+        });
+    }
+
+    private void writePage(Walk walk, boolean lastPage, Map<String, Object> stale, Map<String, Object> records) {
+        // One group of updates per summary, so a refused page can be retried a patient at a time
+        List<Map<String, Object>> groups = new ArrayList<>(stale.size());
+        Map<String, Object> updates = new LinkedHashMap<>();
+        for (String id : stale.keySet()) {
+            Object record = records.get(id);
+            Map<String, Object> group;
+            if (PatientIndex.isTombstone(stale.get(id))) {
+                group = Collections.singletonMap(PatientIndex.SUMMARIES + "/" + id, null);
+            } else if (record instanceof Map) {
+                group = PatientIndex.archiveUpdates(id, (Map<?, ?>) record, walk.year);
+            } else {
+                // A summary whose record is gone; the tombstone takes it out of the range
+                group = Collections.singletonMap(PatientIndex.SUMMARIES + "/" + id, PatientIndex.tombstone());
+            }
+            groups.add(group);
+            updates.putAll(group);
+        }
+        Runnable next = () -> {
+            if (lastPage) {
+                complete(walk.callback, walk.archived);
+            } else {
+                compactPage(walk);
+            }
+        };
+        backend.write(updates, new ResultCallback<Boolean>() {
+            @Override
+            public void onResult(Boolean accepted) {
+                if (accepted) {
+                    walk.archived += countMoves(records, stale.keySet());
+                    next.run();
+                } else {
+                    writeEach(walk, groups, 0, records, next);
+                }
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(walk.callback, error);
+            }
+        });
+    }
+
+    // Writes groups[index..] one by one. A move refused although its record
+    // is unchanged is reported; one whose record changed is no longer stale
+    // and is left live.
+    private void writeEach(Walk walk, List<Map<String, Object>> groups, int index,
+                           Map<String, Object> records, Runnable next) {
+        if (index == groups.size()) {
+            next.run();
+            return;
+        }
+        Map<String, Object> group = groups.get(index);
+        String id = idOf(group);
+        backend.write(group, new ResultCallback<Boolean>() {
+            @Override
+            public void onResult(Boolean accepted) {
+                if (accepted) {
+                    walk.archived += countMoves(records, Collections.singleton(id));
+                    writeEach(walk, groups, index + 1, records, next);
+                    return;
+                }
+                Object read = records.get(id);
+                if (!(read instanceof Map)) {
+                    writeEach(walk, groups, index + 1, records, next);
+                    return;
+                }
+                backend.loadRecords(Collections.singletonList(id), new ResultCallback<Map<String, Object>>() {
+                    @Override
+                    public void onResult(Map<String, Object> current) {
+                        Object latest = current.get(id);
+                        if (latest instanceof Map && PatientIndex.updatedAt(latest) == PatientIndex.updatedAt(read)) {
+                            refused(walk.callback, id);
+                        }
+                        writeEach(walk, groups, index + 1, records, next);
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception error) {
+                        fail(walk.callback, error);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(walk.callback, error);
+            }
+        });
+    }
+
+    private static int countMoves(Map<String, Object> records, Iterable<String> ids) {
+        int moved = 0;
+        for (String id : ids) {
+            if (records.get(id) instanceof Map) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    // Every group touches patientSummaries/{id}
+    private static String idOf(Map<String, Object> group) {
+        for (String path : group.keySet()) {
+            if (path.startsWith(PatientIndex.SUMMARIES + "/")) {
+                return path.substring(PatientIndex.SUMMARIES.length() + 1);
+            }
+        }
+        throw new IllegalArgumentException("No summary in " + group.keySet());
+    }
+
+    private void complete(Callback callback, int archived) {
+        callbackExecutor.execute(() -> callback.onComplete(archived));
+    }
+
+    private void fail(Callback callback, Exception error) {
+        callbackExecutor.execute(() -> callback.onFailed(error));
+    }
+
+    private void refused(Callback callback, String id) {
+        callbackExecutor.execute(() -> callback.onRefused(id));
+    }
+
+    private static Backend firebaseBackend(DatabaseReference rootRef) {
+        DatabaseReference patientsRef = rootRef.child(PatientIndex.PATIENTS);
+        DatabaseReference summariesRef = rootRef.child(PatientIndex.SUMMARIES);
+        return new Backend() {
+            @Override
+            public void loadStale(long cutoff, long afterUpdatedAt, String afterKey, int limit,
+                                  ResultCallback<Map<String, Object>> callback) {
+                Query query = summariesRef.orderByChild(PatientIndex.FIELD_UPDATED_AT);
+                // startAt(1) skips summaries written before updatedAt existed
+                query = afterKey != null ? query.startAfter(afterUpdatedAt, afterKey) : query.startAt(1);
+                query.endAt(cutoff).limitToFirst(limit)
+                        .addListenerForSingleValueEvent(new ValueEventListener() {
+                            @Override
+                            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                                Map<String, Object> stale = new LinkedHashMap<>();
+                                for (DataSnapshot child : snapshot.getChildren()) {
+                                    stale.put(child.getKey(), child.getValue());
+                                }
+                                callback.onResult(stale);
+                            }
+
+                            @Override
+                            public void onCancelled(@NonNull DatabaseError error) {
+                                callback.onError(error.toException());
+                            }
+                        });
+            }
+
+            @Override
+            public void loadRecords(List<String> ids, ResultCallback<Map<String, Object>> callback) {
+                Map<String, Object> records = new LinkedHashMap<>();
+                if (ids.isEmpty()) {
+                    callback.onResult(records);
+                    return;
+                }
+                // One read per record; they share the connection, so this is one round trip in practice
+                int[] remaining = {ids.size()};
+                boolean[] failed = {false};
+                for (String id : ids) {
+                    patientsRef.child(id).addListenerForSingleValueEvent(new ValueEventListener() {
+                        @Override
+                        public void onDataChange(@NonNull DataSnapshot snapshot) {
+                            records.put(id, snapshot.getValue());
+                            if (--remaining[0] == 0 && !failed[0]) {
+                                callback.onResult(records);
+                            }
+                        }
+
+                        @Override
+                        public void onCancelled(@NonNull DatabaseError error) {
+                            if (!failed[0]) {
+                                failed[0] = true;
+                                callback.onError(error.toException());
+                            }
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void write(Map<String, Object> updates, ResultCallback<Boolean> callback) {
+                rootRef.updateChildren(updates, (error, ref) -> {
+                    if (error == null) {
+                        callback.onResult(true);
+                    } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                        callback.onResult(false);
+                    } else {
+                        callback.onError(error.toException());
+                    }
+                });
+            }
+
+            @Override
+            public void loadSetting(String path, ResultCallback<Object> callback) {
+                rootRef.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        callback.onResult(snapshot.getValue());
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        callback.onError(error.toException());
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+// Creates patients without overwriting an existing record with the same ID.
+// When the live patient list already proves the ID is free, the save goes
+// straight to the write queue, with no extra round trip and offline support.
+// Otherwise a transaction claims the ID only if it is still empty on the server.
+// Either way the record carries a new creationId, and the rules refuse to
+// replace a record holding another one, so when two clients both see an ID
+// as free only the first queued write lands; the queue reports the other as
+// a conflict.
+public class PatientCreator {
+
+    public interface Callback {
+        // The patient was committed (confirmed) or only queued. A queued patient
+        // is not on the server yet and can still lose its ID to another client;
+        // PatientWriteQueue reports that as a conflict.
+        void onCreated(@NonNull Patient patient, boolean confirmed);
+
+        // Another record already uses the ID; existing is null if it could not be decoded
+        void onConflict(@NonNull Patient patient, PatientRecord existing);
+
+        // The claim was refused or could not run, e.g. denied by the rules.
+        // While offline a claim waits for the connection instead of failing.
+        void onFailed(@NonNull Patient patient, @NonNull Exception error);
+    }
+
+    // Local knowledge of taken IDs; true only when the ID is certainly free
+    public interface Membership {
+        boolean isKnownFree(@NonNull String id);
+    }
+
+    // Writes the patient only if nothing is stored under its ID yet
+    public interface Claimer {
+        void claim(@NonNull Patient patient, @NonNull ClaimCallback callback);
+    }
+
+    public interface ClaimCallback {
+        // existing is the current value when the claim lost; error is set when it could not run
+        void onComplete(boolean claimed, Object existing, Exception error);
+    }
+
+    public interface Writer {
+        void enqueue(@NonNull Patient patient);
+    }
+
+    private final Membership membership;
+    private final Claimer claimer;
+    private final Writer writer;
+    // Created here but maybe not yet seen by the list, so their IDs can't be trusted as free
+    private final Set<String> createdIds = new HashSet<>();
+
+    public PatientCreator(PatientRepository repository, DatabaseReference patientsRef, PatientWriteQueue writeQueue) {
+        this(repository::isKnownFree, transactionClaimer(patientsRef), writeQueue::enqueue);
+    }
+
+    PatientCreator(Membership membership, Claimer claimer, Writer writer) {
+        this.membership = membership;
+        this.claimer = claimer;
+        this.writer = writer;
+    }
+
+    // Call on the main thread; the callback also runs there
+    public void create(@NonNull Patient patient, @NonNull Callback callback) {
+        if (patient.creationId == null) {
+            patient.creationId = UUID.randomUUID().toString();
+        }
+        if (!createdIds.contains(patient.id) && membership.isKnownFree(patient.id)) {
+            createdIds.add(patient.id);
+            writer.enqueue(patient);
+            callback.onCreated(patient, false);
+            return;
+        }
+        // The list knows this ID, or can't vouch for it: only the server can say
+        claimer.claim(patient, (claimed, existing, error) -> {
+            if (error != null) {
+                callback.onFailed(patient, error);
+            } else if (claimed) {
+                createdIds.add(patient.id);
+                // The transaction wrote the record; the queue adds its index entries
+                writer.enqueue(patient);
+                callback.onCreated(patient, true);
+            } else {
+                callback.onConflict(patient, PatientCodec.decodeRecord(patient.id, existing));
+            }
+        });
+    }
+
+    private static Claimer transactionClaimer(DatabaseReference patientsRef) {
+        return (patient, callback) -> patientsRef.child(patient.id).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                // Runs first against the local cache and again if the server disagrees
+                if (currentData.getValue() != null) {
+                    return Transaction.abort();
+                }
+                currentData.setValue(PatientCodec.encode(patient));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                callback.onComplete(committed, currentData == null ? null : currentData.getValue(),
+                        error == null ? null : error.toException());
+            }
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Decodes patient snapshots in batches on a background thread and delivers
+// the results on the main thread. Batches complete in submission order.
+public final class PatientDecoder {
+
+    public interface Callback<T> {
+        void onDecoded(T result);
+    }
+
+    // How a child is read: a full patients record, a patientSummaries node or an archived ID.
+    // The key is authoritative for ordering and paging even if a stored id drifted.
+    public interface Format {
+        PatientRecord decode(String key, Object value);
+    }
+
+    public static final Format RECORD = PatientCodec::decodeRecord;
+    public static final Format SUMMARY = PatientCodec::decodeSummary;
+    public static final Format ARCHIVED = PatientCodec::decodeArchived;
+
+    // A decoded child; patient is null when the child was removed, deleted or malformed
+    public static final class Entry {
+        public final String key;
+        public final PatientRecord patient;
+        // The child's server-side updatedAt, or 0 if it had none
+        public final long updatedAt;
+
+        Entry(String key, PatientRecord patient) {
+            this(key, patient, 0);
+        }
+
+        Entry(String key, PatientRecord patient, long updatedAt) {
+            this.key = key;
+            this.patient = patient;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private PatientDecoder() {
+    }
+
+    // Decodes every child of a query result, skipping malformed records
+    public static void decodeChildren(DataSnapshot parent, Callback<List<PatientRecord>> callback) {
+        decodeChildren(parent, RECORD, callback);
+    }
+
+    public static void decodeChildren(DataSnapshot parent, Format format, Callback<List<PatientRecord>> callback) {
+        EXECUTOR.execute(() -> {
+            long start = Metrics.start();
+            List<PatientRecord> patients = new ArrayList<>((int) parent.getChildrenCount());
+            for (DataSnapshot child : parent.getChildren()) {
+                PatientRecord patient = format.decode(child.getKey(), child.getValue());
+                if (patient != null) {
+                    patients.add(patient);
+                }
+            }
+            Metrics.DECODE.recordSince(start);
+            Metrics.RECORDS_PER_UPDATE.record(patients.size());
+            List<PatientRecord> result = Collections.unmodifiableList(patients);
+            MAIN_HANDLER.post(() -> callback.onDecoded(result));
+        });
+    }
+
+    // Decodes a batch of child event snapshots. A null snapshot marks a removal.
+    public static void decodeBatch(List<String> keys, List<DataSnapshot> snapshots, Callback<List<Entry>> callback) {
+        decodeBatch(keys, snapshots, RECORD, callback);
+    }
+
+    public static void decodeBatch(List<String> keys, List<DataSnapshot> snapshots, Format format,
+                                   Callback<List<Entry>> callback) {
+        EXECUTOR.execute(() -> {
+            long start = Metrics.start();
+            List<Entry> entries = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                DataSnapshot snapshot = snapshots.get(i);
+                if (snapshot == null) {
+                    entries.add(new Entry(keys.get(i), null));
+                    continue;
+                }
+                Object value = snapshot.getValue();
+                entries.add(new Entry(keys.get(i), format.decode(snapshot.getKey(), value),
+                        PatientIndex.updatedAt(value)));
+            }
+            Metrics.DECODE.recordSince(start);
+            Metrics.RECORDS_PER_UPDATE.record(entries.size());
+            List<Entry> result = Collections.unmodifiableList(entries);
+            MAIN_HANDLER.post(() -> callback.onDecoded(result));
+        });
+    }
+
+    // Collects the child keys of a query result without decoding the values
+    public static void collectKeys(DataSnapshot parent, Callback<Set<String>> callback) {
+        EXECUTOR.execute(() -> {
+            Set<String> keys = new HashSet<>();
+            for (DataSnapshot child : parent.getChildren()) {
+                keys.add(child.getKey());
+            }
+            Set<String> result = Collections.unmodifiableSet(keys);
+            MAIN_HANDLER.post(() -> callback.onDecoded(result));
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.hospitalmanagement;
+
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+// The full record behind a summary row. Lists only download summaries, so
+// the dialog opens with what the row already knows and fills in the rest
+// once patients/{id} arrives. Only the tapped patient is fetched.
+// Live patients can be discharged from here, which moves them to the archive.
+public final class PatientDetails {
+
+    private PatientDetails() {
+    }
+
+    public static void show(@NonNull AppCompatActivity activity, @NonNull DatabaseReference patientsRef,
+                            @NonNull PatientRecord summary) {
+        AlertDialog dialog = new AlertDialog.Builder(activity)
+                .setTitle(summary.name)
+                .setMessage(describe(summary, "Loading…"))
+                .setPositiveButton("Close", null)
+                .setNeutralButton("Discharge", (d, which) -> discharge(activity, patientsRef, summary))
+                .show();
+
+        patientsRef.child(summary.id).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (activity.isFinishing() || !dialog.isShowing()) {
+                    return;
+                }
+                PatientRecord patient = PatientCodec.decodeRecord(snapshot.getKey(), snapshot.getValue());
+                if (patient == null) {
+                    dialog.setMessage("This patient record no longer exists.");
+                } else {
+                    dialog.setMessage(describe(patient, patient.email));
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (!activity.isFinishing() && dialog.isShowing()) {
+                    dialog.setMessage(describe(summary, "Could not load: " + error.getMessage()));
+                }
+                Log.e("Firebase", "Error loading patient " + summary.id, error.toException());
+            }
+        });
+    }
+
+    // Archived rows are full records, so there is nothing to fetch
+    public static void showArchived(@NonNull AppCompatActivity activity, @NonNull PatientRecord patient) {
+        new AlertDialog.Builder(activity)
+                .setTitle(patient.name)
+                .setMessage(describe(patient, patient.email))
+                .setPositiveButton("Close", null)
+                .show();
+    }
+
+    private static void discharge(AppCompatActivity activity, DatabaseReference patientsRef, PatientRecord summary) {
+        new PatientArchive(patientsRef.getRoot()).discharge(summary.id, new PatientArchive.Callback() {
+            @Override
+            public void onComplete(int archived) {
+                // The list drops the row when the tombstone arrives
+                Toast.makeText(activity, summary.name + " discharged and archived", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception error) {
+                Toast.makeText(activity, "Failed to discharge " + summary.name + ": " + error.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                Log.e("Firebase", "Error archiving patient " + summary.id, error);
+            }
+        });
+    }
+
+    private static String describe(PatientRecord patient, String email) {
+        return "ID: " + patient.id
+                + "\nName: " + patient.name
+                + "\nEmail: " + email
+                + "\nAge: " + patient.ageText()
+                + "\nDisease: " + patient.disease();
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Streams the whole patients node to a file for audits.
+// Pages are fetched in key order one at a time and each record is encoded
+// straight into a fixed-size buffer that is drained to the channel, so
+// memory use stays at one page no matter how many patients there are.
+// Records are written from their stored values rather than the in-memory
+// PatientRecord, so ages like "6 months" and children the app can't decode
+// are kept as they are; the latter are counted and reported as malformed.
+public class PatientExporter {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    // Loads up to limit patients after afterKey in key order; null starts at the beginning
+    public interface PageLoader {
+        void load(String afterKey, int limit, @NonNull PageCallback callback);
+    }
+
+    public interface PageCallback {
+        // Each child's key and stored value, as DataSnapshot.getValue() returns it, in key order
+        void onPage(@NonNull Map<String, Object> page);
+
+        void onError(@NonNull Exception error);
+    }
+
+    public interface Listener {
+        // malformed counts the exported records that the app itself could not decode
+        void onProgress(int exported, int malformed);
+
+        // error is null unless the export stopped early because of it
+        void onFinished(int exported, int malformed, boolean cancelled, Exception error);
+    }
+
+    public static final int PAGE_SIZE = 500;
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // Column order matches the header PatientImporter expects
+    static final String CSV_HEADER = PatientCodec.FIELD_ID + "," + PatientCodec.FIELD_NAME + ","
+            + PatientCodec.FIELD_EMAIL + "," + PatientCodec.FIELD_AGE + "," + PatientCodec.FIELD_DISEASE;
+
+    // Encoding and channel writes run in order on this thread
+    private static final Executor EXPORT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final PageLoader loader;
+    private final Executor callbackExecutor;
+    private final int pageSize;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Unpaired surrogates in a field become '?' rather than failing the export
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private WritableByteChannel channel;
+    private Format format;
+    private Listener listener;
+    private int exported = 0;
+    private int malformed = 0;
+    private volatile boolean cancelled = false;
+
+    private final PageCallback pageCallback = new PageCallback() {
+        @Override
+        public void onPage(@NonNull Map<String, Object> page) {
+            EXPORT_EXECUTOR.execute(() -> writePage(page));
+        }
+
+        @Override
+        public void onError(@NonNull Exception error) {
+            EXPORT_EXECUTOR.execute(() -> finish(error));
+        }
+    };
+
+    public PatientExporter(DatabaseReference patientsRef) {
+        this((afterKey, limit, callback) -> {
+            Query query = patientsRef.orderByKey();
+            if (afterKey != null) {
+                query = query.startAfter(afterKey);
+            }
+            query.limitToFirst(limit).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    // Values are read off the main thread, like decoded pages
+                    EXPORT_EXECUTOR.execute(() -> {
+                        Map<String, Object> page = new LinkedHashMap<>();
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            page.put(child.getKey(), child.getValue());
+                        }
+                        callback.onPage(page);
+                    });
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    callback.onError(error.toException());
+                }
+            });
+        }, new Handler(Looper.getMainLooper())::post, PAGE_SIZE);
+    }
+
+    // Listener callbacks run on callbackExecutor
+    PatientExporter(PageLoader loader, Executor callbackExecutor, int pageSize) {
+        this.loader = loader;
+        this.callbackExecutor = callbackExecutor;
+        this.pageSize = pageSize;
+    }
+
+    // Writes every patient to channel and closes it; an exporter runs a single export
+    public void start(@NonNull WritableByteChannel channel, @NonNull Format format, @NonNull Listener listener) {
+        if (this.listener != null) {
+            throw new IllegalStateException("Export already started");
+        }
+        this.channel = channel;
+        this.format = format;
+        this.listener = listener;
+        EXPORT_EXECUTOR.execute(() -> {
+            if (format == Format.CSV) {
+                line.setLength(0);
+                line.append(CSV_HEADER).append('\n');
+                try {
+                    write(line);
+                } catch (IOException e) {
+                    finish(e);
+                    return;
+                }
+            }
+            loader.load(null, pageSize, pageCallback);
+        });
+    }
+
+    // Stops after the page being written; the partial file is closed
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void writePage(Map<String, Object> page) {
+        if (cancelled) {
+            finish(null);
+            return;
+        }
+        String lastKey = null;
+        try {
+            for (Map.Entry<String, Object> child : page.entrySet()) {
+                line.setLength(0);
+                if (!encode(child.getKey(), child.getValue(), format, line)) {
+                    malformed++;
+                }
+                write(line);
+                lastKey = child.getKey();
+            }
+        } catch (IOException e) {
+            finish(e);
+            return;
+        }
+        if (!page.isEmpty()) {
+            exported += page.size();
+            int total = exported;
+            int malformedSoFar = malformed;
+            callbackExecutor.execute(() -> listener.onProgress(total, malformedSoFar));
+        }
+
+        // An empty page ends the export
+        if (lastKey == null) {
+            finish(null);
+        } else {
+            loader.load(lastKey, pageSize, pageCallback);
+        }
+    }
+
+    private void finish(Exception error) {
+        try {
+            if (error == null) {
+                encoder.encode(CharBuffer.allocate(0), buffer, true);
+                encoder.flush(buffer);
+                drain();
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        int total = exported;
+        int malformedTotal = malformed;
+        boolean wasCancelled = cancelled;
+        Exception failure = error;
+        callbackExecutor.execute(() -> listener.onFinished(total, malformedTotal, wasCancelled, failure));
+    }
+
+    private void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Appends one record and its line terminator. The ID is the child's key;
+    // whole-number ages are written as numbers and any other stored value as
+    // it is. Returns false when the child is malformed: not decodable by the
+    // app, or with an age that is neither text nor a number. It is still
+    // written with whatever fields it has.
+    static boolean encode(String key, Object value, Format format, StringBuilder out) {
+        Map<?, ?> fields = value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+        Object name = fields.get(PatientCodec.FIELD_NAME);
+        Object email = fields.get(PatientCodec.FIELD_EMAIL);
+        Object age = fields.get(PatientCodec.FIELD_AGE);
+        Object disease = fields.get(PatientCodec.FIELD_DISEASE);
+        boolean wellFormed = PatientCodec.decodeRecord(key, value) != null
+                && (age == null || age instanceof String || age instanceof Number);
+        int wholeAge = PatientRecord.parseAge(age);
+        if (wholeAge != PatientRecord.UNKNOWN_AGE) {
+            age = wholeAge;
+        }
+        if (format == Format.CSV) {
+            appendCsv(out, key).append(',');
+            appendCsvValue(out, name).append(',');
+            appendCsvValue(out, email).append(',');
+            appendCsvValue(out, age).append(',');
+            appendCsvValue(out, disease).append('\n');
+        } else {
+            out.append("{\"").append(PatientCodec.FIELD_ID).append("\":");
+            appendJson(out, key);
+            out.append(",\"").append(PatientCodec.FIELD_NAME).append("\":");
+            appendJsonValue(out, name);
+            out.append(",\"").append(PatientCodec.FIELD_EMAIL).append("\":");
+            appendJsonValue(out, email);
+            out.append(",\"").append(PatientCodec.FIELD_AGE).append("\":");
+            appendJsonValue(out, age);
+            out.append(",\"").append(PatientCodec.FIELD_DISEASE).append("\":");
+            appendJsonValue(out, disease);
+            out.append("}\n");
+        }
+        return wellFormed;
+    }
+
+    // Nested values are written as their JSON text
+    private static StringBuilder appendCsvValue(StringBuilder out, Object value) {
+        if (value == null || value instanceof String) {
+            return appendCsv(out, (String) value);
+        }
+        if (value instanceof Map || value instanceof List) {
+            StringBuilder json = new StringBuilder();
+            appendJsonValue(json, value);
+            return appendCsv(out, json.toString());
+        }
+        return appendCsv(out, String.valueOf(value));
+    }
+
+    private static StringBuilder appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return out.append(value);
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    // Firebase values are strings, numbers, booleans, maps and lists
+    private static void appendJsonValue(StringBuilder out, Object value) {
+        if (value == null || value instanceof String) {
+            appendJson(out, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendJson(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                appendJsonValue(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendJsonValue(out, item);
+            }
+            out.append(']');
+        } else {
+            appendJson(out, String.valueOf(value));
+        }
+    }
+
+    private static void appendJson(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,729 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streaming bulk import of patients from a CSV or JSON file.
+// Rows are parsed one at a time on a background thread, validated, and
+// written as bounded multi-path updateChildren batches. At most
+// MAX_IN_FLIGHT batches are unconfirmed; parsing stops until one completes
+// and then resumes as a new task, so the import thread is never held while
+// the server is silent. A write with no reply within the timeout counts as
+// failed and is retried like any other failure.
+// Rows are written as creates, so the rules refuse any batch holding an ID
+// that is already stored. A refused batch is split in halves until the
+// clashing rows are found; those are skipped and reported, never overwritten.
+public class PatientImporter {
+
+    // Writes one multi-path update relative to the patients node, and looks
+    // up whether an ID is already stored
+    public interface BatchWriter {
+        void write(@NonNull Map<String, Object> updates, @NonNull BatchCallback callback);
+
+        void exists(@NonNull String id, @NonNull ExistsCallback callback);
+    }
+
+    public interface BatchCallback {
+        // error is null when the batch was committed, and a RejectedException when the rules refused it
+        void onComplete(Exception error);
+    }
+
+    public interface ExistsCallback {
+        // error is set when the lookup failed
+        void onResult(boolean exists, Exception error);
+    }
+
+    public interface Listener {
+        void onProgress(int imported, int rejected);
+
+        void onFinished(@NonNull Report report);
+    }
+
+    // A row that failed validation or whose ID was already stored; row is the
+    // CSV line or the JSON record number
+    public static final class RejectedRow {
+        public final int row;
+        public final String reason;
+
+        RejectedRow(int row, String reason) {
+            this.row = row;
+            this.reason = reason;
+        }
+    }
+
+    // A batch that was still failing after MAX_ATTEMPTS writes
+    public static final class FailedBatch {
+        public final int index;
+        public final String firstId;
+        public final String lastId;
+        public final int size;
+        public final int attempts;
+        public final String error;
+
+        FailedBatch(int index, String firstId, String lastId, int size, int attempts, String error) {
+            this.index = index;
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.size = size;
+            this.attempts = attempts;
+            this.error = error;
+        }
+    }
+
+    public static final class Report {
+        public final int rowsRead;
+        public final int imported;
+        public final int rejectedCount;
+        // Rows skipped because the ID was already stored; included in rejectedCount
+        public final int existing;
+        public final int retries;
+        // Only the first MAX_REPORTED_REJECTS rejected rows are kept
+        public final List<RejectedRow> rejected;
+        public final List<FailedBatch> failedBatches;
+        public final boolean cancelled;
+        // Set when the file could not be read to the end
+        public final String readError;
+
+        Report(int rowsRead, int imported, int rejectedCount, int existing, int retries, List<RejectedRow> rejected,
+               List<FailedBatch> failedBatches, boolean cancelled, String readError) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.rejectedCount = rejectedCount;
+            this.existing = existing;
+            this.retries = retries;
+            this.rejected = rejected;
+            this.failedBatches = failedBatches;
+            this.cancelled = cancelled;
+            this.readError = readError;
+        }
+
+        public boolean isComplete() {
+            return !cancelled && readError == null && rejectedCount == 0 && failedBatches.isEmpty();
+        }
+    }
+
+    public static final int BATCH_SIZE = 250;
+    public static final int MAX_IN_FLIGHT = 2;
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long RETRY_DELAY_MS = 1000;
+    // Offline, the client holds a write without ever calling back
+    public static final long WRITE_TIMEOUT_MS = 30_000;
+    public static final int MAX_REPORTED_REJECTS = 100;
+
+    // Parses rows for every import; a task returns as soon as its import has
+    // MAX_IN_FLIGHT batches unconfirmed, so imports never wait on each other
+    private static final ExecutorService IMPORT_EXECUTOR = Executors.newSingleThreadExecutor();
+    // Runs retries and write timeouts
+    private static final ScheduledExecutorService RETRY_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    private final BatchWriter writer;
+    private final Executor callbackExecutor;
+    private final int batchSize;
+    private final long retryDelayMs;
+    private final long timeoutMs;
+
+    // Parser state, only touched on IMPORT_EXECUTOR
+    private BufferedReader reader;
+    private RowReader rows;
+    // Row each ID was first seen on, to reject duplicates within the file
+    private final Map<String, Integer> seenIds = new HashMap<>();
+    private Batch openBatch = new Batch(0);
+    private int rowsRead = 0;
+    private String readError;
+    private boolean readDone = false;
+
+    // Batches sent and not yet settled
+    private final Set<Batch> inFlight = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final AtomicInteger imported = new AtomicInteger();
+    private final AtomicInteger rejectedCount = new AtomicInteger();
+    private final AtomicInteger existing = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    // Only the first MAX_REPORTED_REJECTS are kept
+    private final List<RejectedRow> rejected = Collections.synchronizedList(new ArrayList<>());
+    private final List<FailedBatch> failedBatches = Collections.synchronizedList(new ArrayList<>());
+    private Listener listener;
+    private volatile boolean cancelled = false;
+    // Guarded by this, so no progress is posted after onFinished
+    private boolean finished = false;
+
+    public PatientImporter(DatabaseReference patientsRef) {
+        this(firebaseWriter(patientsRef), new Handler(Looper.getMainLooper())::post, BATCH_SIZE, RETRY_DELAY_MS,
+                WRITE_TIMEOUT_MS);
+    }
+
+    // Listener callbacks run on callbackExecutor
+    PatientImporter(BatchWriter writer, Executor callbackExecutor, int batchSize, long retryDelayMs, long timeoutMs) {
+        this.writer = writer;
+        this.callbackExecutor = callbackExecutor;
+        this.batchSize = batchSize;
+        this.retryDelayMs = retryDelayMs;
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Reads and closes input; an importer runs a single import
+    public void start(@NonNull InputStream input, @NonNull Listener listener) {
+        if (this.listener != null) {
+            throw new IllegalStateException("Import already started");
+        }
+        this.listener = listener;
+        IMPORT_EXECUTOR.execute(() -> open(input));
+    }
+
+    // Stops reading and finishes the import at once. Batches still unconfirmed
+    // are reported as failed, although the server may yet apply them.
+    public void cancel() {
+        cancelled = true;
+        IMPORT_EXECUTOR.execute(this::parse);
+    }
+
+    private void open(InputStream input) {
+        reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        try {
+            rows = open(reader);
+        } catch (IOException e) {
+            readError = e.getMessage();
+            readDone = true;
+        }
+        parse();
+    }
+
+    // Reads rows until MAX_IN_FLIGHT batches are unconfirmed or the file ends;
+    // each settled batch runs this again
+    private void parse() {
+        if (isFinished()) {
+            return;
+        }
+        try {
+            while (!cancelled && !readDone && inFlight.size() < MAX_IN_FLIGHT) {
+                Patient patient = rows.next();
+                if (patient == null) {
+                    readDone = true;
+                    if (!openBatch.updates.isEmpty()) {
+                        submit(openBatch);
+                    }
+                    break;
+                }
+                rowsRead++;
+                String reason = validate(patient);
+                Integer firstRow = reason == null ? seenIds.putIfAbsent(patient.id, rows.row()) : null;
+                if (firstRow != null) {
+                    reason = "Duplicate ID " + patient.id + " (first on row " + firstRow + ")";
+                }
+                if (reason != null) {
+                    reject(rows.row(), reason);
+                    continue;
+                }
+
+                openBatch.add(patient, rows.row());
+                if (openBatch.updates.size() == batchSize) {
+                    submit(openBatch);
+                    openBatch = new Batch(openBatch.index + 1);
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // JsonReader reports unexpected structure as IllegalStateException
+            readError = e.getMessage();
+            readDone = true;
+        }
+        if (cancelled || (readDone && inFlight.isEmpty())) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Everything needed was read
+        }
+        synchronized (inFlight) {
+            for (Batch unconfirmed : inFlight) {
+                fail(unconfirmed, "Cancelled before the server replied");
+            }
+        }
+
+        Report report;
+        synchronized (failedBatches) {
+            synchronized (rejected) {
+                report = new Report(rowsRead, imported.get(), rejectedCount.get(), existing.get(), retries.get(),
+                        Collections.unmodifiableList(new ArrayList<>(rejected)),
+                        Collections.unmodifiableList(new ArrayList<>(failedBatches)), cancelled, readError);
+            }
+        }
+        callbackExecutor.execute(() -> listener.onFinished(report));
+    }
+
+    private synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private void submit(Batch batch) {
+        inFlight.add(batch);
+        write(batch, () -> {
+            inFlight.remove(batch);
+            IMPORT_EXECUTOR.execute(this::parse);
+        });
+    }
+
+    // Runs done once the batch and any halves it was split into are settled
+    private void write(Batch batch, Runnable done) {
+        batch.attempts++;
+        AtomicBoolean replied = timeout(() -> onWritten(batch, new TimeoutException(
+                "No reply from the server within " + timeoutMs + " ms"), done));
+        writer.write(batch.updates, error -> {
+            if (replied.compareAndSet(false, true)) {
+                onWritten(batch, error, done);
+            }
+        });
+    }
+
+    private void onWritten(Batch batch, Exception error, Runnable done) {
+        if (isFinished()) {
+            // Cancelled, and already reported as failed
+            return;
+        }
+        if (error == null) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                int total = imported.addAndGet(batch.updates.size());
+                int rejectedSoFar = rejectedCount.get();
+                // Posted under the lock finish takes, so it cannot trail onFinished
+                callbackExecutor.execute(() -> listener.onProgress(total, rejectedSoFar));
+            }
+            done.run();
+        } else if (error instanceof PatientWriteQueue.RejectedException && batch.updates.size() > 1) {
+            // One stored ID is enough to refuse the whole update
+            Batch[] halves = batch.split();
+            write(halves[0], () -> write(halves[1], done));
+        } else if (error instanceof PatientWriteQueue.RejectedException) {
+            skipIfStored(batch, error, done);
+        } else if (batch.attempts < MAX_ATTEMPTS && !cancelled) {
+            retries.incrementAndGet();
+            RETRY_EXECUTOR.schedule(() -> write(batch, done), retryDelayMs * batch.attempts, TimeUnit.MILLISECONDS);
+        } else {
+            fail(batch, error.getMessage());
+            done.run();
+        }
+}
+
+    // Runs onTimeout unless the returned flag is set first; whoever sets it owns the outcome
+    private AtomicBoolean timeout(Runnable onTimeout) {
+        AtomicBoolean replied = new AtomicBoolean();
+        RETRY_EXECUTOR.schedule(() -> {
+            if (replied.compareAndSet(false, true)) {
+                onTimeout.run();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        return replied;
+    }
+
+    // A refused single row is skipped if its ID is stored; otherwise the refusal
+    // had another cause, such as a lost sign-in, and the row is reported as failed
+    private void skipIfStored(Batch batch, Exception error, Runnable done) {
+        String id = batch.firstId;
+        AtomicBoolean replied = timeout(() -> {
+            fail(batch, error.getMessage());
+            done.run();
+        });
+        writer.exists(id, (stored, lookupError) -> {
+            if (!replied.compareAndSet(false, true)) {
+                return;
+            }
+            if (stored) {
+                existing.incrementAndGet();
+                reject(batch.rows.get(id), "ID " + id + " already exists");
+            } else {
+                fail(batch, error.getMessage());
+            }
+            done.run();
+        });
+    }
+
+    private void reject(int row, String reason) {
+        rejectedCount.incrementAndGet();
+        synchronized (rejected) {
+            if (rejected.size() < MAX_REPORTED_REJECTS) {
+                rejected.add(new RejectedRow(row, reason));
+            }
+        }
+    }
+
+    private void fail(Batch batch, String error) {
+        failedBatches.add(new FailedBatch(batch.index, batch.firstId, batch.lastId,
+                batch.updates.size(), batch.attempts, error));
+    }
+
+    private static BatchWriter firebaseWriter(DatabaseReference patientsRef) {
+        return new BatchWriter() {
+            @Override
+            public void write(@NonNull Map<String, Object> updates, @NonNull BatchCallback callback) {
+                patientsRef.getRoot().updateChildren(PatientIndex.fanOut(updates), (error, ref) -> {
+                    if (error == null) {
+                        callback.onComplete(null);
+                    } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                        callback.onComplete(new PatientWriteQueue.RejectedException(error.getMessage()));
+                    } else {
+                        callback.onComplete(error.toException());
+                    }
+                });
+            }
+
+            @Override
+            public void exists(@NonNull String id, @NonNull ExistsCallback callback) {
+                patientsRef.child(id).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        callback.onResult(snapshot.exists(), null);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        callback.onResult(false, error.toException());
+                    }
+                });
+            }
+        };
+    }
+
+    // Same required fields as the add form; the ID must also be usable as a key
+    static String validate(Patient patient) {
+        if (isBlank(patient.name)) {
+            return "Missing name";
+        }
+        if (isBlank(patient.email)) {
+            return "Missing email";
+        }
+        if (isBlank(patient.age)) {
+            return "Missing age";
+        }
+        if (isBlank(patient.id)) {
+            return "Missing ID";
+        }
+        if (isBlank(patient.disease)) {
+            return "Missing disease";
+        }
+        if (!isValidKey(patient.id)) {
+            return "ID cannot be used as a database key: " + patient.id;
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    // Firebase keys are at most 768 bytes and exclude . $ # [ ] / and control characters
+    private static boolean isValidKey(String id) {
+        if (id.getBytes(StandardCharsets.UTF_8).length > 768) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < 32 || c == 127 || ".$#[]/".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // JSON files start with [ or {; anything else is read as CSV with a header row
+    private static RowReader open(BufferedReader reader) throws IOException {
+        int line = 1;
+        int c;
+        do {
+            reader.mark(1);
+            c = reader.read();
+            if (c == '\n') {
+                line++;
+            }
+        } while (c == '\uFEFF' || (c != -1 && Character.isWhitespace(c)));
+        if (c == -1) {
+            throw new IOException("The file is empty");
+        }
+        reader.reset();
+        return c == '[' || c == '{' ? new JsonRows(reader) : new CsvRows(reader, line);
+    }
+
+    private static final class Batch {
+        final int index;
+        final Map<String, Object> updates = new LinkedHashMap<>();
+        // Row each ID was read from
+        final Map<String, Integer> rows = new HashMap<>();
+        String firstId;
+        String lastId;
+        int attempts = 0;
+
+        Batch(int index) {
+            this.index = index;
+        }
+
+        void add(Patient patient, int row) {
+            // Any text is kept, as the add form keeps it; whole numbers are
+            // normalized so 042 and 42 read the same
+            int age = PatientRecord.parseAge(patient.age);
+            patient.age = age != PatientRecord.UNKNOWN_AGE ? Integer.toString(age) : patient.age.trim();
+            // A create of its own, so it can't replace a stored patient; a retry of the batch still passes
+            patient.creationId = UUID.randomUUID().toString();
+            put(patient.id, PatientCodec.encode(patient), row);
+        }
+
+        // Both halves keep this batch's index; only called with two or more rows
+        Batch[] split() {
+            Batch[] halves = {new Batch(index), new Batch(index)};
+            int half = updates.size() / 2;
+            int i = 0;
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String id = update.getKey();
+                halves[i++ < half ? 0 : 1].put(id, update.getValue(), rows.get(id));
+            }
+            return halves;
+        }
+
+        private void put(String id, Object update, int row) {
+            updates.put(id, update);
+            rows.put(id, row);
+            if (firstId == null) {
+                firstId = id;
+            }
+            lastId = id;
+        }
+    }
+
+    private interface RowReader {
+        // Next row with trimmed fields, or null at the end of the file
+        Patient next() throws IOException;
+
+        // Row the last returned patient came from
+        int row();
+    }
+
+    // RFC 4180 CSV: quoted fields may contain commas, doubled quotes and newlines
+    private static final class CsvRows implements RowReader {
+
+        private static final String[] COLUMNS = {
+                PatientCodec.FIELD_NAME, PatientCodec.FIELD_EMAIL, PatientCodec.FIELD_AGE,
+                PatientCodec.FIELD_ID, PatientCodec.FIELD_DISEASE};
+
+        private final Reader in;
+        private final int[] columnIndex = new int[COLUMNS.length];
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int line;
+        private int row;
+
+        CsvRows(Reader in, int firstLine) throws IOException {
+            this.in = in;
+            this.line = firstLine;
+            readRecord();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                columnIndex[i] = -1;
+                for (int j = 0; j < fields.size(); j++) {
+                    if (fields.get(j).equalsIgnoreCase(COLUMNS[i])) {
+                        columnIndex[i] = j;
+                    }
+                }
+                if (columnIndex[i] < 0) {
+                    throw new IOException("Missing column: " + COLUMNS[i]);
+                }
+            }
+        }
+
+        @Override
+        public Patient next() throws IOException {
+            while (readRecord()) {
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue;
+                }
+                return new Patient(column(0), column(1), column(2), column(3), column(4));
+            }
+            return null;
+        }
+
+        @Override
+        public int row() {
+            return row;
+        }
+
+        private String column(int column) {
+            int index = columnIndex[column];
+            return index < fields.size() ? fields.get(index) : null;
+        }
+
+        // Reads one record into fields; false at the end of the file
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            row = line;
+            int c = in.read();
+            if (c == -1) {
+                return false;
+            }
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quote starting on line " + row);
+                    }
+                    if (c == '"') {
+                        c = in.read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.toString().trim().isEmpty()) {
+                    field.setLength(0);
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString().trim());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+            fields.add(field.toString().trim());
+            return true;
+        }
+    }
+
+    // An array of patient objects, or an object keyed by ID as Firebase exports it
+    private static final class JsonRows implements RowReader {
+
+        private final JsonReader json;
+        private final boolean keyed;
+        private boolean done = false;
+        private int row = 0;
+
+        JsonRows(Reader in) throws IOException {
+            json = new JsonReader(in);
+            keyed = json.peek() == JsonToken.BEGIN_OBJECT;
+            if (keyed) {
+                json.beginObject();
+            } else {
+                json.beginArray();
+            }
+        }
+
+        @Override
+        public Patient next() throws IOException {
+            if (done) {
+                return null;
+            }
+            if (!json.hasNext()) {
+                done = true;
+                if (keyed) {
+                    json.endObject();
+                } else {
+                    json.endArray();
+                }
+                return null;
+            }
+
+            row++;
+            String key = keyed ? json.nextName() : null;
+            Patient patient = new Patient();
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                patient.id = key;
+                return patient;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                String value = readValue();
+                switch (name) {
+                    case PatientCodec.FIELD_NAME:
+                        patient.name = value;
+                        break;
+                    case PatientCodec.FIELD_EMAIL:
+                        patient.email = value;
+                        break;
+                    case PatientCodec.FIELD_AGE:
+                        patient.age = value;
+                        break;
+                    case PatientCodec.FIELD_ID:
+                        patient.id = value;
+                        break;
+                    case PatientCodec.FIELD_DISEASE:
+                        patient.disease = value;
+                        break;
+                }
+            }
+            json.endObject();
+            if (patient.id == null) {
+                patient.id = key;
+            }
+            return patient;
+        }
+
+        @Override
+        public int row() {
+            return row;
+        }
+
+        // Strings and numbers as text; anything else counts as missing
+        private String readValue() throws IOException {
+            switch (json.peek()) {
+                case STRING:
+                    return json.nextString().trim();
+                case NUMBER:
+                    double number = json.nextDouble();
+                    return number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE
+                            ? Long.toString((long) number) : Double.toString(number);
+                default:
+                    json.skipValue();
+                    return null;
+            }
+        }
+    }
+}
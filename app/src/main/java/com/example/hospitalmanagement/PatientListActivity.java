@@ -7,32 +7,24 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.os.Bundle;
 import android.util.Log;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
-import java.util.ArrayList;
-import java.util.List;
 
 public class PatientListActivity extends AppCompatActivity {
 
     private RecyclerView patientRecyclerView;
     private PatientAdapter patientAdapter;
-    private List<MainActivity.Patient> patientList = new ArrayList<>();
+    private PatientPagedSource patientPager;
     private DatabaseReference patientsRef;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_patient_list);
+        ImageLoader.getInstance(this).loadBackground(findViewById(R.id.rootLayout), R.drawable.bg);
 
         // Initialize Firebase
         FirebaseDatabase database = FirebaseDatabase.getInstance();
@@ -41,81 +33,53 @@ public class PatientListActivity extends AppCompatActivity {
         // Initialize RecyclerView
         patientRecyclerView = findViewById(R.id.patientRecyclerView);
         patientRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        patientAdapter = new PatientAdapter(patientList);
-        patientRecyclerView.setAdapter(patientAdapter);
-
-        // Load patients
-        loadPatients();
-    }
-
-    private void loadPatients() {
-        patientsRef.addValueEventListener(new ValueEventListener() {
+        FrameMonitor.attach(patientRecyclerView);
+        patientPager = new PatientPagedSource(database.getReference(PatientIndex.SUMMARIES), new PatientPagedSource.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                patientList.clear();
-                for (DataSnapshot dataSnapshot : snapshot.getChildren()) {
-                    MainActivity.Patient patient = dataSnapshot.getValue(MainActivity.Patient.class);
-                    if (patient != null) {
-                        patientList.add(patient);
-                    }
-                }
-                patientAdapter.notifyDataSetChanged();
-
-                if (patientList.isEmpty()) {
+            public void onFirstPageLoaded(boolean empty) {
+                if (empty) {
                     Toast.makeText(PatientListActivity.this, "No patients found", Toast.LENGTH_SHORT).show();
                 }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onLoadFailed(@NonNull DatabaseError error) {
                 Toast.makeText(PatientListActivity.this, "Failed to load patients: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                 Log.e("Firebase", "Database error", error.toException());
             }
         });
-    }
-
-    private class PatientAdapter extends RecyclerView.Adapter<PatientAdapter.PatientViewHolder> {
-
-        private List<MainActivity.Patient> patients;
+        patientAdapter = new PatientAdapter(patientPager.getWindow());
+        // Rows are summaries; the full record is fetched when one is tapped
+        patientAdapter.setOnPatientClickListener(patient -> PatientDetails.show(this, patientsRef, patient));
+        patientAdapter.attach(patientRecyclerView);
+        patientPager.attach(patientRecyclerView, patientAdapter);
 
-        public PatientAdapter(List<MainActivity.Patient> patients) {
-            this.patients = patients;
-        }
-
-        @NonNull
-        @Override
-        public PatientViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.patient_item, parent, false);
-            return new PatientViewHolder(view);
-        }
+        // Load patients
+        loadPatients();
+    }
 
-        @Override
-        public void onBindViewHolder(@NonNull PatientViewHolder holder, int position) {
-            MainActivity.Patient patient = patients.get(position);
-            holder.nameTextView.setText("Name: " + patient.name);
-            holder.emailTextView.setText("Email: " + patient.email);
-            holder.ageTextView.setText("Age: " + patient.age);
-            holder.idTextView.setText("ID: " + patient.id);
-            holder.diseaseTextView.setText("Disease: " + patient.disease);
-        }
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Live edits are only followed for the rows the window holds
+        patientPager.startLiveUpdates();
+    }
 
-        @Override
-        public int getItemCount() {
-            return patients.size();
-        }
+    @Override
+    protected void onStop() {
+        patientPager.stopLiveUpdates();
+        super.onStop();
+    }
 
-        class PatientViewHolder extends RecyclerView.ViewHolder {
-            TextView nameTextView, emailTextView, ageTextView, idTextView, diseaseTextView;
+    @Override
+    protected void onDestroy() {
+        patientPager.detach(patientRecyclerView);
+        PatientAdapter.detach(patientRecyclerView);
+        super.onDestroy();
+    }
 
-            public PatientViewHolder(@NonNull View itemView) {
-                super(itemView);
-                nameTextView = itemView.findViewById(R.id.nameTextView);
-                emailTextView = itemView.findViewById(R.id.emailTextView);
-                ageTextView = itemView.findViewById(R.id.ageTextView);
-                idTextView = itemView.findViewById(R.id.idTextView);
-                diseaseTextView = itemView.findViewById(R.id.diseaseTextView);
-            }
-        }
+    private void loadPatients() {
+        // Start from the first page; further pages are fetched as the list scrolls
+        patientPager.refresh();
     }
-}
\ No newline at end of file
+}
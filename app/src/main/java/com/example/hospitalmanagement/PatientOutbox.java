@@ -0,0 +1,109 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Journal of patient saves the server has not confirmed yet. Unlike
+// PatientStore this is the only copy of the data, so it lives in its own
+// file and is never dropped on a schema change. Called on the queue thread.
+public class PatientOutbox extends SQLiteOpenHelper implements PatientWriteQueue.Journal {
+
+    public static final String DATABASE_NAME = "outbox.db";
+    // Version 2 keeps each create's creationId, so a resent create is recognised as the same one
+    public static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE = "pending_writes";
+
+    public PatientOutbox(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    // A null name creates an in-memory database
+    public PatientOutbox(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // One row per patient ID, so a later save replaces an unsent earlier one
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id TEXT PRIMARY KEY NOT NULL, "
+                + "seq INTEGER NOT NULL, "
+                + "name TEXT, "
+                + "email TEXT, "
+                + "age TEXT, "
+                + "disease TEXT, "
+                + "creation_id TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Future versions must migrate rows rather than drop them
+        if (oldVersion < 2) {
+            // Rows from version 1 keep a null creationId, which the rules treat like a record written before it existed
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN creation_id TEXT");
+        }
+    }
+
+    @Override
+    public List<PatientWriteQueue.Entry> load() {
+        List<PatientWriteQueue.Entry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT seq, name, email, age, id, disease, creation_id FROM " + TABLE + " ORDER BY seq", null)) {
+            while (cursor.moveToNext()) {
+                Patient patient = new Patient(cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                        cursor.getString(4), cursor.getString(5));
+                patient.creationId = cursor.getString(6);
+                entries.add(new PatientWriteQueue.Entry(cursor.getLong(0), patient));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void put(@NonNull PatientWriteQueue.Entry entry) {
+        try (SQLiteStatement upsert = getWritableDatabase().compileStatement("INSERT OR REPLACE INTO " + TABLE
+                + " (id, seq, name, email, age, disease, creation_id) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            upsert.bindString(1, entry.patient.id);
+            upsert.bindLong(2, entry.seq);
+            bindNullable(upsert, 3, entry.patient.name);
+            bindNullable(upsert, 4, entry.patient.email);
+            bindNullable(upsert, 5, entry.patient.age);
+            bindNullable(upsert, 6, entry.patient.disease);
+            bindNullable(upsert, 7, entry.patient.creationId);
+            upsert.executeInsert();
+        }
+    }
+
+    @Override
+    public void remove(@NonNull List<PatientWriteQueue.Entry> written) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE + " WHERE id = ? AND seq = ?")) {
+            for (PatientWriteQueue.Entry entry : written) {
+                delete.bindString(1, entry.patient.id);
+                delete.bindLong(2, entry.seq);
+                delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
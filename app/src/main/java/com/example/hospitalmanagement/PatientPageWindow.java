@@ -0,0 +1,232 @@
+package com.example.hospitalmanagement;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Sliding window of key-ordered patient pages backing a RecyclerView.
+// Only maxPages pages are held at once; pages scrolled far away are evicted
+// and re-fetched by key if the user scrolls back to them.
+public class PatientPageWindow extends AbstractList<PatientRecord> {
+
+    private final int pageSize;
+    private final int maxPages;
+    private final ArrayDeque<List<PatientRecord>> pages = new ArrayDeque<>();
+    private int size = 0;
+
+    // Whether more records exist before the first page / after the last page
+    private boolean hasMoreBefore = false;
+    private boolean hasMoreAfter = true;
+
+    public PatientPageWindow(int pageSize, int maxPages) {
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (List<PatientRecord> page : pages) {
+            if (index < page.size()) {
+                return page.get(index);
+            }
+            index -= page.size();
+        }
+        throw new IllegalStateException("Page sizes out of sync");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        pages.clear();
+        size = 0;
+        hasMoreBefore = false;
+        hasMoreAfter = true;
+    }
+
+    public boolean hasMoreBefore() {
+        return hasMoreBefore;
+    }
+
+    public boolean hasMoreAfter() {
+        return hasMoreAfter;
+    }
+
+    // Key to continue after when loading the next page, or null for the first page
+    public String lastKey() {
+        List<PatientRecord> last = pages.peekLast();
+        return last == null ? null : last.get(last.size() - 1).id;
+    }
+
+    // Key to end before when reloading an evicted page above the window
+    public String firstKey() {
+        List<PatientRecord> first = pages.peekFirst();
+        return first == null ? null : first.get(0).id;
+    }
+
+    // Appends a page below the window. Returns how many rows were evicted
+    // from the top of the window to keep it within maxPages.
+    public int appendPage(List<PatientRecord> page) {
+        return appendPage(page, page.size() >= pageSize);
+    }
+
+    // Same, for a page read from a node where some children are not shown;
+    // more says whether the read returned a whole page
+    public int appendPage(List<PatientRecord> page, boolean more) {
+        hasMoreAfter = more;
+        if (page.isEmpty()) {
+            return 0;
+        }
+        pages.addLast(page);
+        size += page.size();
+        return trimToMaxPages();
+    }
+
+    // Prepends a previously evicted page above the window. Returns how many
+    // rows were evicted from the bottom of the window.
+    public int prependPage(List<PatientRecord> page) {
+        return prependPage(page, page.size() >= pageSize);
+    }
+
+    public int prependPage(List<PatientRecord> page, boolean more) {
+        hasMoreBefore = more;
+        if (page.isEmpty()) {
+            return 0;
+        }
+        pages.addFirst(page);
+        size += page.size();
+
+        int evicted = 0;
+        while (pages.size() > maxPages) {
+            evicted += pages.removeLast().size();
+            hasMoreAfter = true;
+        }
+        size -= evicted;
+        return evicted;
+    }
+
+    // Position of a loaded row, or -1 if not loaded
+    public int indexOfKey(String key) {
+        int offset = 0;
+        for (List<PatientRecord> page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).id.equals(key)) {
+                    return offset + i;
+                }
+            }
+            offset += page.size();
+        }
+        return -1;
+    }
+
+    // Replaces a loaded row in place. Returns its position, or -1 if not loaded.
+    public int replace(PatientRecord patient) {
+        int offset = 0;
+        for (List<PatientRecord> page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).id.equals(patient.id)) {
+                    page.set(i, patient);
+                    return offset + i;
+                }
+            }
+            offset += page.size();
+        }
+        return -1;
+    }
+
+    // Inserts a new row if its key falls inside the loaded key range. Returns
+    // its position, or -1 if it belongs to a page that is not loaded. A page
+    // that grows to twice the page size is split; call trimToMaxPages after.
+    public int insert(PatientRecord patient) {
+        String first = firstKey();
+        String last = lastKey();
+        if (first == null
+                || (hasMoreBefore && PatientKeys.ORDER.compare(patient.id, first) < 0)
+                || (hasMoreAfter && PatientKeys.ORDER.compare(patient.id, last) > 0)) {
+            return -1;
+        }
+        // First page whose last key sorts after the new key, else the last page
+        int offset = 0;
+        List<PatientRecord> target = null;
+        for (List<PatientRecord> page : pages) {
+            String pageLast = page.get(page.size() - 1).id;
+            if (PatientKeys.ORDER.compare(patient.id, pageLast) <= 0) {
+                target = page;
+                break;
+            }
+            offset += page.size();
+        }
+        if (target == null) {
+            target = pages.peekLast();
+            offset -= target.size();
+        }
+        int i = 0;
+        while (i < target.size() && PatientKeys.ORDER.compare(target.get(i).id, patient.id) < 0) {
+            i++;
+        }
+        target.add(i, patient);
+        size++;
+        if (target.size() >= 2 * pageSize) {
+            split(target);
+        }
+        return offset + i;
+    }
+
+    // Evicts pages from the top, as appendPage does, until at most maxPages
+    // are held. Returns how many rows were evicted.
+    public int trimToMaxPages() {
+        int evicted = 0;
+        while (pages.size() > maxPages) {
+            evicted += pages.removeFirst().size();
+            hasMoreBefore = true;
+        }
+        size -= evicted;
+        return evicted;
+    }
+
+    private void split(List<PatientRecord> page) {
+        ArrayDeque<List<PatientRecord>> split = new ArrayDeque<>(pages.size() + 1);
+        for (List<PatientRecord> held : pages) {
+            if (held == page) {
+                split.addLast(new ArrayList<>(page.subList(0, pageSize)));
+                split.addLast(new ArrayList<>(page.subList(pageSize, page.size())));
+            } else {
+                split.addLast(held);
+            }
+        }
+        pages.clear();
+        pages.addAll(split);
+    }
+
+    // Removes a loaded row. Returns its former position, or -1 if not loaded.
+    public int removeKey(String key) {
+        int offset = 0;
+        for (Iterator<List<PatientRecord>> it = pages.iterator(); it.hasNext(); ) {
+            List<PatientRecord> page = it.next();
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).id.equals(key)) {
+                    page.remove(i);
+                    size--;
+                    if (page.isEmpty()) {
+                        it.remove();
+                    }
+                    return offset + i;
+                }
+            }
+            offset += page.size();
+        }
+        return -1;
+    }
+}
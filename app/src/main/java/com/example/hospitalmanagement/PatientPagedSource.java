@@ -0,0 +1,431 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Loads the patient summaries, or an archive year, in key-ordered windows
+// instead of all at once. Pages are fetched with limitToFirst/startAfter as
+// the user scrolls down, and evicted pages are fetched back with
+// limitToLast/endBefore. Tombstones take up room in a page but are not shown,
+// so the cursor and the end of the list go by the children read.
+// With live updates on, one child listener covers just the key range the
+// window holds (open-ended where the window reaches the start or end of the
+// node) and is moved whenever pages are loaded or evicted, so edits to
+// loaded rows are patched in without subscribing to the whole node. Live
+// children are decoded off the main thread like pages, and rows they add
+// past an open end evict pages from the top as loading the next page does.
+public class PatientPagedSource {
+
+    public static final int PAGE_SIZE = 50;
+    public static final int MAX_PAGES = 5;
+    // Start fetching the next page when this many rows remain below the viewport
+    public static final int PREFETCH_DISTANCE = 15;
+
+    public interface Listener {
+        void onFirstPageLoaded(boolean empty);
+
+        void onLoadFailed(@NonNull DatabaseError error);
+    }
+
+    private final DatabaseReference ref;
+    private final PatientDecoder.Format format;
+    private final PatientPageWindow window = new PatientPageWindow(PAGE_SIZE, MAX_PAGES);
+    private final Listener listener;
+
+    private RecyclerView.Adapter<?> adapter;
+    private LinearLayoutManager layoutManager;
+    private boolean loading = false;
+    // Bumped on refresh so responses from a previous generation are dropped
+    private int generation = 0;
+
+    private boolean live = false;
+    private Query liveQuery;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Child events waiting to be decoded; a null snapshot marks a removal
+    private List<String> liveKeys = new ArrayList<>();
+    private List<DataSnapshot> liveSnapshots = new ArrayList<>();
+    private boolean liveFlushPending = false;
+    // Bumped when the listener moves or stops, so batches decoded for the old
+    // range are dropped; the moved listener reads every child in range again
+    private int liveGeneration = 0;
+    private final Runnable liveFlush = this::flushLiveChanges;
+    // Latest state of each changed key until the coalescer's next dispatch; null when removed
+    private final Map<String, PatientRecord> pendingChanges = new HashMap<>();
+    private PatientUpdateCoalescer liveCoalescer;
+
+    private final ChildEventListener liveListener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+            // Also called for every child already in range when the listener moves;
+            // rows that match the window are left alone when the change is applied
+            enqueueLiveChange(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+            enqueueLiveChange(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            enqueueLiveChange(snapshot.getKey(), null);
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            // Ordered by key, so children never move
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            liveQuery = null;
+            liveCoalescer.onPatientsFailed(error);
+        }
+    };
+
+    // Applies the changes collected for a frame to the rows in the window
+    private final PatientRepository.Observer liveApplier = new PatientRepository.Observer() {
+        @Override
+        public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+            for (String id : changedIds) {
+                applyLiveChange(id, pendingChanges.remove(id));
+            }
+        }
+
+        @Override
+        public void onPatientsFailed(@NonNull DatabaseError error) {
+            listener.onLoadFailed(error);
+        }
+    };
+
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (dy > 0) {
+                maybeLoadNext();
+            } else if (dy < 0) {
+                maybeLoadPrevious();
+            }
+        }
+    };
+
+    public PatientPagedSource(DatabaseReference summariesRef, Listener listener) {
+        this(summariesRef, PatientDecoder.SUMMARY, listener);
+    }
+
+    // ref's children are decoded with format, e.g. PatientDecoder.RECORD for archive/{year}
+    public PatientPagedSource(DatabaseReference ref, PatientDecoder.Format format, Listener listener) {
+        this.ref = ref;
+        this.format = format;
+        this.listener = listener;
+    }
+
+    // Rows currently held in memory; hand this to the adapter
+    public PatientPageWindow getWindow() {
+        return window;
+    }
+
+    public void attach(RecyclerView recyclerView, RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+        this.layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        recyclerView.addOnScrollListener(scrollListener);
+    }
+
+    public void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(scrollListener);
+        stopLiveUpdates();
+        generation++;
+        loading = false;
+    }
+
+    // Patches loaded rows as their children change, at most once per frame;
+    // call from onStart and pair with stopLiveUpdates in onStop
+    public void startLiveUpdates() {
+        if (live) {
+            return;
+        }
+        live = true;
+        if (liveCoalescer == null) {
+            liveCoalescer = new PatientUpdateCoalescer(liveApplier);
+        }
+        rescopeLiveUpdates();
+    }
+
+    public void stopLiveUpdates() {
+        live = false;
+        rescopeLiveUpdates();
+        if (liveCoalescer != null) {
+            liveCoalescer.reset();
+        }
+        pendingChanges.clear();
+    }
+
+    // Drops the window and loads the first page again
+    public void refresh() {
+        generation++;
+        loading = false;
+        window.clear();
+        adapter.notifyDataSetChanged();
+        rescopeLiveUpdates();
+        loadNext();
+    }
+
+    // Empties the window without loading anything
+    public void clear() {
+        generation++;
+        loading = false;
+        window.clear();
+        adapter.notifyDataSetChanged();
+        rescopeLiveUpdates();
+    }
+
+    private void maybeLoadNext() {
+        if (loading || !window.hasMoreAfter()) {
+            return;
+        }
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= window.size() - PREFETCH_DISTANCE) {
+            loadNext();
+        }
+    }
+
+    private void maybeLoadPrevious() {
+        if (loading || !window.hasMoreBefore()) {
+            return;
+        }
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        if (firstVisible <= PREFETCH_DISTANCE) {
+            loadPrevious();
+        }
+    }
+
+    private void loadNext() {
+        loadNext(window.lastKey());
+    }
+
+    private void loadNext(String afterKey) {
+        Query query = ref.orderByKey();
+        if (afterKey != null) {
+            query = query.startAfter(afterKey);
+        }
+        query = query.limitToFirst(PAGE_SIZE);
+
+        final boolean firstPage = window.isEmpty();
+        fetch(query, (page, full, firstRead, lastRead) -> {
+            if (page.isEmpty() && full) {
+                // Only tombstones; keep reading past them
+                loadNext(lastRead);
+                return;
+            }
+            appendPage(window, page, full, adapter);
+            rescopeLiveUpdates();
+
+            if (firstPage) {
+                listener.onFirstPageLoaded(page.isEmpty());
+            }
+        });
+    }
+
+    private void loadPrevious() {
+        String firstKey = window.firstKey();
+        if (firstKey != null) {
+            loadPrevious(firstKey);
+        }
+    }
+
+    private void loadPrevious(String beforeKey) {
+        Query query = ref.orderByKey().endBefore(beforeKey).limitToLast(PAGE_SIZE);
+
+        fetch(query, (page, full, firstRead, lastRead) -> {
+            if (page.isEmpty() && full) {
+                loadPrevious(firstRead);
+                return;
+            }
+            prependPage(window, page, full, adapter);
+            rescopeLiveUpdates();
+        });
+    }
+
+    // Adds a page below the window and tells the adapter. Each notification
+    // is given in positions of the list as it stands after the ones before
+    // it, so the eviction is reported before the insert.
+    static void appendPage(PatientPageWindow window, List<PatientRecord> page, boolean full,
+                           RecyclerView.Adapter<?> adapter) {
+        int evicted = window.appendPage(page, full);
+        if (evicted > 0) {
+            adapter.notifyItemRangeRemoved(0, evicted);
+        }
+        adapter.notifyItemRangeInserted(window.size() - page.size(), page.size());
+    }
+
+    // Same, above the window; the evicted rows were the last of the old list
+    static void prependPage(PatientPageWindow window, List<PatientRecord> page, boolean full,
+                            RecyclerView.Adapter<?> adapter) {
+        int sizeBefore = window.size();
+        int evicted = window.prependPage(page, full);
+        if (evicted > 0) {
+            adapter.notifyItemRangeRemoved(sizeBefore - evicted, evicted);
+        }
+        adapter.notifyItemRangeInserted(0, page.size());
+    }
+
+    // Moves the child listener to the window's current key range
+    private void rescopeLiveUpdates() {
+        if (liveQuery != null) {
+            liveQuery.removeEventListener(liveListener);
+            liveQuery = null;
+        }
+        liveGeneration++;
+        mainHandler.removeCallbacks(liveFlush);
+        liveFlushPending = false;
+        liveKeys = new ArrayList<>();
+        liveSnapshots = new ArrayList<>();
+        // Until the first page is in, there is no range to cover
+        if (!live || (window.isEmpty() && window.hasMoreAfter())) {
+            return;
+        }
+        Query query = ref.orderByKey();
+        if (window.hasMoreBefore()) {
+            query = query.startAt(window.firstKey());
+        }
+        if (window.hasMoreAfter()) {
+            query = query.endAt(window.lastKey());
+        }
+        liveQuery = query;
+        liveQuery.addChildEventListener(liveListener);
+    }
+
+    private void enqueueLiveChange(String key, DataSnapshot snapshot) {
+        liveKeys.add(key);
+        liveSnapshots.add(snapshot);
+        if (!liveFlushPending) {
+            liveFlushPending = true;
+            mainHandler.post(liveFlush);
+        }
+    }
+
+    private void flushLiveChanges() {
+        liveFlushPending = false;
+        List<String> keys = liveKeys;
+        List<DataSnapshot> snapshots = liveSnapshots;
+        liveKeys = new ArrayList<>();
+        liveSnapshots = new ArrayList<>();
+
+        final int batchGeneration = liveGeneration;
+        PatientDecoder.decodeBatch(keys, snapshots, format, entries -> {
+            if (batchGeneration != liveGeneration) {
+                return;
+            }
+            Set<String> changedIds = new HashSet<>();
+            for (PatientDecoder.Entry entry : entries) {
+                pendingChanges.put(entry.key, entry.patient);
+                changedIds.add(entry.key);
+            }
+            liveCoalescer.onPatientsChanged(Collections.emptyList(), changedIds);
+        });
+    }
+
+    // patient is null when the child was removed or is a tombstone
+    private void applyLiveChange(String id, PatientRecord patient) {
+        int position = window.indexOfKey(id);
+        if (patient == null) {
+            if (position >= 0) {
+                window.removeKey(id);
+                adapter.notifyItemRemoved(position);
+            }
+        } else if (position >= 0) {
+            if (!patient.equals(window.get(position))) {
+                window.replace(patient);
+                adapter.notifyItemChanged(position);
+            }
+        } else if (window.isEmpty()) {
+            // The first patient of a node that was empty when it was read
+            window.appendPage(new ArrayList<>(Collections.singletonList(patient)), false);
+            adapter.notifyItemInserted(0);
+        } else if (insert(window, patient, adapter)) {
+            rescopeLiveUpdates();
+        }
+    }
+
+    // Adds a row that arrived live and tells the adapter. If the window has
+    // outgrown maxPages, pages are evicted from the top as appendPage does;
+    // returns true when that happened and the live range must move.
+    static boolean insert(PatientPageWindow window, PatientRecord patient, RecyclerView.Adapter<?> adapter) {
+        int position = window.insert(patient);
+        if (position < 0) {
+            return false;
+        }
+        adapter.notifyItemInserted(position);
+        int evicted = window.trimToMaxPages();
+        if (evicted > 0) {
+            adapter.notifyItemRangeRemoved(0, evicted);
+        }
+        return evicted > 0;
+    }
+
+    private interface PageConsumer {
+        // full is true when the query returned a whole page of children; firstRead
+        // and lastRead are the keys of the first and last child read
+        void accept(List<PatientRecord> page, boolean full, String firstRead, String lastRead);
+    }
+
+    private void fetch(Query query, PageConsumer consumer) {
+        loading = true;
+        final int requestGeneration = generation;
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                boolean full = snapshot.getChildrenCount() >= PAGE_SIZE;
+                String firstRead = null;
+                String lastRead = null;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    if (firstRead == null) {
+                        firstRead = child.getKey();
+                    }
+                    lastRead = child.getKey();
+                }
+                final String first = firstRead;
+                final String last = lastRead;
+                PatientDecoder.decodeChildren(snapshot, format, patients -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    loading = false;
+                    // The window edits pages in place when live updates arrive
+                    consumer.accept(new ArrayList<>(patients), full, first, last);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                listener.onLoadFailed(error);
+            }
+        });
+    }
+}
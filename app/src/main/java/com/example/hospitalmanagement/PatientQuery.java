@@ -0,0 +1,140 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Filtered patient reads that the database evaluates, so only matching
+// records are downloaded. Relies on the indexes described in PatientIndex;
+// without the .indexOn rules the server sends everything and the client
+// filters, which works but logs a warning. Callbacks run on the main thread.
+public class PatientQuery {
+
+    public interface Callback {
+        void onResult(@NonNull List<PatientRecord> patients);
+
+        void onFailed(@NonNull DatabaseError error);
+    }
+
+    private final DatabaseReference patientsRef;
+    private final DatabaseReference byDiseaseRef;
+
+    public PatientQuery(DatabaseReference rootRef) {
+        this.patientsRef = rootRef.child(PatientIndex.PATIENTS);
+        this.byDiseaseRef = rootRef.child(PatientIndex.BY_DISEASE);
+    }
+
+    // Patients with the given disease, ignoring case and surrounding spaces
+    public void byDisease(String disease, @NonNull Callback callback) {
+        String key = PatientIndex.diseaseKey(disease);
+        if (key == null) {
+            callback.onResult(Collections.emptyList());
+            return;
+        }
+        fetch(patientsRef.orderByChild(PatientIndex.FIELD_DISEASE_KEY).equalTo(key), callback);
+    }
+
+    // Patients aged from..to inclusive, youngest first; unknown ages never match
+    public void byAge(int from, int to, @NonNull Callback callback) {
+        fetch(patientsRef.orderByChild(PatientIndex.FIELD_AGE_YEARS).startAt(from).endAt(to), callback);
+    }
+
+    // Both filters at once: a query can only order by one child, so this
+    // range-reads the disease's fan-out node and then loads the matching records
+    public void byDiseaseAndAge(String disease, int from, int to, @NonNull Callback callback) {
+        String key = PatientIndex.diseaseKey(disease);
+        if (key == null) {
+            callback.onResult(Collections.emptyList());
+            return;
+        }
+        DatabaseReference indexRef = byDiseaseRef.child(key);
+        indexRef.orderByValue().startAt(from).endAt(to).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<String> ids = new ArrayList<>((int) snapshot.getChildrenCount());
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    ids.add(child.getKey());
+                }
+                loadRecords(indexRef, key, ids, callback);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onFailed(error);
+            }
+        });
+    }
+
+    private void fetch(Query query, Callback callback) {
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                PatientDecoder.decodeChildren(snapshot, callback::onResult);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onFailed(error);
+            }
+        });
+    }
+
+    // The reads are pipelined over the one connection, so this costs about one round trip
+    private void loadRecords(DatabaseReference indexRef, String key, List<String> ids, Callback callback) {
+        if (ids.isEmpty()) {
+            callback.onResult(Collections.emptyList());
+            return;
+        }
+        DataSnapshot[] records = new DataSnapshot[ids.size()];
+        int[] remaining = {ids.size()};
+        boolean[] failed = {false};
+        for (int i = 0; i < ids.size(); i++) {
+            int index = i;
+            patientsRef.child(ids.get(i)).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    records[index] = snapshot.exists() ? snapshot : null;
+                    if (--remaining[0] == 0 && !failed[0]) {
+                        decodeMatches(indexRef, key, ids, records, callback);
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    remaining[0]--;
+                    if (!failed[0]) {
+                        failed[0] = true;
+                        callback.onFailed(error);
+                    }
+                }
+            });
+        }
+    }
+
+    private static void decodeMatches(DatabaseReference indexRef, String key, List<String> ids, DataSnapshot[] records,
+                                      Callback callback) {
+        List<DataSnapshot> snapshots = new ArrayList<>(records.length);
+        Collections.addAll(snapshots, records);
+        PatientDecoder.decodeBatch(ids, snapshots, entries -> {
+            List<PatientRecord> patients = new ArrayList<>(entries.size());
+            for (PatientDecoder.Entry entry : entries) {
+                if (entry.patient != null && key.equals(PatientIndex.diseaseKey(entry.patient.disease()))) {
+                    patients.add(entry.patient);
+                } else {
+                    // Left behind when the record was deleted or its disease changed.
+                    // The rules refuse this if the entry became valid again meanwhile.
+                    indexRef.child(entry.key).removeValue();
+                }
+            }
+            callback.onResult(Collections.unmodifiableList(patients));
+        });
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Process-wide owner of the single live listener on the patient summaries.
+// The listener is attached when the first observer registers and removed
+// when the last one leaves, so every screen shares one download and one
+// decode of each change no matter how often the UI subscribes.
+// Records are mirrored to PatientStore so the list can be shown from disk
+// immediately. The store also keeps a SyncMark, so after a restart only
+// summaries changed since the last sync are downloaded; without one the
+// whole node is read and reconciled with the disk copy.
+// Summaries carry what a row shows, so records here have no email; fetch
+// patients/{id} for the full record.
+public class PatientRepository {
+
+    public interface Observer {
+        // patients is an immutable key-ordered snapshot; changedIds holds the
+        // keys added, changed or removed since the previous call
+        void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds);
+
+        void onPatientsFailed(@NonNull DatabaseError error);
+    }
+
+    private static PatientRepository instance;
+
+    public static synchronized PatientRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PatientRepository(FirebaseDatabase.getInstance().getReference(PatientIndex.SUMMARIES),
+                    new PatientStore(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private final DatabaseReference summariesRef;
+    private final PatientStore store;
+    // Disk reads and writes run in order on their own thread
+    private final Executor storeExecutor = Executors.newSingleThreadExecutor();
+    private final List<Observer> observers = new ArrayList<>();
+    private final PatientList patients = new PatientList();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Child events waiting to be decoded; a null snapshot marks a removal
+    private List<String> pendingKeys = new ArrayList<>();
+    private List<DataSnapshot> pendingSnapshots = new ArrayList<>();
+    private boolean flushPending = false;
+    // Keys of child events that are queued or decoding and not in the list yet
+    private final Set<String> arrivingIds = new HashSet<>();
+    // Bumped when the listener is detached so in-flight batches are dropped
+    private int generation = 0;
+
+    // The query the listeners are attached to, once the disk copy has loaded
+    private Query liveQuery;
+    private SyncMark syncMark = new SyncMark(0);
+    // Entries received before catching up, reported as Metrics.SYNC_RECORDS
+    private int syncedRecords = 0;
+
+    // Rows served from disk that the remote node has not confirmed yet
+    private final Set<String> unconfirmedIds = new HashSet<>();
+    private boolean reconciled = false;
+    // Until every record is known to have a summary, a missing summary proves nothing
+    private boolean summariesComplete = false;
+
+    private List<PatientRecord> snapshot = Collections.emptyList();
+    private boolean loaded = false;
+
+    private final ChildEventListener childListener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            enqueue(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            enqueue(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            enqueue(snapshot.getKey(), null);
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            // Rows are kept in key order, so a move only matters if the value changed as well
+            enqueue(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onPatientsFailed(error);
+            }
+        }
+    };
+
+    // Fires once the initial child events have been delivered, with the key set they covered
+    private final ValueEventListener reconcileListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            final int reconcileGeneration = generation;
+            final boolean fullSync = syncMark.isFullSync();
+            // Hand pending child events to the decoder first, so this lands after them
+            if (flushPending) {
+                mainHandler.removeCallbacks(flush);
+                flush();
+            }
+            PatientDecoder.collectKeys(dataSnapshot, remoteIds -> {
+                if (reconcileGeneration == generation) {
+                    reconcile(remoteIds, fullSync);
+                }
+            });
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            // The child listener reports the same failure to observers
+        }
+    };
+
+    // Decodes and publishes once per burst of child events instead of once per event
+    private final Runnable flush = this::flush;
+
+    PatientRepository(DatabaseReference summariesRef, PatientStore store) {
+        this.summariesRef = summariesRef;
+        this.store = store;
+    }
+
+    public void addObserver(@NonNull Observer observer) {
+        if (observers.contains(observer)) {
+            return;
+        }
+        observers.add(observer);
+        if (observers.size() == 1) {
+            // Syncing starts once the disk copy and its mark are loaded
+            loadFromStore();
+        } else if (loaded) {
+            // Late subscribers get the current state straight away
+            observer.onPatientsChanged(snapshot, Collections.emptySet());
+        }
+    }
+
+    public void removeObserver(@NonNull Observer observer) {
+        if (!observers.remove(observer) || !observers.isEmpty()) {
+            return;
+        }
+        if (liveQuery != null) {
+            liveQuery.removeEventListener(childListener);
+            liveQuery.removeEventListener(reconcileListener);
+            liveQuery = null;
+        }
+        mainHandler.removeCallbacks(flush);
+        flushPending = false;
+        pendingKeys = new ArrayList<>();
+        pendingSnapshots = new ArrayList<>();
+        arrivingIds.clear();
+        generation++;
+        patients.clear();
+        unconfirmedIds.clear();
+        reconciled = false;
+        syncedRecords = 0;
+        snapshot = Collections.emptyList();
+        loaded = false;
+    }
+
+    public int getObserverCount() {
+        return observers.size();
+    }
+
+    @Nullable
+    public PatientRecord get(String id) {
+        return patients.get(id);
+    }
+
+    // True only while a live view that has caught up with the remote node holds
+    // no record under id. Rows cached on disk only ever make an ID look taken.
+    public boolean isKnownFree(@NonNull String id) {
+        return summariesComplete && reconciled && !observers.isEmpty()
+                && !patients.contains(id) && !arrivingIds.contains(id);
+    }
+
+    // Called once PatientSummaryMigration has confirmed every record has a summary
+    public void setSummariesComplete() {
+        summariesComplete = true;
+    }
+
+    // Counts for the current patients, updated with each change; main thread only
+    @NonNull
+    public WardStats getStats() {
+        return patients.stats();
+    }
+
+    private void enqueue(String key, DataSnapshot dataSnapshot) {
+        arrivingIds.add(key);
+        pendingKeys.add(key);
+        pendingSnapshots.add(dataSnapshot);
+        if (!flushPending) {
+            flushPending = true;
+            mainHandler.post(flush);
+        }
+    }
+
+    private void flush() {
+        flushPending = false;
+        List<String> keys = pendingKeys;
+        List<DataSnapshot> snapshots = pendingSnapshots;
+        pendingKeys = new ArrayList<>();
+        pendingSnapshots = new ArrayList<>();
+
+        final int batchGeneration = generation;
+        PatientDecoder.decodeBatch(keys, snapshots, PatientDecoder.SUMMARY, entries -> {
+            if (batchGeneration == generation) {
+                apply(entries);
+            }
+        });
+    }
+
+    private void apply(List<PatientDecoder.Entry> entries) {
+        Set<String> changedIds = new HashSet<>();
+        for (PatientDecoder.Entry entry : entries) {
+            arrivingIds.remove(entry.key);
+            unconfirmedIds.remove(entry.key);
+            syncMark.advanceTo(entry.updatedAt);
+            boolean changed = entry.patient != null
+                    ? patients.put(entry.key, entry.patient)
+                    : patients.remove(entry.key);
+            if (changed) {
+                changedIds.add(entry.key);
+            }
+        }
+        if (!reconciled) {
+            syncedRecords += entries.size();
+        }
+        // Until the initial sync has caught up, the rows on disk don't cover the mark yet
+        long mark = reconciled ? syncMark.get() : -1;
+        storeExecutor.execute(() -> store.apply(entries, mark));
+        // Remote rows that match the disk copy change nothing on screen
+        if (!changedIds.isEmpty() || !loaded) {
+            publish(changedIds);
+        }
+    }
+
+    private void loadFromStore() {
+        final int loadGeneration = generation;
+        storeExecutor.execute(() -> {
+            List<PatientRecord> cached = store.loadAll();
+            long mark = store.loadMark();
+            mainHandler.post(() -> {
+                if (loadGeneration == generation) {
+                    applyCached(cached);
+                    startSync(mark);
+                }
+            });
+        });
+    }
+
+    // With a mark, listens only to summaries changed since it; they arrive in
+    // updatedAt order, tombstones included, and keep arriving as edits are made
+    private void startSync(long mark) {
+        syncMark = new SyncMark(mark);
+        syncMark.expire(System.currentTimeMillis());
+        liveQuery = syncMark.isFullSync() ? summariesRef
+                : summariesRef.orderByChild(PatientIndex.FIELD_UPDATED_AT).startAt(syncMark.queryStart());
+        liveQuery.addChildEventListener(childListener);
+        // Shares the child listener's sync, so this does not download the query twice
+        liveQuery.addListenerForSingleValueEvent(reconcileListener);
+    }
+
+    private void applyCached(List<PatientRecord> cached) {
+        if (cached.isEmpty()) {
+            return;
+        }
+        Set<String> changedIds = new HashSet<>();
+        for (PatientRecord patient : cached) {
+            if (!patients.contains(patient.id)) {
+                patients.put(patient.id, patient);
+                unconfirmedIds.add(patient.id);
+                changedIds.add(patient.id);
+            }
+        }
+        if (!changedIds.isEmpty()) {
+            publish(changedIds);
+        }
+    }
+
+    // After a full read, drops cached rows that were deleted remotely while the
+    // app was not listening. A delta needs no key check: deletes came as tombstones.
+    private void reconcile(Set<String> remoteIds, boolean fullSync) {
+        reconciled = true;
+        Metrics.SYNC_RECORDS.record(syncedRecords);
+        List<PatientDecoder.Entry> removed = new ArrayList<>();
+        if (fullSync) {
+            for (String id : unconfirmedIds) {
+                if (!remoteIds.contains(id)) {
+                    removed.add(new PatientDecoder.Entry(id, null));
+                }
+            }
+        }
+        unconfirmedIds.clear();
+        if (!removed.isEmpty()) {
+            apply(removed);
+        }
+        // Everything up to the mark is now on disk
+        long mark = syncMark.get();
+        storeExecutor.execute(() -> store.apply(Collections.emptyList(), mark));
+    }
+
+    private void publish(Set<String> changedIds) {
+        snapshot = patients.snapshot();
+        loaded = true;
+        Set<String> published = Collections.unmodifiableSet(changedIds);
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onPatientsChanged(snapshot, published);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Search-as-you-type over the shared patient repository.
+// Keeps a PatientSearchIndex up to date on a background thread and runs
+// debounced queries there; a newer query cancels the one still pending.
+public class PatientSearch implements PatientRepository.Observer {
+
+    public interface Listener {
+        // results is null when the query is empty and the full list should show
+        void onSearchResults(List<PatientRecord> results);
+    }
+
+    public static final long DEBOUNCE_MS = 150;
+    public static final int MAX_RESULTS = 200;
+
+    // "30-40" searches an age range instead of names and IDs
+    private static final Pattern AGE_RANGE = Pattern.compile("^(\\d+)\\s*-\\s*(\\d+)$");
+
+    private final PatientRepository repository;
+    private final Listener listener;
+    private final PatientSearchIndex index = new PatientSearchIndex();
+    // Index updates and queries are confined to this thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private boolean started = false;
+    private String query = "";
+    // Read on the search thread to drop queries that were superseded
+    private volatile int queryGeneration = 0;
+    private Future<?> pendingQuery;
+
+    private final Runnable runQuery = this::runQuery;
+
+    public PatientSearch(PatientRepository repository, Listener listener) {
+        this.repository = repository;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        repository.addObserver(this);
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        repository.removeObserver(this);
+        cancelPending();
+        executor.execute(index::clear);
+    }
+
+    public void release() {
+        stop();
+        executor.shutdown();
+    }
+
+    // Schedules a query after the user pauses typing
+    public void setQuery(String text) {
+        query = text == null ? "" : text.trim();
+        cancelPending();
+        if (query.isEmpty()) {
+            listener.onSearchResults(null);
+            return;
+        }
+        mainHandler.postDelayed(runQuery, DEBOUNCE_MS);
+    }
+
+    @Override
+    public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+        executor.execute(() -> update(patients, changedIds));
+        if (!query.isEmpty()) {
+            cancelPending();
+            runQuery();
+        }
+    }
+
+    @Override
+    public void onPatientsFailed(@NonNull DatabaseError error) {
+        // PatientSync reports load failures to the user
+    }
+
+    private void update(List<PatientRecord> patients, Set<String> changedIds) {
+        // A large change set (such as the initial load) is cheaper to rebuild than to patch
+        if (changedIds.isEmpty() || changedIds.size() > patients.size() / 4) {
+            index.clear();
+            for (PatientRecord patient : patients) {
+                index.put(patient);
+            }
+            return;
+        }
+        for (String id : changedIds) {
+            PatientRecord patient = find(patients, id);
+            if (patient == null) {
+                index.remove(id);
+            } else {
+                index.put(patient);
+            }
+        }
+    }
+
+    private void runQuery() {
+        final String text = query;
+        final int generation = ++queryGeneration;
+        pendingQuery = executor.submit(() -> {
+            if (generation != queryGeneration) {
+                return;
+            }
+            List<PatientRecord> results = search(text);
+            mainHandler.post(() -> {
+                if (generation == queryGeneration) {
+                    listener.onSearchResults(results);
+                }
+            });
+        });
+    }
+
+    private List<PatientRecord> search(String text) {
+        Matcher ageRange = AGE_RANGE.matcher(text);
+        if (ageRange.matches()) {
+            return index.search("", "", Integer.parseInt(ageRange.group(1)),
+                    Integer.parseInt(ageRange.group(2)), MAX_RESULTS);
+        }
+
+        // Names and IDs by prefix, plus every patient with exactly this disease
+        List<PatientRecord> results = new ArrayList<>(index.search(text, "",
+                PatientSearchIndex.ANY_AGE, PatientSearchIndex.ANY_AGE, MAX_RESULTS));
+        if (results.size() < MAX_RESULTS) {
+            for (PatientRecord patient : index.search("", text,
+                    PatientSearchIndex.ANY_AGE, PatientSearchIndex.ANY_AGE, MAX_RESULTS - results.size())) {
+                if (!results.contains(patient)) {
+                    results.add(patient);
+                }
+            }
+            Collections.sort(results, (a, b) -> PatientKeys.ORDER.compare(a.id, b.id));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    private void cancelPending() {
+        mainHandler.removeCallbacks(runQuery);
+        queryGeneration++;
+        if (pendingQuery != null) {
+            pendingQuery.cancel(false);
+            pendingQuery = null;
+        }
+    }
+
+    // The repository snapshot is key-ordered, so lookups are a binary search
+    private static PatientRecord find(List<PatientRecord> patients, String id) {
+        int low = 0;
+        int high = patients.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = PatientKeys.ORDER.compare(patients.get(mid).id, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return patients.get(mid);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+// On-device mirror of the patient summaries, used to show the list on cold
+// start before Firebase has answered. It also keeps the sync mark, written
+// in the same transaction as the rows it covers, so the next start can ask
+// only for what changed since. All methods block and must be called off the
+// main thread.
+// Everything but the row's ID is sealed with RecordSealer under a data key
+// wrapped by the session's Keystore key. Rows are only written while that
+// key exists, and once SessionCache revokes it they can't be read back.
+public class PatientStore extends SQLiteOpenHelper {
+
+    public static final String DATABASE_NAME = "patients.db";
+    // Version 2 stores age as an integer; version 3 adds the sync mark;
+    // version 4 seals the rows and drops the plaintext ones
+    public static final int DATABASE_VERSION = 4;
+    // Keeps the file to a few MB; the least recently synced rows are dropped first
+    public static final int MAX_ROWS = 50_000;
+
+    private static final String TABLE = "patients";
+    private static final String STATE_TABLE = "sync_state";
+    private static final String KEY_TABLE = "data_key";
+    private static final String MARK = "mark";
+    private static final String DATA_KEY = "rows";
+    // Stored instead of a mark once rows have been trimmed
+    private static final long TRIMMED = -1;
+
+    // The key that wraps the data key; null while no session is saved
+    interface WrappingKey {
+        SecretKey get() throws GeneralSecurityException, IOException;
+    }
+
+    private final int maxRows;
+    private final WrappingKey wrappingKey;
+
+    public PatientStore(Context context) {
+        this(context, DATABASE_NAME, MAX_ROWS, SessionCache::existingKey);
+    }
+
+    // A null name creates an in-memory database
+    PatientStore(Context context, String name, int maxRows, WrappingKey wrappingKey) {
+        super(context, name, null, DATABASE_VERSION);
+        this.maxRows = maxRows;
+        this.wrappingKey = wrappingKey;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Deleted rows, including the plaintext ones dropped on upgrade, are zeroed rather than left in free pages
+        try (Cursor cursor = db.rawQuery("PRAGMA secure_delete = ON", null)) {
+            cursor.moveToFirst();
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id TEXT PRIMARY KEY NOT NULL, "
+                + "sealed BLOB NOT NULL, "
+                + "synced_at INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_patients_synced_at ON " + TABLE + " (synced_at)");
+        db.execSQL("CREATE TABLE " + STATE_TABLE + " (name TEXT PRIMARY KEY NOT NULL, value INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + KEY_TABLE + " (name TEXT PRIMARY KEY NOT NULL, wrapped BLOB NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store is only a cache of the remote node, so unknown versions are rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + STATE_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + KEY_TABLE);
+        onCreate(db);
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        onUpgrade(db, oldVersion, newVersion);
+    }
+
+    // Empty when the rows were sealed for a session that has been revoked
+    public List<PatientRecord> loadAll() {
+        List<PatientRecord> patients = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        RecordSealer sealer = sealer(db, false);
+        if (sealer == null) {
+            return patients;
+        }
+        try (Cursor cursor = db.rawQuery("SELECT id, sealed FROM " + TABLE, null)) {
+            while (cursor.moveToNext()) {
+                try {
+                    patients.add(sealer.open(cursor.getString(0), cursor.getBlob(1)));
+                } catch (GeneralSecurityException e) {
+                    // An altered row is left out; the next sync brings the patient back
+                    Log.e("Firebase", "Skipping unreadable cached patient " + cursor.getString(0), e);
+                }
+            }
+        }
+        return patients;
+    }
+
+    // The mark saved with the rows; 0 when there is none, the rows are
+    // incomplete or they can't be read
+    public long loadMark() {
+        SQLiteDatabase db = getReadableDatabase();
+        return sealer(db, false) == null ? 0 : Math.max(0, readMark(db));
+    }
+
+    // Writes a decoded batch in one transaction; entries without a patient are deleted
+    public void apply(List<PatientDecoder.Entry> entries) {
+        apply(entries, -1);
+    }
+
+    // Same, and saves mark with it unless mark is negative. Only pass a mark once
+    // the rows hold everything the remote node had up to it. Nothing is written
+    // while no session is saved.
+    public void apply(List<PatientDecoder.Entry> entries, long mark) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try (SQLiteStatement upsert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE
+                + " (id, sealed, synced_at) VALUES (?, ?, ?)");
+             SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE + " WHERE id = ?")) {
+            RecordSealer sealer = sealer(db, true);
+            if (sealer == null) {
+                return;
+            }
+            for (PatientDecoder.Entry entry : entries) {
+                if (entry.patient == null) {
+                    delete.bindString(1, entry.key);
+                    delete.executeUpdateDelete();
+                    continue;
+                }
+                upsert.bindString(1, entry.key);
+                upsert.bindBlob(2, sealer.seal(entry.patient));
+                upsert.bindLong(3, now);
+                upsert.executeInsert();
+            }
+            if (trimToSize(db)) {
+                // Dropped rows won't come back in a delta, so every sync must be full until cleared
+                saveMark(db, TRIMMED);
+            } else if (mark >= 0 && readMark(db) != TRIMMED) {
+                saveMark(db, mark);
+            }
+            db.setTransactionSuccessful();
+        } catch (GeneralSecurityException e) {
+            // Rolled back; the rows are fetched again on the next start
+            Log.e("Firebase", "Error sealing cached patients", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public long count() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE);
+    }
+
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE, null, null);
+        db.delete(STATE_TABLE, null, null);
+        db.delete(KEY_TABLE, null, null);
+    }
+
+    // The sealer for the data key kept in db, or null when there is no session
+    // key or the data key was wrapped by one that has been revoked. With create,
+    // such a data key is replaced and the rows sealed under it are dropped;
+    // only call that way inside a write transaction.
+    private RecordSealer sealer(SQLiteDatabase db, boolean create) {
+        try {
+            SecretKey key = wrappingKey.get();
+            if (key == null) {
+                return null;
+            }
+            byte[] wrapped = readDataKey(db);
+            if (wrapped != null) {
+                try {
+                    return new RecordSealer(RecordSealer.unwrap(wrapped, key));
+                } catch (GeneralSecurityException e) {
+                    // Wrapped for an earlier session
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            db.delete(TABLE, null, null);
+            db.delete(STATE_TABLE, null, null);
+            SecretKey dataKey = RecordSealer.newDataKey();
+            try (SQLiteStatement save = db.compileStatement("INSERT OR REPLACE INTO " + KEY_TABLE
+                    + " (name, wrapped) VALUES (?, ?)")) {
+                save.bindString(1, DATA_KEY);
+                save.bindBlob(2, RecordSealer.wrap(dataKey, key));
+                save.executeInsert();
+            }
+            return new RecordSealer(dataKey);
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e("Firebase", "Error opening the patient cache key", e);
+            return null;
+        }
+    }
+
+    private static byte[] readDataKey(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT wrapped FROM " + KEY_TABLE + " WHERE name = ?", new String[]{DATA_KEY})) {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        }
+    }
+
+    private static long readMark(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT value FROM " + STATE_TABLE + " WHERE name = ?", new String[]{MARK})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static void saveMark(SQLiteDatabase db, long mark) {
+        db.execSQL("INSERT OR REPLACE INTO " + STATE_TABLE + " (name, value) VALUES (?, ?)",
+                new Object[]{MARK, mark});
+    }
+
+    // Returns true if rows were dropped
+    private boolean trimToSize(SQLiteDatabase db) {
+        long excess = DatabaseUtils.queryNumEntries(db, TABLE) - maxRows;
+        if (excess > 0) {
+            db.execSQL("DELETE FROM " + TABLE + " WHERE id IN (SELECT id FROM " + TABLE
+                    + " ORDER BY synced_at ASC, rowid ASC LIMIT " + excess + ")");
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.hospitalmanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Builds patientSummaries/{id} for records saved before summaries existed.
+// Walks the patients node in key order a page at a time, reads the summaries
+// for the same key range and writes whatever PatientIndex.migrationUpdates
+// says is missing or stale as one multi-path update per page. The rules only
+// accept summaries that match their record, so a page that was edited while
+// it was being migrated is refused and simply read again. When the last page
+// is done schema/patientSummaries is set, and later runs stop after reading it.
+public class PatientSummaryMigration {
+
+    public static final int PAGE_SIZE = 500;
+    // A page edited this many times in a row while migrating is left for the next run
+    static final int MAX_ATTEMPTS = 5;
+
+    public interface Callback {
+        // written is the number of summaries written or deleted; 0 if already migrated
+        void onComplete(int written);
+
+        void onFailed(@NonNull Exception error);
+    }
+
+    interface ResultCallback<T> {
+        void onResult(T result);
+
+        void onError(@NonNull Exception error);
+    }
+
+    // The reads and writes the migration needs, so it can run without a database
+    interface Backend {
+        void readVersion(ResultCallback<Integer> callback);
+
+        // Up to limit records after afterKey (null for the first page), in key order
+        void loadRecords(String afterKey, int limit, ResultCallback<Map<String, Object>> callback);
+
+        // Summaries with afterKey < key <= lastKey; a null bound is open
+        void loadSummaries(String afterKey, String lastKey, ResultCallback<Map<String, Object>> callback);
+
+        // One root-relative multi-path update; false when the rules refused it
+        void write(Map<String, Object> updates, ResultCallback<Boolean> callback);
+    }
+
+    // Diffing a page runs off the main thread
+    private static final Executor MIGRATION_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Backend backend;
+    private final Executor workExecutor;
+    private final Executor callbackExecutor;
+    private final int pageSize;
+    private Callback callback;
+    private int written = 0;
+
+    public PatientSummaryMigration(DatabaseReference rootRef) {
+        this(firebaseBackend(rootRef), MIGRATION_EXECUTOR, new Handler(Looper.getMainLooper())::post, PAGE_SIZE);
+    }
+
+    // Callbacks run on callbackExecutor
+    PatientSummaryMigration(Backend backend, Executor workExecutor, Executor callbackExecutor, int pageSize) {
+        this.backend = backend;
+        this.workExecutor = workExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.pageSize = pageSize;
+    }
+
+    // Runs once per instance; cheap when the data is already migrated
+    public void run(@NonNull Callback callback) {
+        this.callback = callback;
+        backend.readVersion(new ResultCallback<Integer>() {
+            @Override
+            public void onResult(Integer version) {
+                if (version != null && version >= PatientIndex.CURRENT_SUMMARIES_VERSION) {
+                    complete();
+                } else {
+                    migratePage(null, 1);
+                }
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(error);
+            }
+        });
+    }
+
+    private void migratePage(String afterKey, int attempt) {
+        backend.loadRecords(afterKey, pageSize, new ResultCallback<Map<String, Object>>() {
+            @Override
+            public void onResult(Map<String, Object> records) {
+                boolean lastPage = records.size() < pageSize;
+                String lastKey = null;
+                for (String key : records.keySet()) {
+                    lastKey = key;
+                }
+                // The last page also takes summaries past the last record
+                String pageEnd = lastKey;
+                backend.loadSummaries(afterKey, lastPage ? null : pageEnd, new ResultCallback<Map<String, Object>>() {
+                    @Override
+                    public void onResult(Map<String, Object> summaries) {
+                        workExecutor.execute(() -> writePage(afterKey, pageEnd, lastPage, attempt,
+                                PatientIndex.migrationUpdates(records, summaries)));
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception error) {
+                        fail(error);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(error);
+            }
+        });
+    }
+
+    private void writePage(String afterKey, String lastKey, boolean lastPage, int attempt, Map<String, Object> updates) {
+        if (updates.isEmpty()) {
+            next(lastKey, lastPage);
+            return;
+        }
+        backend.write(updates, new ResultCallback<Boolean>() {
+            @Override
+            public void onResult(Boolean accepted) {
+                if (accepted) {
+                    written += countSummaries(updates);
+                    next(lastKey, lastPage);
+                } else if (attempt < MAX_ATTEMPTS) {
+                    // A record in the page changed after it was read
+                    migratePage(afterKey, attempt + 1);
+                } else {
+                    fail(new IllegalStateException("Patients after " + afterKey + " kept changing during the migration"));
+                }
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                fail(error);
+            }
+        });
+    }
+
+    private void next(String lastKey, boolean lastPage) {
+        if (!lastPage) {
+            migratePage(lastKey, 1);
+            return;
+        }
+        backend.write(Collections.singletonMap(PatientIndex.SUMMARIES_VERSION, PatientIndex.CURRENT_SUMMARIES_VERSION),
+                new ResultCallback<Boolean>() {
+                    @Override
+                    public void onResult(Boolean accepted) {
+                        if (accepted) {
+                            complete();
+                        } else {
+                            fail(new IllegalStateException("Not allowed to mark the summaries as migrated"));
+                        }
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception error) {
+                        fail(error);
+                    }
+                });
+    }
+
+    private static int countSummaries(Map<String, Object> updates) {
+        int count = 0;
+        for (String path : updates.keySet()) {
+            if (path.startsWith(PatientIndex.SUMMARIES + "/")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void complete() {
+        int total = written;
+        callbackExecutor.execute(() -> callback.onComplete(total));
+    }
+
+    private void fail(Exception error) {
+        callbackExecutor.execute(() -> callback.onFailed(error));
+    }
+
+    private static Backend firebaseBackend(DatabaseReference rootRef) {
+        DatabaseReference patientsRef = rootRef.child(PatientIndex.PATIENTS);
+        DatabaseReference summariesRef = rootRef.child(PatientIndex.SUMMARIES);
+        return new Backend() {
+            @Override
+            public void readVersion(ResultCallback<Integer> callback) {
+                rootRef.child(PatientIndex.SUMMARIES_VERSION).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Object value = snapshot.getValue();
+                        callback.onResult(value instanceof Number ? ((Number) value).intValue() : null);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        callback.onError(error.toException());
+                    }
+                });
+            }
+
+            @Override
+            public void loadRecords(String afterKey, int limit, ResultCallback<Map<String, Object>> callback) {
+                Query query = patientsRef.orderByKey();
+                if (afterKey != null) {
+                    query = query.startAfter(afterKey);
+                }
+                load(query.limitToFirst(limit), callback);
+            }
+
+            @Override
+            public void loadSummaries(String afterKey, String lastKey, ResultCallback<Map<String, Object>> callback) {
+                Query query = summariesRef.orderByKey();
+                if (afterKey != null) {
+                    query = query.startAfter(afterKey);
+                }
+                if (lastKey != null) {
+                    query = query.endAt(lastKey);
+                }
+                load(query, callback);
+            }
+
+            @Override
+            public void write(Map<String, Object> updates, ResultCallback<Boolean> callback) {
+                rootRef.updateChildren(updates, (error, ref) -> {
+                    if (error == null) {
+                        callback.onResult(true);
+                    } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                        callback.onResult(false);
+                    } else {
+                        callback.onError(error.toException());
+                    }
+                });
+            }
+        };
+    }
+
+    // Children as raw values in key order; getValue() on the parent would turn numeric keys into a list
+    private static void load(Query query, ResultCallback<Map<String, Object>> callback) {
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Map<String, Object> children = new LinkedHashMap<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    children.put(child.getKey(), child.getValue());
+                }
+                callback.onResult(children);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onError(error.toException());
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.database.DatabaseError;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Live, child-level view of the shared PatientRepository for one adapter.
+// Each published snapshot is diffed against the displayed list on a
+// background thread and only the changed item ranges are dispatched.
+// Bursts of updates reach it through a PatientUpdateCoalescer, so it diffs
+// at most once per frame.
+public class PatientSync implements PatientRepository.Observer {
+
+    public interface Listener {
+        void onSyncFailed(@NonNull DatabaseError error);
+    }
+
+    public static final DiffUtil.ItemCallback<PatientRecord> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<PatientRecord>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull PatientRecord oldItem, @NonNull PatientRecord newItem) {
+                    return Objects.equals(oldItem.id, newItem.id);
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull PatientRecord oldItem, @NonNull PatientRecord newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+
+    // One shared diff thread; diffs are short and must be applied in submission order
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final PatientRepository repository;
+    private final Listener listener;
+    private final PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(this);
+    private AsyncListDiffer<PatientRecord> differ;
+    private boolean started = false;
+    private List<PatientRecord> latest;
+    // Search results shown instead of the full list, or null
+    private List<PatientRecord> filtered;
+
+    private final List<PatientRecord> currentList = new AbstractList<PatientRecord>() {
+        @Override
+        public PatientRecord get(int index) {
+            return differ.getCurrentList().get(index);
+        }
+
+        @Override
+        public int size() {
+            return differ == null ? 0 : differ.getCurrentList().size();
+        }
+    };
+
+    public PatientSync(PatientRepository repository, Listener listener) {
+        this.repository = repository;
+        this.listener = listener;
+    }
+
+    // List as currently displayed; hand this to the adapter
+    public List<PatientRecord> getCurrentList() {
+        return currentList;
+    }
+
+    public void attach(RecyclerView.Adapter<?> adapter) {
+        differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(adapter),
+                new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                        .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                        .build());
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        repository.addObserver(coalescer);
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        repository.removeObserver(coalescer);
+        coalescer.reset();
+        latest = null;
+        filtered = null;
+        differ.submitList(null);
+    }
+
+    // Shows the given rows instead of the full list; null restores the full list
+    public void setFilteredList(List<PatientRecord> results) {
+        filtered = results;
+        if (started) {
+            differ.submitList(filtered != null ? filtered : latest);
+        }
+    }
+
+    @Override
+    public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+        latest = patients;
+        if (filtered == null) {
+            differ.submitList(patients);
+        }
+    }
+
+    @Override
+    public void onPatientsFailed(@NonNull DatabaseError error) {
+        listener.onSyncFailed(error);
+    }
+}
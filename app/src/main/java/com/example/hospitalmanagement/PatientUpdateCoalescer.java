@@ -0,0 +1,148 @@
+package com.example.hospitalmanagement;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseError;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Sits between the PatientRepository and one list and hands the list at most
+// one update per display frame. Snapshots arriving together replace each
+// other and their changed ids are merged, so a patient saved several times
+// in a burst is rebound once. While updates keep arriving the dispatch is
+// held for further frames, but never past maxLatencyMs after the first frame
+// that saw it. Runs on the main thread, like the repository.
+public class PatientUpdateCoalescer implements PatientRepository.Observer {
+
+    public static final long DEFAULT_MAX_LATENCY_MS = 100;
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+
+    // Where frame callbacks come from, so tests can drive frames by hand
+    interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+
+        void removeFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    private final PatientRepository.Observer downstream;
+    private final FrameScheduler frames;
+    private final long maxLatencyNanos;
+    private final Choreographer.FrameCallback frameCallback = this::doFrame;
+
+    private boolean deliveredInitialState = false;
+    private boolean framePosted = false;
+    // Latest snapshot not yet dispatched, or null
+    private List<PatientRecord> pendingPatients;
+    private final Set<String> pendingIds = new HashSet<>();
+    private int pendingUpdates = 0;
+    private boolean arrivedSinceLastFrame = false;
+    // Time of the first frame that held the pending update, or -1
+    private long heldSinceNanos = -1;
+
+    public PatientUpdateCoalescer(@NonNull PatientRepository.Observer downstream) {
+        this(downstream, DEFAULT_MAX_LATENCY_MS);
+    }
+
+    // maxLatencyMs of 0 dispatches on the first frame after each update
+    public PatientUpdateCoalescer(@NonNull PatientRepository.Observer downstream, long maxLatencyMs) {
+        this(downstream, choreographer(), maxLatencyMs);
+    }
+
+    PatientUpdateCoalescer(PatientRepository.Observer downstream, FrameScheduler frames, long maxLatencyMs) {
+        this.downstream = downstream;
+        this.frames = frames;
+        this.maxLatencyNanos = maxLatencyMs * NANOS_PER_MS;
+    }
+
+    @Override
+    public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+        if (!deliveredInitialState) {
+            // The first state is shown straight away; only changes to it are coalesced
+            deliveredInitialState = true;
+            downstream.onPatientsChanged(patients, changedIds);
+            return;
+        }
+        pendingPatients = patients;
+        pendingIds.addAll(changedIds);
+        pendingUpdates++;
+        arrivedSinceLastFrame = true;
+        if (!framePosted) {
+            framePosted = true;
+            frames.postFrameCallback(frameCallback);
+        }
+    }
+
+    @Override
+    public void onPatientsFailed(@NonNull DatabaseError error) {
+        dispatch();
+        downstream.onPatientsFailed(error);
+    }
+
+    // Drops anything pending; the next update is again delivered straight away.
+    // Call after removing this from the repository.
+    public void reset() {
+        if (framePosted) {
+            frames.removeFrameCallback(frameCallback);
+            framePosted = false;
+        }
+        clearPending();
+        deliveredInitialState = false;
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        if (pendingPatients == null) {
+            return;
+        }
+        if (heldSinceNanos < 0) {
+            heldSinceNanos = frameTimeNanos;
+        }
+        if (arrivedSinceLastFrame && frameTimeNanos - heldSinceNanos < maxLatencyNanos) {
+            // Still arriving; wait a frame to fold the rest of the burst in
+            arrivedSinceLastFrame = false;
+            framePosted = true;
+            frames.postFrameCallback(frameCallback);
+            return;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        if (pendingPatients == null) {
+            return;
+        }
+        List<PatientRecord> patients = pendingPatients;
+        Set<String> changedIds = new HashSet<>(pendingIds);
+        Metrics.COALESCED_UPDATES.record(pendingUpdates);
+        clearPending();
+        downstream.onPatientsChanged(patients, changedIds);
+    }
+
+    private void clearPending() {
+        pendingPatients = null;
+        pendingIds.clear();
+        pendingUpdates = 0;
+        arrivedSinceLastFrame = false;
+        heldSinceNanos = -1;
+    }
+
+    private static FrameScheduler choreographer() {
+        Choreographer choreographer = Choreographer.getInstance();
+        return new FrameScheduler() {
+            @Override
+            public void postFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.postFrameCallback(callback);
+            }
+
+            @Override
+            public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.removeFrameCallback(callback);
+            }
+        };
+    }
+}
@@ -0,0 +1,391 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Durable write-behind queue for patient saves.
+// Each save is journaled before it is sent, so a save made offline or just
+// before the process dies is sent on the next start instead of being lost.
+// Only the latest save per patient ID is kept, and pending saves go out as
+// one multi-path update at a time, retried with exponential backoff.
+// Saves are creates: the rules refuse one whose ID another create already
+// took. A refused batch is resent a save at a time, and a save still refused
+// while the server holds another create's record under its ID is dropped and
+// reported as a conflict.
+public class PatientWriteQueue {
+
+    // Local record of saves that have not been confirmed by the server
+    public interface Journal {
+        // Every pending entry in seq order
+        List<Entry> load();
+
+        // Replaces any entry for the same ID
+        void put(@NonNull Entry entry);
+
+        // Drops the given entries unless a newer save for the same ID replaced them
+        void remove(@NonNull List<Entry> written);
+    }
+
+    // Writes one multi-path update relative to the patients node
+    public interface Backend {
+        void write(@NonNull Map<String, Object> updates, @NonNull Callback callback);
+
+        // Reads the record stored under id; null when there is none
+        void load(@NonNull String id, @NonNull LoadCallback callback);
+    }
+
+    public interface Callback {
+        // error is null when the update was committed, and a RejectedException when the rules refused it
+        void onComplete(Exception error);
+    }
+
+    public interface LoadCallback {
+        void onLoaded(Object record, Exception error);
+    }
+
+    public interface Listener {
+        void onPendingChanged(int pending);
+    }
+
+    public interface ConflictListener {
+        // patient was not saved because another create took its ID; existing is null if it could not be decoded
+        void onConflict(@NonNull Patient patient, PatientRecord existing);
+    }
+
+    public static final class RejectedException extends Exception {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // Runs queue work in order on one thread; delayed tasks are retries
+    interface Scheduler {
+        void execute(@NonNull Runnable task);
+
+        void schedule(@NonNull Runnable task, long delayMs);
+    }
+
+    // One journaled save; seq orders saves and tells a newer save of the same ID apart
+    public static final class Entry {
+        public final long seq;
+        public final Patient patient;
+
+        public Entry(long seq, @NonNull Patient patient) {
+            this.seq = seq;
+            this.patient = patient;
+        }
+    }
+
+    public static final int BATCH_SIZE = 100;
+    public static final long INITIAL_RETRY_DELAY_MS = 1000;
+    public static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+
+    private static PatientWriteQueue instance;
+
+    public static synchronized PatientWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            FirebaseDatabase database = FirebaseDatabase.getInstance();
+            PatientWriteQueue queue = new PatientWriteQueue(new PatientOutbox(context.getApplicationContext()),
+                    database.getReference("patients"));
+            queue.start();
+            // Don't sit out the rest of a long backoff once the connection is back
+            database.getReference(".info/connected").addValueEventListener(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    if (Boolean.TRUE.equals(snapshot.getValue(Boolean.class))) {
+                        queue.retryNow();
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                }
+            });
+            instance = queue;
+        }
+        return instance;
+    }
+
+    private final Journal journal;
+    private final Backend backend;
+    private final Scheduler scheduler;
+    private final Executor callbackExecutor;
+    private final long initialRetryDelayMs;
+
+    // Queue state below is only touched on the scheduler thread
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    private long lastSeq = 0;
+    private boolean started = false;
+    private boolean writing = false;
+    private boolean waitingToRetry = false;
+    private int failures = 0;
+    // Tells a scheduled retry apart from one that retryNow already replaced
+    private int retryGeneration = 0;
+    // IDs from a refused batch, each resent on its own to find the conflicting ones
+    private final Set<String> suspects = new HashSet<>();
+
+    private Listener listener;
+    private volatile ConflictListener conflictListener;
+    private volatile int pendingCount = 0;
+
+    public PatientWriteQueue(Journal journal, DatabaseReference patientsRef) {
+        this(journal, firebaseBackend(patientsRef), executorScheduler(), new Handler(Looper.getMainLooper())::post,
+                INITIAL_RETRY_DELAY_MS);
+    }
+
+    // Listener callbacks run on callbackExecutor
+    PatientWriteQueue(Journal journal, Backend backend, Scheduler scheduler, Executor callbackExecutor,
+                      long initialRetryDelayMs) {
+        this.journal = journal;
+        this.backend = backend;
+        this.scheduler = scheduler;
+        this.callbackExecutor = callbackExecutor;
+        this.initialRetryDelayMs = initialRetryDelayMs;
+    }
+
+    private static Backend firebaseBackend(DatabaseReference patientsRef) {
+        return new Backend() {
+            @Override
+            public void write(@NonNull Map<String, Object> updates, @NonNull Callback callback) {
+                long writeStart = Metrics.start();
+                // Each record goes out together with its index entries
+                patientsRef.getRoot().updateChildren(PatientIndex.fanOut(updates), (error, ref) -> {
+                    Metrics.PATIENT_WRITE.recordSince(writeStart);
+                    if (error == null) {
+                        callback.onComplete(null);
+                    } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                        callback.onComplete(new RejectedException(error.getMessage()));
+                    } else {
+                        callback.onComplete(error.toException());
+                    }
+                });
+            }
+
+            @Override
+            public void load(@NonNull String id, @NonNull LoadCallback callback) {
+                patientsRef.child(id).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        callback.onLoaded(snapshot.getValue(), null);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        callback.onLoaded(null, error.toException());
+                    }
+                });
+            }
+        };
+    }
+
+    private static Scheduler executorScheduler() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        return new Scheduler() {
+            @Override
+            public void execute(@NonNull Runnable task) {
+                executor.execute(task);
+            }
+
+            @Override
+            public void schedule(@NonNull Runnable task, long delayMs) {
+                executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    // Reloads saves left over from an earlier run and starts sending them
+    public void start() {
+        scheduler.execute(() -> {
+            if (started) {
+                return;
+            }
+            started = true;
+            for (Entry entry : journal.load()) {
+                pending.put(entry.patient.id, entry);
+                lastSeq = Math.max(lastSeq, entry.seq);
+            }
+            changed();
+            flush();
+        });
+    }
+
+    // Journals the save and sends it as soon as the queue is free
+    public void enqueue(@NonNull Patient patient) {
+        scheduler.execute(() -> {
+            Entry entry = new Entry(++lastSeq, patient);
+            journal.put(entry);
+            // An unsent earlier save of the same patient is superseded, keeping its place in line
+            pending.put(patient.id, entry);
+            changed();
+            flush();
+        });
+    }
+
+    // Skips the current backoff, e.g. when the connection comes back
+    public void retryNow() {
+        scheduler.execute(() -> {
+            if (waitingToRetry) {
+                waitingToRetry = false;
+                flush();
+            }
+        });
+    }
+
+    // Listener is called on callbackExecutor with the current depth, then on every change
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            int count = pendingCount;
+            callbackExecutor.execute(() -> {
+                if (this.listener == listener) {
+                    listener.onPendingChanged(count);
+                }
+            });
+        }
+    }
+
+    // Called on callbackExecutor for every save dropped because its ID was taken
+    public void setConflictListener(ConflictListener conflictListener) {
+        this.conflictListener = conflictListener;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    private void flush() {
+        if (!started || writing || waitingToRetry || pending.isEmpty()) {
+            return;
+        }
+        List<Entry> batch = new ArrayList<>(Math.min(BATCH_SIZE, pending.size()));
+        Map<String, Object> updates = new HashMap<>();
+        Iterator<Entry> entries = pending.values().iterator();
+        while (entries.hasNext() && batch.size() < BATCH_SIZE) {
+            Entry entry = entries.next();
+            if (!batch.isEmpty() && (suspects.contains(entry.patient.id) || suspects.contains(batch.get(0).patient.id))) {
+                break;
+            }
+            batch.add(entry);
+            updates.put(entry.patient.id, PatientCodec.encode(entry.patient));
+        }
+        writing = true;
+        backend.write(updates, error -> scheduler.execute(() -> onWritten(batch, error)));
+    }
+
+    private void onWritten(List<Entry> batch, Exception error) {
+        if (error instanceof RejectedException && batch.size() > 1) {
+            // One of them may be enough to refuse the whole update
+            writing = false;
+            for (Entry entry : batch) {
+                suspects.add(entry.patient.id);
+            }
+            flush();
+            return;
+        }
+        if (error instanceof RejectedException) {
+            // Only a conflict if the server holds another create's record; anything else is retried
+            Entry entry = batch.get(0);
+            backend.load(entry.patient.id, (existing, loadError) -> scheduler.execute(() -> {
+                Patient stored = loadError == null ? PatientCodec.decode(existing) : null;
+                if (stored != null && !Objects.equals(entry.patient.creationId, stored.creationId)) {
+                    writing = false;
+                    failures = 0;
+                    suspects.remove(entry.patient.id);
+                    confirm(batch);
+                    ConflictListener current = conflictListener;
+                    if (current != null) {
+                        PatientRecord record = PatientCodec.decodeRecord(entry.patient.id, existing);
+                        callbackExecutor.execute(() -> current.onConflict(entry.patient, record));
+                    }
+                    flush();
+                } else {
+                    retryLater();
+                }
+            }));
+            return;
+        }
+        if (error != null) {
+            retryLater();
+            return;
+        }
+
+        writing = false;
+        failures = 0;
+        for (Entry written : batch) {
+            suspects.remove(written.patient.id);
+        }
+        confirm(batch);
+        flush();
+    }
+
+    private void retryLater() {
+        writing = false;
+        failures++;
+        waitingToRetry = true;
+        int retry = ++retryGeneration;
+        scheduler.schedule(() -> {
+            if (waitingToRetry && retry == retryGeneration) {
+                waitingToRetry = false;
+                flush();
+            }
+        }, retryDelay(failures));
+    }
+
+    // Drops saves the server has settled, committed or refused
+    private void confirm(List<Entry> batch) {
+        journal.remove(batch);
+        for (Entry written : batch) {
+            // A save made while this one was in flight stays queued
+            Entry current = pending.get(written.patient.id);
+            if (current != null && current.seq == written.seq) {
+                pending.remove(written.patient.id);
+            }
+        }
+        changed();
+    }
+
+    long retryDelay(int failures) {
+        long delay = initialRetryDelayMs;
+        for (int i = 1; i < failures && delay < MAX_RETRY_DELAY_MS; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, MAX_RETRY_DELAY_MS);
+    }
+
+    private void changed() {
+        int count = pending.size();
+        if (count == pendingCount) {
+            return;
+        }
+        pendingCount = count;
+        callbackExecutor.execute(() -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onPendingChanged(count);
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.hospitalmanagement;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+// Keeps the signed-in admin's AuthSession on disk, sealed with an AES key
+// that is generated inside the Android Keystore and never leaves it.
+// The same key wraps the one PatientStore seals its rows with. Revoking
+// deletes the sealed copy and the key, which leaves those rows unreadable,
+// and then clears them; they are only kept while a session is.
+public class SessionCache {
+
+    private static final String PREFS = "session";
+    private static final String KEY_SESSION = "session";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "authSession";
+
+    // Clears the patient store off the main thread without starting the repository
+    private static final Executor STORE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final SharedPreferences prefs;
+
+    public SessionCache(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    public boolean exists() {
+        return prefs.contains(KEY_SESSION);
+    }
+
+    // The saved session for uid, or null when there is none, it belongs to
+    // another admin or it can't be opened. Anything unusable is revoked.
+    @Nullable
+    public AuthSession load(@NonNull String uid) {
+        String sealed = prefs.getString(KEY_SESSION, null);
+        if (sealed == null) {
+            return null;
+        }
+        try {
+            SecretKey key = key(false);
+            AuthSession session = key != null ? AuthSession.open(Base64.decode(sealed, Base64.NO_WRAP), key) : null;
+            if (session != null && session.uid.equals(uid)) {
+                return session;
+            }
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            Log.e("Firebase", "Discarding unreadable session", e);
+        }
+        revoke();
+        return null;
+    }
+
+    public void save(@NonNull AuthSession session) {
+        try {
+            byte[] sealed = session.seal(key(true));
+            prefs.edit().putString(KEY_SESSION, Base64.encodeToString(sealed, Base64.NO_WRAP)).apply();
+        } catch (GeneralSecurityException | IOException e) {
+            // Only costs the instant restore on the next start
+            Log.e("Firebase", "Error saving session", e);
+        }
+    }
+
+    // Forgets the session and the patient rows cached for it. Rows still
+    // queued by the repository are not written, as there is no key for them.
+    public void revoke() {
+        prefs.edit().remove(KEY_SESSION).apply();
+        try {
+            KeyStore keyStore = keyStore();
+            if (keyStore.containsAlias(KEY_ALIAS)) {
+                keyStore.deleteEntry(KEY_ALIAS);
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e("Firebase", "Error deleting session key", e);
+        }
+        STORE_EXECUTOR.execute(() -> {
+            PatientStore store = new PatientStore(context);
+            store.clear();
+            store.close();
+        });
+    }
+
+    // The session key if one has been saved; PatientStore wraps its data key with it
+    @Nullable
+    static SecretKey existingKey() throws GeneralSecurityException, IOException {
+        return key(false);
+    }
+
+    @Nullable
+    private static SecretKey key(boolean create) throws GeneralSecurityException, IOException {
+        Key key = keyStore().getKey(KEY_ALIAS, null);
+        if (key instanceof SecretKey) {
+            return (SecretKey) key;
+        }
+        if (!create) {
+            return null;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private static KeyStore keyStore() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        return keyStore;
+    }
+}
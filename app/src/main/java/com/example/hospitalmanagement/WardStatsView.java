@@ -0,0 +1,102 @@
+package com.example.hospitalmanagement;
+
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseError;
+
+import java.util.List;
+import java.util.Set;
+
+// Shows patients per disease and per age band in the patient card.
+// The counts are maintained by the repository as changes arrive, so each
+// update only formats a few lines no matter how many patients there are.
+public class WardStatsView implements PatientRepository.Observer {
+
+    // Longest bar, drawn for the largest count
+    private static final int BAR_WIDTH = 20;
+    private static final int MAX_DISEASES_SHOWN = 8;
+
+    private final PatientRepository repository;
+    private final TextView view;
+    private final StringBuilder text = new StringBuilder(512);
+    private boolean started = false;
+
+    public WardStatsView(PatientRepository repository, TextView view) {
+        this.repository = repository;
+        this.view = view;
+    }
+
+    public void start() {
+        if (!started) {
+            started = true;
+            repository.addObserver(this);
+        }
+    }
+
+    public void stop() {
+        if (started) {
+            started = false;
+            repository.removeObserver(this);
+        }
+    }
+
+    @Override
+    public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+        view.setText(format(repository.getStats(), text));
+    }
+
+    @Override
+    public void onPatientsFailed(@NonNull DatabaseError error) {
+        Log.e("Firebase", "Ward statistics stopped", error.toException());
+    }
+
+    static String format(WardStats stats, StringBuilder out) {
+        out.setLength(0);
+        out.append(stats.total()).append(stats.total() == 1 ? " patient" : " patients");
+        if (stats.total() == 0) {
+            return out.toString();
+        }
+
+        out.append("\n\nBy disease\n");
+        List<WardStats.DiseaseCount> diseases = stats.diseases();
+        int largest = diseases.get(0).count;
+        int others = 0;
+        for (int i = 0; i < diseases.size(); i++) {
+            WardStats.DiseaseCount disease = diseases.get(i);
+            if (i < MAX_DISEASES_SHOWN) {
+                appendBar(out, disease.disease == null ? "Unspecified" : disease.disease, disease.count, largest);
+            } else {
+                others += disease.count;
+            }
+        }
+        if (others > 0) {
+            out.append("Other: ").append(others).append('\n');
+        }
+
+        out.append("\nBy age\n");
+        largest = 0;
+        for (int band = 0; band < WardStats.AGE_BANDS; band++) {
+            largest = Math.max(largest, stats.ageBandCount(band));
+        }
+        for (int band = 0; band < WardStats.AGE_BANDS; band++) {
+            appendBar(out, WardStats.ageBandLabel(band), stats.ageBandCount(band), largest);
+        }
+        if (stats.unknownAgeCount() > 0) {
+            out.append("Unknown age: ").append(stats.unknownAgeCount()).append('\n');
+        }
+        out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    private static void appendBar(StringBuilder out, String label, int count, int largest) {
+        out.append(label).append(' ');
+        int width = largest == 0 ? 0 : (int) Math.ceil((double) count * BAR_WIDTH / largest);
+        for (int i = 0; i < width; i++) {
+            out.append('█');
+        }
+        out.append(' ').append(count).append('\n');
+    }
+}
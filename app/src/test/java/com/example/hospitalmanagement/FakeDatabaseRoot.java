@@ -0,0 +1,170 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory Realtime Database shared by the backend fakes: a tree of nested
+ * maps changed by multi-path updates, with the server's clock and hooks for
+ * other clients to write between a read and the write that follows it.
+ */
+class FakeDatabaseRoot {
+
+    // The database rules for one write, given the state before and after it
+    interface Rules {
+        boolean allow(FakeDatabaseRoot before, FakeDatabaseRoot after, Map<String, Object> updates);
+    }
+
+    private final TreeMap<String, Object> root = new TreeMap<>();
+    // The server's clock, advanced on each write
+    long now;
+    // Run one per write, before it is checked
+    final List<Runnable> beforeWrite = new ArrayList<>();
+    int writes = 0;
+    int rejected = 0;
+
+    FakeDatabaseRoot(long now) {
+        this.now = now;
+    }
+
+    // A copy of the value at path, or null
+    Object get(String path) {
+        return copy(find(path));
+    }
+
+    // The children of path in key order, as stored; empty if there are none
+    @SuppressWarnings("unchecked")
+    Map<String, Object> children(String path) {
+        Object node = find(path);
+        return node instanceof TreeMap
+                ? Collections.unmodifiableMap((TreeMap<String, Object>) node)
+                : Collections.<String, Object>emptyMap();
+    }
+
+    // Sets path directly, as data already on the server; null deletes it
+    @SuppressWarnings("unchecked")
+    void put(String path, Object value) {
+        String[] keys = path.split("/");
+        Object stored = copy(value);
+        if (stored == null) {
+            remove(root, keys, 0);
+            return;
+        }
+        TreeMap<String, Object> node = root;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = node.get(keys[i]);
+            if (!(child instanceof TreeMap)) {
+                child = new TreeMap<String, Object>();
+                node.put(keys[i], child);
+            }
+            node = (TreeMap<String, Object>) child;
+        }
+        node.put(keys[keys.length - 1], stored);
+    }
+
+    void save(Patient patient) {
+        apply(PatientIndex.fanOut(Collections.singletonMap(patient.id, PatientCodec.encode(patient)),
+                stored(patient.id)));
+    }
+
+    void delete(String id) {
+        apply(PatientIndex.fanOut(Collections.singletonMap(id, null), stored(id)));
+    }
+
+    // The stored record of id, as a client that read it first would pass to fanOut
+    private Map<String, Object> stored(String id) {
+        Object record = get(PatientIndex.PATIENTS + "/" + id);
+        return record != null ? Collections.singletonMap(id, record) : Collections.<String, Object>emptyMap();
+    }
+
+    // One client write: the next hook runs, then the updates land together
+    // if the rules allow them
+    @SuppressWarnings("unchecked")
+    boolean write(Map<String, Object> updates, Rules rules) {
+        if (!beforeWrite.isEmpty()) {
+            beforeWrite.remove(0).run();
+        }
+        FakeDatabaseRoot after = new FakeDatabaseRoot(now);
+        if (!root.isEmpty()) {
+            after.root.putAll((Map<String, Object>) copy(root));
+        }
+        after.apply(updates);
+        if (!rules.allow(this, after, updates)) {
+            rejected++;
+            return false;
+        }
+        writes++;
+        apply(updates);
+        return true;
+    }
+
+    // Applies updates as the server does, with placeholders set to this write's time
+    void apply(Map<String, Object> updates) {
+        now++;
+        for (Map.Entry<String, Object> update : updates.entrySet()) {
+            put(update.getKey(), resolve(update.getValue(), now));
+        }
+    }
+
+    private Object find(String path) {
+        Object node = root;
+        for (String key : path.split("/")) {
+            if (!(node instanceof Map)) {
+                return null;
+            }
+            node = ((Map<?, ?>) node).get(key);
+        }
+        return node;
+    }
+
+    // Removes keys[i..] under node and prunes parents left empty; true if node is now empty
+    @SuppressWarnings("unchecked")
+    private static boolean remove(TreeMap<String, Object> node, String[] keys, int i) {
+        if (i == keys.length - 1) {
+            node.remove(keys[i]);
+        } else if (node.get(keys[i]) instanceof TreeMap
+                && remove((TreeMap<String, Object>) node.get(keys[i]), keys, i + 1)) {
+            node.remove(keys[i]);
+        }
+        return node.isEmpty();
+    }
+
+    private static Object resolve(Object value, long now) {
+        if (PatientIndex.SERVER_TIMESTAMP.equals(value)) {
+            return now;
+        }
+        if (!(value instanceof Map)) {
+            return value;
+        }
+        TreeMap<String, Object> resolved = new TreeMap<>();
+        for (Map.Entry<?, ?> field : ((Map<?, ?>) value).entrySet()) {
+            resolved.put((String) field.getKey(), resolve(field.getValue(), now));
+        }
+        return resolved;
+    }
+
+    // Deep copy, so reads can't see later writes; nulls and empty maps are never stored
+    static Object copy(Object value) {
+        if (!(value instanceof Map)) {
+            return value;
+        }
+        TreeMap<String, Object> copy = new TreeMap<>();
+        for (Map.Entry<?, ?> field : ((Map<?, ?>) value).entrySet()) {
+            Object child = copy(field.getValue());
+            if (child != null) {
+                copy.put((String) field.getKey(), child);
+            }
+        }
+        return copy.isEmpty() ? null : copy;
+    }
+
+    static boolean same(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).longValue() == ((Number) b).longValue();
+        }
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.hospitalmanagement;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decodes the bundled images with real codecs and checks sizes and cache reuse.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ImageLoaderTest {
+
+    private ImageLoader loader;
+
+    @Before
+    public void setUp() {
+        loader = new ImageLoader(RuntimeEnvironment.getApplication().getResources(), 32 * 1024 * 1024);
+    }
+
+    @Test
+    public void calculateSampleSize_neverGoesBelowTheRequestedSize() {
+        assertEquals(1, ImageLoader.calculateSampleSize(3500, 2502, 3500, 2502));
+        assertEquals(2, ImageLoader.calculateSampleSize(3500, 2502, 1280, 800));
+        assertEquals(4, ImageLoader.calculateSampleSize(3500, 2502, 800, 480));
+        assertEquals(1, ImageLoader.calculateSampleSize(3500, 2502, 1080, 1920));
+        assertEquals(1, ImageLoader.calculateSampleSize(415, 276, 1080, 1050));
+    }
+
+    @Test
+    public void background_isDecodedAtExactlyTheViewSize() {
+        Bitmap bitmap = loader.get(R.drawable.bg, 1280, 800, true);
+
+        assertEquals(1280, bitmap.getWidth());
+        assertEquals(800, bitmap.getHeight());
+        assertEquals(Bitmap.Config.RGB_565, bitmap.getConfig());
+        // 2 bytes per pixel instead of 4 bytes for the full 3500x2502 image
+        assertEquals(1280 * 800 * 2, bitmap.getByteCount());
+    }
+
+    @Test
+    public void image_isDownsampledKeepingAspectRatio() {
+        Bitmap bitmap = loader.get(R.drawable.hospital, 200, 100, false);
+
+        assertEquals(415 / 2, bitmap.getWidth());
+        assertEquals(276 / 2, bitmap.getHeight());
+    }
+
+    @Test
+    public void repeatedRequests_hitTheCache() {
+        Bitmap first = loader.get(R.drawable.bg, 1280, 800, true);
+        int misses = loader.getCache().missCount();
+
+        Bitmap second = loader.get(R.drawable.bg, 1280, 800, true);
+
+        assertSame(first, second);
+        assertEquals(misses, loader.getCache().missCount());
+        assertEquals(1, loader.getCache().hitCount());
+
+        // A different view size is a different entry
+        Bitmap other = loader.get(R.drawable.bg, 800, 480, true);
+        assertNotSame(first, other);
+        assertEquals(misses + 1, loader.getCache().missCount());
+        assertEquals(first.getByteCount() + other.getByteCount(), loader.getCache().size());
+    }
+}
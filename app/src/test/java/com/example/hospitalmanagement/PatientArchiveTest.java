@@ -0,0 +1,403 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientArchive against an in-memory database that enforces the archive
+ * and summary rules from database.rules.json, with other clients editing and
+ * deleting patients while they are being moved, and checks no record is lost.
+ */
+public class PatientArchiveTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2025-06-01T00:00:00Z
+    private static final long JUNE_2025 = 1_748_736_000_000L;
+
+    @Test
+    public void discharge_movesTheRecordAndLeavesATombstone() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025);
+        db.save(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        db.save(new Patient("John", "john@example.com", "50", "P-2", "Asthma"));
+
+        Result result = discharge(db, "P-1");
+
+        assertEquals(Integer.valueOf(1), result.archived);
+        assertFalse(db.records().containsKey("P-1"));
+        assertTrue(PatientIndex.isTombstone(db.summaries().get("P-1")));
+        assertNull(db.get(PatientIndex.BY_DISEASE + "/flu/P-1"));
+        Map<?, ?> archived = db.archived("2025", "P-1");
+        assertEquals("Jane", archived.get(PatientCodec.FIELD_NAME));
+        assertEquals("jane@example.com", archived.get(PatientCodec.FIELD_EMAIL));
+        assertTrue(archived.get(PatientIndex.FIELD_ARCHIVED_AT) instanceof Long);
+        assertTrue(db.records().containsKey("P-2"));
+    }
+
+    @Test
+    public void discharge_editedDuringTheMove_archivesTheEditedRecord() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025);
+        db.save(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        // Another client saves P-1 between the read and the move
+        db.beforeWrite.add(() -> db.save(new Patient("Jane Doe", "jane@example.com", "43", "P-1", "Flu")));
+
+        Result result = discharge(db, "P-1");
+
+        assertEquals(Integer.valueOf(1), result.archived);
+        assertEquals(1, db.rejected);
+        assertEquals("Jane Doe", db.archived("2025", "P-1").get(PatientCodec.FIELD_NAME));
+        assertFalse(db.records().containsKey("P-1"));
+    }
+
+    @Test
+    public void discharge_ofAReusedId_keepsBothArchivedCopies() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025);
+        db.save(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        assertEquals(Integer.valueOf(1), discharge(db, "P-1").archived);
+        // The ID is free again and goes to a new patient, discharged the same year
+        db.save(new Patient("Joe", "joe@example.com", "30", "P-1", "Asthma"));
+
+        Result result = discharge(db, "P-1");
+
+        assertNull(result.error);
+        assertEquals(Integer.valueOf(1), result.archived);
+        assertEquals(0, db.rejected);
+        assertEquals(2, db.copies("2025", "P-1").size());
+        assertEquals("Joe", db.archived("2025", "P-1").get(PatientCodec.FIELD_NAME));
+        assertEquals("Joe", PatientCodec.decodeArchived("P-1", db.get(PatientIndex.ARCHIVE + "/2025/P-1")).name);
+    }
+
+    @Test
+    public void discharge_refusedWithoutAnEdit_failsWithoutRetrying() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025);
+        db.save(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        db.refused.add("P-1");
+
+        Result result = discharge(db, "P-1");
+
+        assertNotNull(result.error);
+        assertEquals("Archiving patient P-1 was refused", result.error.getMessage());
+        assertEquals(1, db.rejected);
+        assertTrue(db.records().containsKey("P-1"));
+    }
+
+    @Test
+    public void discharge_ofAPatientNotInTheLiveRecords_fails() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025);
+
+        Result result = discharge(db, "P-404");
+
+        assertNotNull(result.error);
+        assertEquals(0, db.writes);
+    }
+
+    @Test
+    public void compact_archivesOnlyInactivePatientsAndPurgesOldTombstones() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025 - 400 * DAY);
+        for (int i = 0; i < 25; i++) {
+            db.save(new Patient("Old " + i, i + "@example.com", "70", String.format("P-%03d", i), "Flu"));
+        }
+        db.delete("P-000");
+        db.now = JUNE_2025 - 10 * DAY;
+        db.save(new Patient("Recent", "recent@example.com", "30", "P-100", "Asthma"));
+        db.delete("P-001");
+        db.now = JUNE_2025;
+
+        Result result = compact(db, PatientArchive.DEFAULT_MAX_AGE_MS, 10);
+
+        assertEquals(Integer.valueOf(23), result.archived);
+        assertEquals(Collections.singleton("P-100"), db.records().keySet());
+        assertEquals(23, db.children(PatientIndex.ARCHIVE + "/2025").size());
+        assertTrue(result.refused.isEmpty());
+        // The old tombstone is gone; the recent one stays for clients still syncing
+        assertFalse(db.summaries().containsKey("P-000"));
+        assertTrue(PatientIndex.isTombstone(db.summaries().get("P-001")));
+        assertEquals(Integer.valueOf(0), compact(db, PatientArchive.DEFAULT_MAX_AGE_MS, 10).archived);
+    }
+
+    @Test
+    public void compact_passesOverAPatientItCannotMoveAndArchivesTheRest() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025 - 400 * DAY);
+        for (int i = 0; i < 25; i++) {
+            db.save(new Patient("Old " + i, i + "@example.com", "70", String.format("P-%03d", i), "Flu"));
+        }
+        db.now = JUNE_2025;
+        // The oldest patient, so every run meets it on the first page
+        db.refused.add("P-000");
+
+        Result result = compact(db, PatientArchive.DEFAULT_MAX_AGE_MS, 10);
+
+        assertNull(result.error);
+        assertEquals(Integer.valueOf(24), result.archived);
+        assertEquals(Collections.singletonList("P-000"), result.refused);
+        assertEquals(Collections.singleton("P-000"), db.records().keySet());
+
+        Result again = compact(db, PatientArchive.DEFAULT_MAX_AGE_MS, 10);
+        assertNull(again.error);
+        assertEquals(Integer.valueOf(0), again.archived);
+        assertEquals(Collections.singletonList("P-000"), again.refused);
+    }
+
+    @Test
+    public void compact_neverPurgesTombstonesYoungerThanTheRetention() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025 - 20 * DAY);
+        db.save(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        db.delete("P-1");
+        db.now = JUNE_2025;
+
+        assertEquals(Integer.valueOf(0), compact(db, DAY, 10).archived);
+        assertTrue(PatientIndex.isTombstone(db.summaries().get("P-1")));
+    }
+
+    @Test
+    public void compactConfigured_usesTheStoredAgeAndArchivesPatientsNeverDischarged() {
+        FakeDatabase db = new FakeDatabase(JUNE_2025 - 100 * DAY);
+        // Neither was discharged; only the time since their last save counts
+        db.save(new Patient("Idle", "idle@example.com", "70", "P-1", "Flu"));
+        db.now = JUNE_2025 - 60 * DAY;
+        db.save(new Patient("Seen", "seen@example.com", "30", "P-2", "Asthma"));
+        db.now = JUNE_2025;
+
+        // Unset, the default of a year keeps both
+        assertEquals(Integer.valueOf(0), compactConfigured(db).archived);
+
+        db.put(PatientArchive.MAX_AGE_DAYS_SETTING, 90L);
+        Result result = compactConfigured(db);
+
+        assertEquals(Integer.valueOf(1), result.archived);
+        assertEquals("Idle", db.archived("2025", "P-1").get(PatientCodec.FIELD_NAME));
+        assertEquals(Collections.singleton("P-2"), db.records().keySet());
+    }
+
+    @Test
+    public void maxAgeMs_fallsBackToTheDefaultForUnusableSettings() {
+        assertEquals(90 * DAY, PatientArchive.maxAgeMs(90L));
+        assertEquals(DAY / 2, PatientArchive.maxAgeMs(0.5));
+        assertEquals(PatientArchive.DEFAULT_MAX_AGE_MS, PatientArchive.maxAgeMs(null));
+        assertEquals(PatientArchive.DEFAULT_MAX_AGE_MS, PatientArchive.maxAgeMs(0L));
+        assertEquals(PatientArchive.DEFAULT_MAX_AGE_MS, PatientArchive.maxAgeMs(-5L));
+        assertEquals(PatientArchive.DEFAULT_MAX_AGE_MS, PatientArchive.maxAgeMs("90"));
+    }
+
+    @Test
+    public void randomizedConcurrentEdits_loseNoRecord() {
+        Random random = new Random(22);
+        FakeDatabase db = new FakeDatabase(JUNE_2025 - 700 * DAY);
+        // The latest version each client saved, by ID; null once deleted
+        Map<String, String> latest = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            String id = String.format("P-%03d", i);
+            db.now = JUNE_2025 - (400 + random.nextInt(300)) * DAY;
+            db.save(new Patient("v0", id + "@example.com", "40", id, "Flu"));
+            latest.put(id, "v0");
+        }
+        db.now = JUNE_2025;
+        // Other clients keep saving and deleting while the compaction runs
+        for (int i = 0; i < 40; i++) {
+            int version = i + 1;
+            db.beforeWrite.add(() -> {
+                for (int edit = 0; edit < 5; edit++) {
+                    String id = String.format("P-%03d", random.nextInt(200));
+                    if (!db.records().containsKey(id)) {
+                        continue;
+                    }
+                    if (random.nextInt(4) == 0) {
+                        db.delete(id);
+                        latest.put(id, null);
+                    } else {
+                        db.save(new Patient("v" + version, id + "@example.com", "40", id, "Flu"));
+                        latest.put(id, "v" + version);
+                    }
+                }
+            });
+        }
+
+        Result result = compact(db, PatientArchive.DEFAULT_MAX_AGE_MS, 20);
+
+        assertNull(result.error);
+        int archived = 0;
+        for (Map.Entry<String, String> patient : latest.entrySet()) {
+            String id = patient.getKey();
+            Map<?, ?> live = (Map<?, ?>) db.records().get(id);
+            Map<?, ?> copy = db.archived("2025", id);
+            if (patient.getValue() == null) {
+                assertNull(id, live);
+                assertNull(id, copy);
+                continue;
+            }
+            // In exactly one tier, as last saved
+            assertTrue(id, (live == null) != (copy == null));
+            Map<?, ?> stored = live != null ? live : copy;
+            assertEquals(id, patient.getValue(), stored.get(PatientCodec.FIELD_NAME));
+            if (copy != null) {
+                archived++;
+                assertTrue(PatientIndex.isTombstone(db.summaries().get(id)));
+            } else {
+                assertNotNull(PatientCodec.decodeSummary(id, db.summaries().get(id)));
+            }
+        }
+        assertEquals(result.archived.intValue(), archived);
+        // A refused page is retried a patient per write, and every write lets
+        // the other clients edit a few more patients, which keeps them live
+        assertTrue("archived " + archived, archived > 50);
+        // Some moves raced an edit or delete and were read again
+        assertTrue("rejected " + db.rejected, db.rejected > 0);
+    }
+
+    private static Result discharge(FakeDatabase db, String id) {
+        Result result = new Result();
+        archive(db, 10).discharge(id, result);
+        return result;
+    }
+
+    private static Result compact(FakeDatabase db, long maxAgeMs, int pageSize) {
+        Result result = new Result();
+        archive(db, pageSize).compact(maxAgeMs, result);
+        return result;
+    }
+
+    private static Result compactConfigured(FakeDatabase db) {
+        Result result = new Result();
+        archive(db, 10).compactConfigured(result);
+        return result;
+    }
+
+    private static PatientArchive archive(FakeDatabase db, int pageSize) {
+        return new PatientArchive(db, Runnable::run, Runnable::run, () -> db.now, pageSize);
+    }
+
+    private static class Result implements PatientArchive.Callback {
+        Integer archived;
+        Exception error;
+        final List<String> refused = new ArrayList<>();
+
+        @Override
+        public void onComplete(int archived) {
+            this.archived = archived;
+        }
+
+        @Override
+        public void onFailed(@NonNull Exception error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onRefused(@NonNull String id) {
+            refused.add(id);
+        }
+    }
+
+    // The archive's reads and writes over a shared in-memory root
+    private static class FakeDatabase extends FakeDatabaseRoot implements PatientArchive.Backend {
+        // IDs whose moves the rules refuse for a reason other than an edit
+        final Set<String> refused = new HashSet<>();
+
+        FakeDatabase(long now) {
+            super(now);
+        }
+
+        Map<String, Object> records() {
+            return children(PatientIndex.PATIENTS);
+        }
+
+        Map<String, Object> summaries() {
+            return children(PatientIndex.SUMMARIES);
+        }
+
+        // archive/{year}/{id}, by entry
+        Map<String, Object> copies(String year, String id) {
+            return children(PatientIndex.ARCHIVE + "/" + year + "/" + id);
+        }
+
+        // The latest copy of id archived in year
+        Map<?, ?> archived(String year, String id) {
+            Map<String, Object> copies = copies(year, id);
+            if (copies.isEmpty()) {
+                return null;
+            }
+            String latest = Collections.max(copies.keySet(), (a, b) -> Long.compare(Long.parseLong(a), Long.parseLong(b)));
+            return (Map<?, ?>) copies.get(latest);
+        }
+
+        @Override
+        public void loadStale(long cutoff, long afterUpdatedAt, String afterKey, int limit,
+                              PatientArchive.ResultCallback<Map<String, Object>> callback) {
+            List<Map.Entry<String, Object>> stale = new ArrayList<>();
+            for (Map.Entry<String, Object> summary : summaries().entrySet()) {
+                long updatedAt = PatientIndex.updatedAt(summary.getValue());
+                boolean afterCursor = afterKey == null || updatedAt > afterUpdatedAt
+                        || (updatedAt == afterUpdatedAt && summary.getKey().compareTo(afterKey) > 0);
+                if (updatedAt > 0 && updatedAt <= cutoff && afterCursor) {
+                    stale.add(summary);
+                }
+            }
+            // By updatedAt, then by key, as the database orders a child index
+            stale.sort((a, b) -> {
+                int byTime = Long.compare(PatientIndex.updatedAt(a.getValue()), PatientIndex.updatedAt(b.getValue()));
+                return byTime != 0 ? byTime : a.getKey().compareTo(b.getKey());
+            });
+            Map<String, Object> page = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> summary : stale.subList(0, Math.min(limit, stale.size()))) {
+                page.put(summary.getKey(), copy(summary.getValue()));
+            }
+            callback.onResult(page);
+        }
+
+        @Override
+        public void loadRecords(List<String> ids, PatientArchive.ResultCallback<Map<String, Object>> callback) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (String id : ids) {
+                result.put(id, get(PatientIndex.PATIENTS + "/" + id));
+            }
+            callback.onResult(result);
+        }
+
+        @Override
+        public void write(Map<String, Object> updates, PatientArchive.ResultCallback<Boolean> callback) {
+            callback.onResult(write(updates, this::allowed));
+        }
+
+        @Override
+        public void loadSetting(String path, PatientArchive.ResultCallback<Object> callback) {
+            callback.onResult(get(path));
+        }
+
+        // The archive and patientSummaries rules
+        private boolean allowed(FakeDatabaseRoot before, FakeDatabaseRoot after, Map<String, Object> updates) {
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String[] path = update.getKey().split("/");
+                Map<?, ?> value = (Map<?, ?>) update.getValue();
+                if (path[0].equals(PatientIndex.ARCHIVE)) {
+                    Map<?, ?> record = (Map<?, ?>) before.get(PatientIndex.PATIENTS + "/" + path[2]);
+                    if (before.get(update.getKey()) != null || refused.contains(path[2])
+                            || record == null || after.get(PatientIndex.PATIENTS + "/" + path[2]) != null
+                            || !PatientIndex.SERVER_TIMESTAMP.equals(value.get(PatientIndex.FIELD_ARCHIVED_AT))
+                            || !same(value.get(PatientIndex.FIELD_UPDATED_AT), record.get(PatientIndex.FIELD_UPDATED_AT))) {
+                        return false;
+                    }
+                } else if (path[0].equals(PatientIndex.SUMMARIES)) {
+                    boolean deleting = value == null || PatientIndex.isTombstone(value);
+                    if (deleting && after.get(PatientIndex.PATIENTS + "/" + path[1]) != null) {
+                        return false;
+                    }
+                    if (value != null && !PatientIndex.SERVER_TIMESTAMP.equals(value.get(PatientIndex.FIELD_UPDATED_AT))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.hospitalmanagement;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.InternalHelpers;
+import com.google.firebase.database.snapshot.IndexedNode;
+import com.google.firebase.database.snapshot.NodeUtilities;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that PatientCodec.decode gives the same Patient as the SDK's own
+ * DataSnapshot.getValue(Patient.class) for the same node, on every field.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PatientCodecMapperTest {
+
+    @Test
+    public void decode_matchesTheMapperOnEveryField() {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, "Jane Doe");
+        node.put(PatientCodec.FIELD_EMAIL, "jane@example.com");
+        node.put(PatientCodec.FIELD_AGE, "42");
+        node.put(PatientCodec.FIELD_ID, "P-1");
+        node.put(PatientCodec.FIELD_DISEASE, "Asthma");
+        node.put(PatientCodec.FIELD_CREATION_ID, "c-7f3a");
+
+        assertSamePatient(map(node), PatientCodec.decode(node));
+    }
+
+    @Test
+    public void decode_leavesMissingFieldsNullLikeTheMapper() {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, "John");
+
+        assertSamePatient(map(node), PatientCodec.decode(node));
+    }
+
+    @Test
+    public void decode_ignoresUnknownFieldsLikeTheMapper() {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, "John");
+        node.put("ward", "B2");
+        node.put("vitals", new HashMap<>(Collections.singletonMap("pulse", 72L)));
+
+        assertSamePatient(map(node), PatientCodec.decode(node));
+    }
+
+    @Test
+    public void decode_skipsWhatTheMapperRejects() {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, "John");
+        node.put(PatientCodec.FIELD_AGE, 42L);
+
+        try {
+            map(node);
+            fail("The mapper accepted a numeric age");
+        } catch (DatabaseException expected) {
+            // The list skips this record instead of failing
+        }
+        assertNull(PatientCodec.decode(node));
+    }
+
+    @Test
+    public void decode_randomNodesMatchTheMapper() {
+        Random random = new Random(42);
+        String[] keys = {PatientCodec.FIELD_NAME, PatientCodec.FIELD_EMAIL, PatientCodec.FIELD_AGE,
+                PatientCodec.FIELD_ID, PatientCodec.FIELD_DISEASE, PatientCodec.FIELD_CREATION_ID, "notes"};
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> node = new HashMap<>();
+            for (String key : keys) {
+                if (random.nextInt(4) != 0) {
+                    node.put(key, key + "-" + random.nextInt(1000));
+                }
+            }
+            assertSamePatient(map(node), PatientCodec.decode(node));
+        }
+    }
+
+    private static Patient map(Map<String, Object> node) {
+        DataSnapshot snapshot = InternalHelpers.createDataSnapshot(null,
+                IndexedNode.from(NodeUtilities.NodeFromJSON(node)));
+        return snapshot.getValue(Patient.class);
+    }
+
+    // Every public field, so a field added to Patient but not to the codec fails here
+    private static void assertSamePatient(Patient expected, Patient actual) {
+        assertNotNull(actual);
+        for (Field field : Patient.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            try {
+                assertEquals(field.getName(), field.get(expected), field.get(actual));
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
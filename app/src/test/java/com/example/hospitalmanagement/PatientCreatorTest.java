@@ -0,0 +1,271 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientCreator against a fake server with transactional claims and the
+ * creationId rule on queued writes, with clients whose local view of taken
+ * IDs can be stale or not loaded at all.
+ */
+public class PatientCreatorTest {
+
+    @Test
+    public void knownFreeId_isQueuedWithoutAClaim() {
+        FakeServer server = new FakeServer();
+        Client client = new Client(server, true);
+
+        Result result = client.create(patient("P-1", "Jane"));
+
+        assertEquals("created", result.outcome);
+        // Only queued: nothing has confirmed it yet
+        assertFalse(result.confirmed);
+        assertEquals(0, server.claims.get());
+        assertEquals("Jane", server.name("P-1"));
+    }
+
+    @Test
+    public void falsePositive_staleLocalIdIsClaimedOnTheServer() {
+        FakeServer server = new FakeServer();
+        Client client = new Client(server, true);
+        // Deleted remotely, but the local view has not caught up
+        client.known.add("P-1");
+
+        Result result = client.create(patient("P-1", "Jane"));
+
+        assertEquals("created", result.outcome);
+        // The claim committed the record on the server
+        assertTrue(result.confirmed);
+        assertEquals(1, server.claims.get());
+        assertEquals("Jane", server.name("P-1"));
+        // The write queue still sends the record so its index entries are written
+        assertEquals(1, client.queued.size());
+    }
+
+    @Test
+    public void takenId_reportsTheExistingRecordAndWritesNothing() {
+        FakeServer server = new FakeServer();
+        server.records.put("P-1", PatientCodec.encode(patient("P-1", "Jane")));
+        Client client = new Client(server, true);
+        client.known.add("P-1");
+
+        Result result = client.create(patient("P-1", "John"));
+
+        assertEquals("conflict", result.outcome);
+        assertEquals("Jane", result.existing.name);
+        assertEquals("Jane", server.name("P-1"));
+        assertTrue(client.queued.isEmpty());
+    }
+
+    @Test
+    public void unloadedView_neverTrustsAnIdAsFree() {
+        FakeServer server = new FakeServer();
+        server.records.put("P-1", PatientCodec.encode(patient("P-1", "Jane")));
+        Client client = new Client(server, false);
+
+        assertEquals("conflict", client.create(patient("P-1", "John")).outcome);
+        assertEquals("created", client.create(patient("P-2", "Mary")).outcome);
+        assertEquals(2, server.claims.get());
+    }
+
+    @Test
+    public void repeatingAnIdJustCreatedHere_goesToTheServer() {
+        FakeServer server = new FakeServer();
+        Client client = new Client(server, true);
+
+        assertEquals("created", client.create(patient("P-1", "Jane")).outcome);
+        // The live view has not delivered P-1 back yet
+        assertEquals("conflict", client.create(patient("P-1", "John")).outcome);
+        assertEquals("Jane", server.name("P-1"));
+    }
+
+    @Test
+    public void secondClient_seesTheFirstClientsPatientAndConflicts() {
+        FakeServer server = new FakeServer();
+        Client first = new Client(server, true);
+        Client second = new Client(server, true);
+
+        assertEquals("created", first.create(patient("P-1", "Jane")).outcome);
+        second.known.add("P-1");
+        Result result = second.create(patient("P-1", "John"));
+
+        assertEquals("conflict", result.outcome);
+        assertEquals("Jane", result.existing.name);
+        assertEquals("Jane", server.name("P-1"));
+    }
+
+    @Test
+    public void concurrentInsertsFromTwoClients_exactlyOneWins() throws Exception {
+        FakeServer server = new FakeServer();
+        int rounds = 500;
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<Result> firstResults = new ArrayList<>();
+        List<Result> secondResults = new ArrayList<>();
+        Thread firstThread = new Thread(() -> insertAll(new Client(server, false), "first", rounds, barrier, firstResults));
+        Thread secondThread = new Thread(() -> insertAll(new Client(server, false), "second", rounds, barrier, secondResults));
+        firstThread.start();
+        secondThread.start();
+        firstThread.join();
+        secondThread.join();
+
+        assertEquals(rounds, firstResults.size());
+        assertEquals(rounds, secondResults.size());
+        for (int i = 0; i < rounds; i++) {
+            Result first = firstResults.get(i);
+            Result second = secondResults.get(i);
+            assertNotEquals("Both clients created P-" + i, first.outcome, second.outcome);
+            Result winner = first.outcome.equals("created") ? first : second;
+            Result loser = winner == first ? second : first;
+            assertEquals("conflict", loser.outcome);
+            // The loser is shown the winner's record, which is what the server kept
+            assertEquals(winner.patient.name, loser.existing.name);
+            assertEquals(winner.patient.name, server.name("P-" + i));
+        }
+    }
+
+    @Test
+    public void concurrentInsertsFromTwoLiveClients_keepTheFirstWriteAndReportTheOther() throws Exception {
+        FakeServer server = new FakeServer();
+        int rounds = 500;
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Client firstClient = new Client(server, true);
+        Client secondClient = new Client(server, true);
+        List<Result> firstResults = new ArrayList<>();
+        List<Result> secondResults = new ArrayList<>();
+        Thread firstThread = new Thread(() -> insertAll(firstClient, "first", rounds, barrier, firstResults));
+        Thread secondThread = new Thread(() -> insertAll(secondClient, "second", rounds, barrier, secondResults));
+        firstThread.start();
+        secondThread.start();
+        firstThread.join();
+        secondThread.join();
+
+        for (int i = 0; i < rounds; i++) {
+            String id = "P-" + i;
+            // Both saw the ID as free and queued their patient
+            assertEquals("created", firstResults.get(i).outcome);
+            assertEquals("created", secondResults.get(i).outcome);
+            String kept = server.name(id);
+            assertNotNull(kept);
+            // Exactly one queued write was refused, and it was told whose record holds the ID
+            Client loser = kept.equals("first") ? secondClient : firstClient;
+            Client winner = loser == firstClient ? secondClient : firstClient;
+            assertEquals(kept, loser.conflicts.get(id));
+            assertFalse(winner.conflicts.containsKey(id));
+        }
+        assertEquals(rounds, firstClient.conflicts.size() + secondClient.conflicts.size());
+        assertEquals(0, server.claims.get());
+    }
+
+    private static void insertAll(Client client, String name, int rounds, CyclicBarrier barrier, List<Result> results) {
+        try {
+            for (int i = 0; i < rounds; i++) {
+                barrier.await();
+                results.add(client.create(patient("P-" + i, name)));
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Patient patient(String id, String name) {
+        return new Patient(name, name.toLowerCase() + "@example.com", "42", id, "Flu");
+    }
+
+    private static class Result {
+        String outcome;
+        boolean confirmed;
+        Patient patient;
+        PatientRecord existing;
+    }
+
+    // The patients node; a claim is a compare-and-set under the server's lock
+    private static class FakeServer {
+        final Map<String, Object> records = new HashMap<>();
+        final AtomicInteger claims = new AtomicInteger();
+
+        // Returns the stored record if the rules refuse to replace it with patient
+        synchronized Object write(Patient patient) {
+            Object existing = records.get(patient.id);
+            if (existing != null && !Objects.equals(patient.creationId,
+                    ((Map<?, ?>) existing).get(PatientCodec.FIELD_CREATION_ID))) {
+                return existing;
+            }
+            records.put(patient.id, PatientCodec.encode(patient));
+            return null;
+        }
+
+        synchronized Object claim(Patient patient) {
+            claims.incrementAndGet();
+            Object existing = records.get(patient.id);
+            if (existing == null) {
+                records.put(patient.id, PatientCodec.encode(patient));
+            }
+            return existing;
+        }
+
+        synchronized String name(String id) {
+            Object record = records.get(id);
+            return record == null ? null : (String) ((Map<?, ?>) record).get(PatientCodec.FIELD_NAME);
+        }
+    }
+
+    // One app instance: its live view of taken IDs, its write queue and its creator.
+    // A refused queued write is recorded as a conflict, as PatientWriteQueue reports it.
+    private static class Client {
+        final Set<String> known = new HashSet<>();
+        final List<Patient> queued = new ArrayList<>();
+        final Map<String, String> conflicts = new HashMap<>();
+        final PatientCreator creator;
+
+        Client(FakeServer server, boolean live) {
+            creator = new PatientCreator(
+                    id -> live && !known.contains(id),
+                    (patient, callback) -> {
+                        Object existing = server.claim(patient);
+                        callback.onComplete(existing == null, existing, null);
+                    },
+                    patient -> {
+                        queued.add(patient);
+                        Object existing = server.write(patient);
+                        if (existing != null) {
+                            conflicts.put(patient.id, PatientCodec.decodeRecord(patient.id, existing).name);
+                        }
+                    });
+        }
+
+        Result create(Patient patient) {
+            Result result = new Result();
+            result.patient = patient;
+            creator.create(patient, new PatientCreator.Callback() {
+                @Override
+                public void onCreated(Patient patient, boolean confirmed) {
+                    result.outcome = "created";
+                    result.confirmed = confirmed;
+                }
+
+                @Override
+                public void onConflict(Patient patient, PatientRecord existing) {
+                    result.outcome = "conflict";
+                    result.existing = existing;
+                }
+
+                @Override
+                public void onFailed(Patient patient, Exception error) {
+                    result.outcome = "failed";
+                }
+            });
+            return result;
+        }
+    }
+}
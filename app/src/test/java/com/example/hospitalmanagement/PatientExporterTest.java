@@ -0,0 +1,291 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientExporter against synthetic pages in place of the patients node.
+ */
+public class PatientExporterTest {
+
+    // Far more records than fit in HEAP_CAP if the exporter held them all
+    private static final int LARGE_COUNT = 1_000_000;
+    private static final String HEAP_CAP = "-Xmx32m";
+    // The child JVM's last line of output when its export completed
+    private static final String EXPORTED_MARKER = "exported=";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void encode_quotesCsvFieldsThatNeedIt() {
+        StringBuilder out = new StringBuilder();
+        assertTrue(PatientExporter.encode("P-1", node("Doe, \"JJ\"", "jj@example.com", "42", "Flu"),
+                PatientExporter.Format.CSV, out));
+        assertTrue(PatientExporter.encode("P-2", node("Mary", null, null, null), PatientExporter.Format.CSV, out));
+
+        assertEquals("P-1,\"Doe, \"\"JJ\"\"\",jj@example.com,42,Flu\nP-2,Mary,,,\n", out.toString());
+    }
+
+    @Test
+    public void encode_escapesNdjson() {
+        StringBuilder out = new StringBuilder();
+        assertTrue(PatientExporter.encode("P-1", node("Line\none \"\\\"", "a\u0001b", 42L, "Flu"),
+                PatientExporter.Format.NDJSON, out));
+        assertTrue(PatientExporter.encode("P-2", node("Mary", null, null, null), PatientExporter.Format.NDJSON, out));
+
+        assertEquals("{\"id\":\"P-1\",\"name\":\"Line\\none \\\"\\\\\\\"\",\"email\":\"a\\u0001b\",\"age\":42,\"disease\":\"Flu\"}\n"
+                        + "{\"id\":\"P-2\",\"name\":\"Mary\",\"email\":null,\"age\":null,\"disease\":null}\n",
+                out.toString());
+    }
+
+    @Test
+    public void encode_keepsNonIntegerAndMalformedAgesAsStored() {
+        StringBuilder csv = new StringBuilder();
+        StringBuilder ndjson = new StringBuilder();
+        for (PatientExporter.Format format : PatientExporter.Format.values()) {
+            StringBuilder out = format == PatientExporter.Format.CSV ? csv : ndjson;
+            assertTrue(PatientExporter.encode("P-1", node("Jane", "j@example.com", "6 months", "Flu"), format, out));
+            assertTrue(PatientExporter.encode("P-2", node("Tom", "t@example.com", 42.5, "Flu"), format, out));
+            // Fields of the wrong type count as malformed but are still written
+            assertFalse(PatientExporter.encode("P-3", node("Ann", "a@example.com", true, "Flu"), format, out));
+            assertFalse(PatientExporter.encode("P-4", node("Bob", 7L, Arrays.asList(4L, "years"), "Flu"), format, out));
+            assertFalse(PatientExporter.encode("P-5", "not a patient", format, out));
+        }
+
+        assertEquals("P-1,Jane,j@example.com,6 months,Flu\n"
+                + "P-2,Tom,t@example.com,42.5,Flu\n"
+                + "P-3,Ann,a@example.com,true,Flu\n"
+                + "P-4,Bob,7,\"[4,\"\"years\"\"]\",Flu\n"
+                + "P-5,,,,\n", csv.toString());
+        assertEquals("{\"id\":\"P-1\",\"name\":\"Jane\",\"email\":\"j@example.com\",\"age\":\"6 months\",\"disease\":\"Flu\"}\n"
+                + "{\"id\":\"P-2\",\"name\":\"Tom\",\"email\":\"t@example.com\",\"age\":42.5,\"disease\":\"Flu\"}\n"
+                + "{\"id\":\"P-3\",\"name\":\"Ann\",\"email\":\"a@example.com\",\"age\":true,\"disease\":\"Flu\"}\n"
+                + "{\"id\":\"P-4\",\"name\":\"Bob\",\"email\":7,\"age\":[4,\"years\"],\"disease\":\"Flu\"}\n"
+                + "{\"id\":\"P-5\",\"name\":null,\"email\":null,\"age\":null,\"disease\":null}\n", ndjson.toString());
+    }
+
+    @Test
+    public void export_keepsAndCountsMalformedRecords() throws Exception {
+        File file = folder.newFile("patients.csv");
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("P-1", node("Jane", "j@example.com", "42 years", "Flu"));
+        page.put("P-2", node("Bob", "b@example.com", Collections.singletonMap("years", 4L), "Flu"));
+        page.put("P-3", node("Tom", 7L, "30", "Flu"));
+        page.put("P-4", node("Ann", "a@example.com", 30L, "Flu"));
+        PatientExporter.PageLoader loader = (afterKey, limit, callback) ->
+                callback.onPage(afterKey == null ? page : Collections.emptyMap());
+
+        Result result = export(loader, FileChannel.open(file.toPath(), StandardOpenOption.WRITE), 100,
+                PatientExporter.Format.CSV, null);
+
+        assertNull(result.error);
+        assertEquals(4, result.exported);
+        assertEquals(2, result.malformed);
+        assertEquals(Collections.singletonList(2), result.progressMalformed);
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(PatientExporter.CSV_HEADER,
+                "P-1,Jane,j@example.com,42 years,Flu",
+                "P-2,Bob,b@example.com,\"{\"\"years\"\":4}\",Flu",
+                "P-3,Tom,7,30,Flu",
+                "P-4,Ann,a@example.com,30,Flu"), lines);
+    }
+
+    @Test
+    public void export_writesEveryPageToTheFile() throws Exception {
+        File file = folder.newFile("patients.csv");
+        SyntheticLoader loader = new SyntheticLoader(1234);
+        Result result = export(loader, FileChannel.open(file.toPath(), StandardOpenOption.WRITE), 100,
+                PatientExporter.Format.CSV, null);
+
+        assertNull(result.error);
+        assertFalse(result.cancelled);
+        assertEquals(1234, result.exported);
+        assertEquals(0, result.malformed);
+        // 13 full or partial pages and the empty page that ends the export
+        assertEquals(14, loader.requests);
+        assertEquals(13, result.progress.size());
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1 + 1234, lines.size());
+        assertEquals(PatientExporter.CSV_HEADER, lines.get(0));
+        assertEquals("P-0000000,Patient 0,p0@example.com,20,Flu", lines.get(1));
+        assertEquals("P-0001233,Patient 1233,p1233@example.com,53,Flu", lines.get(1234));
+    }
+
+    @Test
+    public void export_cancelStopsAfterCurrentPage() throws Exception {
+        CountingChannel channel = new CountingChannel();
+        PatientExporter[] exporter = new PatientExporter[1];
+        SyntheticLoader loader = new SyntheticLoader(10_000);
+        Result result = export(loader, channel, 100, PatientExporter.Format.NDJSON, exporter);
+
+        assertTrue(result.cancelled);
+        assertTrue(result.exported < 10_000);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void export_reportsLoadFailures() throws Exception {
+        CountingChannel channel = new CountingChannel();
+        PatientExporter.PageLoader failing = (afterKey, limit, callback) -> {
+            if (afterKey == null) {
+                new SyntheticLoader(1000).load(null, limit, callback);
+            } else {
+                callback.onError(new IOException("Permission denied"));
+            }
+        };
+        Result result = export(failing, channel, 100, PatientExporter.Format.CSV, null);
+
+        assertEquals("Permission denied", result.error.getMessage());
+        assertEquals(100, result.exported);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void export_largeDatasetFitsUnderFixedHeapCap() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, HEAP_CAP, "-cp", System.getProperty("java.class.path"),
+                PatientExporterTest.class.getName(), Integer.toString(LARGE_COUNT))
+                .redirectErrorStream(true)
+                .start();
+        // Kept for the failure messages only
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue("Export did not finish", process.waitFor(2, TimeUnit.MINUTES));
+        assertEquals(output, 0, process.exitValue());
+        assertEquals(output, EXPORTED_MARKER + LARGE_COUNT, output.trim());
+    }
+
+    // Entry point for the capped child JVM: exports count records and discards the bytes
+    public static void main(String[] args) throws Exception {
+        int count = Integer.parseInt(args[0]);
+        CountingChannel channel = new CountingChannel();
+        Result result = export(new SyntheticLoader(count), channel, PatientExporter.PAGE_SIZE,
+                PatientExporter.Format.NDJSON, null);
+        if (result.error != null) {
+            throw result.error;
+        }
+        // Read by the parent test, never echoed
+        System.out.println(EXPORTED_MARKER + result.exported);
+        System.exit(result.exported == count && channel.bytes > 0 ? 0 : 1);
+    }
+
+    private static Result export(PatientExporter.PageLoader loader, WritableByteChannel channel, int pageSize,
+                                 PatientExporter.Format format, PatientExporter[] cancelAfterFirstPage)
+            throws InterruptedException {
+        Result result = new Result();
+        CountDownLatch finished = new CountDownLatch(1);
+        PatientExporter exporter = new PatientExporter(loader, Runnable::run, pageSize);
+        if (cancelAfterFirstPage != null) {
+            cancelAfterFirstPage[0] = exporter;
+        }
+        exporter.start(channel, format, new PatientExporter.Listener() {
+            @Override
+            public void onProgress(int exported, int malformed) {
+                result.progress.add(exported);
+                result.progressMalformed.add(malformed);
+                if (cancelAfterFirstPage != null) {
+                    cancelAfterFirstPage[0].cancel();
+                }
+            }
+
+            @Override
+            public void onFinished(int exported, int malformed, boolean cancelled, Exception error) {
+                result.exported = exported;
+                result.malformed = malformed;
+                result.cancelled = cancelled;
+                result.error = error;
+                finished.countDown();
+            }
+        });
+        assertTrue(finished.await(2, TimeUnit.MINUTES));
+        return result;
+    }
+
+    private static class Result {
+        final List<Integer> progress = new ArrayList<>();
+        final List<Integer> progressMalformed = new ArrayList<>();
+        int exported;
+        int malformed;
+        boolean cancelled;
+        Exception error;
+    }
+
+    // Generates count patients with zero-padded keys, one page per request
+    private static class SyntheticLoader implements PatientExporter.PageLoader {
+        private static final String[] DISEASES = {"Flu", "Asthma", "Malaria"};
+        private final int count;
+        int requests = 0;
+
+        SyntheticLoader(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void load(String afterKey, int limit, PatientExporter.PageCallback callback) {
+            requests++;
+            int start = afterKey == null ? 0 : Integer.parseInt(afterKey.substring(2)) + 1;
+            int end = Math.min(count, start + limit);
+            Map<String, Object> page = new LinkedHashMap<>();
+            for (int i = start; i < end; i++) {
+                page.put(String.format("P-%07d", i), node("Patient " + i, "p" + i + "@example.com",
+                        (long) (20 + i % 50), DISEASES[i % DISEASES.length]));
+            }
+            callback.onPage(page);
+        }
+    }
+
+    // A patients child as DataSnapshot.getValue() returns it
+    private static Map<String, Object> node(String name, Object email, Object age, String disease) {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, name);
+        node.put(PatientCodec.FIELD_EMAIL, email);
+        node.put(PatientCodec.FIELD_AGE, age);
+        node.put(PatientCodec.FIELD_DISEASE, disease);
+        return node;
+    }
+
+    private static class CountingChannel implements WritableByteChannel {
+        long bytes = 0;
+        private boolean open = true;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
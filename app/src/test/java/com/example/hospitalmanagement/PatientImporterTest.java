@@ -0,0 +1,404 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientImporter against a fake batch writer in place of the patients reference.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PatientImporterTest {
+
+    @Test
+    public void csv_writesValidRowsInBoundedBatches() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 2,
+                "ID,Name,Email,Age,Disease\r\n"
+                        + "P-1,Jane,jane@example.com,42,Asthma\r\n"
+                        + "P-2,\"Doe, John\",john@example.com, 7 ,\"Flu \"\"A\"\"\"\r\n"
+                        + "\r\n"
+                        + "P-3,Mary,mary@example.com,30,Malaria\n");
+
+        assertEquals(3, report.rowsRead);
+        assertEquals(3, report.imported);
+        assertTrue(report.isComplete());
+        assertEquals(2, writer.batches.size());
+        assertEquals(2, writer.batches.get(0).size());
+        assertEquals(1, writer.batches.get(1).size());
+
+        Map<?, ?> john = (Map<?, ?>) writer.batches.get(0).get("P-2");
+        assertEquals("Doe, John", john.get(PatientCodec.FIELD_NAME));
+        assertEquals("7", john.get(PatientCodec.FIELD_AGE));
+        assertEquals("Flu \"A\"", john.get(PatientCodec.FIELD_DISEASE));
+        assertEquals("P-2", john.get(PatientCodec.FIELD_ID));
+    }
+
+    @Test
+    public void csv_reportsRejectedRowsByLine() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 10,
+                "name,email,age,id,disease\n"
+                        + "Jane,jane@example.com,42,P-1,Asthma\n"
+                        + "John,john@example.com,forty,P-2,Flu\n"
+                        + "Mary,mary@example.com,30,P.3,Malaria\n"
+                        + ",nobody@example.com,30,P-4,Flu\n"
+                        + "Jane,jane@example.com,42,P-1,Asthma\n");
+
+        assertEquals(5, report.rowsRead);
+        assertEquals(2, report.imported);
+        assertEquals(3, report.rejectedCount);
+        assertFalse(report.isComplete());
+        assertEquals(4, report.rejected.get(0).row);
+        assertTrue(report.rejected.get(0).reason.startsWith("ID"));
+        assertEquals(5, report.rejected.get(1).row);
+        assertEquals("Missing name", report.rejected.get(1).reason);
+        assertEquals(6, report.rejected.get(2).row);
+        assertTrue(report.rejected.get(2).reason.startsWith("Duplicate ID"));
+        // Free-text ages are kept, as the add form keeps them
+        Map<?, ?> john = (Map<?, ?>) writer.batches.get(0).get("P-2");
+        assertEquals("forty", john.get(PatientCodec.FIELD_AGE));
+    }
+
+    @Test
+    public void csv_missingColumnStopsTheImport() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 10, "name,email,age,id\nJane,jane@example.com,42,P-1\n");
+
+        assertEquals("Missing column: disease", report.readError);
+        assertEquals(0, report.imported);
+        assertTrue(writer.batches.isEmpty());
+    }
+
+    @Test
+    public void csv_unterminatedQuoteKeepsEarlierBatches() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 1,
+                "name,email,age,id,disease\n"
+                        + "Jane,jane@example.com,42,P-1,Asthma\n"
+                        + "\"John,john@example.com,30,P-2,Flu\n");
+
+        assertEquals(1, report.imported);
+        assertNotNull(report.readError);
+    }
+
+    @Test
+    public void json_readsFirebaseExportKeyedById() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 10,
+                "{\"P-1\": {\"name\": \"Jane\", \"email\": \"jane@example.com\", \"age\": 42, \"disease\": \"Asthma\"},"
+                        + " \"P-2\": {\"name\": \"John\", \"email\": \"john@example.com\", \"age\": \"30\","
+                        + " \"disease\": \"Flu\", \"notes\": [1, 2]}}");
+
+        assertTrue(report.isComplete());
+        assertEquals(2, report.imported);
+        Map<?, ?> jane = (Map<?, ?>) writer.batches.get(0).get("P-1");
+        assertEquals("42", jane.get(PatientCodec.FIELD_AGE));
+        assertEquals("P-1", jane.get(PatientCodec.FIELD_ID));
+    }
+
+    @Test
+    public void json_readsArrayOfPatients() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        PatientImporter.Report report = runImport(writer, 10,
+                "  [{\"id\": \"P-1\", \"name\": \"Jane\", \"email\": \"jane@example.com\", \"age\": \"42\", \"disease\": \"Asthma\"},"
+                        + " {\"id\": \"P-2\", \"name\": \"John\", \"email\": \"john@example.com\", \"age\": 30.5, \"disease\": \"Flu\"}]");
+
+        assertTrue(report.isComplete());
+        assertEquals(2, report.imported);
+        Map<?, ?> john = (Map<?, ?>) writer.batches.get(0).get("P-2");
+        assertEquals("30.5", john.get(PatientCodec.FIELD_AGE));
+        assertEquals("30.5", PatientCodec.decodeRecord("P-2", john).rawAge);
+    }
+
+    @Test
+    public void failedBatchesAreRetriedThenReported() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        // Batch 0 fails once, batch 1 never succeeds
+        writer.failures.put("P-1", 1);
+        writer.failures.put("P-3", Integer.MAX_VALUE);
+
+        PatientImporter.Report report = runImport(writer, 2, csv(5));
+
+        assertEquals(3, report.imported);
+        assertEquals(1 + (PatientImporter.MAX_ATTEMPTS - 1), report.retries);
+        assertEquals(1, report.failedBatches.size());
+        PatientImporter.FailedBatch failed = report.failedBatches.get(0);
+        assertEquals(1, failed.index);
+        assertEquals("P-3", failed.firstId);
+        assertEquals("P-4", failed.lastId);
+        assertEquals(2, failed.size);
+        assertEquals(PatientImporter.MAX_ATTEMPTS, failed.attempts);
+        assertFalse(report.isComplete());
+    }
+
+    @Test
+    public void parsingWaitsForInFlightBatches() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService server = Executors.newSingleThreadExecutor();
+        // Completes each write later on another thread, like the Firebase client does
+        PatientImporter.BatchWriter slowWriter = new FakeWriter() {
+            @Override
+            public void write(Map<String, Object> updates, PatientImporter.BatchCallback callback) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                server.execute(() -> {
+                    sleep(5);
+                    inFlight.decrementAndGet();
+                    callback.onComplete(null);
+                });
+            }
+        };
+
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        PatientImporter.Report report = runImport(slowWriter, 10, csv(200), progress);
+        server.shutdown();
+
+        assertEquals(200, report.imported);
+        assertTrue(maxInFlight.get() <= PatientImporter.MAX_IN_FLIGHT);
+        assertEquals(20, progress.size());
+        assertEquals(Integer.valueOf(200), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void storedIds_areSkippedAndReportedNotOverwritten() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        writer.store("P-2", "Old patient");
+        writer.store("P-5", "Old patient");
+
+        PatientImporter.Report report = runImport(writer, 4, csv(6));
+
+        assertEquals(4, report.imported);
+        assertEquals(2, report.existing);
+        assertEquals(2, report.rejectedCount);
+        assertEquals(3, report.rejected.get(0).row);
+        assertEquals("ID P-2 already exists", report.rejected.get(0).reason);
+        assertEquals(6, report.rejected.get(1).row);
+        assertTrue(report.failedBatches.isEmpty());
+        assertEquals(0, report.retries);
+        assertFalse(report.isComplete());
+        assertEquals("Old patient", writer.stored.get("P-2").get(PatientCodec.FIELD_NAME));
+        assertEquals("Old patient", writer.stored.get("P-5").get(PatientCodec.FIELD_NAME));
+        assertEquals("Patient 6", writer.stored.get("P-6").get(PatientCodec.FIELD_NAME));
+        assertEquals(6, writer.stored.size());
+    }
+
+    @Test
+    public void retriedBatchThatHadCommitted_isNotReportedAsStored() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        // The first write of the batch lands but its reply is lost
+        writer.lostReplies.put("P-1", 1);
+
+        PatientImporter.Report report = runImport(writer, 10, csv(3));
+
+        assertEquals(3, report.imported);
+        assertEquals(0, report.existing);
+        assertEquals(1, report.retries);
+        assertTrue(report.isComplete());
+    }
+
+    @Test
+    public void refusalWithoutAStoredId_isReportedAsFailed() throws Exception {
+        FakeWriter writer = new FakeWriter();
+        writer.refuseAll = true;
+
+        PatientImporter.Report report = runImport(writer, 2, csv(3));
+
+        assertEquals(0, report.imported);
+        assertEquals(0, report.existing);
+        assertEquals(0, report.rejectedCount);
+        assertEquals(3, report.failedBatches.size());
+        assertEquals(1, report.failedBatches.get(0).size);
+        assertTrue(writer.stored.isEmpty());
+    }
+
+    @Test
+    public void silentServer_timesOutAndReportsTheBatchesAsFailed() throws Exception {
+        SilentWriter writer = new SilentWriter();
+
+        Recorder recorder = new Recorder();
+        new PatientImporter(writer, Runnable::run, 2, 0, 20).start(stream(csv(3)), recorder);
+        PatientImporter.Report report = recorder.await();
+
+        assertEquals(0, report.imported);
+        assertFalse(report.cancelled);
+        assertEquals(2, report.failedBatches.size());
+        assertEquals(2 * (PatientImporter.MAX_ATTEMPTS - 1), report.retries);
+        for (PatientImporter.FailedBatch failed : report.failedBatches) {
+            assertEquals(PatientImporter.MAX_ATTEMPTS, failed.attempts);
+            assertTrue(failed.error, failed.error.startsWith("No reply from the server"));
+        }
+    }
+
+    @Test
+    public void cancel_finishesAnImportWaitingOnASilentServer_andLaterImportsStillRun() throws Exception {
+        SilentWriter writer = new SilentWriter();
+        Recorder stuck = new Recorder();
+        PatientImporter importer = new PatientImporter(writer, Runnable::run, 2, 0, TimeUnit.HOURS.toMillis(1));
+        importer.start(stream(csv(10)), stuck);
+        assertTrue(writer.sent.await(10, TimeUnit.SECONDS));
+
+        // Not queued behind the import waiting on the server
+        PatientImporter.Report next = runImport(new FakeWriter(), 10, csv(3));
+        assertTrue(next.isComplete());
+
+        importer.cancel();
+        PatientImporter.Report report = stuck.await();
+        assertTrue(report.cancelled);
+        assertEquals(0, report.imported);
+        assertEquals(PatientImporter.MAX_IN_FLIGHT, report.failedBatches.size());
+        assertEquals(PatientImporter.MAX_IN_FLIGHT, writer.writes.get());
+    }
+
+    private static String csv(int rows) {
+        StringBuilder csv = new StringBuilder("name,email,age,id,disease\n");
+        for (int i = 1; i <= rows; i++) {
+            csv.append("Patient ").append(i).append(",p").append(i).append("@example.com,")
+                    .append(20 + i % 50).append(",P-").append(i).append(",Flu\n");
+        }
+        return csv.toString();
+    }
+
+    private static PatientImporter.Report runImport(PatientImporter.BatchWriter writer, int batchSize,
+                                                   String content) throws InterruptedException {
+        return runImport(writer, batchSize, content, new ArrayList<>());
+    }
+
+    private static PatientImporter.Report runImport(PatientImporter.BatchWriter writer, int batchSize,
+                                                   String content, List<Integer> progress) throws InterruptedException {
+        Recorder recorder = new Recorder(progress);
+        PatientImporter importer = new PatientImporter(writer, Runnable::run, batchSize, 0, TimeUnit.SECONDS.toMillis(10));
+        importer.start(stream(content), recorder);
+        return recorder.await();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Recorder implements PatientImporter.Listener {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<Integer> progress;
+        volatile PatientImporter.Report report;
+
+        Recorder() {
+            this(new ArrayList<>());
+        }
+
+        Recorder(List<Integer> progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void onProgress(int imported, int rejected) {
+            progress.add(imported);
+        }
+
+        @Override
+        public void onFinished(PatientImporter.Report report) {
+            this.report = report;
+            finished.countDown();
+        }
+
+        PatientImporter.Report await() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            return report;
+        }
+    }
+
+    // Never calls back, like the Firebase client with no connection
+    private static class SilentWriter implements PatientImporter.BatchWriter {
+        final AtomicInteger writes = new AtomicInteger();
+        final CountDownLatch sent = new CountDownLatch(PatientImporter.MAX_IN_FLIGHT);
+
+        @Override
+        public void write(Map<String, Object> updates, PatientImporter.BatchCallback callback) {
+            writes.incrementAndGet();
+            sent.countDown();
+        }
+
+        @Override
+        public void exists(String id, PatientImporter.ExistsCallback callback) {
+        }
+    }
+
+    // Records each committed batch and refuses, like the rules, any batch that
+    // would replace a stored record written by another create. failures and
+    // lostReplies map a batch's first ID to how many writes fail, before or
+    // after committing.
+    private static class FakeWriter implements PatientImporter.BatchWriter {
+        final List<Map<String, Object>> batches = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, Map<?, ?>> stored = new ConcurrentHashMap<>();
+        final Map<String, Integer> failures = new ConcurrentHashMap<>();
+        final Map<String, Integer> lostReplies = new ConcurrentHashMap<>();
+        volatile boolean refuseAll = false;
+
+        void store(String id, String name) {
+            Patient patient = new Patient(name, "old@example.com", "50", id, "Flu");
+            patient.creationId = "earlier-create";
+            stored.put(id, PatientCodec.encode(patient));
+        }
+
+        @Override
+        public synchronized void write(Map<String, Object> updates, PatientImporter.BatchCallback callback) {
+            String firstId = updates.keySet().iterator().next();
+            if (countDown(failures, firstId)) {
+                callback.onComplete(new Exception("Write canceled"));
+                return;
+            }
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                Map<?, ?> existing = stored.get(update.getKey());
+                Object creationId = ((Map<?, ?>) update.getValue()).get(PatientCodec.FIELD_CREATION_ID);
+                if (refuseAll || (existing != null && !existing.get(PatientCodec.FIELD_CREATION_ID).equals(creationId))) {
+                    callback.onComplete(new PatientWriteQueue.RejectedException("Permission denied"));
+                    return;
+                }
+            }
+            batches.add(new LinkedHashMap<>(updates));
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                stored.put(update.getKey(), (Map<?, ?>) update.getValue());
+            }
+            callback.onComplete(countDown(lostReplies, firstId) ? new Exception("Disconnected") : null);
+        }
+
+        @Override
+        public void exists(String id, PatientImporter.ExistsCallback callback) {
+            callback.onResult(stored.containsKey(id), null);
+        }
+
+        private static boolean countDown(Map<String, Integer> counts, String id) {
+            Integer remaining = counts.get(id);
+            if (remaining == null || remaining == 0) {
+                return false;
+            }
+            counts.put(id, remaining - 1);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.hospitalmanagement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientOutbox against an in-memory SQLite database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PatientOutboxTest {
+
+    private PatientOutbox outbox;
+
+    @Before
+    public void setUp() {
+        outbox = new PatientOutbox(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @After
+    public void tearDown() {
+        outbox.close();
+    }
+
+    @Test
+    public void put_replacesEarlierSaveOfTheSameId() {
+        outbox.put(entry(1, "P-1", "Asthma"));
+        outbox.put(entry(2, "P-2", "Flu"));
+        outbox.put(entry(3, "P-1", null));
+
+        List<PatientWriteQueue.Entry> entries = outbox.load();
+        assertEquals(2, entries.size());
+        assertEquals("P-2", entries.get(0).patient.id);
+        assertEquals(3, entries.get(1).seq);
+        assertNull(entries.get(1).patient.disease);
+        assertEquals("p-1@example.com", entries.get(1).patient.email);
+    }
+
+    @Test
+    public void remove_keepsSavesNewerThanTheConfirmedOne() {
+        PatientWriteQueue.Entry sent = entry(1, "P-1", "Asthma");
+        outbox.put(sent);
+        outbox.put(entry(2, "P-2", "Flu"));
+        outbox.put(entry(3, "P-1", "Bronchitis"));
+
+        outbox.remove(Arrays.asList(sent, entry(2, "P-2", "Flu")));
+
+        List<PatientWriteQueue.Entry> entries = outbox.load();
+        assertEquals(1, entries.size());
+        assertEquals("Bronchitis", entries.get(0).patient.disease);
+    }
+
+    @Test
+    public void load_keepsTheCreationIdOfACreate() {
+        PatientWriteQueue.Entry create = entry(1, "P-1", "Asthma");
+        create.patient.creationId = "create-1";
+        outbox.put(create);
+        outbox.put(entry(2, "P-2", "Flu"));
+
+        List<PatientWriteQueue.Entry> entries = outbox.load();
+        assertEquals("create-1", entries.get(0).patient.creationId);
+        assertNull(entries.get(1).patient.creationId);
+    }
+
+    private static PatientWriteQueue.Entry entry(long seq, String id, String disease) {
+        return new PatientWriteQueue.Entry(seq, new Patient("Patient " + id, id.toLowerCase() + "@example.com",
+                "42", id, disease));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.hospitalmanagement;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pages a window past its cap in both directions and replays every adapter
+ * notification on a mirror of the list, the way RecyclerView would, so a
+ * position outside the list as it stood at that moment fails the test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PatientPagedSourceTest {
+
+    private static final int PAGE_SIZE = 3;
+    private static final int MAX_PAGES = 2;
+
+    private PatientPageWindow window;
+    private PatientAdapter adapter;
+    private final List<String> mirror = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        window = new PatientPageWindow(PAGE_SIZE, MAX_PAGES);
+        adapter = new PatientAdapter(window);
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                assertTrue("inserted at " + positionStart + " of " + mirror.size(),
+                        positionStart >= 0 && positionStart <= mirror.size());
+                for (int i = 0; i < itemCount; i++) {
+                    mirror.add(positionStart + i, window.get(positionStart + i).id);
+                }
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                assertTrue("removed " + positionStart + ".." + (positionStart + itemCount - 1)
+                                + " of " + mirror.size(),
+                        positionStart >= 0 && positionStart + itemCount <= mirror.size());
+                mirror.subList(positionStart, positionStart + itemCount).clear();
+            }
+        });
+    }
+
+    @Test
+    public void scrollingDownPastTheCap_reportsTheEvictionAtTheTop() {
+        for (int page = 0; page < 4; page++) {
+            PatientPagedSource.appendPage(window, page(page), true, adapter);
+            assertMirrorsWindow();
+        }
+        assertEquals(ids(2, 3), mirror);
+        assertTrue(window.hasMoreBefore());
+    }
+
+    @Test
+    public void scrollingBackUpPastTheCap_reportsTheEvictionAtTheBottom() {
+        for (int page = 0; page < 4; page++) {
+            PatientPagedSource.appendPage(window, page(page), true, adapter);
+        }
+        PatientPagedSource.prependPage(window, page(1), true, adapter);
+        assertMirrorsWindow();
+        assertEquals(ids(1, 2), mirror);
+
+        PatientPagedSource.prependPage(window, page(0), false, adapter);
+        assertMirrorsWindow();
+        assertEquals(ids(0, 1), mirror);
+        assertFalse(window.hasMoreBefore());
+        assertTrue(window.hasMoreAfter());
+    }
+
+    @Test
+    public void prependingAShortPage_evictsAWholePageFromTheBottom() {
+        for (int page = 0; page < 3; page++) {
+            PatientPagedSource.appendPage(window, page(page), true, adapter);
+        }
+        List<PatientRecord> partial = page(0).subList(1, PAGE_SIZE);
+        PatientPagedSource.prependPage(window, new ArrayList<>(partial), false, adapter);
+
+        assertMirrorsWindow();
+        assertEquals(PAGE_SIZE - 1 + PAGE_SIZE, mirror.size());
+    }
+
+    @Test
+    public void liveRowsPastAnOpenEnd_evictPagesFromTheTop() {
+        PatientPagedSource.appendPage(window, page(0), true, adapter);
+        PatientPagedSource.appendPage(window, page(1), false, adapter);
+        assertFalse(window.hasMoreAfter());
+
+        int evictions = 0;
+        for (int n = 2 * PAGE_SIZE; n < 20 * PAGE_SIZE; n++) {
+            PatientRecord patient = new PatientRecord(key(n), "Patient " + n, null, 30, DiseaseDictionary.NONE);
+            if (PatientPagedSource.insert(window, patient, adapter)) {
+                evictions++;
+            }
+            assertMirrorsWindow();
+            assertTrue(window.size() < MAX_PAGES * 2 * PAGE_SIZE);
+        }
+        assertTrue(evictions > 0);
+        assertTrue(window.hasMoreBefore());
+        assertFalse(window.hasMoreAfter());
+        assertEquals(key(20 * PAGE_SIZE - 1), window.lastKey());
+    }
+
+    @Test
+    public void liveRowsInsideTheWindow_splitTheirPageAndKeepTheOrder() {
+        PatientPagedSource.appendPage(window, page(0), true, adapter);
+        PatientPagedSource.appendPage(window, page(10), true, adapter);
+        // Keys between the two pages go into the second one until it splits
+        for (int n = 1; n <= 2 * PAGE_SIZE; n++) {
+            String id = key(PAGE_SIZE) + "-" + n;
+            PatientPagedSource.insert(window, new PatientRecord(id, "New " + n, null, 30, DiseaseDictionary.NONE),
+                    adapter);
+            assertMirrorsWindow();
+        }
+        List<String> sorted = new ArrayList<>(mirror);
+        sorted.sort(PatientKeys.ORDER);
+        assertEquals(sorted, mirror);
+        assertTrue(window.size() < MAX_PAGES * 2 * PAGE_SIZE);
+    }
+
+    private void assertMirrorsWindow() {
+        List<String> shown = new ArrayList<>();
+        for (PatientRecord patient : window) {
+            shown.add(patient.id);
+        }
+        assertEquals(shown, mirror);
+        assertEquals(adapter.getItemCount(), mirror.size());
+    }
+
+    private static List<PatientRecord> page(int index) {
+        List<PatientRecord> page = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            String id = key(index * PAGE_SIZE + i);
+            page.add(new PatientRecord(id, "Patient " + id, null, 30, DiseaseDictionary.NONE));
+        }
+        return page;
+    }
+
+    private static List<String> ids(int fromPage, int toPage) {
+        List<String> ids = new ArrayList<>();
+        for (int i = fromPage * PAGE_SIZE; i < (toPage + 1) * PAGE_SIZE; i++) {
+            ids.add(key(i));
+        }
+        return ids;
+    }
+
+    private static String key(int n) {
+        return String.format(Locale.ROOT, "P-%04d", n);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.hospitalmanagement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.database.Cursor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientStore against an in-memory SQLite database, with no network,
+ * and a software key standing in for the session's Keystore key.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PatientStoreTest {
+
+    private PatientStore store;
+    // Set to null to play a revoked session
+    private SecretKey sessionKey;
+
+    @Before
+    public void setUp() throws Exception {
+        sessionKey = RecordSealer.newDataKey();
+        store = new PatientStore(RuntimeEnvironment.getApplication(), null, 100, () -> sessionKey);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void apply_upsertsAndDeletes() {
+        store.apply(Arrays.asList(
+                entry("P-1", "Jane", "Asthma"),
+                entry("P-2", "John", "Flu")));
+        store.apply(Arrays.asList(
+                entry("P-1", "Jane", "Bronchitis"),
+                new PatientDecoder.Entry("P-2", null)));
+
+        List<PatientRecord> patients = store.loadAll();
+        assertEquals(1, patients.size());
+        assertEquals("P-1", patients.get(0).id);
+        assertEquals("Bronchitis", patients.get(0).disease());
+    }
+
+    @Test
+    public void loadAll_roundTripsEveryField() {
+        PatientRecord patient = new PatientRecord("P-1", "Jane", "jane@example.com", 42,
+                DiseaseDictionary.intern("Asthma"));
+        store.apply(Arrays.asList(new PatientDecoder.Entry("P-1", patient)));
+
+        assertEquals(patient, store.loadAll().get(0));
+    }
+
+    @Test
+    public void apply_keepsStoreWithinMaxRows() {
+        for (int batch = 0; batch < 5; batch++) {
+            List<PatientDecoder.Entry> entries = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                entries.add(entry("P-" + batch + "-" + i, "Patient " + i, "Flu"));
+            }
+            store.apply(entries);
+        }
+
+        assertEquals(100, store.count());
+        Map<String, PatientRecord> byId = new HashMap<>();
+        for (PatientRecord patient : store.loadAll()) {
+            byId.put(patient.id, patient);
+        }
+        // The most recently synced batch always survives trimming
+        for (int i = 0; i < 40; i++) {
+            assertTrue(byId.containsKey("P-4-" + i));
+        }
+    }
+
+    @Test
+    public void mark_isSavedOnlyWhenPassed() {
+        assertEquals(0, store.loadMark());
+        store.apply(Arrays.asList(entry("P-1", "Jane", "Asthma")), 1_000);
+        store.apply(Arrays.asList(entry("P-2", "John", "Flu")));
+        assertEquals(1_000, store.loadMark());
+
+        store.apply(new ArrayList<>(), 2_000);
+        assertEquals(2_000, store.loadMark());
+    }
+
+    @Test
+    public void trimming_dropsTheMarkUntilCleared() {
+        store.apply(Arrays.asList(entry("P-1", "Jane", "Asthma")), 1_000);
+        List<PatientDecoder.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            entries.add(entry("P-" + i, "Patient " + i, "Flu"));
+        }
+        store.apply(entries, 2_000);
+        // A delta would never bring the trimmed rows back
+        assertEquals(0, store.loadMark());
+        store.apply(new ArrayList<>(), 3_000);
+        assertEquals(0, store.loadMark());
+
+        store.clear();
+        store.apply(Arrays.asList(entry("P-1", "Jane", "Asthma")), 4_000);
+        assertEquals(4_000, store.loadMark());
+    }
+
+    @Test
+    public void clear_removesEverything() {
+        store.apply(Arrays.asList(entry("P-1", "Jane", "Asthma")), 1_000);
+        store.clear();
+        assertEquals(0, store.count());
+        assertEquals(0, store.loadMark());
+    }
+
+    @Test
+    public void rows_holdNoPlaintext() {
+        store.apply(Arrays.asList(new PatientDecoder.Entry("P-1", new PatientRecord("P-1", "Jane Doe",
+                "jane@example.com", 42, DiseaseDictionary.intern("Tuberculosis")))));
+
+        try (Cursor cursor = store.getReadableDatabase().rawQuery("SELECT * FROM patients", null)) {
+            assertTrue(cursor.moveToFirst());
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                String text = cursor.getType(i) == Cursor.FIELD_TYPE_BLOB
+                        ? new String(cursor.getBlob(i), StandardCharsets.ISO_8859_1) : cursor.getString(i);
+                assertFalse(text.contains("Jane"));
+                assertFalse(text.contains("jane@example.com"));
+                assertFalse(text.contains("Tuberculosis"));
+            }
+        }
+        assertEquals("Jane Doe", store.loadAll().get(0).name);
+    }
+
+    @Test
+    public void revokedSessionKey_leavesRowsUnreadableAndWritesNothing() throws Exception {
+        store.apply(Arrays.asList(entry("P-1", "Jane", "Asthma")), 1_000);
+
+        sessionKey = null;
+        assertTrue(store.loadAll().isEmpty());
+        assertEquals(0, store.loadMark());
+        store.apply(Arrays.asList(entry("P-2", "John", "Flu")));
+        assertEquals(1, store.count());
+
+        // The next session can't open the old rows and starts over
+        sessionKey = RecordSealer.newDataKey();
+        assertTrue(store.loadAll().isEmpty());
+        store.apply(Arrays.asList(entry("P-3", "Mary", "Malaria")), 2_000);
+        assertEquals(1, store.count());
+        assertEquals("P-3", store.loadAll().get(0).id);
+        assertEquals(2_000, store.loadMark());
+    }
+
+    private static PatientDecoder.Entry entry(String id, String name, String disease) {
+        return new PatientDecoder.Entry(id, new PatientRecord(id, name, name + "@example.com", 30,
+                DiseaseDictionary.intern(disease)));
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.hospitalmanagement;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientSummaryMigration against an in-memory database that enforces
+ * the summary rule from database.rules.json: a summary must match its record,
+ * or be a tombstone for one that is gone, and carry the server's time.
+ */
+public class PatientSummaryMigrationTest {
+
+    @Test
+    public void legacyRecords_getSummariesPageByPage() {
+        FakeDatabase db = new FakeDatabase();
+        for (int i = 0; i < 25; i++) {
+            db.putRecord(String.format("P-%03d", i), legacy("Name " + i, Integer.toString(20 + i), "Flu"));
+        }
+
+        Result result = run(db, 10);
+
+        assertEquals(Integer.valueOf(25), result.written);
+        assertEquals(25, db.summaries().size());
+        assertEquals(Integer.valueOf(PatientIndex.CURRENT_SUMMARIES_VERSION), db.version());
+        // Three pages, then the version marker
+        assertEquals(4, db.writes);
+        PatientRecord summary = PatientCodec.decodeSummary("P-007", db.summaries().get("P-007"));
+        assertEquals("Name 7", summary.name);
+        assertEquals(27, summary.age);
+        assertEquals("Flu", summary.disease());
+        assertEquals(27, ((Map<?, ?>) db.records().get("P-007")).get(PatientIndex.FIELD_AGE_YEARS));
+    }
+
+    @Test
+    public void migratedData_stopsAfterReadingTheVersion() {
+        FakeDatabase db = new FakeDatabase();
+        db.putRecord("P-1", legacy("Jane", "42", "Flu"));
+        assertEquals(Integer.valueOf(1), run(db, 10).written);
+        int loads = db.loads;
+
+        assertEquals(Integer.valueOf(0), run(db, 10).written);
+        assertEquals(loads, db.loads);
+        assertEquals(2, db.writes);
+    }
+
+    @Test
+    public void upToDateData_writesOnlyTheVersion() {
+        FakeDatabase db = new FakeDatabase();
+        for (int i = 0; i < 5; i++) {
+            Patient patient = new Patient("Name " + i, i + "@example.com", "30", "P-" + i, "Asthma");
+            db.save(patient);
+        }
+
+        assertEquals(Integer.valueOf(0), run(db, 2).written);
+        assertEquals(1, db.writes);
+    }
+
+    @Test
+    public void versionOneSummaries_getUpdatedAt() {
+        FakeDatabase db = new FakeDatabase();
+        for (int i = 0; i < 5; i++) {
+            Patient patient = new Patient("Name " + i, i + "@example.com", "30", "P-" + i, "Asthma");
+            db.save(patient);
+            // As written before summaries had updatedAt
+            db.put(PatientIndex.SUMMARIES + "/" + patient.id + "/" + PatientIndex.FIELD_UPDATED_AT, null);
+        }
+        db.put(PatientIndex.SUMMARIES_VERSION, 1);
+
+        assertEquals(Integer.valueOf(5), run(db, 2).written);
+        assertEquals(Integer.valueOf(2), db.version());
+        for (Object summary : db.summaries().values()) {
+            assertTrue(PatientIndex.updatedAt(summary) > 0);
+        }
+    }
+
+    @Test
+    public void orphanedSummaries_becomeTombstonesIncludingPastTheLastRecord() {
+        FakeDatabase db = new FakeDatabase();
+        db.putRecord("P-2", legacy("Jane", "42", "Flu"));
+        db.put(PatientIndex.SUMMARIES + "/P-1", summaryOf("Gone", "Flu", 1L));
+        db.put(PatientIndex.SUMMARIES + "/P-9", summaryOf("Also gone", "Flu", 1L));
+
+        assertEquals(Integer.valueOf(3), run(db, 10).written);
+        assertEquals(3, db.summaries().size());
+        assertTrue(PatientIndex.isTombstone(db.summaries().get("P-1")));
+        assertTrue(PatientIndex.isTombstone(db.summaries().get("P-9")));
+        assertNotNull(PatientCodec.decodeSummary("P-2", db.summaries().get("P-2")));
+
+        // Clients syncing by updatedAt have seen the deletes; the tombstones stay put
+        assertEquals(Integer.valueOf(0), run(db, 10).written);
+    }
+
+    @Test
+    public void recordEditedDuringThePage_isReadAgain() {
+        FakeDatabase db = new FakeDatabase();
+        db.putRecord("P-1", legacy("Jane", "42", "Flu"));
+        db.putRecord("P-2", legacy("John", "50", "Asthma"));
+        // Another client saves P-2 between the migration's read and its write
+        db.beforeWrite.add(() -> db.save(new Patient("John", "john@example.com", "51", "P-2", "Malaria")));
+
+        Result result = run(db, 10);
+
+        assertNull(result.error);
+        assertEquals(1, db.rejected);
+        PatientRecord john = PatientCodec.decodeSummary("P-2", db.summaries().get("P-2"));
+        assertEquals(51, john.age);
+        assertEquals("Malaria", john.disease());
+    }
+
+    @Test
+    public void pageThatNeverSettles_failsWithoutMarkingTheVersion() {
+        FakeDatabase db = new FakeDatabase();
+        db.putRecord("P-1", legacy("Jane", "42", "Flu"));
+        // An older app version keeps saving P-1 without its summary
+        for (int i = 0; i < PatientSummaryMigration.MAX_ATTEMPTS; i++) {
+            String name = "Jane " + i;
+            db.beforeWrite.add(() -> db.putRecord("P-1", legacy(name, "42", "Flu")));
+        }
+
+        Result result = run(db, 10);
+
+        assertNotNull(result.error);
+        assertNull(result.written);
+        assertNull(db.version());
+        assertEquals(PatientSummaryMigration.MAX_ATTEMPTS, db.rejected);
+    }
+
+    private static Result run(FakeDatabase db, int pageSize) {
+        Result result = new Result();
+        new PatientSummaryMigration(db, Runnable::run, Runnable::run, pageSize).run(new PatientSummaryMigration.Callback() {
+            @Override
+            public void onComplete(int written) {
+                result.written = written;
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception error) {
+                result.error = error;
+            }
+        });
+        return result;
+    }
+
+    // A record as saved before the derived fields and summaries existed
+    private static Map<String, Object> legacy(String name, String age, String disease) {
+        Map<String, Object> record = new HashMap<>();
+        record.put(PatientCodec.FIELD_NAME, name);
+        record.put(PatientCodec.FIELD_EMAIL, name.toLowerCase() + "@example.com");
+        record.put(PatientCodec.FIELD_AGE, age);
+        record.put(PatientCodec.FIELD_DISEASE, disease);
+        return record;
+    }
+
+    private static Map<String, Object> summaryOf(String name, String disease, Object ageYears) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put(PatientCodec.FIELD_NAME, name);
+        summary.put(PatientCodec.FIELD_DISEASE, disease);
+        summary.put(PatientIndex.FIELD_AGE_YEARS, ageYears);
+        return summary;
+    }
+
+    private static class Result {
+        Integer written;
+        Exception error;
+    }
+
+    // The migration's reads and writes over a shared in-memory root
+    private static class FakeDatabase extends FakeDatabaseRoot implements PatientSummaryMigration.Backend {
+        int loads = 0;
+
+        FakeDatabase() {
+            super(1_700_000_000_000L);
+        }
+
+        Map<String, Object> records() {
+            return children(PatientIndex.PATIENTS);
+        }
+
+        Map<String, Object> summaries() {
+            return children(PatientIndex.SUMMARIES);
+        }
+
+        Integer version() {
+            return (Integer) get(PatientIndex.SUMMARIES_VERSION);
+        }
+
+        void putRecord(String id, Object record) {
+            put(PatientIndex.PATIENTS + "/" + id, record);
+        }
+
+        @Override
+        public void readVersion(PatientSummaryMigration.ResultCallback<Integer> callback) {
+            callback.onResult(version());
+        }
+
+        @Override
+        public void loadRecords(String afterKey, int limit,
+                                PatientSummaryMigration.ResultCallback<Map<String, Object>> callback) {
+            loads++;
+            Map<String, Object> page = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> record : records().entrySet()) {
+                if (afterKey != null && record.getKey().compareTo(afterKey) <= 0) {
+                    continue;
+                }
+                if (page.size() == limit) {
+                    break;
+                }
+                page.put(record.getKey(), copy(record.getValue()));
+            }
+            callback.onResult(page);
+        }
+
+        @Override
+        public void loadSummaries(String afterKey, String lastKey,
+                                  PatientSummaryMigration.ResultCallback<Map<String, Object>> callback) {
+            loads++;
+            Map<String, Object> range = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> summary : summaries().entrySet()) {
+                String key = summary.getKey();
+                if ((afterKey == null || key.compareTo(afterKey) > 0) && (lastKey == null || key.compareTo(lastKey) <= 0)) {
+                    range.put(key, copy(summary.getValue()));
+                }
+            }
+            callback.onResult(range);
+        }
+
+        @Override
+        public void write(Map<String, Object> updates, PatientSummaryMigration.ResultCallback<Boolean> callback) {
+            callback.onResult(write(updates, FakeDatabase::summariesMatch));
+        }
+
+        // The patientSummaries rule, for each summary the write touches
+        private static boolean summariesMatch(FakeDatabaseRoot before, FakeDatabaseRoot after,
+                                              Map<String, Object> updates) {
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String path = update.getKey();
+                if (path.startsWith(PatientIndex.SUMMARIES + "/")
+                        && !(stampedByServer(update.getValue()) && summaryMatches(after, path.split("/")[1]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // updatedAt === now; deletes are only checked against the record
+        private static boolean stampedByServer(Object summary) {
+            return summary == null
+                    || PatientIndex.SERVER_TIMESTAMP.equals(((Map<?, ?>) summary).get(PatientIndex.FIELD_UPDATED_AT));
+        }
+
+        // A summary equals its record, and is a tombstone or deleted only without one
+        private static boolean summaryMatches(FakeDatabaseRoot db, String id) {
+            Map<?, ?> summary = (Map<?, ?>) db.get(PatientIndex.SUMMARIES + "/" + id);
+            Map<?, ?> record = (Map<?, ?>) db.get(PatientIndex.PATIENTS + "/" + id);
+            if (summary == null || PatientIndex.isTombstone(summary)) {
+                return record == null;
+            }
+            return record != null
+                    && same(summary.get(PatientCodec.FIELD_NAME), record.get(PatientCodec.FIELD_NAME))
+                    && same(summary.get(PatientCodec.FIELD_DISEASE), record.get(PatientCodec.FIELD_DISEASE))
+                    && same(summary.get(PatientIndex.FIELD_AGE_YEARS), record.get(PatientIndex.FIELD_AGE_YEARS));
+        }
+    }
+}
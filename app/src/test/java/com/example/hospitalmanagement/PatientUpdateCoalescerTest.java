@@ -0,0 +1,306 @@
+package com.example.hospitalmanagement;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseError;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic bursts of repository updates through PatientUpdateCoalescer
+ * on hand-driven 16 ms frames, and checks how often the list is updated and
+ * that a list patched from the changed ids ends up matching the source.
+ */
+public class PatientUpdateCoalescerTest {
+
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    @Test
+    public void initialState_isDeliveredStraightAway() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+
+        coalescer.onPatientsChanged(Collections.singletonList(patient("P-1", 1)), Collections.emptySet());
+
+        assertEquals(1, list.dispatches);
+        assertFalse(frames.hasPending());
+    }
+
+    @Test
+    public void burstWithinAFrame_isOneDispatchWithMergedIds() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+
+        List<PatientRecord> last = null;
+        for (int i = 0; i < 50; i++) {
+            // Ten patients, each saved five times
+            last = Collections.singletonList(patient("P-" + (i % 10), i));
+            coalescer.onPatientsChanged(last, Collections.singleton("P-" + (i % 10)));
+        }
+        assertEquals(1, frames.posted);
+
+        frames.runUntilIdle();
+
+        assertEquals(2, list.dispatches);
+        assertSame(last, list.patients);
+        assertEquals(10, list.changedIds.size());
+    }
+
+    @Test
+    public void loneUpdate_isDispatchedWithinTwoFrames() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+
+        coalescer.onPatientsChanged(Collections.singletonList(patient("P-1", 1)), Collections.singleton("P-1"));
+        frames.frame();
+        frames.frame();
+
+        assertEquals(2, list.dispatches);
+        assertEquals(Collections.singleton("P-1"), list.changedIds);
+        assertFalse(frames.hasPending());
+    }
+
+    @Test
+    public void steadyStream_isDispatchedOncePerLatencyBound() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+
+        // Three updates every frame for two seconds
+        int frameCount = 125;
+        int heldFrames = 0;
+        for (int f = 0; f < frameCount; f++) {
+            for (int i = 0; i < 3; i++) {
+                coalescer.onPatientsChanged(Collections.emptyList(), Collections.singleton("P-" + i));
+            }
+            int before = list.dispatches;
+            frames.frame();
+            heldFrames++;
+            assertTrue(list.dispatches - before <= 1);
+            if (list.dispatches > before) {
+                // First frame to see the update plus the 100 ms bound
+                assertTrue("held " + heldFrames + " frames", heldFrames <= 8);
+                heldFrames = 0;
+            }
+        }
+        frames.runUntilIdle();
+
+        // A dispatch every 7th frame (112 ms), plus the tail
+        int dispatches = list.dispatches - 1;
+        assertTrue("dispatches " + dispatches, dispatches <= frameCount / 6 + 1);
+        assertTrue("dispatches " + dispatches, dispatches >= frameCount / 8);
+    }
+
+    @Test
+    public void zeroLatency_dispatchesOnEveryFrameWithUpdates() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 0);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+
+        for (int f = 0; f < 10; f++) {
+            coalescer.onPatientsChanged(Collections.emptyList(), Collections.singleton("P-1"));
+            coalescer.onPatientsChanged(Collections.emptyList(), Collections.singleton("P-2"));
+            frames.frame();
+        }
+
+        assertEquals(11, list.dispatches);
+        assertEquals(new HashSet<>(Arrays.asList("P-1", "P-2")), list.changedIds);
+    }
+
+    @Test
+    public void failure_flushesPendingUpdatesFirst() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.singleton("P-1"));
+
+        coalescer.onPatientsFailed(null);
+
+        assertEquals(2, list.dispatches);
+        assertEquals(1, list.failures);
+        frames.runUntilIdle();
+        assertEquals(2, list.dispatches);
+    }
+
+    @Test
+    public void reset_dropsPendingUpdates() {
+        FakeFrames frames = new FakeFrames();
+        RecordingObserver list = new RecordingObserver();
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.singleton("P-1"));
+
+        coalescer.reset();
+
+        assertFalse(frames.hasPending());
+        // Started again, the first state goes straight through
+        coalescer.onPatientsChanged(Collections.emptyList(), Collections.emptySet());
+        assertEquals(2, list.dispatches);
+        assertTrue(list.changedIds.isEmpty());
+    }
+
+    @Test
+    public void randomBursts_patchedListMatchesTheSource() {
+        Random random = new Random(23);
+        FakeFrames frames = new FakeFrames();
+        PatientList source = new PatientList();
+        for (int i = 0; i < 200; i++) {
+            source.put("P-" + i, patient("P-" + i, 0));
+        }
+        // Patches rows by changed id from the source's current state, as PatientListActivity does
+        PatchingObserver list = new PatchingObserver(source);
+        PatientUpdateCoalescer coalescer = new PatientUpdateCoalescer(list, frames, 100);
+        coalescer.onPatientsChanged(source.snapshot(), Collections.emptySet());
+        list.rows.addAll(source.snapshot());
+
+        int updates = 0;
+        int nextId = 200;
+        for (int f = 0; f < 600; f++) {
+            // Quiet frames between bulk edits of up to 40 updates a frame
+            int burst = random.nextInt(4) == 0 ? 0 : random.nextInt(40);
+            for (int i = 0; i < burst; i++) {
+                Set<String> changed = new HashSet<>();
+                int op = random.nextInt(10);
+                if (op == 0) {
+                    String id = "P-" + nextId++;
+                    source.put(id, patient(id, f));
+                    changed.add(id);
+                } else {
+                    String id = "P-" + random.nextInt(nextId);
+                    if (op < 3) {
+                        source.remove(id);
+                    } else {
+                        source.put(id, patient(id, f));
+                    }
+                    changed.add(id);
+                }
+                coalescer.onPatientsChanged(source.snapshot(), changed);
+                updates++;
+            }
+            frames.frame();
+        }
+        frames.runUntilIdle();
+
+        assertEquals(source.snapshot(), list.sorted());
+        assertEquals(source.snapshot(), list.patients);
+        assertTrue("dispatches " + list.dispatches + " for " + updates + " updates",
+                list.dispatches * 20 < updates);
+    }
+
+    private static PatientRecord patient(String id, int version) {
+        return new PatientRecord(id, "Name " + version, id + "@example.com", version % 100, 0);
+    }
+
+    // Frame callbacks run by hand, one frame every 16 ms
+    private static class FakeFrames implements PatientUpdateCoalescer.FrameScheduler {
+        final List<Choreographer.FrameCallback> callbacks = new ArrayList<>();
+        long frameTimeNanos = 0;
+        int posted = 0;
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            callbacks.add(callback);
+            posted++;
+        }
+
+        @Override
+        public void removeFrameCallback(Choreographer.FrameCallback callback) {
+            callbacks.remove(callback);
+        }
+
+        boolean hasPending() {
+            return !callbacks.isEmpty();
+        }
+
+        void frame() {
+            frameTimeNanos += FRAME_NANOS;
+            List<Choreographer.FrameCallback> due = new ArrayList<>(callbacks);
+            callbacks.clear();
+            for (Choreographer.FrameCallback callback : due) {
+                callback.doFrame(frameTimeNanos);
+            }
+        }
+
+        void runUntilIdle() {
+            for (int i = 0; i < 1000 && hasPending(); i++) {
+                frame();
+            }
+            assertFalse(hasPending());
+        }
+    }
+
+    private static class RecordingObserver implements PatientRepository.Observer {
+        int dispatches = 0;
+        int failures = 0;
+        List<PatientRecord> patients;
+        Set<String> changedIds;
+
+        @Override
+        public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+            dispatches++;
+            this.patients = patients;
+            this.changedIds = changedIds;
+        }
+
+        @Override
+        public void onPatientsFailed(@NonNull DatabaseError error) {
+            failures++;
+        }
+    }
+
+    private static class PatchingObserver implements PatientRepository.Observer {
+        final PatientList source;
+        final List<PatientRecord> rows = new ArrayList<>();
+        int dispatches = 0;
+        List<PatientRecord> patients;
+
+        PatchingObserver(PatientList source) {
+            this.source = source;
+        }
+
+        @Override
+        public void onPatientsChanged(@NonNull List<PatientRecord> patients, @NonNull Set<String> changedIds) {
+            dispatches++;
+            this.patients = patients;
+            for (String id : changedIds) {
+                rows.removeIf(row -> row.id.equals(id));
+                PatientRecord patient = source.get(id);
+                if (patient != null) {
+                    rows.add(patient);
+                }
+            }
+        }
+
+        @Override
+        public void onPatientsFailed(@NonNull DatabaseError error) {
+        }
+
+        List<PatientRecord> sorted() {
+            PatientList list = new PatientList();
+            for (PatientRecord row : rows) {
+                list.put(row.id, row);
+            }
+            return list.snapshot();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs PatientWriteQueue against a fake backend that can drop its connection,
+ * with an in-memory journal and retries run by hand.
+ */
+public class PatientWriteQueueTest {
+
+    private static final long RETRY_DELAY_MS = 10;
+
+    @Test
+    public void enqueue_writesThroughAndEmptiesTheJournal() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        List<Integer> depths = new ArrayList<>();
+        PatientWriteQueue queue = startQueue(journal, backend, new ManualScheduler());
+        queue.setListener(depths::add);
+
+        queue.enqueue(patient("P-1", "Asthma"));
+        queue.enqueue(patient("P-2", "Flu"));
+
+        assertEquals("Asthma", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertEquals("Flu", backend.remote.get("P-2").get(PatientCodec.FIELD_DISEASE));
+        assertTrue(journal.rows.isEmpty());
+        assertEquals(0, queue.getPendingCount());
+        // Initial depth, then up and down once per save
+        assertEquals(Arrays.asList(0, 1, 0, 1, 0), depths);
+    }
+
+    @Test
+    public void repeatedEdits_areCoalescedWhileAWriteIsInFlight() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        backend.hold = true;
+        PatientWriteQueue queue = startQueue(journal, backend, new ManualScheduler());
+
+        queue.enqueue(patient("P-1", "v1"));
+        queue.enqueue(patient("P-1", "v2"));
+        queue.enqueue(patient("P-2", "Flu"));
+        queue.enqueue(patient("P-1", "v3"));
+
+        assertEquals(1, backend.held.size());
+        assertEquals(2, queue.getPendingCount());
+        assertEquals(2, journal.rows.size());
+
+        backend.completeHeld(null);
+        // The second batch carries only the latest edit of P-1
+        assertEquals(1, backend.held.size());
+        assertEquals(2, backend.batches.get(1).size());
+        assertEquals("v3", field(backend.batches.get(1), "P-1", PatientCodec.FIELD_DISEASE));
+
+        backend.completeHeld(null);
+        assertEquals("v3", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertEquals(3, backend.writeCount("P-1") + backend.writeCount("P-2"));
+        assertTrue(journal.rows.isEmpty());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void confirmationOfAnOlderSave_keepsTheNewerOneJournaled() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        backend.hold = true;
+        PatientWriteQueue queue = startQueue(journal, backend, new ManualScheduler());
+
+        queue.enqueue(patient("P-1", "v1"));
+        queue.enqueue(patient("P-1", "v2"));
+        backend.completeHeld(null);
+
+        assertEquals("v2", journal.rows.get("P-1").patient.disease);
+        assertEquals(1, queue.getPendingCount());
+
+        backend.completeHeld(null);
+        assertEquals("v2", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertTrue(journal.rows.isEmpty());
+    }
+
+    @Test
+    public void connectivityLoss_backsOffExponentiallyThenDeliversEverything() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        ManualScheduler scheduler = new ManualScheduler();
+        backend.online = false;
+        PatientWriteQueue queue = startQueue(journal, backend, scheduler);
+
+        for (int i = 1; i <= 5; i++) {
+            queue.enqueue(patient("P-" + i, "Flu"));
+        }
+        // Saves made during backoff wait for the retry rather than each trying again
+        assertEquals(1, backend.attempts);
+        assertEquals(5, queue.getPendingCount());
+
+        scheduler.runDelayed();
+        scheduler.runDelayed();
+        scheduler.runDelayed();
+        assertEquals(Arrays.asList(10L, 20L, 40L, 80L), scheduler.delays);
+        assertTrue(backend.remote.isEmpty());
+        assertEquals(5, journal.rows.size());
+
+        backend.online = true;
+        scheduler.runDelayed();
+
+        assertEquals(5, backend.remote.size());
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(journal.rows.isEmpty());
+        // The backoff starts over after a success
+        backend.online = false;
+        queue.enqueue(patient("P-6", "Flu"));
+        assertEquals(10L, (long) scheduler.delays.get(scheduler.delays.size() - 1));
+    }
+
+    @Test
+    public void retryNow_skipsTheBackoffOnce() {
+        FakeBackend backend = new FakeBackend();
+        ManualScheduler scheduler = new ManualScheduler();
+        backend.online = false;
+        PatientWriteQueue queue = startQueue(new FakeJournal(), backend, scheduler);
+        queue.enqueue(patient("P-1", "Flu"));
+
+        backend.online = true;
+        queue.retryNow();
+        assertEquals(1, backend.remote.size());
+
+        // The superseded timer finds nothing to do
+        scheduler.runDelayed();
+        assertEquals(2, backend.attempts);
+    }
+
+    @Test
+    public void restart_resendsSavesJournaledBeforeTheProcessDied() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend offline = new FakeBackend();
+        offline.online = false;
+        PatientWriteQueue first = startQueue(journal, offline, new ManualScheduler());
+        first.enqueue(patient("P-1", "Asthma"));
+        first.enqueue(patient("P-2", "Flu"));
+        first.enqueue(patient("P-1", "Bronchitis"));
+
+        // A new process opens the same journal
+        FakeBackend backend = new FakeBackend();
+        PatientWriteQueue second = startQueue(journal, backend, new ManualScheduler());
+
+        assertEquals("Bronchitis", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertEquals("Flu", backend.remote.get("P-2").get(PatientCodec.FIELD_DISEASE));
+        assertTrue(journal.rows.isEmpty());
+
+        // Both leftovers went out together, then new saves follow as usual
+        second.enqueue(patient("P-3", "Flu"));
+        assertEquals(2, backend.batches.size());
+        assertEquals(0, second.getPendingCount());
+    }
+
+    @Test
+    public void flappingConnection_losesAndDuplicatesNothing() {
+        Random random = new Random(7);
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        ManualScheduler scheduler = new ManualScheduler();
+        PatientWriteQueue queue = startQueue(journal, backend, scheduler);
+        Map<String, String> latest = new HashMap<>();
+
+        for (int step = 0; step < 2000; step++) {
+            backend.online = random.nextInt(3) != 0;
+            String id = "P-" + random.nextInt(50);
+            String disease = "d" + step;
+            latest.put(id, disease);
+            queue.enqueue(patient(id, disease));
+            if (random.nextBoolean()) {
+                scheduler.runDelayed();
+            }
+        }
+        backend.online = true;
+        scheduler.runDelayed();
+
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(journal.rows.isEmpty());
+        assertEquals(latest.size(), backend.remote.size());
+        for (Map.Entry<String, String> patient : latest.entrySet()) {
+            assertEquals(patient.getValue(), backend.remote.get(patient.getKey()).get(PatientCodec.FIELD_DISEASE));
+        }
+        assertTrue("A save was committed twice", backend.duplicates.isEmpty());
+    }
+
+    @Test
+    public void refusedBatch_isResentOneByOneAndOnlyTheTakenIdIsDropped() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        ManualScheduler scheduler = new ManualScheduler();
+        Patient theirs = created("P-2", "Asthma", "other-client");
+        backend.remote.put("P-2", PatientCodec.encode(theirs));
+        backend.online = false;
+        PatientWriteQueue queue = startQueue(journal, backend, scheduler);
+        List<String> conflicts = new ArrayList<>();
+        queue.setConflictListener((patient, existing) -> conflicts.add(patient.id + ":" + existing.disease()));
+
+        queue.enqueue(created("P-1", "Flu", "c1"));
+        queue.enqueue(created("P-2", "Flu", "c2"));
+        queue.enqueue(created("P-3", "Flu", "c3"));
+        backend.online = true;
+        scheduler.runDelayed();
+
+        assertEquals(Arrays.asList("P-2:Asthma"), conflicts);
+        assertEquals("Asthma", backend.remote.get("P-2").get(PatientCodec.FIELD_DISEASE));
+        assertEquals("Flu", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertEquals("Flu", backend.remote.get("P-3").get(PatientCodec.FIELD_DISEASE));
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(journal.rows.isEmpty());
+        // The batch, then P-2 alone
+        assertEquals(2, backend.rejected);
+
+        // Later saves are batched again
+        backend.hold = true;
+        queue.enqueue(created("P-4", "Flu", "c4"));
+        queue.enqueue(created("P-5", "Flu", "c5"));
+        queue.enqueue(created("P-6", "Flu", "c6"));
+        backend.completeHeld(null);
+        assertEquals(2, backend.batches.get(backend.batches.size() - 1).size());
+    }
+
+    @Test
+    public void retriedCreate_replacesItsOwnRecord() {
+        FakeBackend backend = new FakeBackend();
+        // The first attempt landed but its acknowledgement was lost
+        backend.remote.put("P-1", PatientCodec.encode(created("P-1", "Flu", "c1")));
+        List<String> conflicts = new ArrayList<>();
+        PatientWriteQueue queue = startQueue(new FakeJournal(), backend, new ManualScheduler());
+        queue.setConflictListener((patient, existing) -> conflicts.add(patient.id));
+
+        queue.enqueue(created("P-1", "Flu", "c1"));
+
+        assertTrue(conflicts.isEmpty());
+        assertEquals(0, backend.rejected);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void refusalWithoutAConflict_isRetriedNotDropped() {
+        FakeJournal journal = new FakeJournal();
+        FakeBackend backend = new FakeBackend();
+        ManualScheduler scheduler = new ManualScheduler();
+        PatientWriteQueue queue = startQueue(journal, backend, scheduler);
+        List<String> conflicts = new ArrayList<>();
+        queue.setConflictListener((patient, existing) -> conflicts.add(patient.id));
+        // e.g. signed out
+        backend.denyAll = true;
+
+        queue.enqueue(created("P-1", "Flu", "c1"));
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(1, journal.rows.size());
+
+        backend.denyAll = false;
+        scheduler.runDelayed();
+
+        assertTrue(conflicts.isEmpty());
+        assertEquals("Flu", backend.remote.get("P-1").get(PatientCodec.FIELD_DISEASE));
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void retryDelay_isCapped() {
+        PatientWriteQueue queue = new PatientWriteQueue(new FakeJournal(), new FakeBackend(), new ManualScheduler(),
+                Runnable::run, PatientWriteQueue.INITIAL_RETRY_DELAY_MS);
+
+        assertEquals(1000, queue.retryDelay(1));
+        assertEquals(8000, queue.retryDelay(4));
+        assertEquals(PatientWriteQueue.MAX_RETRY_DELAY_MS, queue.retryDelay(20));
+        assertEquals(PatientWriteQueue.MAX_RETRY_DELAY_MS, queue.retryDelay(Integer.MAX_VALUE));
+    }
+
+    private static PatientWriteQueue startQueue(FakeJournal journal, FakeBackend backend, ManualScheduler scheduler) {
+        PatientWriteQueue queue = new PatientWriteQueue(journal, backend, scheduler, Runnable::run, RETRY_DELAY_MS);
+        queue.start();
+        return queue;
+    }
+
+    private static Patient patient(String id, String disease) {
+        return new Patient("Patient " + id, id.toLowerCase() + "@example.com", "42", id, disease);
+    }
+
+    private static Patient created(String id, String disease, String creationId) {
+        Patient patient = patient(id, disease);
+        patient.creationId = creationId;
+        return patient;
+    }
+
+    private static Object field(Map<String, Object> updates, String id, String field) {
+        return ((Map<?, ?>) updates.get(id)).get(field);
+    }
+
+    // Behaves like the SQLite outbox: one row per ID, removal only of the confirmed seq
+    private static class FakeJournal implements PatientWriteQueue.Journal {
+        final Map<String, PatientWriteQueue.Entry> rows = new LinkedHashMap<>();
+
+        @Override
+        public List<PatientWriteQueue.Entry> load() {
+            List<PatientWriteQueue.Entry> entries = new ArrayList<>(rows.values());
+            entries.sort((a, b) -> Long.compare(a.seq, b.seq));
+            return entries;
+        }
+
+        @Override
+        public void put(PatientWriteQueue.Entry entry) {
+            rows.put(entry.patient.id, entry);
+        }
+
+        @Override
+        public void remove(List<PatientWriteQueue.Entry> written) {
+            for (PatientWriteQueue.Entry entry : written) {
+                PatientWriteQueue.Entry row = rows.get(entry.patient.id);
+                if (row != null && row.seq == entry.seq) {
+                    rows.remove(entry.patient.id);
+                }
+            }
+        }
+    }
+
+    // The patients node; writes fail while offline and can be held to finish later.
+    // Like the rules, an update is refused whole if it would replace a record
+    // carrying another creationId, and everything is refused while denyAll is set.
+    private static class FakeBackend implements PatientWriteQueue.Backend {
+        final Map<String, Map<?, ?>> remote = new HashMap<>();
+        final List<Map<String, Object>> batches = new ArrayList<>();
+        final List<PatientWriteQueue.Callback> held = new ArrayList<>();
+        final Set<Object> committed = new HashSet<>();
+        final List<Object> duplicates = new ArrayList<>();
+        boolean online = true;
+        boolean hold = false;
+        boolean denyAll = false;
+        int attempts = 0;
+        int rejected = 0;
+
+        @Override
+        public void write(Map<String, Object> updates, PatientWriteQueue.Callback callback) {
+            attempts++;
+            if (!online) {
+                callback.onComplete(new Exception("Client is offline"));
+                return;
+            }
+            if (denyAll || replacesAnotherCreate(updates)) {
+                rejected++;
+                callback.onComplete(new PatientWriteQueue.RejectedException("Permission denied"));
+                return;
+            }
+            batches.add(new HashMap<>(updates));
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                Map<?, ?> value = (Map<?, ?>) update.getValue();
+                remote.put(update.getKey(), value);
+                // Each edit has a unique disease in these tests, so a repeat is a duplicate commit
+                Object commit = update.getKey() + "=" + value.get(PatientCodec.FIELD_DISEASE);
+                if (!committed.add(commit)) {
+                    duplicates.add(commit);
+                }
+            }
+            if (hold) {
+                held.add(callback);
+            } else {
+                callback.onComplete(null);
+            }
+        }
+
+        @Override
+        public void load(String id, PatientWriteQueue.LoadCallback callback) {
+            callback.onLoaded(remote.get(id), online ? null : new Exception("Client is offline"));
+        }
+
+        private boolean replacesAnotherCreate(Map<String, Object> updates) {
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                Map<?, ?> existing = remote.get(update.getKey());
+                Object creationId = ((Map<?, ?>) update.getValue()).get(PatientCodec.FIELD_CREATION_ID);
+                if (existing != null && !Objects.equals(existing.get(PatientCodec.FIELD_CREATION_ID), creationId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void completeHeld(Exception error) {
+            held.remove(0).onComplete(error);
+        }
+
+        int writeCount(String id) {
+            int count = 0;
+            for (Map<String, Object> batch : batches) {
+                if (batch.containsKey(id)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    // Runs queue work immediately; retries wait until runDelayed
+    private static class ManualScheduler implements PatientWriteQueue.Scheduler {
+        final List<Long> delays = new ArrayList<>();
+        private final List<Runnable> delayed = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            delays.add(delayMs);
+            delayed.add(task);
+        }
+
+        void runDelayed() {
+            List<Runnable> due = new ArrayList<>(delayed);
+            delayed.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// Synthetic load and soak testing of the patients node. Seeds it with
+// generated records, then drives concurrent writers, readers and a live
+// mirror through the same codec and index layout the app uses, reporting
+// throughput, tail latency and client heap. Runs headless against the
+// local database emulator: load-test/soak.sh --patients 50000 --duration 600
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":patient-core"))
+    implementation(libs.firebase.admin)
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass = "com.example.hospitalmanagement.LoadTest"
+    // A fixed heap keeps the reported client heap comparable between runs
+    applicationDefaultJvmArgs = listOf("-Xms512m", "-Xmx512m")
+}
@@ -0,0 +1,6 @@
+#!/bin/sh
+# Starts the database emulator, runs the load test against it and shuts it down.
+# Options are passed through, e.g. ./load-test/soak.sh --patients 100000 --duration 1800
+cd "$(dirname "$0")/.." || exit 1
+exec firebase emulators:exec --only database --project demo-hospital \
+    "./gradlew -q :load-test:run --args='$*'"
@@ -0,0 +1,131 @@
+package com.example.hospitalmanagement;
+
+// Settings for one load test run, read from --name value arguments.
+final class LoadConfig {
+
+    // Set by "firebase emulators:exec" for the commands it runs
+    private static final String EMULATOR_HOST_ENV = "FIREBASE_DATABASE_EMULATOR_HOST";
+
+    String emulatorHost = "127.0.0.1:9000";
+    // A demo- project never reaches production, so the emulator runs fully offline
+    String namespace = "demo-hospital";
+    long seed = 1;
+
+    // Seeding
+    int patients = 50_000;
+    int seedBatch = 500;
+    int seedInFlight = 4;
+    boolean skipSeed = false;
+
+    // Soak; each writer and reader is a separate client with its own connection
+    int writers = 4;
+    int readers = 4;
+    // Operations per second per client; 0 runs each client as fast as it can
+    double writeRate = 20;
+    double readRate = 5;
+    // Share of writes that edit an existing patient rather than admit a new one
+    double editRatio = 0.8;
+    int durationSeconds = 300;
+    int reportSeconds = 10;
+    int timeoutSeconds = 30;
+
+    static LoadConfig parse(String[] args) {
+        LoadConfig config = new LoadConfig();
+        String envHost = System.getenv(EMULATOR_HOST_ENV);
+        if (envHost != null && !envHost.isEmpty()) {
+            config.emulatorHost = envHost;
+        }
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (name.equals("--skip-seed")) {
+                config.skipSeed = true;
+                continue;
+            }
+            if (!name.startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + name);
+            }
+            String value = args[++i];
+            try {
+                config.set(name.substring(2), value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + name + ": " + value);
+            }
+        }
+        config.validate();
+        return config;
+    }
+
+    String databaseUrl() {
+        return "http://" + emulatorHost + "?ns=" + namespace;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "emulator":
+                emulatorHost = value;
+                break;
+            case "namespace":
+                namespace = value;
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "patients":
+                patients = Integer.parseInt(value);
+                break;
+            case "seed-batch":
+                seedBatch = Integer.parseInt(value);
+                break;
+            case "seed-in-flight":
+                seedInFlight = Integer.parseInt(value);
+                break;
+            case "writers":
+                writers = Integer.parseInt(value);
+                break;
+            case "readers":
+                readers = Integer.parseInt(value);
+                break;
+            case "write-rate":
+                writeRate = Double.parseDouble(value);
+                break;
+            case "read-rate":
+                readRate = Double.parseDouble(value);
+                break;
+            case "edit-ratio":
+                editRatio = Double.parseDouble(value);
+                break;
+            case "duration":
+                durationSeconds = Integer.parseInt(value);
+                break;
+            case "report":
+                reportSeconds = Integer.parseInt(value);
+                break;
+            case "timeout":
+                timeoutSeconds = Integer.parseInt(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option --" + name);
+        }
+    }
+
+    private void validate() {
+        if (patients < 1 || seedBatch < 1 || seedInFlight < 1 || writers < 0 || readers < 0
+                || writeRate < 0 || readRate < 0 || editRatio < 0 || editRatio > 1
+                || durationSeconds < 0 || reportSeconds < 1 || timeoutSeconds < 1) {
+            throw new IllegalArgumentException("Option out of range");
+        }
+        if (!emulatorHost.startsWith("127.0.0.1:") && !emulatorHost.startsWith("localhost:")
+                && !emulatorHost.startsWith("[::1]:")) {
+            // Wiping and flooding a real database by accident is not an option
+            throw new IllegalArgumentException("The load test only runs against a local emulator, not " + emulatorHost);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "emulator=" + emulatorHost + " namespace=" + namespace + " seed=" + seed
+                + " patients=" + patients + (skipSeed ? " (not seeded)" : "")
+                + " writers=" + writers + "@" + writeRate + "/s readers=" + readers + "@" + readRate + "/s"
+                + " editRatio=" + editRatio + " duration=" + durationSeconds + "s";
+    }
+}
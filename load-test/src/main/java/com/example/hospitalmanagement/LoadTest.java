@@ -0,0 +1,492 @@
+package com.example.hospitalmanagement;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Seeds the emulator, soaks it with concurrent clients, then checks that
+// nothing was lost. Writers save through PatientIndex.fanOut like the write
+// queue; readers run the queries PatientQuery runs; a mirror keeps a live
+// PatientList like PatientRepository and measures how long each write takes
+// to reach it. Exits non-zero if any operation failed or the data diverged.
+public final class LoadTest {
+
+    // PatientPagedSource's page size
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_ERRORS_PRINTED = 10;
+
+    private final LoadConfig config;
+    private final List<FirebaseApp> apps = new ArrayList<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    // When each patient's latest write was sent, for the mirror's propagation lag
+    private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+    private final PatientList mirror = new PatientList();
+    private volatile boolean running = true;
+
+    private final Stat writes = new Stat("write", "ms");
+    private final Stat lag = new Stat("mirrorLag", "ms");
+    private final Map<String, Stat> reads = new LinkedHashMap<>();
+
+    private LoadTest(LoadConfig config) {
+        this.config = config;
+        for (String query : new String[]{"byDisease", "byAge", "byDiseaseAndAge", "page"}) {
+            reads.put(query, new Stat("read." + query, "ms"));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Metrics.setEnabled(true);
+        boolean passed = new LoadTest(config).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        log("load test " + config);
+        DatabaseReference admin = connect("admin");
+        if (config.skipSeed) {
+            nextIndex.set(config.patients);
+        } else {
+            seed(admin);
+        }
+
+        startMirror(connect("mirror"));
+        soak();
+        boolean consistent = verify(admin);
+
+        for (FirebaseApp app : apps) {
+            app.delete();
+        }
+        log("errors=" + errors.get() + (consistent ? "" : " DATA DIVERGED"));
+        return errors.get() == 0 && consistent;
+    }
+
+    private DatabaseReference connect(String name) {
+        FirebaseOptions options = FirebaseOptions.builder()
+                .setDatabaseUrl(config.databaseUrl())
+                // The emulator treats "owner" as an admin token, so nothing asks Google for one
+                .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+                .build();
+        FirebaseApp app = FirebaseApp.initializeApp(options, name);
+        apps.add(app);
+        return FirebaseDatabase.getInstance(app).getReference();
+    }
+
+    // Replaces the patient nodes with config.patients generated records, written in fan-out batches
+    private void seed(DatabaseReference root) throws Exception {
+        Map<String, Object> clear = new HashMap<>();
+        clear.put(PatientIndex.PATIENTS, null);
+        clear.put(PatientIndex.BY_DISEASE, null);
+        clear.put(PatientIndex.SUMMARIES, null);
+        clear.put(PatientIndex.SUMMARIES_VERSION, PatientIndex.CURRENT_SUMMARIES_VERSION);
+        root.updateChildrenAsync(clear).get(config.timeoutSeconds, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        SyntheticPatients generator = new SyntheticPatients(config.seed);
+        Semaphore inFlight = new Semaphore(config.seedInFlight);
+        for (int from = 0; from < config.patients; from += config.seedBatch) {
+            Map<String, Object> batch = new HashMap<>();
+            for (int i = from; i < Math.min(config.patients, from + config.seedBatch); i++) {
+                Patient patient = generator.patient(i);
+                batch.put(patient.id, PatientCodec.encode(patient));
+            }
+            inFlight.acquire();
+            root.updateChildrenAsync(PatientIndex.fanOut(batch)).addListener(inFlight::release, Runnable::run);
+        }
+        inFlight.acquire(config.seedInFlight);
+        inFlight.release(config.seedInFlight);
+        nextIndex.set(config.patients);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log(String.format("seeded %d patients in %.1f s (%.0f records/s)", config.patients, seconds,
+                config.patients / seconds));
+    }
+
+    // The same listener PatientRepository attaches; its first load is a cold start
+    private void startMirror(DatabaseReference root) throws Exception {
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        Query patients = root.child(PatientIndex.PATIENTS);
+        long start = System.nanoTime();
+        patients.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                apply(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                apply(snapshot);
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                synchronized (mirror) {
+                    mirror.remove(snapshot.getKey());
+                }
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                fail("mirror", error.toException());
+                loaded.completeExceptionally(error.toException());
+            }
+        });
+        // Value events fire after the child events of the same sync
+        patients.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                loaded.complete(null);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                loaded.completeExceptionally(error.toException());
+            }
+        });
+        loaded.get(Math.max(config.timeoutSeconds, 300), TimeUnit.SECONDS);
+        log(String.format("mirror loaded %d patients in %.1f s, %s", mirrorSize(),
+                (System.nanoTime() - start) / 1e9, heap()));
+    }
+
+    private void apply(DataSnapshot snapshot) {
+        PatientRecord patient = PatientCodec.decodeRecord(snapshot.getKey(), snapshot.getValue());
+        if (patient == null) {
+            fail("mirror", new IllegalStateException("Undecodable record " + snapshot.getKey()));
+            return;
+        }
+        synchronized (mirror) {
+            mirror.put(patient.id, patient);
+        }
+        Long sent = sentAt.remove(patient.id);
+        if (sent != null) {
+            lag.recordSince(sent);
+        }
+    }
+
+    private void soak() throws Exception {
+        if (config.durationSeconds == 0) {
+            return;
+        }
+        int clients = config.writers + config.readers;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, clients));
+        List<DatabaseReference> roots = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            roots.add(connect(i < config.writers ? "writer-" + i : "reader-" + (i - config.writers)));
+        }
+        for (int i = 0; i < clients; i++) {
+            DatabaseReference root = roots.get(i);
+            long seed = config.seed * 1_000 + i;
+            if (i < config.writers) {
+                SyntheticPatients generator = new SyntheticPatients(seed);
+                Random random = new Random(seed);
+                executor.execute(() -> paced(config.writeRate, () -> write(root, generator, random)));
+            } else {
+                Random random = new Random(seed);
+                executor.execute(() -> paced(config.readRate, () -> read(root, random)));
+            }
+        }
+
+        log("soaking for " + config.durationSeconds + " s with " + config.writers + " writers and "
+                + config.readers + " readers");
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        while (System.nanoTime() < end) {
+            long next = Math.min(end, System.nanoTime() + TimeUnit.SECONDS.toNanos(config.reportSeconds));
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+            report((System.nanoTime() - start) / 1e9, config.reportSeconds, false);
+        }
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(config.timeoutSeconds, TimeUnit.SECONDS);
+        report((System.nanoTime() - start) / 1e9, (System.nanoTime() - start) / 1e9, true);
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    // Runs op at a fixed rate, or back to back when rate is 0, until the soak ends
+    private void paced(double rate, Operation op) {
+        long interval = rate == 0 ? 0 : (long) (1e9 / rate);
+        long next = System.nanoTime();
+        while (running) {
+            try {
+                op.run();
+            } catch (Exception e) {
+                fail(Thread.currentThread().getName(), e);
+            }
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                // Fell behind; don't burst to catch up
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private void write(DatabaseReference root, SyntheticPatients generator, Random random) throws Exception {
+        Patient patient;
+        // What the edited record held, so its old patientsByDisease entry goes too
+        Map<String, Object> previous = Collections.emptyMap();
+        if (random.nextDouble() < config.editRatio) {
+            int index = random.nextInt(nextIndex.get());
+            PatientRecord current;
+            synchronized (mirror) {
+                current = mirror.get(SyntheticPatients.id(index));
+            }
+            // Not mirrored yet: write a fresh record under the same ID
+            patient = generator.edit(current != null ? current.toPatient() : generator.patient(index));
+            if (current != null) {
+                previous = Collections.<String, Object>singletonMap(current.id, PatientCodec.encode(current.toPatient()));
+            }
+        } else {
+            patient = generator.patient(nextIndex.getAndIncrement());
+        }
+        long start = Metrics.start();
+        sentAt.put(patient.id, start);
+        root.updateChildrenAsync(PatientIndex.fanOut(
+                        Collections.singletonMap(patient.id, PatientCodec.encode(patient)), previous))
+                .get(config.timeoutSeconds, TimeUnit.SECONDS);
+        writes.recordSince(start);
+    }
+
+    private void read(DatabaseReference root, Random random) throws Exception {
+        DatabaseReference patients = root.child(PatientIndex.PATIENTS);
+        String[] diseases = SyntheticPatients.diseases();
+        String disease = PatientIndex.diseaseKey(diseases[random.nextInt(diseases.length)]);
+        int from = random.nextInt(9) * 10;
+        long start = Metrics.start();
+        switch (random.nextInt(4)) {
+            case 0:
+                decode(get(patients.orderByChild(PatientIndex.FIELD_DISEASE_KEY).equalTo(disease)));
+                reads.get("byDisease").recordSince(start);
+                break;
+            case 1:
+                decode(get(patients.orderByChild(PatientIndex.FIELD_AGE_YEARS).startAt(from).endAt(from + 9)));
+                reads.get("byAge").recordSince(start);
+                break;
+            case 2:
+                DataSnapshot ids = get(root.child(PatientIndex.BY_DISEASE).child(disease)
+                        .orderByValue().startAt(from).endAt(from + 9));
+                List<CompletableFuture<DataSnapshot>> records = new ArrayList<>();
+                for (DataSnapshot id : ids.getChildren()) {
+                    records.add(fetch(patients.child(id.getKey())));
+                }
+                for (CompletableFuture<DataSnapshot> record : records) {
+                    DataSnapshot snapshot = record.get(config.timeoutSeconds, TimeUnit.SECONDS);
+                    PatientCodec.decodeRecord(snapshot.getKey(), snapshot.getValue());
+                }
+                reads.get("byDiseaseAndAge").recordSince(start);
+                break;
+            default:
+                // The list pages through summaries, not full records
+                String firstKey = SyntheticPatients.id(random.nextInt(nextIndex.get()));
+                for (DataSnapshot summary : get(root.child(PatientIndex.SUMMARIES).orderByKey()
+                        .startAt(firstKey).limitToFirst(PAGE_SIZE)).getChildren()) {
+                    PatientCodec.decodeSummary(summary.getKey(), summary.getValue());
+                }
+                reads.get("page").recordSince(start);
+                break;
+        }
+    }
+
+    private static int decode(DataSnapshot parent) {
+        int count = 0;
+        for (DataSnapshot child : parent.getChildren()) {
+            if (PatientCodec.decodeRecord(child.getKey(), child.getValue()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private DataSnapshot get(Query query) throws Exception {
+        return fetch(query).get(config.timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private static CompletableFuture<DataSnapshot> fetch(Query query) {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result;
+    }
+
+    // After the soak: a fresh full read must match the mirror, and every record its index entry
+    private boolean verify(DatabaseReference root) throws Exception {
+        DataSnapshot remote = get(root.child(PatientIndex.PATIENTS));
+        Map<String, PatientRecord> expected = new HashMap<>();
+        for (DataSnapshot child : remote.getChildren()) {
+            expected.put(child.getKey(), PatientCodec.decodeRecord(child.getKey(), child.getValue()));
+        }
+
+        // The mirror may still be applying the last writes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.timeoutSeconds);
+        int diverged;
+        do {
+            diverged = 0;
+            synchronized (mirror) {
+                for (Map.Entry<String, PatientRecord> patient : expected.entrySet()) {
+                    if (!patient.getValue().equals(mirror.get(patient.getKey()))) {
+                        diverged++;
+                    }
+                }
+                diverged += Math.abs(mirror.size() - expected.size());
+            }
+        } while (diverged > 0 && System.nanoTime() < deadline && sleep(100));
+
+        DataSnapshot index = get(root.child(PatientIndex.BY_DISEASE));
+        int missing = 0;
+        int stale = 0;
+        for (PatientRecord patient : expected.values()) {
+            String key = PatientIndex.diseaseKey(patient.disease());
+            if (key != null && !index.child(key).hasChild(patient.id)) {
+                missing++;
+            }
+        }
+        for (DataSnapshot disease : index.getChildren()) {
+            for (DataSnapshot entry : disease.getChildren()) {
+                PatientRecord patient = expected.get(entry.getKey());
+                if (patient == null || !disease.getKey().equals(PatientIndex.diseaseKey(patient.disease()))) {
+                    stale++;
+                }
+            }
+        }
+
+        log("verified " + expected.size() + " patients: " + diverged + " differ from the mirror, "
+                + missing + " missing from patientsByDisease, " + stale
+                + " stale index entries (left by disease changes, cleaned up by queries)");
+        return diverged == 0 && missing == 0;
+    }
+
+    private void report(double elapsedSeconds, double intervalSeconds, boolean total) {
+        StringBuilder line = new StringBuilder(String.format("%s t=%.0fs", total ? "TOTAL" : "", elapsedSeconds).trim());
+        writes.append(line, intervalSeconds, total);
+        for (Stat read : reads.values()) {
+            read.append(line, intervalSeconds, total);
+        }
+        lag.append(line, intervalSeconds, total);
+        line.append(" | mirror=").append(mirrorSize()).append(" errors=").append(errors.get())
+                .append(" | ").append(heap());
+        log(line.toString());
+    }
+
+    private int mirrorSize() {
+        synchronized (mirror) {
+            return mirror.size();
+        }
+    }
+
+    private static String heap() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long collections = 0;
+        long collectionMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, gc.getCollectionCount());
+            collectionMs += Math.max(0, gc.getCollectionTime());
+        }
+        return String.format("heap=%dMB/%dMB gc=%d (%d ms)", heap.getUsed() >> 20, heap.getMax() >> 20,
+                collections, collectionMs);
+    }
+
+    private void fail(String where, Exception error) {
+        if (errors.incrementAndGet() <= MAX_ERRORS_PRINTED) {
+            log("error in " + where + ": " + error);
+        }
+    }
+
+    private static boolean sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return true;
+    }
+
+    private static void log(String message) {
+        System.out.println(message);
+    }
+
+    // A metric reported per interval and for the whole run
+    private static final class Stat {
+        final String name;
+        final Metrics.Histogram interval;
+        final Metrics.Histogram total;
+
+        Stat(String name, String unit) {
+            this.name = name;
+            interval = new Metrics.Histogram(name, unit, 1_000_000L);
+            total = new Metrics.Histogram(name, unit, 1_000_000L);
+        }
+
+        void recordSince(long start) {
+            interval.recordSince(start);
+            total.recordSince(start);
+        }
+
+        // Percentiles are power-of-two bucket bounds; mean and max are exact
+        void append(StringBuilder line, double seconds, boolean whole) {
+            Metrics.Histogram histogram = whole ? total : interval;
+            long count = histogram.count();
+            line.append(" | ").append(name).append(String.format(" %.1f/s", count / seconds));
+            if (count > 0) {
+                line.append(" mean=").append(histogram.mean())
+                        .append(" p99=").append(histogram.percentile(99))
+                        .append(" max=").append(histogram.max()).append(histogram.unit);
+            }
+            if (!whole) {
+                interval.reset();
+            }
+        }
+    }
+}
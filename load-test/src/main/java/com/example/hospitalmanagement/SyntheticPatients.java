@@ -0,0 +1,90 @@
+package com.example.hospitalmanagement;
+
+import java.util.Locale;
+import java.util.Random;
+
+// Deterministic, realistic-looking patients for seeding and soaking.
+// Diseases follow a skewed distribution, so a few dominate as they do on
+// a real ward, and ages cluster around children, adults and the elderly.
+// Each thread should use its own instance.
+final class SyntheticPatients {
+
+    private static final String[] FIRST = {
+            "Amina", "Brian", "Carla", "David", "Esther", "Faith", "George", "Halima", "Ian", "Joy",
+            "Kevin", "Lucy", "Moses", "Naomi", "Omar", "Peter", "Rose", "Samuel", "Tabitha", "Wanjiru"};
+    private static final String[] LAST = {
+            "Achieng", "Baker", "Cheruiyot", "Davies", "Kamau", "Mwangi", "Njoroge", "Odhiambo", "Otieno",
+            "Patel", "Rotich", "Smith", "Wambui", "Wekesa"};
+    // Most common first; picked with Zipf-like weights 1/(rank + 1)
+    private static final String[] DISEASES = {
+            "Malaria", "Flu", "Hypertension", "Diabetes", "Asthma", "Typhoid", "Pneumonia", "Tuberculosis",
+            "Bronchitis", "Gastritis", "Migraine", "Anaemia", "Arthritis", "Cholera", "Measles", "Dengue"};
+    private static final double[] DISEASE_WEIGHTS = cumulativeZipf(DISEASES.length);
+
+    private final Random random;
+
+    SyntheticPatients(long seed) {
+        this.random = new Random(seed);
+    }
+
+    static String id(int index) {
+        return "P-" + index;
+    }
+
+    Patient patient(int index) {
+        String first = FIRST[random.nextInt(FIRST.length)];
+        String last = LAST[random.nextInt(LAST.length)];
+        String id = id(index);
+        return new Patient(first + " " + last,
+                first.toLowerCase(Locale.ROOT) + "." + last.toLowerCase(Locale.ROOT) + index + "@example.com",
+                Integer.toString(age()), id, disease());
+    }
+
+    // The same patient after a ward round: a new diagnosis, and sometimes a corrected age
+    Patient edit(Patient patient) {
+        String age = random.nextInt(5) == 0 ? Integer.toString(age()) : patient.age;
+        return new Patient(patient.name, patient.email, age, patient.id, disease());
+    }
+
+    String disease() {
+        double pick = random.nextDouble();
+        for (int i = 0; i < DISEASE_WEIGHTS.length; i++) {
+            if (pick < DISEASE_WEIGHTS[i]) {
+                return DISEASES[i];
+            }
+        }
+        return DISEASES[DISEASES.length - 1];
+    }
+
+    static String[] diseases() {
+        return DISEASES.clone();
+    }
+
+    private int age() {
+        switch (random.nextInt(10)) {
+            case 0:
+            case 1:
+                return random.nextInt(15);
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+                return 15 + random.nextInt(45);
+            default:
+                return Math.min(105, 60 + (int) Math.abs(random.nextGaussian() * 15));
+        }
+    }
+
+    private static double[] cumulativeZipf(int count) {
+        double[] weights = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += 1.0 / (i + 1);
+            weights[i] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            weights[i] /= total;
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Option parsing for the load test, including its refusal to touch anything
+ * but a local emulator.
+ */
+public class LoadConfigTest {
+
+    @Test
+    public void options_overrideDefaults() {
+        LoadConfig config = LoadConfig.parse(new String[]{
+                "--emulator", "localhost:9100", "--patients", "1000", "--writers", "2",
+                "--write-rate", "0", "--skip-seed", "--duration", "60"});
+
+        assertEquals("localhost:9100", config.emulatorHost);
+        assertEquals(1000, config.patients);
+        assertEquals(2, config.writers);
+        assertEquals(0, config.writeRate, 0);
+        assertTrue(config.skipSeed);
+        assertEquals(60, config.durationSeconds);
+        assertEquals(4, config.readers);
+        assertEquals("http://localhost:9100?ns=demo-hospital", config.databaseUrl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void remoteHost_isRefused() {
+        LoadConfig.parse(new String[]{"--emulator", "hospital-default-rtdb.firebaseio.com:443"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOption_isRefused() {
+        LoadConfig.parse(new String[]{"--patiens", "10"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValue_isRefused() {
+        LoadConfig.parse(new String[]{"--patients"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRangeRatio_isRefused() {
+        LoadConfig.parse(new String[]{"--edit-ratio", "1.5"});
+    }
+
+    @Test
+    public void syntheticPatients_areDeterministicAndIndexable() {
+        Patient first = new SyntheticPatients(7).patient(3);
+        Patient again = new SyntheticPatients(7).patient(3);
+
+        assertEquals(PatientRecord.fromPatient(first), PatientRecord.fromPatient(again));
+        assertEquals("P-3", first.id);
+        assertNotNull(PatientIndex.diseaseKey(first.disease));
+        assertTrue(PatientRecord.parseAge(first.age) >= 0);
+    }
+}
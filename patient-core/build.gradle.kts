@@ -0,0 +1,26 @@
+// Patient model, decoding, list building and row text, with no Android
+// dependencies so it can be unit tested and benchmarked on a plain JVM.
+// Run the benchmarks with: ./gradlew :patient-core:jmh
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    // Reports bytes allocated per operation next to each timing
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+}
@@ -0,0 +1,50 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic synthetic patients shared by the benchmarks.
+final class BenchmarkData {
+
+    private static final String[] FIRST = {"Alice", "Bob", "Carla", "Ben", "Amir", "Beatrice", "Carl", "Wanjiru"};
+    private static final String[] LAST = {"Abbott", "Baker", "Carter", "Adams", "Bell", "Otieno", "Kamau"};
+    private static final String[] DISEASES = {"Flu", "Asthma", "Diabetes", "Hypertension", "Malaria", "Typhoid"};
+
+    private BenchmarkData() {
+    }
+
+    // Patient nodes as DataSnapshot.getValue() returns them: maps of strings, ages included
+    static List<Map<String, Object>> nodes(int count) {
+        Random random = new Random(count);
+        List<Map<String, Object>> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = key(i);
+            Map<String, Object> node = new HashMap<>();
+            node.put(PatientCodec.FIELD_NAME, FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)]);
+            node.put(PatientCodec.FIELD_EMAIL, id.toLowerCase(Locale.ROOT) + "@example.com");
+            node.put(PatientCodec.FIELD_AGE, String.valueOf(random.nextInt(100)));
+            node.put(PatientCodec.FIELD_ID, id);
+            // A fresh String per node, as the JSON parser produces
+            node.put(PatientCodec.FIELD_DISEASE, new String(DISEASES[random.nextInt(DISEASES.length)]));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    static List<PatientRecord> records(int count) {
+        List<Map<String, Object>> nodes = nodes(count);
+        List<PatientRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(PatientCodec.decodeRecord(key(i), nodes.get(i)));
+        }
+        return records;
+    }
+
+    static String key(int index) {
+        return "P-" + index;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.hospitalmanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Work done per onBindViewHolder: the five row labels for one patient.
+// Run with the gc profiler (on by default) for bytes allocated per bind.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatientBindBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    private List<PatientRecord> patients;
+    // One holder's buffers, reused across binds like a recycled row
+    private final PatientText text = new PatientText();
+    private int position = 0;
+
+    @Setup
+    public void setUp() {
+        patients = BenchmarkData.records(records);
+    }
+
+    @Benchmark
+    public void bindRow(Blackhole blackhole) {
+        PatientRecord patient = patients.get(position);
+        position = (position + 1) % patients.size();
+        text.bind(patient);
+        blackhole.consume(text.name.chars());
+        blackhole.consume(text.email.chars());
+        blackhole.consume(text.age.chars());
+        blackhole.consume(text.id.chars());
+        blackhole.consume(text.disease.chars());
+    }
+}
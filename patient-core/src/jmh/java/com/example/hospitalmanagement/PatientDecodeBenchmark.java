@@ -0,0 +1,46 @@
+package com.example.hospitalmanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Decode throughput from snapshot values to PatientRecord, per full node.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientDecodeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    private List<Map<String, Object>> nodes;
+
+    @Setup
+    public void setUp() {
+        nodes = BenchmarkData.nodes(records);
+    }
+
+    @Benchmark
+    public void decodeRecords(Blackhole blackhole) {
+        for (int i = 0; i < nodes.size(); i++) {
+            blackhole.consume(PatientCodec.decodeRecord(BenchmarkData.key(i), nodes.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void decodeWirePatients(Blackhole blackhole) {
+        for (Map<String, Object> node : nodes) {
+            blackhole.consume(PatientCodec.decode(node));
+        }
+    }
+}
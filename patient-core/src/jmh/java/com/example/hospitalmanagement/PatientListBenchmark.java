@@ -0,0 +1,55 @@
+package com.example.hospitalmanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of building the published list: the initial load, and one edit
+// followed by the snapshot every observer receives.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientListBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    private List<PatientRecord> patients;
+    private PatientList loaded;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        patients = BenchmarkData.records(records);
+        loaded = new PatientList();
+        for (PatientRecord patient : patients) {
+            loaded.put(patient.id, patient);
+        }
+    }
+
+    @Benchmark
+    public List<PatientRecord> initialLoad() {
+        PatientList list = new PatientList();
+        for (PatientRecord patient : patients) {
+            list.put(patient.id, patient);
+        }
+        return list.snapshot();
+    }
+
+    @Benchmark
+    public List<PatientRecord> editOneAndRebuild() {
+        PatientRecord patient = patients.get(next);
+        next = (next + 1) % patients.size();
+        loaded.put(patient.id, new PatientRecord(patient.id, patient.name, patient.email,
+                (patient.age + 1) % 100, patient.diseaseId));
+        return loaded.snapshot();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.hospitalmanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Latency of the queries the search box issues, capped like the app's results.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientSearchBenchmark {
+
+    private static final int MAX_RESULTS = 200;
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    private PatientSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new PatientSearchIndex();
+        for (PatientRecord patient : BenchmarkData.records(records)) {
+            index.put(patient);
+        }
+    }
+
+    @Benchmark
+    public List<PatientRecord> namePrefix() {
+        return index.search("ca", "", PatientSearchIndex.ANY_AGE, PatientSearchIndex.ANY_AGE, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<PatientRecord> idPrefix() {
+        return index.search("p-12", "", PatientSearchIndex.ANY_AGE, PatientSearchIndex.ANY_AGE, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<PatientRecord> disease() {
+        return index.search("", "malaria", PatientSearchIndex.ANY_AGE, PatientSearchIndex.ANY_AGE, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<PatientRecord> ageRange() {
+        return index.search("", "", 30, 40, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<PatientRecord> nameDiseaseAndAge() {
+        return index.search("b", "flu", 20, 60, MAX_RESULTS);
+    }
+
+    // Full rebuild, as PatientSearch does for a large change set
+    @Benchmark
+    public PatientSearchIndex rebuild() {
+        PatientSearchIndex rebuilt = new PatientSearchIndex();
+        for (PatientRecord patient : BenchmarkData.records(records)) {
+            rebuilt.put(patient);
+        }
+        return rebuilt;
+    }
+}
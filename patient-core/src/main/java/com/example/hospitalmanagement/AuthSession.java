@@ -0,0 +1,135 @@
+package com.example.hospitalmanagement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+// What the main screen showed for the last signed-in admin, so a restart can
+// put it back before Firebase Auth has confirmed the sign-in. Stored sealed
+// with AES-GCM: the IV followed by the ciphertext and tag, so a copy that was
+// altered or sealed under another key fails to open instead of being trusted.
+public final class AuthSession {
+
+    // 1 wrote the strings with writeUTF, which caps them at 65535 bytes
+    private static final int FORMAT_VERSION = 2;
+    private static final int FORMAT_WRITE_UTF = 1;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+    private static final int IV_BYTES = 12;
+
+    public final String uid;
+    public final boolean recordsShown;
+    public final String searchQuery;
+
+    public AuthSession(String uid, boolean recordsShown, String searchQuery) {
+        this.uid = Objects.requireNonNull(uid);
+        this.recordsShown = recordsShown;
+        this.searchQuery = searchQuery != null ? searchQuery : "";
+    }
+
+    // A fresh session, with the patient records hidden as after a first login
+    public static AuthSession signedIn(String uid) {
+        return new AuthSession(uid, false, "");
+    }
+
+    public AuthSession withViewState(boolean recordsShown, String searchQuery) {
+        return new AuthSession(uid, recordsShown, searchQuery);
+    }
+
+    // key must be an AES key; the cipher picks a random IV for every seal
+    public byte[] seal(SecretKey key) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        byte[] ciphertext = cipher.doFinal(encode());
+        byte[] sealed = Arrays.copyOf(iv, iv.length + ciphertext.length);
+        System.arraycopy(ciphertext, 0, sealed, iv.length, ciphertext.length);
+        return sealed;
+    }
+
+    // Throws if sealed was not produced by seal() with the same key
+    public static AuthSession open(byte[] sealed, SecretKey key) throws GeneralSecurityException {
+        if (sealed.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Session is truncated");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+        byte[] plain = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+        try {
+            return decode(plain);
+        } catch (IOException e) {
+            throw new GeneralSecurityException("Session is malformed", e);
+        }
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, uid);
+            out.writeBoolean(recordsShown);
+            writeString(out, searchQuery);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static AuthSession decode(byte[] plain) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            int version = in.readUnsignedByte();
+            if (version == FORMAT_WRITE_UTF) {
+                return new AuthSession(in.readUTF(), in.readBoolean(), in.readUTF());
+            }
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown session format " + version);
+            }
+            return new AuthSession(readString(in), in.readBoolean(), readString(in));
+        }
+    }
+
+    // Length-prefixed UTF-8, so a long search query isn't capped like writeUTF
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Field runs past the end of the session");
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthSession)) {
+            return false;
+        }
+        AuthSession other = (AuthSession) o;
+        return recordsShown == other.recordsShown && uid.equals(other.uid) && searchQuery.equals(other.searchQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uid, recordsShown, searchQuery);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Process-wide dictionary of disease names. Wards see the same handful of
+// diseases over and over, so records store a small int id and share one
+// String per distinct name. Safe to use from any thread.
+public final class DiseaseDictionary {
+
+    // Id used for a missing or blank disease
+    public static final int NONE = -1;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    private DiseaseDictionary() {
+    }
+
+    public static synchronized int intern(String disease) {
+        if (disease == null) {
+            return NONE;
+        }
+        String name = disease.trim();
+        if (name.isEmpty()) {
+            return NONE;
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    public static synchronized String name(int id) {
+        return id == NONE ? null : names.get(id);
+    }
+
+    public static synchronized int size() {
+        return names.size();
+    }
+}
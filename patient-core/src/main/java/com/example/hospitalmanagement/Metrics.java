@@ -0,0 +1,223 @@
+package com.example.hospitalmanagement;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free counters and histograms for the app's hot paths.
+// Everything is off until setEnabled(true): start() then returns 0 without
+// reading the clock and every record call returns after one volatile read.
+public final class Metrics {
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+    private static final long NANOS_PER_US = 1_000L;
+
+    // Cold start: process start to first drawn frame, and inflating the patient card after login
+    public static final Histogram FIRST_FRAME = new Histogram("app.firstFrame", "ms", NANOS_PER_MS);
+    public static final Histogram PATIENT_CARD_INFLATE = new Histogram("ui.patientCardInflate", "ms", NANOS_PER_MS);
+    // Firebase round trips, from the call to its completion listener
+    public static final Histogram SIGN_IN = new Histogram("auth.signIn", "ms", NANOS_PER_MS);
+    public static final Histogram PATIENT_WRITE = new Histogram("db.patientWrite", "ms", NANOS_PER_MS);
+    // Snapshot decoding on the decoder thread, and how many children each decode covered
+    public static final Histogram DECODE = new Histogram("snapshot.decode", "us", NANOS_PER_US);
+    public static final Histogram RECORDS_PER_UPDATE = new Histogram("snapshot.records", "records", 0);
+    // Summaries downloaded before the list caught up after connecting; follows churn once a mark is kept
+    public static final Histogram SYNC_RECORDS = new Histogram("sync.records", "records", 0);
+    // Patient lists
+    public static final Histogram BIND = new Histogram("list.bind", "us", NANOS_PER_US);
+    public static final Histogram FRAME = new Histogram("list.frame", "ms", NANOS_PER_MS);
+    public static final Counter DROPPED_FRAMES = new Counter("list.droppedFrames");
+    // Repository updates folded into each dispatch to a list
+    public static final Histogram COALESCED_UPDATES = new Histogram("list.coalescedUpdates", "updates", 0);
+
+    private static final List<Histogram> HISTOGRAMS = Collections.unmodifiableList(Arrays.asList(
+            FIRST_FRAME, PATIENT_CARD_INFLATE, SIGN_IN, PATIENT_WRITE, DECODE, RECORDS_PER_UPDATE, SYNC_RECORDS, BIND, FRAME,
+            COALESCED_UPDATES));
+    private static final List<Counter> COUNTERS = Collections.singletonList(DROPPED_FRAMES);
+
+    private static volatile boolean enabled = false;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    // Start time for Histogram.recordSince, or 0 while disabled
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static List<Histogram> histograms() {
+        return HISTOGRAMS;
+    }
+
+    public static List<Counter> counters() {
+        return COUNTERS;
+    }
+
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+        for (Counter counter : COUNTERS) {
+            counter.reset();
+        }
+    }
+
+    // One line per metric, readable on the debug screen and in a dumped file
+    public static void dump(Appendable out) throws IOException {
+        out.append("metrics ").append(enabled ? "enabled" : "disabled").append('\n');
+        for (Histogram histogram : HISTOGRAMS) {
+            out.append(histogram.name)
+                    .append(": count=").append(Long.toString(histogram.count()))
+                    .append(" mean=").append(Long.toString(histogram.mean()))
+                    .append(" p50=").append(Long.toString(histogram.percentile(50)))
+                    .append(" p90=").append(Long.toString(histogram.percentile(90)))
+                    .append(" p99=").append(Long.toString(histogram.percentile(99)))
+                    .append(" max=").append(Long.toString(histogram.max()))
+                    .append(' ').append(histogram.unit).append('\n');
+        }
+        for (Counter counter : COUNTERS) {
+            out.append(counter.name).append(": ").append(Long.toString(counter.get())).append('\n');
+        }
+    }
+
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        try {
+            dump(out);
+        } catch (IOException e) {
+            // StringBuilder never throws
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+
+    public static final class Counter {
+        public final String name;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void add(long amount) {
+            if (enabled) {
+                value.add(amount);
+            }
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+    }
+
+    // Power-of-two buckets: bucket i holds values in [2^(i-1), 2^i), bucket 0 holds 0.
+    // Percentiles are reported as the upper bound of their bucket, so they are
+    // accurate to within a factor of two, which is enough to spot a regression.
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        public final String name;
+        public final String unit;
+        private final long nanosPerUnit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        // nanosPerUnit converts recordSince durations; 0 for histograms of plain values
+        Histogram(String name, String unit, long nanosPerUnit) {
+            this.name = name;
+            this.unit = unit;
+            this.nanosPerUnit = nanosPerUnit;
+        }
+
+        // Records the time since a Metrics.start() value, in this histogram's unit
+        public void recordSince(long startNanos) {
+            if (startNanos != 0 && enabled) {
+                recordValue((System.nanoTime() - startNanos) / nanosPerUnit);
+            }
+        }
+
+        public void record(long value) {
+            if (enabled) {
+                recordValue(value);
+            }
+        }
+
+        private void recordValue(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            long previous = max.get();
+            while (value > previous && !max.compareAndSet(previous, value)) {
+                previous = max.get();
+            }
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        // Upper bound of the bucket holding the given percentile, capped at the max seen
+        public long percentile(int percent) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (n * percent + 99) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        static int bucket(long value) {
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : (bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.hospitalmanagement;
+
+// Patient as stored in Firebase. Every field is a string on the wire;
+// PatientRecord is the compact form kept in memory.
+public class Patient {
+    public String name;
+    public String email;
+    public String age;
+    public String id;
+    public String disease;
+    // Random ID of the create that wrote this record. The rules only let a
+    // write replace a record that carries the same one, so a retried create
+    // goes through but a second create of the ID does not.
+    public String creationId;
+
+    public Patient() {
+        // Default constructor required for Firebase
+    }
+
+    public Patient(String name, String email, String age, String id, String disease) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.id = id;
+        this.disease = disease;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.hospitalmanagement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Reflection-free decoding and encoding of a patient node.
+// Reads the plain map returned by DataSnapshot.getValue() field by field,
+// producing the same Patient that getValue(Patient.class) would, or the
+// compact PatientRecord used in memory.
+public final class PatientCodec {
+
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_EMAIL = "email";
+    public static final String FIELD_AGE = "age";
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_DISEASE = "disease";
+    public static final String FIELD_CREATION_ID = "creationId";
+
+    private PatientCodec() {
+    }
+
+    // Returns null when the node is absent or not shaped like a patient.
+    // Firebase's mapper throws for those cases; a single bad record
+    // should not take the whole list down, so it is skipped instead.
+    public static Patient decode(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+
+        Patient patient = new Patient();
+        try {
+            patient.name = readString(fields, FIELD_NAME);
+            patient.email = readString(fields, FIELD_EMAIL);
+            patient.age = readString(fields, FIELD_AGE);
+            patient.id = readString(fields, FIELD_ID);
+            patient.disease = readString(fields, FIELD_DISEASE);
+            patient.creationId = readString(fields, FIELD_CREATION_ID);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return patient;
+    }
+
+    // Decodes straight into the compact in-memory form. Older records store
+    // age as a string and newer ones may store a number, so both are accepted;
+    // an age that isn't a whole number is kept as rawAge.
+    public static PatientRecord decodeRecord(String key, Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        Object age = fields.get(FIELD_AGE);
+        try {
+            return new PatientRecord(key,
+                    readString(fields, FIELD_NAME),
+                    readString(fields, FIELD_EMAIL),
+                    PatientRecord.parseAge(age),
+                    DiseaseDictionary.intern(readString(fields, FIELD_DISEASE)),
+                    PatientRecord.rawAge(age));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Decodes an archive/{year}/{id} node, which holds a copy per time the ID
+    // was archived that year keyed by its updatedAt; the latest copy is used.
+    public static PatientRecord decodeArchived(String key, Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Object latest = null;
+        long latestAt = -1;
+        for (Map.Entry<?, ?> copy : ((Map<?, ?>) value).entrySet()) {
+            long at;
+            try {
+                at = Long.parseLong(String.valueOf(copy.getKey()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (at > latestAt) {
+                latestAt = at;
+                latest = copy.getValue();
+            }
+        }
+        return decodeRecord(key, latest);
+    }
+
+    // Decodes a patientSummaries node. Summaries carry no email, so the
+    // record's email is null; the full record is fetched when it is needed.
+    // A tombstone decodes to null, like a removed child.
+    public static PatientRecord decodeSummary(String key, Object value) {
+        if (!(value instanceof Map) || PatientIndex.isTombstone(value)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        try {
+            return new PatientRecord(key,
+                    readString(fields, FIELD_NAME),
+                    null,
+                    PatientRecord.parseAge(fields.get(PatientIndex.FIELD_AGE_YEARS)),
+                    DiseaseDictionary.intern(readString(fields, FIELD_DISEASE)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The node written for a patient: the shape setValue(patient) produces,
+    // plus the derived fields that PatientIndex queries on
+    public static Map<String, Object> encode(Patient patient) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(FIELD_NAME, patient.name);
+        fields.put(FIELD_EMAIL, patient.email);
+        fields.put(FIELD_AGE, patient.age);
+        fields.put(FIELD_ID, patient.id);
+        fields.put(FIELD_DISEASE, patient.disease);
+        fields.put(FIELD_CREATION_ID, patient.creationId);
+        PatientIndex.addFields(fields, patient);
+        return fields;
+    }
+
+    private static String readString(Map<?, ?> fields, String field) {
+        Object value = fields.get(field);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw new IllegalArgumentException("Field " + field + " is not a string: " + value.getClass().getName());
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.hospitalmanagement;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+
+// Layout of the server-side indexes that let queries filter in the database.
+// Each patient node carries derived diseaseKey and ageYears fields, indexed
+// by the .indexOn rules in database.rules.json. patientsByDisease/{key}/{id}
+// holds the patient's age, so disease plus age range is one indexed query.
+// patientSummaries/{id} is the projection list views download: the name,
+// disease and age a row shows, without the rest of the record. Records and
+// summaries carry a server-assigned updatedAt, and a deleted patient leaves
+// a tombstone summary, so clients can sync only what changed (see SyncMark).
+// Discharged patients move to archive/{year}/{id}/{updatedAt}, out of
+// everything the live lists download.
+public final class PatientIndex {
+
+    public static final String PATIENTS = "patients";
+    public static final String BY_DISEASE = "patientsByDisease";
+    public static final String SUMMARIES = "patientSummaries";
+    // Set once every record has a summary; older data is migrated by PatientSummaryMigration
+    public static final String SUMMARIES_VERSION = "schema/patientSummaries";
+    // 2 added updatedAt to every summary
+    public static final int CURRENT_SUMMARIES_VERSION = 2;
+
+    public static final String ARCHIVE = "archive";
+    // Tombstones older than this may be purged, so a client whose mark is older must resync in full
+    public static final long TOMBSTONE_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+
+    public static final String FIELD_DISEASE_KEY = "diseaseKey";
+    public static final String FIELD_AGE_YEARS = "ageYears";
+    public static final String FIELD_UPDATED_AT = "updatedAt";
+    // Set on the summary a deleted patient leaves behind
+    public static final String FIELD_DELETED = "deleted";
+    public static final String FIELD_ARCHIVED_AT = "archivedAt";
+
+    // The placeholder the database replaces with its own clock; same as ServerValue.TIMESTAMP
+    public static final Map<String, Object> SERVER_TIMESTAMP =
+            Collections.<String, Object>singletonMap(".sv", "timestamp");
+
+    private PatientIndex() {
+    }
+
+    // Lower-cased, trimmed disease usable as a database key; null for no disease.
+    // ". # $ [ ] /" and control characters are not allowed in keys.
+    public static String diseaseKey(String disease) {
+        if (disease == null) {
+            return null;
+        }
+        String name = disease.trim();
+        if (name.isEmpty()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            key.append(c < 0x20 || c == 0x7f || ".#$[]/".indexOf(c) >= 0 ? '_' : c);
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // Adds the derived fields to a node produced by PatientCodec.encode
+    static void addFields(Map<String, Object> fields, Patient patient) {
+        fields.put(FIELD_DISEASE_KEY, diseaseKey(patient.disease));
+        int age = PatientRecord.parseAge(patient.age);
+        fields.put(FIELD_AGE_YEARS, age == PatientRecord.UNKNOWN_AGE ? null : age);
+    }
+
+    // The summary of a node produced by PatientCodec.encode, copied field for
+    // field so the rules can check it against the record
+    public static Map<String, Object> summary(Map<?, ?> fields) {
+        Map<String, Object> summary = new HashMap<>(4);
+        summary.put(PatientCodec.FIELD_NAME, fields.get(PatientCodec.FIELD_NAME));
+        summary.put(PatientCodec.FIELD_DISEASE, fields.get(PatientCodec.FIELD_DISEASE));
+        summary.put(FIELD_AGE_YEARS, fields.get(FIELD_AGE_YEARS));
+        summary.put(FIELD_UPDATED_AT, SERVER_TIMESTAMP);
+        return summary;
+    }
+
+    // What a deleted patient's summary becomes, so clients syncing by updatedAt see the delete
+    public static Map<String, Object> tombstone() {
+        Map<String, Object> tombstone = new HashMap<>(2);
+        tombstone.put(FIELD_DELETED, true);
+        tombstone.put(FIELD_UPDATED_AT, SERVER_TIMESTAMP);
+        return tombstone;
+    }
+
+    public static boolean isTombstone(Object summary) {
+        return summary instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) summary).get(FIELD_DELETED));
+    }
+
+    // Server time of a stored record or summary's last change; 0 if it has none
+    public static long updatedAt(Object node) {
+        if (!(node instanceof Map)) {
+            return 0;
+        }
+        Object updatedAt = ((Map<?, ?>) node).get(FIELD_UPDATED_AT);
+        return updatedAt instanceof Number ? ((Number) updatedAt).longValue() : 0;
+    }
+
+    // Turns updates keyed by patient ID into one root-relative multi-path update
+    // that writes each record together with its patientsByDisease entry and its
+    // summary, so they commit or fail as a unit. Both are stamped with the
+    // server's time. A null value deletes the record and leaves a tombstone.
+    public static Map<String, Object> fanOut(Map<String, Object> patientUpdates) {
+        return fanOut(patientUpdates, Collections.<String, Object>emptyMap());
+    }
+
+    // As above, for callers that know what is stored: previous holds the raw
+    // stored records by ID, and an entry the update leaves under another
+    // disease, or deletes, is removed in the same commit.
+    public static Map<String, Object> fanOut(Map<String, Object> patientUpdates, Map<String, ?> previous) {
+        Map<String, Object> updates = new LinkedHashMap<>(patientUpdates.size() * 5);
+        for (Map.Entry<String, Object> update : patientUpdates.entrySet()) {
+            String id = update.getKey();
+            Object stored = previous.get(id);
+            String previousKey = stored instanceof Map ? storedDiseaseKey((Map<?, ?>) stored) : null;
+            if (!(update.getValue() instanceof Map)) {
+                updates.put(PATIENTS + "/" + id, null);
+                updates.put(SUMMARIES + "/" + id, tombstone());
+                if (previousKey != null) {
+                    updates.put(BY_DISEASE + "/" + previousKey + "/" + id, null);
+                }
+                continue;
+            }
+            Map<?, ?> record = (Map<?, ?>) update.getValue();
+            Map<String, Object> fields = new HashMap<>(record.size() + 1);
+            for (Map.Entry<?, ?> field : record.entrySet()) {
+                fields.put(String.valueOf(field.getKey()), field.getValue());
+            }
+            fields.put(FIELD_UPDATED_AT, SERVER_TIMESTAMP);
+            updates.put(PATIENTS + "/" + id, fields);
+            updates.put(SUMMARIES + "/" + id, summary(fields));
+            Object key = fields.get(FIELD_DISEASE_KEY);
+            if (key instanceof String) {
+                Object age = fields.get(FIELD_AGE_YEARS);
+                updates.put(BY_DISEASE + "/" + key + "/" + id,
+                        age instanceof Number ? age : PatientRecord.UNKNOWN_AGE);
+            }
+            if (previousKey != null && !previousKey.equals(key)) {
+                updates.put(BY_DISEASE + "/" + previousKey + "/" + id, null);
+            }
+        }
+        return updates;
+    }
+
+    // The patientsByDisease key a stored record is listed under; records saved
+    // before diseaseKey existed are keyed by their disease name
+    private static String storedDiseaseKey(Map<?, ?> record) {
+        Object key = record.get(FIELD_DISEASE_KEY);
+        if (key instanceof String) {
+            return (String) key;
+        }
+        Object disease = record.get(PatientCodec.FIELD_DISEASE);
+        return disease instanceof String ? diseaseKey((String) disease) : null;
+    }
+
+    // Key of the archive/{year} bucket for a patient archived at the given time, in UTC
+    public static String archiveYear(long timeMillis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.setTimeInMillis(timeMillis);
+        return Integer.toString(calendar.get(Calendar.YEAR));
+    }
+
+    // One multi-path update that moves a stored record to archive/{year}/{id}/{updatedAt}:
+    // the record and its patientsByDisease entry are removed and its summary
+    // becomes a tombstone, in the same commit as the archived copy. The copy
+    // keeps the record's updatedAt, and the rules only accept it while the live
+    // record still has that updatedAt, so an edit made since the read is never
+    // archived over. Keying the copy by it as well lets an ID that is reused
+    // after a discharge be archived again in the same year. record is the raw
+    // stored value.
+    public static Map<String, Object> archiveUpdates(String id, Map<?, ?> record, String year) {
+        Map<String, Object> archived = new HashMap<>(record.size() + 1);
+        for (Map.Entry<?, ?> field : record.entrySet()) {
+            archived.put(String.valueOf(field.getKey()), field.getValue());
+        }
+        archived.put(FIELD_ARCHIVED_AT, SERVER_TIMESTAMP);
+
+        Map<String, Object> updates = new LinkedHashMap<>(8);
+        updates.put(ARCHIVE + "/" + year + "/" + id + "/" + archiveEntry(record), archived);
+        updates.put(PATIENTS + "/" + id, null);
+        updates.put(SUMMARIES + "/" + id, tombstone());
+        String key = storedDiseaseKey(record);
+        if (key != null) {
+            updates.put(BY_DISEASE + "/" + key + "/" + id, null);
+        }
+        return updates;
+    }
+
+    // Key of a record's copy under archive/{year}/{id}; records saved before
+    // updatedAt existed use 0
+    public static String archiveEntry(Object record) {
+        return Long.toString(updatedAt(record));
+    }
+
+    // Updates that bring one key range of stored records up to date: summaries
+    // that are missing or differ are written, summaries without a record become
+    // tombstones, and records saved before the derived fields existed get them
+    // along with their patientsByDisease entry. Records are only patched field
+    // by field, so a concurrent edit of other fields is never overwritten.
+    // Both maps hold raw node values keyed by patient ID.
+    public static Map<String, Object> migrationUpdates(Map<String, Object> records, Map<String, Object> summaries) {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> record : records.entrySet()) {
+            String id = record.getKey();
+            PatientRecord patient = PatientCodec.decodeRecord(id, record.getValue());
+            if (patient == null) {
+                // Not a readable patient; the list skips it too
+                continue;
+            }
+            Map<?, ?> stored = (Map<?, ?>) record.getValue();
+            Map<String, Object> fields = new HashMap<>(stored.size() + 2);
+            for (Map.Entry<?, ?> field : stored.entrySet()) {
+                fields.put(String.valueOf(field.getKey()), field.getValue());
+            }
+            Map<String, Object> derived = new HashMap<>(2);
+            derived.put(FIELD_DISEASE_KEY, diseaseKey(patient.disease()));
+            derived.put(FIELD_AGE_YEARS, patient.age == PatientRecord.UNKNOWN_AGE ? null : patient.age);
+            boolean patched = false;
+            for (Map.Entry<String, Object> field : derived.entrySet()) {
+                if (!sameValue(field.getValue(), stored.get(field.getKey()))) {
+                    fields.put(field.getKey(), field.getValue());
+                    updates.put(PATIENTS + "/" + id + "/" + field.getKey(), field.getValue());
+                    patched = true;
+                }
+            }
+            Object key = fields.get(FIELD_DISEASE_KEY);
+            if (patched && key instanceof String) {
+                Object age = fields.get(FIELD_AGE_YEARS);
+                updates.put(BY_DISEASE + "/" + key + "/" + id, age instanceof Number ? age : PatientRecord.UNKNOWN_AGE);
+            }
+
+            Map<String, Object> summary = summary(fields);
+            if (!sameSummary(summary, summaries.get(id))) {
+                updates.put(SUMMARIES + "/" + id, summary);
+            }
+        }
+        for (Map.Entry<String, Object> summary : summaries.entrySet()) {
+            if (!records.containsKey(summary.getKey()) && !isTombstone(summary.getValue())) {
+                updates.put(SUMMARIES + "/" + summary.getKey(), tombstone());
+            }
+        }
+        return updates;
+    }
+
+    private static boolean sameSummary(Map<String, Object> summary, Object stored) {
+        if (!(stored instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> fields = (Map<?, ?>) stored;
+        // A summary written before updatedAt existed is rewritten to get one
+        if (countNonNull(fields) != countNonNull(summary) || !(fields.get(FIELD_UPDATED_AT) instanceof Number)) {
+            return false;
+        }
+        for (Map.Entry<String, Object> field : summary.entrySet()) {
+            if (!field.getKey().equals(FIELD_UPDATED_AT) && !sameValue(field.getValue(), fields.get(field.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countNonNull(Map<?, ?> fields) {
+        int count = 0;
+        for (Object value : fields.values()) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // The database hands numbers back as Long or Double whatever was written
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        return Objects.equals(a, b);
+    }
+}
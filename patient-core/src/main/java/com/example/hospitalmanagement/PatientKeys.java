@@ -0,0 +1,37 @@
+package com.example.hospitalmanagement;
+
+import java.util.Comparator;
+
+// Ordering of patient keys as the Realtime Database sorts them with orderByKey.
+public final class PatientKeys {
+
+    // Firebase orders keys that parse as 32-bit integers numerically, before all other keys
+    public static final Comparator<String> ORDER = (a, b) -> {
+        Integer ia = parseIntKey(a);
+        Integer ib = parseIntKey(b);
+        if (ia != null && ib != null) {
+            return ia.compareTo(ib);
+        } else if (ia != null) {
+            return -1;
+        } else if (ib != null) {
+            return 1;
+        }
+        return a.compareTo(b);
+    };
+
+    private PatientKeys() {
+    }
+
+    private static Integer parseIntKey(String key) {
+        // Leading zeros and "-0" make a key a plain string in Firebase ordering
+        if (key.isEmpty() || key.length() > 11
+                || (key.length() > 1 && (key.charAt(0) == '0' || key.startsWith("-0")))) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
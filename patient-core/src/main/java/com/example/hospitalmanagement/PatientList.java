@@ -0,0 +1,71 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+// Key-ordered patients with immutable snapshots for observers.
+// The snapshot is rebuilt lazily, at most once per batch of changes, while
+// the ward statistics follow every put and remove as it happens.
+// Not thread-safe.
+public final class PatientList {
+
+    private final TreeMap<String, PatientRecord> patients = new TreeMap<>(PatientKeys.ORDER);
+    private List<PatientRecord> snapshot = Collections.emptyList();
+    private boolean dirty = false;
+    private final WardStats stats = new WardStats();
+
+    public PatientRecord get(String key) {
+        return patients.get(key);
+    }
+
+    public boolean contains(String key) {
+        return patients.containsKey(key);
+    }
+
+    public int size() {
+        return patients.size();
+    }
+
+    // Returns false when an identical record was already stored under key
+    public boolean put(String key, PatientRecord patient) {
+        PatientRecord old = patients.put(key, patient);
+        if (patient.equals(old)) {
+            return false;
+        }
+        stats.update(old, patient);
+        dirty = true;
+        return true;
+    }
+
+    public boolean remove(String key) {
+        PatientRecord old = patients.remove(key);
+        if (old == null) {
+            return false;
+        }
+        stats.remove(old);
+        dirty = true;
+        return true;
+    }
+
+    public void clear() {
+        patients.clear();
+        stats.clear();
+        snapshot = Collections.emptyList();
+        dirty = false;
+    }
+
+    // Live counts for the current contents
+    public WardStats stats() {
+        return stats;
+    }
+
+    public List<PatientRecord> snapshot() {
+        if (dirty) {
+            snapshot = Collections.unmodifiableList(new ArrayList<>(patients.values()));
+            dirty = false;
+        }
+        return snapshot;
+    }
+}
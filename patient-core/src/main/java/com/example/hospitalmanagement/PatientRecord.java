@@ -0,0 +1,103 @@
+package com.example.hospitalmanagement;
+
+import java.util.Objects;
+
+// Compact, immutable in-memory form of a patient.
+// Patient stays the wire format for Firebase writes; records
+// keep age as a primitive and the disease as a DiseaseDictionary id.
+public final class PatientRecord {
+
+    // Age that was missing or could not be read as a whole number
+    public static final int UNKNOWN_AGE = -1;
+
+    public final String id;
+    public final String name;
+    public final String email;
+    public final int age;
+    public final int diseaseId;
+    // The age as stored when it is not a whole number ("42 years", "6 months"),
+    // so it is shown and written back unchanged; null whenever age is usable
+    public final String rawAge;
+
+    public PatientRecord(String id, String name, String email, int age, int diseaseId) {
+        this(id, name, email, age, diseaseId, null);
+    }
+
+    public PatientRecord(String id, String name, String email, int age, int diseaseId, String rawAge) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.diseaseId = diseaseId;
+        this.rawAge = age == UNKNOWN_AGE ? rawAge : null;
+    }
+
+    public static PatientRecord fromPatient(Patient patient) {
+        return new PatientRecord(patient.id, patient.name, patient.email,
+                parseAge(patient.age), DiseaseDictionary.intern(patient.disease), rawAge(patient.age));
+    }
+
+    public String disease() {
+        return DiseaseDictionary.name(diseaseId);
+    }
+
+    // Age as the form and the wire format show it
+    public String ageText() {
+        if (age != UNKNOWN_AGE) {
+            return Integer.toString(age);
+        }
+        return rawAge != null ? rawAge : "";
+    }
+
+    public Patient toPatient() {
+        return new Patient(name, email, ageText(), id, disease());
+    }
+
+    public static int parseAge(Object age) {
+        if (age instanceof Number) {
+            double value = ((Number) age).doubleValue();
+            return value >= 0 && value <= Integer.MAX_VALUE && value == Math.rint(value) ? (int) value : UNKNOWN_AGE;
+        }
+        if (!(age instanceof String)) {
+            return UNKNOWN_AGE;
+        }
+        try {
+            int value = Integer.parseInt(((String) age).trim());
+            return value >= 0 ? value : UNKNOWN_AGE;
+        } catch (NumberFormatException e) {
+            return UNKNOWN_AGE;
+        }
+    }
+
+    // The stored age as text when parseAge can't read it, or null when it
+    // can or there is nothing to keep
+    public static String rawAge(Object age) {
+        if (age == null || parseAge(age) != UNKNOWN_AGE) {
+            return null;
+        }
+        String text = age.toString();
+        return text.trim().isEmpty() ? null : text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PatientRecord)) {
+            return false;
+        }
+        PatientRecord other = (PatientRecord) o;
+        return age == other.age
+                && diseaseId == other.diseaseId
+                && Objects.equals(id, other.id)
+                && Objects.equals(name, other.name)
+                && Objects.equals(email, other.email)
+                && Objects.equals(rawAge, other.rawAge);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, email, age, diseaseId, rawAge);
+    }
+}
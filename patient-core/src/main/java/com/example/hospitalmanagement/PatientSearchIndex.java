@@ -0,0 +1,274 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Client-side search index over patients, maintained incrementally.
+// Name words and IDs go into a prefix trie, diseases into an inverted
+// index and ages into a sorted map for range queries.
+// Not thread-safe: confine updates and queries to one thread.
+public class PatientSearchIndex {
+
+    // Matches any age when used as a bound
+    public static final int ANY_AGE = -1;
+
+    private final Map<String, PatientRecord> patients = new HashMap<>();
+    private final TrieNode nameTrie = new TrieNode();
+    private final TrieNode idTrie = new TrieNode();
+    private final Map<String, Set<String>> byDisease = new HashMap<>();
+    private final TreeMap<Integer, Set<String>> byAge = new TreeMap<>();
+
+    public int size() {
+        return patients.size();
+    }
+
+    public void put(PatientRecord patient) {
+        remove(patient.id);
+        patients.put(patient.id, patient);
+
+        for (String word : words(patient.name)) {
+            nameTrie.insert(word, patient.id);
+        }
+        idTrie.insert(normalize(patient.id), patient.id);
+
+        String disease = normalize(patient.disease());
+        if (!disease.isEmpty()) {
+            addTo(byDisease, disease, patient.id);
+        }
+        if (patient.age != PatientRecord.UNKNOWN_AGE) {
+            addTo(byAge, patient.age, patient.id);
+        }
+    }
+
+    public boolean remove(String id) {
+        PatientRecord old = patients.remove(id);
+        if (old == null) {
+            return false;
+        }
+        for (String word : words(old.name)) {
+            nameTrie.delete(word, id);
+        }
+        idTrie.delete(normalize(id), id);
+
+        String disease = normalize(old.disease());
+        if (!disease.isEmpty()) {
+            removeFrom(byDisease, disease, id);
+        }
+        if (old.age != PatientRecord.UNKNOWN_AGE) {
+            removeFrom(byAge, old.age, id);
+        }
+        return true;
+    }
+
+    public void clear() {
+        patients.clear();
+        nameTrie.clear();
+        idTrie.clear();
+        byDisease.clear();
+        byAge.clear();
+    }
+
+    // Patients whose name word or ID starts with text (empty matches all),
+    // optionally restricted to a disease and an inclusive age range.
+    // Returns the first limit matches in key order.
+    public List<PatientRecord> search(String text, String disease, int minAge, int maxAge, int limit) {
+        String prefix = normalize(text);
+        String diseaseKey = normalize(disease);
+        // None of the structures below is in key order, so every match is offered and
+        // only the limit smallest keys are kept, largest at the head for eviction
+        PriorityQueue<PatientRecord> kept = new PriorityQueue<>(
+                (a, b) -> PatientKeys.ORDER.compare(b.id, a.id));
+
+        // Walk the most selective structure and check the other filters per candidate
+        if (!prefix.isEmpty()) {
+            Set<String> seen = new HashSet<>();
+            IdVisitor visitor = id -> {
+                if (seen.add(id)) {
+                    accept(patients.get(id), diseaseKey, minAge, maxAge, kept, limit);
+                }
+                return true;
+            };
+            nameTrie.visit(prefix, visitor);
+            idTrie.visit(prefix, visitor);
+        } else if (!diseaseKey.isEmpty()) {
+            for (String id : byDisease.getOrDefault(diseaseKey, Collections.emptySet())) {
+                accept(patients.get(id), "", minAge, maxAge, kept, limit);
+            }
+        } else if (minAge != ANY_AGE || maxAge != ANY_AGE) {
+            NavigableMap<Integer, Set<String>> range = byAge.subMap(
+                    minAge == ANY_AGE ? Integer.MIN_VALUE : minAge, true,
+                    maxAge == ANY_AGE ? Integer.MAX_VALUE : maxAge, true);
+            for (Set<String> bucket : range.values()) {
+                for (String id : bucket) {
+                    accept(patients.get(id), "", ANY_AGE, ANY_AGE, kept, limit);
+                }
+            }
+        } else {
+            for (PatientRecord patient : patients.values()) {
+                accept(patient, "", ANY_AGE, ANY_AGE, kept, limit);
+            }
+        }
+
+        List<PatientRecord> results = new ArrayList<>(kept);
+        Collections.sort(results, (a, b) -> PatientKeys.ORDER.compare(a.id, b.id));
+        return results;
+    }
+
+    // Keeps the patient if it passes the filters and sorts among the limit smallest keys
+    private static void accept(PatientRecord patient, String diseaseKey, int minAge, int maxAge,
+                               PriorityQueue<PatientRecord> kept, int limit) {
+        if (!diseaseKey.isEmpty()
+                && (patient.diseaseId == DiseaseDictionary.NONE || !patient.disease().equalsIgnoreCase(diseaseKey))) {
+            return;
+        }
+        if (minAge != ANY_AGE || maxAge != ANY_AGE) {
+            int age = patient.age;
+            if (age == PatientRecord.UNKNOWN_AGE || (minAge != ANY_AGE && age < minAge) || (maxAge != ANY_AGE && age > maxAge)) {
+                return;
+            }
+        }
+        if (limit <= 0) {
+            return;
+        }
+        if (kept.size() < limit) {
+            kept.add(patient);
+        } else if (PatientKeys.ORDER.compare(patient.id, kept.peek().id) < 0) {
+            kept.poll();
+            kept.add(patient);
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String name) {
+        List<String> words = new ArrayList<>();
+        for (String word : normalize(name).split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static <K> void addTo(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            index.put(key, ids);
+        }
+        ids.add(id);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private interface IdVisitor {
+        boolean visit(String id);
+    }
+
+    // Trie over normalized terms; each node holds the ids whose term ends there
+    private static final class TrieNode {
+        private char[] labels = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private Set<String> ids;
+
+        void insert(String term, String id) {
+            TrieNode node = this;
+            for (int i = 0; i < term.length(); i++) {
+                TrieNode next = node.child(term.charAt(i));
+                if (next == null) {
+                    next = node.addChild(term.charAt(i));
+                }
+                node = next;
+            }
+            if (node.ids == null) {
+                node.ids = new LinkedHashSet<>(2);
+            }
+            node.ids.add(id);
+        }
+
+        void delete(String term, String id) {
+            TrieNode node = this;
+            for (int i = 0; i < term.length() && node != null; i++) {
+                node = node.child(term.charAt(i));
+            }
+            // Empty nodes are left in place; they are reused by the next insert
+            if (node != null && node.ids != null) {
+                node.ids.remove(id);
+                if (node.ids.isEmpty()) {
+                    node.ids = null;
+                }
+            }
+        }
+
+        // Visits every id under prefix until the visitor returns false
+        boolean visit(String prefix, IdVisitor visitor) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            return node == null || node.visitAll(visitor);
+        }
+
+        void clear() {
+            labels = new char[0];
+            children = new TrieNode[0];
+            ids = null;
+        }
+
+        private boolean visitAll(IdVisitor visitor) {
+            if (ids != null) {
+                for (String id : ids) {
+                    if (!visitor.visit(id)) {
+                        return false;
+                    }
+                }
+            }
+            for (TrieNode child : children) {
+                if (!child.visitAll(visitor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private TrieNode child(char label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private TrieNode addChild(char label) {
+            int n = labels.length;
+            char[] newLabels = new char[n + 1];
+            TrieNode[] newChildren = new TrieNode[n + 1];
+            System.arraycopy(labels, 0, newLabels, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            TrieNode node = new TrieNode();
+            newLabels[n] = label;
+            newChildren[n] = node;
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+    }
+}
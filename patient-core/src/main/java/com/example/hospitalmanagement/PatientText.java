@@ -0,0 +1,88 @@
+package com.example.hospitalmanagement;
+
+// Labels shown for one patient row, kept in reusable char buffers.
+// Each label's prefix is written once and bind() only rewrites the value
+// after it, so once the buffers have grown to fit, a bind allocates nothing.
+// TextView.setText(char[], int, int) shows a buffer without copying it.
+public final class PatientText {
+
+    public final Label name = new Label("Name: ");
+    public final Label email = new Label("Email: ");
+    public final Label age = new Label("Age: ");
+    public final Label id = new Label("ID: ");
+    public final Label disease = new Label("Disease: ");
+
+    public void bind(PatientRecord patient) {
+        name.set(patient.name);
+        email.set(patient.email);
+        if (patient.age < 0) {
+            age.set(patient.ageText());
+        } else {
+            age.set(patient.age);
+        }
+        id.set(patient.id);
+        disease.set(patient.disease());
+    }
+
+    public static final class Label {
+        // Room for typical names and emails, so most rows never grow a buffer
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final int prefixLength;
+        private char[] chars;
+        private int length;
+
+        Label(String prefix) {
+            prefixLength = prefix.length();
+            chars = new char[Math.max(INITIAL_CAPACITY, prefixLength)];
+            prefix.getChars(0, prefixLength, chars, 0);
+            length = prefixLength;
+        }
+
+        // Valid up to length(); rewritten by the next bind
+        public char[] chars() {
+            return chars;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        // A missing value reads "null", as string concatenation showed it
+        void set(String value) {
+            if (value == null) {
+                value = "null";
+            }
+            ensureCapacity(prefixLength + value.length());
+            value.getChars(0, value.length(), chars, prefixLength);
+            length = prefixLength + value.length();
+        }
+
+        // Writes a non-negative number without going through a String
+        void set(int value) {
+            int digits = 1;
+            for (int rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            ensureCapacity(prefixLength + digits);
+            length = prefixLength + digits;
+            for (int i = length - 1; i >= prefixLength; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                char[] grown = new char[Math.max(capacity, chars.length * 2)];
+                System.arraycopy(chars, 0, grown, 0, prefixLength);
+                chars = grown;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.hospitalmanagement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// Seals the patient rows kept on the device with AES-GCM. Rows use a
+// software data key, so a full sync doesn't cost a Keystore call per row;
+// the data key itself is stored wrapped by the Keystore key, and revoking
+// that key leaves every row unreadable. A row's ID is bound in as associated
+// data, so a sealed row copied under another ID fails to open.
+// Not thread-safe; make one per batch.
+public final class RecordSealer {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+    private static final int IV_BYTES = 12;
+    private static final int DATA_KEY_BITS = 256;
+
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final SecureRandom random = new SecureRandom();
+
+    public RecordSealer(SecretKey key) throws GeneralSecurityException {
+        this.key = key;
+        this.cipher = Cipher.getInstance(TRANSFORMATION);
+    }
+
+    public byte[] seal(PatientRecord record) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(record.id.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(encode(record));
+        byte[] sealed = Arrays.copyOf(iv, IV_BYTES + ciphertext.length);
+        System.arraycopy(ciphertext, 0, sealed, IV_BYTES, ciphertext.length);
+        return sealed;
+    }
+
+    // Throws if sealed was not produced by seal() for id with the same key
+    public PatientRecord open(String id, byte[] sealed) throws GeneralSecurityException {
+        if (sealed == null || sealed.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Row is truncated");
+        }
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+        cipher.updateAAD(id.getBytes(StandardCharsets.UTF_8));
+        byte[] plain = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+        try {
+            return decode(id, plain);
+        } catch (IOException e) {
+            throw new GeneralSecurityException("Row is malformed", e);
+        }
+    }
+
+    public static SecretKey newDataKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(DATA_KEY_BITS);
+        return generator.generateKey();
+    }
+
+    // wrappingKey may be a Keystore key, which picks the IV itself
+    public static byte[] wrap(SecretKey dataKey, SecretKey wrappingKey) throws GeneralSecurityException {
+        Cipher wrapper = Cipher.getInstance(TRANSFORMATION);
+        wrapper.init(Cipher.ENCRYPT_MODE, wrappingKey);
+        byte[] iv = wrapper.getIV();
+        byte[] ciphertext = wrapper.doFinal(dataKey.getEncoded());
+        byte[] wrapped = Arrays.copyOf(iv, iv.length + ciphertext.length);
+        System.arraycopy(ciphertext, 0, wrapped, iv.length, ciphertext.length);
+        return wrapped;
+    }
+
+    // Throws if wrapped was not produced by wrap() with the same wrapping key
+    public static SecretKey unwrap(byte[] wrapped, SecretKey wrappingKey) throws GeneralSecurityException {
+        if (wrapped == null || wrapped.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Data key is truncated");
+        }
+        Cipher unwrapper = Cipher.getInstance(TRANSFORMATION);
+        unwrapper.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_BITS, wrapped, 0, IV_BYTES));
+        return new SecretKeySpec(unwrapper.doFinal(wrapped, IV_BYTES, wrapped.length - IV_BYTES), "AES");
+    }
+
+    private static byte[] encode(PatientRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeNullable(out, record.name);
+            writeNullable(out, record.email);
+            out.writeInt(record.age);
+            writeNullable(out, record.disease());
+            writeNullable(out, record.rawAge);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PatientRecord decode(String id, byte[] plain) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown row format " + version);
+            }
+            String name = readNullable(in);
+            String email = readNullable(in);
+            int age = in.readInt();
+            int diseaseId = DiseaseDictionary.intern(readNullable(in));
+            return new PatientRecord(id, name, email, age, diseaseId, readNullable(in));
+        }
+    }
+
+    // Length-prefixed UTF-8, so long values aren't capped like writeUTF; -1 is null
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("Field runs past the end of the row");
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
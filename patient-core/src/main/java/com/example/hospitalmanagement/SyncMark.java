@@ -0,0 +1,65 @@
+package com.example.hospitalmanagement;
+
+// High-water mark of the patient summaries a client has applied, in server
+// time. With a mark, a client that reconnects only asks for summaries whose
+// updatedAt is at or after it, so the download follows how much changed, not
+// how many patients there are. Deletes arrive as tombstones in the same query.
+// Without a mark the client reads every summary and reconciles key sets.
+// Not thread-safe.
+public final class SyncMark {
+
+    // A client's own writes are first seen with the clock offset it estimates
+    // for the server; re-reading a little before the mark covers that error
+    public static final long DEFAULT_OVERLAP_MS = 10_000;
+    // A day short of the tombstone retention, for device clocks that run behind
+    public static final long MAX_AGE_MS = PatientIndex.TOMBSTONE_RETENTION_MS - 24 * 60 * 60 * 1000;
+
+    private final long overlapMs;
+    private long mark;
+
+    public SyncMark(long mark) {
+        this(mark, DEFAULT_OVERLAP_MS);
+    }
+
+    public SyncMark(long mark, long overlapMs) {
+        this.mark = Math.max(0, mark);
+        this.overlapMs = overlapMs;
+    }
+
+    public long get() {
+        return mark;
+    }
+
+    // True when nothing has been synced, or the local copy can't be trusted
+    public boolean isFullSync() {
+        return mark == 0;
+    }
+
+    // Where the next delta query starts: orderByChild(updatedAt).startAt(queryStart())
+    public long queryStart() {
+        return Math.max(1, mark - overlapMs);
+    }
+
+    // Takes in a summary or tombstone that was just applied
+    public void advance(Object summary) {
+        advanceTo(PatientIndex.updatedAt(summary));
+    }
+
+    public void advanceTo(long updatedAt) {
+        if (updatedAt > mark) {
+            mark = updatedAt;
+        }
+    }
+
+    // Drops a mark so old that deletes since it may have been purged
+    public void expire(long now) {
+        if (!isFullSync() && queryStart() < now - MAX_AGE_MS) {
+            reset();
+        }
+    }
+
+    // Forces the next sync to be a full one
+    public void reset() {
+        mark = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.hospitalmanagement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Patients per disease and per age band, kept up to date from each added,
+// changed or removed record in O(1) instead of rescanning the whole list.
+// Counts are indexed by DiseaseDictionary id. Not thread-safe.
+public final class WardStats {
+
+    public static final int AGE_BAND_YEARS = 10;
+    // 0-9, 10-19, ... 80-89, then 90 and over
+    public static final int AGE_BANDS = 10;
+
+    public static final class DiseaseCount {
+        // null for patients without a disease
+        public final String disease;
+        public final int count;
+
+        DiseaseCount(String disease, int count) {
+            this.disease = disease;
+            this.count = count;
+        }
+    }
+
+    private int total = 0;
+    // Slot 0 counts DiseaseDictionary.NONE, slot id + 1 counts disease id
+    private int[] diseaseCounts = new int[16];
+    private final int[] ageBands = new int[AGE_BANDS];
+    private int unknownAge = 0;
+
+    public void add(PatientRecord patient) {
+        count(patient, 1);
+    }
+
+    public void remove(PatientRecord patient) {
+        count(patient, -1);
+    }
+
+    // Applies one change; old is null for an added patient and now is null for a removed one
+    public void update(PatientRecord old, PatientRecord now) {
+        if (old != null) {
+            count(old, -1);
+        }
+        if (now != null) {
+            count(now, 1);
+        }
+    }
+
+    public void clear() {
+        total = 0;
+        Arrays.fill(diseaseCounts, 0);
+        Arrays.fill(ageBands, 0);
+        unknownAge = 0;
+    }
+
+    // Recomputes everything from a full list, e.g. after loading a snapshot
+    public void rebuild(Iterable<PatientRecord> patients) {
+        clear();
+        for (PatientRecord patient : patients) {
+            count(patient, 1);
+        }
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int diseaseCount(int diseaseId) {
+        int slot = diseaseId + 1;
+        return slot < diseaseCounts.length ? diseaseCounts[slot] : 0;
+    }
+
+    public int ageBandCount(int band) {
+        return ageBands[band];
+    }
+
+    public int unknownAgeCount() {
+        return unknownAge;
+    }
+
+    // Diseases with at least one patient, most common first
+    public List<DiseaseCount> diseases() {
+        List<DiseaseCount> diseases = new ArrayList<>();
+        for (int slot = 0; slot < diseaseCounts.length; slot++) {
+            if (diseaseCounts[slot] > 0) {
+                diseases.add(new DiseaseCount(DiseaseDictionary.name(slot - 1), diseaseCounts[slot]));
+            }
+        }
+        diseases.sort((a, b) -> b.count != a.count ? Integer.compare(b.count, a.count)
+                : a.disease == null ? 1 : b.disease == null ? -1 : a.disease.compareTo(b.disease));
+        return diseases;
+    }
+
+    public static int ageBand(int age) {
+        return Math.min(age / AGE_BAND_YEARS, AGE_BANDS - 1);
+    }
+
+    // "0-9", ..., "90+"
+    public static String ageBandLabel(int band) {
+        int from = band * AGE_BAND_YEARS;
+        return band == AGE_BANDS - 1 ? from + "+" : from + "-" + (from + AGE_BAND_YEARS - 1);
+    }
+
+    private void count(PatientRecord patient, int delta) {
+        total += delta;
+        int slot = patient.diseaseId + 1;
+        if (slot >= diseaseCounts.length) {
+            diseaseCounts = Arrays.copyOf(diseaseCounts, Math.max(slot + 1, diseaseCounts.length * 2));
+        }
+        diseaseCounts[slot] += delta;
+        if (patient.age < 0) {
+            unknownAge += delta;
+        } else {
+            ageBands[ageBand(patient.age)] += delta;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * Seals and opens sessions with software AES keys standing in for the
+ * Keystore key, and checks that altered or foreign copies are refused.
+ */
+public class AuthSessionTest {
+
+    @Test
+    public void open_returnsWhatWasSealed() throws Exception {
+        SecretKey key = newKey();
+        AuthSession session = AuthSession.signedIn("uid-1").withViewState(true, "asthma \u00e9 \ud83d\ude00");
+
+        assertEquals(session, AuthSession.open(session.seal(key), key));
+        assertEquals(AuthSession.signedIn("uid-1"), AuthSession.open(AuthSession.signedIn("uid-1").seal(key), key));
+    }
+
+    @Test
+    public void open_returnsAQueryPastTheWriteUtfLimit() throws Exception {
+        SecretKey key = newKey();
+        StringBuilder query = new StringBuilder();
+        // Three bytes each in UTF-8, so well past 65535 encoded bytes
+        while (query.length() < 30_000) {
+            query.append('\u20ac');
+        }
+        AuthSession session = AuthSession.signedIn("uid-1").withViewState(true, query.toString());
+
+        assertEquals(session, AuthSession.open(session.seal(key), key));
+    }
+
+    @Test
+    public void open_readsSessionsSealedInTheWriteUtfFormat() throws Exception {
+        SecretKey key = newKey();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(1);
+            out.writeUTF("uid-1");
+            out.writeBoolean(true);
+            out.writeUTF("flu");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        byte[] ciphertext = cipher.doFinal(bytes.toByteArray());
+        byte[] sealed = Arrays.copyOf(iv, iv.length + ciphertext.length);
+        System.arraycopy(ciphertext, 0, sealed, iv.length, ciphertext.length);
+
+        assertEquals(new AuthSession("uid-1", true, "flu"), AuthSession.open(sealed, key));
+    }
+
+    @Test
+    public void seal_hidesTheContentAndUsesAFreshIv() throws Exception {
+        SecretKey key = newKey();
+        AuthSession session = new AuthSession("admin-uid", true, "malaria");
+
+        byte[] first = session.seal(key);
+        byte[] second = session.seal(key);
+
+        assertFalse(Arrays.equals(first, second));
+        String text = new String(first, StandardCharsets.ISO_8859_1);
+        assertFalse(text.contains("admin-uid"));
+        assertFalse(text.contains("malaria"));
+    }
+
+    @Test
+    public void open_refusesAlteredTruncatedOrForeignCopies() throws Exception {
+        SecretKey key = newKey();
+        byte[] sealed = new AuthSession("uid-1", true, "flu").seal(key);
+
+        for (int i = 0; i < sealed.length; i++) {
+            byte[] altered = sealed.clone();
+            altered[i] ^= 1;
+            assertRefused(altered, key);
+        }
+        assertRefused(Arrays.copyOf(sealed, sealed.length - 1), key);
+        assertRefused(Arrays.copyOf(sealed, 12), key);
+        assertRefused(new byte[0], key);
+        assertRefused(sealed, newKey());
+    }
+
+    private static void assertRefused(byte[] sealed, SecretKey key) {
+        try {
+            AuthSession.open(sealed, key);
+            fail("opened a session that should have been refused");
+        } catch (GeneralSecurityException expected) {
+            // Refused
+        }
+    }
+
+    private static SecretKey newKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        return generator.generateKey();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.hospitalmanagement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the metric buckets, the disabled fast path and concurrent recording.
+ */
+public class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void bucket_groupsValuesByPowerOfTwo() {
+        assertEquals(0, Metrics.Histogram.bucket(0));
+        assertEquals(1, Metrics.Histogram.bucket(1));
+        assertEquals(2, Metrics.Histogram.bucket(2));
+        assertEquals(2, Metrics.Histogram.bucket(3));
+        assertEquals(3, Metrics.Histogram.bucket(4));
+        assertEquals(11, Metrics.Histogram.bucket(1024));
+        assertEquals(63, Metrics.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogram_reportsCountMeanPercentilesAndMax() {
+        for (int i = 1; i <= 100; i++) {
+            Metrics.RECORDS_PER_UPDATE.record(i);
+        }
+
+        assertEquals(100, Metrics.RECORDS_PER_UPDATE.count());
+        assertEquals(50, Metrics.RECORDS_PER_UPDATE.mean());
+        assertEquals(100, Metrics.RECORDS_PER_UPDATE.max());
+        // 50 falls in [32, 63], 90 and 99 in [64, 127] capped at the max
+        assertEquals(63, Metrics.RECORDS_PER_UPDATE.percentile(50));
+        assertEquals(100, Metrics.RECORDS_PER_UPDATE.percentile(90));
+        assertEquals(100, Metrics.RECORDS_PER_UPDATE.percentile(99));
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        Metrics.setEnabled(false);
+
+        assertEquals(0, Metrics.start());
+        Metrics.BIND.recordSince(Metrics.start());
+        Metrics.RECORDS_PER_UPDATE.record(5);
+        Metrics.DROPPED_FRAMES.add(3);
+
+        assertEquals(0, Metrics.BIND.count());
+        assertEquals(0, Metrics.RECORDS_PER_UPDATE.count());
+        assertEquals(0, Metrics.DROPPED_FRAMES.get());
+    }
+
+    @Test
+    public void timingStartedWhileDisabled_isDropped() {
+        Metrics.setEnabled(false);
+        long start = Metrics.start();
+        Metrics.setEnabled(true);
+
+        Metrics.PATIENT_WRITE.recordSince(start);
+
+        assertEquals(0, Metrics.PATIENT_WRITE.count());
+    }
+
+    @Test
+    public void concurrentRecording_losesNoUpdates() throws Exception {
+        int threads = 8;
+        int perThread = 100_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    Metrics.BIND.record(i % 1000);
+                    Metrics.DROPPED_FRAMES.add(1);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * perThread, Metrics.BIND.count());
+        assertEquals((long) threads * perThread, Metrics.DROPPED_FRAMES.get());
+        assertEquals(999, Metrics.BIND.max());
+    }
+
+    @Test
+    public void dump_listsEveryMetric() {
+        Metrics.SIGN_IN.record(120);
+        String dump = Metrics.dump();
+
+        assertTrue(dump, dump.startsWith("metrics enabled\n"));
+        assertTrue(dump, dump.contains("auth.signIn: count=1 mean=120 p50=120 p90=120 p99=120 max=120 ms\n"));
+        assertTrue(dump, dump.contains("list.droppedFrames: 0\n"));
+        for (Metrics.Histogram histogram : Metrics.histograms()) {
+            assertTrue(histogram.name, dump.contains(histogram.name + ": "));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks PatientCodec.decode field by field. Parity with the SDK's own
+ * getValue(Patient.class) is checked by PatientCodecMapperTest in the app.
+ */
+public class PatientCodecTest {
+
+    @Test
+    public void decode_readsEveryField() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("name", "Jane Doe");
+        node.put("email", "jane@example.com");
+        node.put("age", "42");
+        node.put("id", "P-1");
+        node.put("disease", "Asthma");
+        node.put("creationId", "c-7f3a");
+
+        Patient patient = PatientCodec.decode(node);
+        assertEquals("Jane Doe", patient.name);
+        assertEquals("jane@example.com", patient.email);
+        assertEquals("42", patient.age);
+        assertEquals("P-1", patient.id);
+        assertEquals("Asthma", patient.disease);
+        assertEquals("c-7f3a", patient.creationId);
+    }
+
+    @Test
+    public void decode_missingFieldsAreNull() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("name", "John");
+
+        Patient patient = PatientCodec.decode(node);
+        assertEquals("John", patient.name);
+        assertNull(patient.email);
+        assertNull(patient.age);
+        assertNull(patient.id);
+        assertNull(patient.disease);
+        assertNull(patient.creationId);
+    }
+
+    @Test
+    public void decode_ignoresUnknownFields() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("name", "John");
+        node.put("ward", "B2");
+        node.put("vitals", new HashMap<String, Object>());
+
+        assertEquals("John", PatientCodec.decode(node).name);
+    }
+
+    @Test
+    public void decode_skipsMalformedNodes() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("name", "John");
+        node.put("age", 42L);
+
+        assertNull(PatientCodec.decode(node));
+        assertNull(PatientCodec.decode("not a patient"));
+        assertNull(PatientCodec.decode(null));
+    }
+}
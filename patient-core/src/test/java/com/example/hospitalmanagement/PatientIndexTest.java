@@ -0,0 +1,263 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the derived index fields, the multi-path update that writes a
+ * record together with its patientsByDisease entry and summary, the move
+ * to the archive, and the migration that brings older records up to that layout.
+ */
+public class PatientIndexTest {
+
+    @Test
+    public void diseaseKey_normalizesCaseSpacesAndForbiddenCharacters() {
+        assertEquals("flu", PatientIndex.diseaseKey("  Flu "));
+        assertEquals("covid_19", PatientIndex.diseaseKey("COVID.19"));
+        assertEquals("a_b_c_d_e_f_g", PatientIndex.diseaseKey("a#b$c[d]e/f\ng"));
+        assertNull(PatientIndex.diseaseKey("   "));
+        assertNull(PatientIndex.diseaseKey(null));
+    }
+
+    @Test
+    public void encode_addsQueryableFields() {
+        Map<String, Object> node = PatientCodec.encode(new Patient("Jane", "jane@example.com", " 42", "P-1", "Asthma "));
+        assertEquals("asthma", node.get(PatientIndex.FIELD_DISEASE_KEY));
+        assertEquals(42, node.get(PatientIndex.FIELD_AGE_YEARS));
+        // The original fields are written unchanged
+        assertEquals(" 42", node.get(PatientCodec.FIELD_AGE));
+        assertEquals("Asthma ", node.get(PatientCodec.FIELD_DISEASE));
+
+        Map<String, Object> unknown = PatientCodec.encode(new Patient("John", "john@example.com", "forty", "P-2", ""));
+        assertNull(unknown.get(PatientIndex.FIELD_DISEASE_KEY));
+        assertNull(unknown.get(PatientIndex.FIELD_AGE_YEARS));
+    }
+
+    @Test
+    public void fanOut_writesRecordAndIndexEntryTogether() {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        Map<String, Object> jane = PatientCodec.encode(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"));
+        updates.put("P-1", jane);
+        updates.put("P-2", PatientCodec.encode(new Patient("John", "john@example.com", "", "P-2", "flu")));
+        updates.put("P-3", PatientCodec.encode(new Patient("Mary", "mary@example.com", "30", "P-3", null)));
+        updates.put("P-4", null);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("patients/P-1", stamped(jane));
+        expected.put("patientsByDisease/flu/P-1", 42);
+        expected.put("patientSummaries/P-1", summary("Jane", "Flu", 42));
+        expected.put("patients/P-2", stamped(updates.get("P-2")));
+        expected.put("patientsByDisease/flu/P-2", PatientRecord.UNKNOWN_AGE);
+        expected.put("patientSummaries/P-2", summary("John", "flu", null));
+        expected.put("patients/P-3", stamped(updates.get("P-3")));
+        expected.put("patientSummaries/P-3", summary("Mary", null, 30));
+        expected.put("patients/P-4", null);
+        expected.put("patientSummaries/P-4", PatientIndex.tombstone());
+        assertEquals(expected, PatientIndex.fanOut(updates));
+        // The caller's record is left as it was
+        assertFalse(jane.containsKey(PatientIndex.FIELD_UPDATED_AT));
+    }
+
+    @Test
+    public void fanOut_removesTheEntryUnderThePreviousDisease() {
+        Map<String, Object> previous = new HashMap<>();
+        previous.put("P-1", stamped(PatientCodec.encode(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"))));
+        previous.put("P-2", stamped(PatientCodec.encode(new Patient("John", "john@example.com", "50", "P-2", "Asthma"))));
+        // Saved before diseaseKey existed
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put(PatientCodec.FIELD_NAME, "Mary");
+        legacy.put(PatientCodec.FIELD_DISEASE, "Malaria");
+        previous.put("P-3", legacy);
+        previous.put("P-4", stamped(PatientCodec.encode(new Patient("Ann", "ann@example.com", "30", "P-4", "Flu"))));
+
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("P-1", PatientCodec.encode(new Patient("Jane", "jane@example.com", "43", "P-1", "Asthma")));
+        updates.put("P-2", null);
+        updates.put("P-3", PatientCodec.encode(new Patient("Mary", "mary@example.com", "30", "P-3", "Flu")));
+        updates.put("P-4", PatientCodec.encode(new Patient("Ann", "ann@example.com", "31", "P-4", "Flu")));
+        Map<String, Object> fanned = PatientIndex.fanOut(updates, previous);
+
+        assertEquals(43, fanned.get("patientsByDisease/asthma/P-1"));
+        assertTrue(fanned.containsKey("patientsByDisease/flu/P-1"));
+        assertNull(fanned.get("patientsByDisease/flu/P-1"));
+        assertTrue(fanned.containsKey("patientsByDisease/asthma/P-2"));
+        assertNull(fanned.get("patientsByDisease/asthma/P-2"));
+        assertTrue(fanned.containsKey("patientsByDisease/malaria/P-3"));
+        assertNull(fanned.get("patientsByDisease/malaria/P-3"));
+        // Same disease: the entry is rewritten, not removed
+        assertEquals(31, fanned.get("patientsByDisease/flu/P-4"));
+        // Without what was stored, nothing is removed
+        assertFalse(PatientIndex.fanOut(updates).containsKey("patientsByDisease/flu/P-1"));
+    }
+
+    @Test
+    public void tombstone_decodesAsRemovedAndCarriesItsTime() {
+        Map<String, Object> tombstone = resolved(PatientIndex.tombstone(), 1_700_000_000_000L);
+
+        assertTrue(PatientIndex.isTombstone(tombstone));
+        assertFalse(PatientIndex.isTombstone(stored("Jane", "Flu", 42L, 5L)));
+        assertNull(PatientCodec.decodeSummary("P-1", tombstone));
+        assertEquals(1_700_000_000_000L, PatientIndex.updatedAt(tombstone));
+        assertEquals(5L, PatientIndex.updatedAt(stored("Jane", "Flu", 42L, 5L)));
+        // Not yet resolved by the server, or written before updatedAt existed
+        assertEquals(0L, PatientIndex.updatedAt(PatientIndex.tombstone()));
+        assertEquals(0L, PatientIndex.updatedAt(legacySummary("Jane", "Flu", 42L)));
+    }
+
+    @Test
+    public void summary_decodesToTheRowWithoutTheEmail() {
+        Patient jane = new Patient("Jane", "jane@example.com", " 42", "P-1", "Flu ");
+        Map<String, Object> summary = PatientIndex.summary(PatientCodec.encode(jane));
+
+        assertEquals(4, summary.size());
+        assertEquals(PatientIndex.SERVER_TIMESTAMP, summary.get(PatientIndex.FIELD_UPDATED_AT));
+        assertFalse(summary.containsKey(PatientCodec.FIELD_EMAIL));
+        assertEquals(new PatientRecord("P-1", "Jane", null, 42, DiseaseDictionary.intern("Flu")),
+                PatientCodec.decodeSummary("P-1", summary));
+        assertEquals(PatientRecord.UNKNOWN_AGE,
+                PatientCodec.decodeSummary("P-2", summary("John", "Flu", null)).age);
+        assertNull(PatientCodec.decodeSummary("P-3", "not a summary"));
+    }
+
+    @Test
+    public void migration_writesMissingAndStaleSummariesAndDropsOrphans() {
+        Map<String, Object> records = new LinkedHashMap<>();
+        records.put("P-1", PatientCodec.encode(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu")));
+        records.put("P-2", PatientCodec.encode(new Patient("John", "john@example.com", "50", "P-2", "Asthma")));
+        records.put("P-3", PatientCodec.encode(new Patient("Mary", "mary@example.com", "30", "P-3", "Flu")));
+        Map<String, Object> summaries = new HashMap<>();
+        records.put("P-4", PatientCodec.encode(new Patient("Anne", "anne@example.com", "61", "P-4", "Flu")));
+        // As read back from the database: numbers come back as Long
+        summaries.put("P-2", stored("John", "Asthma", 50L, 1000L));
+        summaries.put("P-3", stored("Mary", "Malaria", 30L, 1000L));
+        // Written before summaries had updatedAt
+        summaries.put("P-4", legacySummary("Anne", "Flu", 61L));
+        summaries.put("P-8", resolved(PatientIndex.tombstone(), 1000L));
+        summaries.put("P-9", stored("Gone", "Flu", 1L, 1000L));
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("patientSummaries/P-1", summary("Jane", "Flu", 42));
+        expected.put("patientSummaries/P-3", summary("Mary", "Flu", 30));
+        expected.put("patientSummaries/P-4", summary("Anne", "Flu", 61));
+        expected.put("patientSummaries/P-9", PatientIndex.tombstone());
+        assertEquals(expected, PatientIndex.migrationUpdates(records, summaries));
+    }
+
+    @Test
+    public void migration_patchesRecordsSavedBeforeTheDerivedFields() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("name", "Jane");
+        legacy.put("email", "jane@example.com");
+        legacy.put("age", "42");
+        legacy.put("id", "P-1");
+        legacy.put("disease", "Flu ");
+        Map<String, Object> malformed = new HashMap<>();
+        malformed.put("name", 7L);
+        Map<String, Object> records = new LinkedHashMap<>();
+        records.put("P-1", legacy);
+        records.put("P-2", malformed);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("patients/P-1/diseaseKey", "flu");
+        expected.put("patients/P-1/ageYears", 42);
+        expected.put("patientsByDisease/flu/P-1", 42);
+        expected.put("patientSummaries/P-1", summary("Jane", "Flu ", 42));
+        assertEquals(expected, PatientIndex.migrationUpdates(records, new HashMap<>()));
+    }
+
+    @Test
+    public void migration_ofMigratedData_writesNothing() {
+        Map<String, Object> records = new LinkedHashMap<>();
+        Map<String, Object> summaries = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            Patient patient = new Patient("Name " + i, i + "@example.com", i % 7 == 0 ? "" : Integer.toString(i),
+                    "P-" + i, i % 5 == 0 ? null : "Disease " + (i % 3));
+            Map<String, Object> updates = PatientIndex.fanOut(Collections.singletonMap(patient.id, PatientCodec.encode(patient)));
+            records.put(patient.id, resolved(updates.get("patients/" + patient.id), 1000L + i));
+            summaries.put(patient.id, resolved(updates.get("patientSummaries/" + patient.id), 1000L + i));
+        }
+        summaries.put("P-gone", resolved(PatientIndex.tombstone(), 5000L));
+        assertTrue(PatientIndex.migrationUpdates(records, summaries).isEmpty());
+    }
+
+    @Test
+    public void archiveUpdates_moveTheRecordAndTombstoneItsSummary() {
+        Map<String, Object> record = resolved(PatientIndex.fanOut(Collections.singletonMap("P-1",
+                PatientCodec.encode(new Patient("Jane", "jane@example.com", "42", "P-1", "Flu"))))
+                .get("patients/P-1"), 1000L);
+
+        Map<String, Object> updates = PatientIndex.archiveUpdates("P-1", record, "2025");
+
+        Map<String, Object> archived = new HashMap<>(record);
+        archived.put(PatientIndex.FIELD_ARCHIVED_AT, PatientIndex.SERVER_TIMESTAMP);
+        Map<String, Object> expected = new HashMap<>();
+        // Keyed by the updatedAt too, so a later patient with the same ID gets its own copy
+        expected.put("archive/2025/P-1/1000", archived);
+        expected.put("patients/P-1", null);
+        expected.put("patientSummaries/P-1", PatientIndex.tombstone());
+        expected.put("patientsByDisease/flu/P-1", null);
+        assertEquals(expected, updates);
+        // The copy keeps the updatedAt the rules compare with the live record
+        assertEquals(1000L, archived.get(PatientIndex.FIELD_UPDATED_AT));
+    }
+
+    @Test
+    public void archiveUpdates_findTheIndexEntryOfALegacyRecord() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("name", "Jane");
+        legacy.put("disease", "Flu ");
+
+        assertTrue(PatientIndex.archiveUpdates("P-1", legacy, "2025").containsKey("patientsByDisease/flu/P-1"));
+    }
+
+    @Test
+    public void archiveYear_isTheUtcYear() {
+        // 2024-12-31T23:30:00Z and 2025-01-01T00:30:00Z
+        assertEquals("2024", PatientIndex.archiveYear(1_735_687_800_000L));
+        assertEquals("2025", PatientIndex.archiveYear(1_735_691_400_000L));
+    }
+
+    // A summary as written, with updatedAt still the server placeholder
+    private static Map<String, Object> summary(String name, String disease, Object ageYears) {
+        Map<String, Object> summary = legacySummary(name, disease, ageYears);
+        summary.put("updatedAt", PatientIndex.SERVER_TIMESTAMP);
+        return summary;
+    }
+
+    private static Map<String, Object> legacySummary(String name, String disease, Object ageYears) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("name", name);
+        summary.put("disease", disease);
+        summary.put("ageYears", ageYears);
+        return summary;
+    }
+
+    private static Map<String, Object> stored(String name, String disease, Object ageYears, long updatedAt) {
+        Map<String, Object> summary = legacySummary(name, disease, ageYears);
+        summary.put("updatedAt", updatedAt);
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stamped(Object record) {
+        Map<String, Object> stamped = new HashMap<>((Map<String, Object>) record);
+        stamped.put("updatedAt", PatientIndex.SERVER_TIMESTAMP);
+        return stamped;
+    }
+
+    // What the database stores for a written node: the server placeholder replaced by its clock
+    static Map<String, Object> resolved(Object node, long now) {
+        Map<String, Object> resolved = new HashMap<>();
+        for (Map.Entry<?, ?> field : ((Map<?, ?>) node).entrySet()) {
+            Object value = PatientIndex.SERVER_TIMESTAMP.equals(field.getValue()) ? (Object) now : field.getValue();
+            resolved.put((String) field.getKey(), value);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Conversion from the Firebase JSON shape and heap footprint of PatientRecord.
+ */
+public class PatientRecordTest {
+
+    private static final String[] DISEASES = {"Asthma", "Flu", "Malaria", "Diabetes", "Hypertension", "Typhoid"};
+
+    @Test
+    public void parseAge_acceptsLegacyStringsAndNumbers() {
+        assertEquals(42, PatientRecord.parseAge("42"));
+        assertEquals(42, PatientRecord.parseAge(" 42 "));
+        assertEquals(42, PatientRecord.parseAge(42L));
+        assertEquals(42, PatientRecord.parseAge(42.0));
+        assertEquals(PatientRecord.UNKNOWN_AGE, PatientRecord.parseAge(null));
+        assertEquals(PatientRecord.UNKNOWN_AGE, PatientRecord.parseAge(""));
+        assertEquals(PatientRecord.UNKNOWN_AGE, PatientRecord.parseAge("forty"));
+        assertEquals(PatientRecord.UNKNOWN_AGE, PatientRecord.parseAge(42.5));
+        assertEquals(PatientRecord.UNKNOWN_AGE, PatientRecord.parseAge("-3"));
+    }
+
+    @Test
+    public void decodeRecord_readsLegacyAndNumericAges() {
+        Map<String, Object> legacy = node("Jane", "42", "Asthma");
+        Map<String, Object> numeric = node("Jane", 42L, "Asthma");
+
+        PatientRecord fromLegacy = PatientCodec.decodeRecord("P-1", legacy);
+        PatientRecord fromNumeric = PatientCodec.decodeRecord("P-1", numeric);
+
+        assertEquals(42, fromLegacy.age);
+        assertEquals("Asthma", fromLegacy.disease());
+        assertEquals(fromLegacy, fromNumeric);
+        assertNull(PatientCodec.decodeRecord("P-1", "not a patient"));
+    }
+
+    @Test
+    public void decodeRecord_keepsRecordsWithUnreadableAge() {
+        PatientRecord record = PatientCodec.decodeRecord("P-1", node("Jane", "unknown", null));
+
+        assertEquals(PatientRecord.UNKNOWN_AGE, record.age);
+        assertEquals("unknown", record.ageText());
+        assertEquals(DiseaseDictionary.NONE, record.diseaseId);
+        assertNull(record.disease());
+    }
+
+    @Test
+    public void toPatient_roundTripsThroughWireFormat() {
+        Patient patient = new Patient("Jane", "jane@example.com", "42", "P-1", "Asthma");
+
+        Patient copy = PatientRecord.fromPatient(patient).toPatient();
+
+        assertEquals(patient.name, copy.name);
+        assertEquals(patient.email, copy.email);
+        assertEquals(patient.age, copy.age);
+        assertEquals(patient.id, copy.id);
+        assertEquals(patient.disease, copy.disease);
+    }
+
+    @Test
+    public void nonIntegerAges_roundTripUnchanged() {
+        for (String age : new String[]{"42 years", "6 months"}) {
+            Patient patient = new Patient("Jane", "jane@example.com", age, "P-1", "Asthma");
+
+            PatientRecord record = PatientRecord.fromPatient(patient);
+            PatientRecord decoded = PatientCodec.decodeRecord("P-1", PatientCodec.encode(record.toPatient()));
+
+            assertEquals(PatientRecord.UNKNOWN_AGE, record.age);
+            assertEquals(age, record.rawAge);
+            assertEquals(age, record.ageText());
+            assertEquals(age, record.toPatient().age);
+            assertEquals(record, decoded);
+            assertEquals(age, decoded.toPatient().age);
+        }
+        assertEquals("42.5", PatientCodec.decodeRecord("P-1", node("Jane", 42.5, null)).ageText());
+    }
+
+    @Test
+    public void rawAge_isOnlyKeptWhenTheAgeCannotBeRead() {
+        assertNull(PatientRecord.fromPatient(new Patient("Jane", "jane@example.com", "42", "P-1", null)).rawAge);
+        assertNull(PatientRecord.fromPatient(new Patient("Jane", "jane@example.com", " ", "P-1", null)).rawAge);
+        assertNull(PatientRecord.fromPatient(new Patient("Jane", "jane@example.com", null, "P-1", null)).rawAge);
+        assertNull(new PatientRecord("P-1", "Jane", null, 42, DiseaseDictionary.NONE, "42 years").rawAge);
+        assertNotEquals(new PatientRecord("P-1", "Jane", null, PatientRecord.UNKNOWN_AGE, DiseaseDictionary.NONE, "6 months"),
+                new PatientRecord("P-1", "Jane", null, PatientRecord.UNKNOWN_AGE, DiseaseDictionary.NONE));
+    }
+
+    @Test
+    public void intern_sharesOneIdPerDisease() {
+        int id = DiseaseDictionary.intern("Cholera");
+
+        assertEquals(id, DiseaseDictionary.intern(new String("Cholera")));
+        assertEquals(id, DiseaseDictionary.intern(" Cholera "));
+        assertNotEquals(id, DiseaseDictionary.intern("cholera"));
+        assertEquals(DiseaseDictionary.NONE, DiseaseDictionary.intern("  "));
+        assertSame(DiseaseDictionary.name(id), PatientRecord.fromPatient(
+                new Patient("Jane", "jane@example.com", "42", "P-1", new String("Cholera"))).disease());
+    }
+
+    @Test
+    public void heap_recordsAreSmallerThanPatients() {
+        // What a decoded snapshot holds per patient: every string its own copy
+        for (int i = 0; i < 1000; i++) {
+            String disease = DISEASES[i % DISEASES.length];
+            Patient patient = new Patient("Patient " + i, "patient" + i + "@example.com",
+                    Integer.toString(i % 100), "P-" + i, disease);
+            PatientRecord record = PatientRecord.fromPatient(patient);
+
+            long patientBytes = shallowSize(Patient.class) + stringSize(patient.name) + stringSize(patient.email)
+                    + stringSize(patient.age) + stringSize(patient.id) + stringSize(patient.disease);
+            // The disease name is held once by DiseaseDictionary, not per record
+            long recordBytes = shallowSize(PatientRecord.class) + stringSize(record.name) + stringSize(record.email)
+                    + stringSize(record.id) + stringSize(record.rawAge);
+
+            assertTrue(i + ": " + recordBytes + " vs " + patientBytes,
+                    recordBytes + stringSize(patient.age) + stringSize(disease) <= patientBytes);
+        }
+    }
+
+    // Object size under a 64-bit JVM with compressed oops, from the declared
+    // instance fields, so the estimate is the same on every run
+    private static long shallowSize(Class<?> type) {
+        long size = 12;
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            Class<?> fieldType = field.getType();
+            if (fieldType == long.class || fieldType == double.class) {
+                size += 8;
+            } else if (fieldType == byte.class || fieldType == boolean.class) {
+                size += 1;
+            } else if (fieldType == short.class || fieldType == char.class) {
+                size += 2;
+            } else {
+                size += 4;
+            }
+        }
+        return align(size);
+    }
+
+    // A compact (Latin-1) String and its byte array
+    private static long stringSize(String value) {
+        return value == null ? 0 : 24 + align(16 + value.length());
+    }
+
+    private static long align(long size) {
+        return (size + 7) / 8 * 8;
+    }
+
+    private static Map<String, Object> node(String name, Object age, String disease) {
+        Map<String, Object> node = new HashMap<>();
+        node.put(PatientCodec.FIELD_NAME, name);
+        node.put(PatientCodec.FIELD_EMAIL, "jane@example.com");
+        node.put(PatientCodec.FIELD_AGE, age);
+        node.put(PatientCodec.FIELD_ID, "P-1");
+        node.put(PatientCodec.FIELD_DISEASE, disease);
+        return node;
+    }
+}
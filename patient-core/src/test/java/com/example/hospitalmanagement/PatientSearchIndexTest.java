@@ -0,0 +1,188 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks PatientSearchIndex queries against a brute-force scan while records
+ * are added, changed and removed.
+ */
+public class PatientSearchIndexTest {
+
+    private static final int ANY = PatientSearchIndex.ANY_AGE;
+
+    private PatientSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PatientSearchIndex();
+        index.put(record("Jane Doe", "jane@example.com", "42", "P-100", "Asthma"));
+        index.put(record("John Smith", "john@example.com", "35", "P-200", "Flu"));
+        index.put(record("Janet Jones", "janet@example.com", "67", "Q-300", "asthma"));
+    }
+
+    @Test
+    public void search_matchesNameWordPrefix() {
+        assertEquals(ids("P-100", "Q-300"), ids(index.search("jan", "", ANY, ANY, 10)));
+        assertEquals(ids("Q-300"), ids(index.search("Jones", "", ANY, ANY, 10)));
+    }
+
+    @Test
+    public void search_matchesIdPrefix() {
+        assertEquals(ids("P-100", "P-200"), ids(index.search("p-", "", ANY, ANY, 10)));
+    }
+
+    @Test
+    public void search_filtersByDiseaseIgnoringCase() {
+        assertEquals(ids("P-100", "Q-300"), ids(index.search("", "ASTHMA", ANY, ANY, 10)));
+        assertEquals(ids("Q-300"), ids(index.search("janet", "asthma", ANY, ANY, 10)));
+    }
+
+    @Test
+    public void search_filtersByAgeRange() {
+        assertEquals(ids("P-100", "P-200"), ids(index.search("", "", 30, 50, 10)));
+        assertEquals(ids("Q-300"), ids(index.search("", "", 60, ANY, 10)));
+        assertEquals(ids("P-100"), ids(index.search("j", "", 40, 45, 10)));
+    }
+
+    @Test
+    public void put_replacesPreviousValues() {
+        index.put(record("Mary Major", "mary@example.com", "20", "P-100", "Flu"));
+
+        assertEquals(ids("Q-300"), ids(index.search("jan", "", ANY, ANY, 10)));
+        assertEquals(ids("P-100"), ids(index.search("mary", "", ANY, ANY, 10)));
+        assertEquals(ids("P-100", "P-200"), ids(index.search("", "flu", ANY, ANY, 10)));
+        assertEquals(ids(), ids(index.search("", "", 40, 45, 10)));
+    }
+
+    @Test
+    public void remove_dropsFromEveryIndex() {
+        assertTrue(index.remove("P-100"));
+        assertFalse(index.remove("P-100"));
+
+        assertEquals(2, index.size());
+        assertEquals(ids("Q-300"), ids(index.search("jane", "", ANY, ANY, 10)));
+        assertEquals(ids("Q-300"), ids(index.search("", "asthma", ANY, ANY, 10)));
+        assertEquals(ids(), ids(index.search("p-1", "", ANY, ANY, 10)));
+    }
+
+    @Test
+    public void search_stopsAtLimit() {
+        assertEquals(1, index.search("", "", ANY, ANY, 1).size());
+    }
+
+    @Test
+    public void search_withMoreMatchesThanLimit_returnsTheFirstKeys() {
+        Random random = new Random(3);
+        Map<String, PatientRecord> expected = new HashMap<>();
+        index.clear();
+        // Inserted out of key order so no index structure happens to walk in it
+        for (int i = 0; i < 500; i++) {
+            String id = "P-" + random.nextInt(100_000);
+            PatientRecord patient = randomPatient(random, id);
+            index.put(patient);
+            expected.put(id, patient);
+        }
+
+        int limit = 7;
+        String[][] queries = {{"a", ""}, {"p-", ""}, {"", "flu"}, {"", ""}, {"b", "asthma"}};
+        for (String[] query : queries) {
+            for (int minAge : new int[] {ANY, 20}) {
+                List<String> all = bruteForce(expected, query[0], query[1],
+                        minAge == ANY ? 0 : minAge, minAge == ANY ? 99 : 80);
+                assertTrue(all.size() > limit);
+                assertEquals(all.subList(0, limit), ids(index.search(query[0], query[1],
+                        minAge, minAge == ANY ? ANY : 80, limit)));
+            }
+        }
+    }
+
+    @Test
+    public void search_matchesBruteForceOnRandomEdits() {
+        Random random = new Random(7);
+        Map<String, PatientRecord> expected = new HashMap<>();
+        index.clear();
+        for (int i = 0; i < 5000; i++) {
+            String id = "P-" + random.nextInt(2000);
+            if (random.nextInt(5) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                PatientRecord patient = randomPatient(random, id);
+                index.put(patient);
+                expected.put(id, patient);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        String[] prefixes = {"a", "be", "p-1", "carl", ""};
+        String[] diseases = {"", "flu", "asthma"};
+        for (String prefix : prefixes) {
+            for (String disease : diseases) {
+                int minAge = random.nextInt(50);
+                int maxAge = minAge + random.nextInt(50);
+                assertEquals(bruteForce(expected, prefix, disease, minAge, maxAge),
+                        ids(index.search(prefix, disease, minAge, maxAge, Integer.MAX_VALUE)));
+            }
+        }
+    }
+
+    static PatientRecord record(String name, String email, String age, String id, String disease) {
+        return PatientRecord.fromPatient(new Patient(name, email, age, id, disease));
+    }
+
+    static PatientRecord randomPatient(Random random, String id) {
+        String[] first = {"Alice", "Bob", "Carla", "Ben", "Amir", "Beatrice", "Carl"};
+        String[] last = {"Abbott", "Baker", "Carter", "Adams", "Bell"};
+        String[] diseases = {"Flu", "Asthma", "Diabetes", "Hypertension"};
+        return record(
+                first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)],
+                id.toLowerCase(Locale.ROOT) + "@example.com",
+                String.valueOf(random.nextInt(100)),
+                id,
+                diseases[random.nextInt(diseases.length)]);
+    }
+
+    private static List<String> bruteForce(Map<String, PatientRecord> patients,
+                                           String prefix, String disease, int minAge, int maxAge) {
+        List<PatientRecord> matches = new ArrayList<>();
+        for (PatientRecord patient : patients.values()) {
+            boolean text = prefix.isEmpty() || patient.id.toLowerCase(Locale.ROOT).startsWith(prefix);
+            for (String word : patient.name.toLowerCase(Locale.ROOT).split(" ")) {
+                text |= word.startsWith(prefix);
+            }
+            boolean diseaseMatches = disease.isEmpty() || patient.disease().equalsIgnoreCase(disease);
+            int age = patient.age;
+            if (text && diseaseMatches && age >= minAge && age <= maxAge) {
+                matches.add(patient);
+            }
+        }
+        matches.sort((a, b) -> PatientKeys.ORDER.compare(a.id, b.id));
+        return ids(matches);
+    }
+
+    private static List<String> ids(String... ids) {
+        List<String> list = new ArrayList<>();
+        for (String id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<String> ids(List<PatientRecord> patients) {
+        List<String> list = new ArrayList<>();
+        for (PatientRecord patient : patients) {
+            list.add(patient.id);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the row labels and that binding into warmed-up buffers allocates nothing.
+ */
+public class PatientTextTest {
+
+    @Test
+    public void bind_writesEveryLabel() {
+        PatientText text = new PatientText();
+        text.bind(new PatientRecord("P-1", "Jane Doe", "jane@example.com", 42, DiseaseDictionary.intern("Asthma")));
+
+        assertEquals("Name: Jane Doe", text.name.toString());
+        assertEquals("Email: jane@example.com", text.email.toString());
+        assertEquals("Age: 42", text.age.toString());
+        assertEquals("ID: P-1", text.id.toString());
+        assertEquals("Disease: Asthma", text.disease.toString());
+    }
+
+    @Test
+    public void bind_shorterValuesReplaceLongerOnes() {
+        PatientText text = new PatientText();
+        text.bind(new PatientRecord("P-100", "Bartholomew Featherstonehaugh-Smythe of the Northern Wards, Esq.",
+                "bartholomew@example.com", 105, DiseaseDictionary.intern("Hypertension")));
+        text.bind(new PatientRecord("P-2", "Al", null, 0, DiseaseDictionary.NONE));
+
+        assertEquals("Name: Al", text.name.toString());
+        assertEquals("Email: null", text.email.toString());
+        assertEquals("Age: 0", text.age.toString());
+        assertEquals("ID: P-2", text.id.toString());
+        assertEquals("Disease: null", text.disease.toString());
+
+        text.bind(new PatientRecord("P-3", "Mary", "m@example.com", PatientRecord.UNKNOWN_AGE, DiseaseDictionary.NONE));
+        assertEquals("Age: ", text.age.toString());
+
+        text.bind(new PatientRecord("P-4", "Tom", null, PatientRecord.UNKNOWN_AGE, DiseaseDictionary.NONE, "6 months"));
+        assertEquals("Age: 6 months", text.age.toString());
+    }
+
+    @Test
+    public void steadyStateBind_allocatesNothing() {
+        Assume.assumeTrue("Thread allocation counting unavailable", allocationCountingSupported());
+        Random random = new Random(3);
+        List<PatientRecord> patients = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            patients.add(PatientSearchIndexTest.randomPatient(random, "P-" + i));
+        }
+        PatientText text = new PatientText();
+        // The first pass grows the buffers to fit the longest values
+        for (PatientRecord patient : patients) {
+            text.bind(patient);
+        }
+
+        // Reading the counter allocates a little on some JVMs; measure that on its own
+        long overhead = allocatedBytes();
+        overhead = allocatedBytes() - overhead;
+
+        int binds = 0;
+        long before = allocatedBytes();
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < patients.size(); i++) {
+                text.bind(patients.get(i));
+                binds++;
+            }
+        }
+        long allocated = Math.max(0, allocatedBytes() - before - overhead);
+
+        // Any allocation in bind would cost at least 16 bytes for each of the binds
+        assertEquals("Bytes allocated per bind (" + allocated + " over " + binds + " binds)",
+                0, allocated / binds);
+    }
+
+    private static boolean allocationCountingSupported() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        // Warm up the counter itself so its first call is not measured
+        allocatedBytes();
+        allocatedBytes();
+        return true;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
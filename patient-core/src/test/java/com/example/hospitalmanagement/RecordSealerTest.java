@@ -0,0 +1,88 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * Seals patient rows with a software data key, and wraps that key with
+ * another software key standing in for the Keystore key.
+ */
+public class RecordSealerTest {
+
+    @Test
+    public void open_returnsWhatWasSealed() throws Exception {
+        RecordSealer sealer = new RecordSealer(RecordSealer.newDataKey());
+        PatientRecord full = new PatientRecord("P-1", "Jane \u00e9", "jane@example.com", 42,
+                DiseaseDictionary.intern("Asthma"));
+        PatientRecord sparse = new PatientRecord("P-2", null, null, PatientRecord.UNKNOWN_AGE,
+                DiseaseDictionary.NONE, "6 months");
+
+        assertEquals(full, sealer.open("P-1", sealer.seal(full)));
+        assertEquals(sparse, sealer.open("P-2", sealer.seal(sparse)));
+        assertEquals("6 months", sealer.open("P-2", sealer.seal(sparse)).rawAge);
+    }
+
+    @Test
+    public void seal_hidesTheFieldsAndUsesAFreshIv() throws Exception {
+        RecordSealer sealer = new RecordSealer(RecordSealer.newDataKey());
+        PatientRecord record = new PatientRecord("P-1", "Jane Doe", "jane@example.com", 42,
+                DiseaseDictionary.intern("Tuberculosis"));
+
+        byte[] first = sealer.seal(record);
+        byte[] second = sealer.seal(record);
+
+        assertFalse(Arrays.equals(first, second));
+        String text = new String(first, StandardCharsets.ISO_8859_1);
+        assertFalse(text.contains("Jane"));
+        assertFalse(text.contains("jane@example.com"));
+        assertFalse(text.contains("Tuberculosis"));
+    }
+
+    @Test
+    public void open_refusesAlteredMovedOrForeignRows() throws Exception {
+        RecordSealer sealer = new RecordSealer(RecordSealer.newDataKey());
+        byte[] sealed = sealer.seal(new PatientRecord("P-1", "Jane", "jane@example.com", 42, DiseaseDictionary.NONE));
+
+        for (int i = 0; i < sealed.length; i++) {
+            byte[] altered = sealed.clone();
+            altered[i] ^= 1;
+            assertRefused(sealer, "P-1", altered);
+        }
+        assertRefused(sealer, "P-1", Arrays.copyOf(sealed, 12));
+        assertRefused(sealer, "P-1", null);
+        // Copied under another ID
+        assertRefused(sealer, "P-2", sealed);
+        assertRefused(new RecordSealer(RecordSealer.newDataKey()), "P-1", sealed);
+    }
+
+    @Test
+    public void unwrap_needsTheWrappingKey() throws Exception {
+        SecretKey wrappingKey = RecordSealer.newDataKey();
+        SecretKey dataKey = RecordSealer.newDataKey();
+        byte[] wrapped = RecordSealer.wrap(dataKey, wrappingKey);
+
+        assertArrayEquals(dataKey.getEncoded(), RecordSealer.unwrap(wrapped, wrappingKey).getEncoded());
+        try {
+            RecordSealer.unwrap(wrapped, RecordSealer.newDataKey());
+            fail("unwrapped with a revoked key");
+        } catch (GeneralSecurityException expected) {
+            // Refused
+        }
+    }
+
+    private static void assertRefused(RecordSealer sealer, String id, byte[] sealed) {
+        try {
+            sealer.open(id, sealed);
+            fail("opened a row that should have been refused");
+        } catch (GeneralSecurityException expected) {
+            // Refused
+        }
+    }
+}
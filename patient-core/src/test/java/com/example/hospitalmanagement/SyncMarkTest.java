@@ -0,0 +1,246 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays randomized edits, admissions and deletes through PatientIndex.fanOut
+ * against a simulated server clock, and checks that a client syncing by
+ * updatedAt ends up with the server's list while downloading only what changed.
+ */
+public class SyncMarkTest {
+
+    @Test
+    public void queryStart_reReadsTheOverlapButNeverFromZero() {
+        assertTrue(new SyncMark(0).isFullSync());
+        assertTrue(new SyncMark(-1).isFullSync());
+        assertEquals(1, new SyncMark(0).queryStart());
+        assertEquals(1, new SyncMark(5_000).queryStart());
+        assertEquals(40_000, new SyncMark(50_000, 10_000).queryStart());
+        assertEquals(50_000, new SyncMark(50_000, 0).queryStart());
+    }
+
+    @Test
+    public void advance_onlyMovesForward() {
+        SyncMark mark = new SyncMark(100, 0);
+        mark.advanceTo(90);
+        assertEquals(100, mark.get());
+        mark.advance(Collections.singletonMap(PatientIndex.FIELD_UPDATED_AT, 150L));
+        assertEquals(150, mark.get());
+        // Nothing to learn from a node without a time
+        mark.advance("not a summary");
+        assertEquals(150, mark.get());
+        assertFalse(mark.isFullSync());
+
+        mark.reset();
+        assertTrue(mark.isFullSync());
+    }
+
+    @Test
+    public void expire_dropsMarksOlderThanTheTombstoneRetention() {
+        long now = 1_700_000_000_000L;
+        SyncMark recent = new SyncMark(now - SyncMark.MAX_AGE_MS + SyncMark.DEFAULT_OVERLAP_MS);
+        recent.expire(now);
+        assertFalse(recent.isFullSync());
+
+        SyncMark old = new SyncMark(now - SyncMark.MAX_AGE_MS);
+        old.expire(now);
+        assertTrue(old.isFullSync());
+        assertTrue(SyncMark.MAX_AGE_MS < PatientIndex.TOMBSTONE_RETENTION_MS);
+    }
+
+    @Test
+    public void randomizedChurn_deltaSyncMatchesTheServerAndFollowsChurn() {
+        Random random = new Random(21);
+        Server server = new Server(random);
+        for (int i = 0; i < 500; i++) {
+            server.save(patient(random, "P-" + i));
+        }
+        Client client = new Client(0);
+
+        assertEquals(500, client.sync(server));
+        assertEquals(server.live(), client.list.snapshot());
+
+        int nextId = 500;
+        for (int round = 0; round < 200; round++) {
+            int atMark = server.countAt(client.mark.get());
+            Set<String> touched = new HashSet<>();
+            int changes = random.nextInt(20);
+            for (int i = 0; i < changes; i++) {
+                List<String> ids = server.ids();
+                int op = random.nextInt(10);
+                if (op < 2 || ids.isEmpty()) {
+                    String id = "P-" + nextId++;
+                    server.save(patient(random, id));
+                    touched.add(id);
+                } else {
+                    String id = ids.get(random.nextInt(ids.size()));
+                    if (op < 4) {
+                        server.delete(id);
+                    } else {
+                        server.save(patient(random, id));
+                    }
+                    touched.add(id);
+                }
+            }
+
+            int downloaded = client.sync(server);
+
+            assertEquals("round " + round, server.live(), client.list.snapshot());
+            // Each changed patient once, plus whatever shares the old mark's millisecond
+            assertTrue("round " + round + " downloaded " + downloaded,
+                    downloaded <= touched.size() + atMark);
+            assertTrue(downloaded >= touched.size());
+        }
+    }
+
+    @Test
+    public void restartedClient_withOverlap_catchesUpOnAllDeletes() {
+        Random random = new Random(7);
+        Server server = new Server(random);
+        for (int i = 0; i < 100; i++) {
+            server.save(patient(random, "P-" + i));
+        }
+        Client client = new Client(SyncMark.DEFAULT_OVERLAP_MS);
+        client.sync(server);
+        long saved = client.mark.get();
+
+        for (int i = 0; i < 100; i += 3) {
+            server.delete("P-" + i);
+        }
+        server.save(patient(random, "P-1000"));
+        // Cold start from the persisted mark and the rows on disk
+        Client restarted = new Client(SyncMark.DEFAULT_OVERLAP_MS);
+        restarted.mark.advanceTo(saved);
+        for (PatientRecord patient : client.list.snapshot()) {
+            restarted.list.put(patient.id, patient);
+        }
+
+        restarted.sync(server);
+
+        assertEquals(server.live(), restarted.list.snapshot());
+        assertEquals(67, restarted.list.size());
+    }
+
+    // Stores what fanOut writes, with the server placeholder replaced by a clock
+    // that sometimes stands still, as several writes can land in one millisecond
+    private static class Server {
+        final TreeMap<String, Object> records = new TreeMap<>();
+        final TreeMap<String, Object> summaries = new TreeMap<>();
+        final Random random;
+        long now = 1_700_000_000_000L;
+
+        Server(Random random) {
+            this.random = random;
+        }
+
+        void save(Patient patient) {
+            write(PatientIndex.fanOut(Collections.singletonMap(patient.id, PatientCodec.encode(patient))));
+        }
+
+        void delete(String id) {
+            write(PatientIndex.fanOut(Collections.singletonMap(id, null)));
+        }
+
+        private void write(Map<String, Object> updates) {
+            now += random.nextInt(3);
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String[] path = update.getKey().split("/");
+                if (path[0].equals(PatientIndex.BY_DISEASE)) {
+                    continue;
+                }
+                Object value = update.getValue() == null ? null : PatientIndexTest.resolved(update.getValue(), now);
+                if (path[0].equals(PatientIndex.PATIENTS)) {
+                    put(records, path[1], value);
+                } else if (path[0].equals(PatientIndex.SUMMARIES)) {
+                    put(summaries, path[1], value);
+                }
+            }
+        }
+
+        // orderByChild(updatedAt).startAt(start)
+        List<Map.Entry<String, Object>> query(long start) {
+            List<Map.Entry<String, Object>> result = new ArrayList<>();
+            for (Map.Entry<String, Object> summary : summaries.entrySet()) {
+                if (PatientIndex.updatedAt(summary.getValue()) >= start) {
+                    result.add(summary);
+                }
+            }
+            result.sort((a, b) -> Long.compare(PatientIndex.updatedAt(a.getValue()), PatientIndex.updatedAt(b.getValue())));
+            return result;
+        }
+
+        int countAt(long time) {
+            int count = 0;
+            for (Object summary : summaries.values()) {
+                if (PatientIndex.updatedAt(summary) == time) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        List<String> ids() {
+            return new ArrayList<>(records.keySet());
+        }
+
+        List<PatientRecord> live() {
+            PatientList list = new PatientList();
+            for (Map.Entry<String, Object> summary : summaries.entrySet()) {
+                PatientRecord patient = PatientCodec.decodeSummary(summary.getKey(), summary.getValue());
+                if (patient != null) {
+                    list.put(summary.getKey(), patient);
+                }
+            }
+            return list.snapshot();
+        }
+
+        private static void put(Map<String, Object> node, String id, Object value) {
+            if (value == null) {
+                node.remove(id);
+            } else {
+                node.put(id, value);
+            }
+        }
+    }
+
+    private static class Client {
+        final PatientList list = new PatientList();
+        final SyncMark mark;
+
+        Client(long overlapMs) {
+            mark = new SyncMark(0, overlapMs);
+        }
+
+        // Returns how many summaries were downloaded
+        int sync(Server server) {
+            List<Map.Entry<String, Object>> changed = server.query(mark.queryStart());
+            for (Map.Entry<String, Object> summary : changed) {
+                PatientRecord patient = PatientCodec.decodeSummary(summary.getKey(), summary.getValue());
+                if (patient != null) {
+                    list.put(summary.getKey(), patient);
+                } else {
+                    list.remove(summary.getKey());
+                }
+                mark.advance(summary.getValue());
+            }
+            return changed.size();
+        }
+    }
+
+    private static Patient patient(Random random, String id) {
+        String[] diseases = {"Flu", "Asthma", "Malaria", null};
+        return new Patient("Name " + random.nextInt(1000), id + "@example.com",
+                Integer.toString(random.nextInt(100)), id, diseases[random.nextInt(diseases.length)]);
+    }
+}
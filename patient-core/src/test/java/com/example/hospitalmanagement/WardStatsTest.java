@@ -0,0 +1,115 @@
+package com.example.hospitalmanagement;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the incrementally maintained ward statistics with a full
+ * recomputation after randomized adds, edits and removals.
+ */
+public class WardStatsTest {
+
+    @Test
+    public void ageBand_groupsByDecadeWithOpenTopBand() {
+        assertEquals(0, WardStats.ageBand(0));
+        assertEquals(0, WardStats.ageBand(9));
+        assertEquals(1, WardStats.ageBand(10));
+        assertEquals(8, WardStats.ageBand(89));
+        assertEquals(9, WardStats.ageBand(90));
+        assertEquals(9, WardStats.ageBand(130));
+        assertEquals("0-9", WardStats.ageBandLabel(0));
+        assertEquals("90+", WardStats.ageBandLabel(9));
+    }
+
+    @Test
+    public void update_movesPatientBetweenDiseaseAndAgeBand() {
+        WardStats stats = new WardStats();
+        PatientRecord before = record("P-1", 34, "Flu");
+        PatientRecord after = record("P-1", 41, "Asthma");
+        stats.add(before);
+        stats.add(record("P-2", PatientRecord.UNKNOWN_AGE, null));
+
+        stats.update(before, after);
+
+        assertEquals(2, stats.total());
+        assertEquals(0, stats.diseaseCount(DiseaseDictionary.intern("Flu")));
+        assertEquals(1, stats.diseaseCount(DiseaseDictionary.intern("Asthma")));
+        assertEquals(1, stats.diseaseCount(DiseaseDictionary.NONE));
+        assertEquals(0, stats.ageBandCount(3));
+        assertEquals(1, stats.ageBandCount(4));
+        assertEquals(1, stats.unknownAgeCount());
+
+        List<WardStats.DiseaseCount> diseases = stats.diseases();
+        assertEquals(2, diseases.size());
+        assertEquals("Asthma", diseases.get(0).disease);
+        assertNull(diseases.get(1).disease);
+    }
+
+    @Test
+    public void randomEdits_matchFullRecomputation() {
+        Random random = new Random(11);
+        String[] diseases = {"Flu", "Asthma", "Diabetes", "Hypertension", "Malaria", null, " "};
+        PatientList list = new PatientList();
+
+        for (int step = 0; step < 20_000; step++) {
+            String id = "P-" + random.nextInt(500);
+            int action = random.nextInt(10);
+            if (action < 2) {
+                list.remove(id);
+            } else {
+                int age = random.nextInt(12) == 0 ? PatientRecord.UNKNOWN_AGE : random.nextInt(120);
+                list.put(id, record(id, age, diseases[random.nextInt(diseases.length)]));
+            }
+            if (step % 500 == 0) {
+                assertSameStats(recompute(list), list.stats());
+            }
+        }
+        assertSameStats(recompute(list), list.stats());
+
+        list.clear();
+        assertEquals(0, list.stats().total());
+        assertTrue(list.stats().diseases().isEmpty());
+    }
+
+    @Test
+    public void rebuild_replacesEarlierCounts() {
+        WardStats stats = new WardStats();
+        stats.add(record("P-1", 5, "Flu"));
+        List<PatientRecord> patients = new ArrayList<>();
+        patients.add(record("P-2", 95, "Asthma"));
+        patients.add(record("P-3", 96, "Asthma"));
+
+        stats.rebuild(patients);
+
+        assertEquals(2, stats.total());
+        assertEquals(0, stats.ageBandCount(0));
+        assertEquals(2, stats.ageBandCount(9));
+        assertEquals(0, stats.diseaseCount(DiseaseDictionary.intern("Flu")));
+    }
+
+    private static WardStats recompute(PatientList list) {
+        WardStats stats = new WardStats();
+        stats.rebuild(list.snapshot());
+        return stats;
+    }
+
+    private static void assertSameStats(WardStats expected, WardStats actual) {
+        assertEquals(expected.total(), actual.total());
+        assertEquals(expected.unknownAgeCount(), actual.unknownAgeCount());
+        for (int band = 0; band < WardStats.AGE_BANDS; band++) {
+            assertEquals("Age band " + band, expected.ageBandCount(band), actual.ageBandCount(band));
+        }
+        for (int id = DiseaseDictionary.NONE; id < DiseaseDictionary.size(); id++) {
+            assertEquals("Disease " + DiseaseDictionary.name(id), expected.diseaseCount(id), actual.diseaseCount(id));
+        }
+    }
+
+    private static PatientRecord record(String id, int age, String disease) {
+        return new PatientRecord(id, "Patient " + id, id + "@example.com", age, DiseaseDictionary.intern(disease));
+    }
+}
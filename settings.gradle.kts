@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Hospital Management"
 include(":app")
+include(":patient-core")
+include(":load-test")
  
\ No newline at end of file